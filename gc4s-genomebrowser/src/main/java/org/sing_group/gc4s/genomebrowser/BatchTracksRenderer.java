@@ -0,0 +1,332 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sing_group.gc4s.genomebrowser.painter.IndexHandlePool;
+import org.sing_group.gc4s.genomebrowser.painter.Painter;
+import org.sing_group.gc4s.genomebrowser.painter.PainterFactory;
+
+import es.cnio.bioinfo.pileline.refgenomeindex.GenomeIndex;
+
+/**
+ * Renders the tracks of a set of files for many genomic regions without
+ * displaying a {@code GenomeBrowser}, so that it can be used in batch
+ * processes running with {@code java.awt.headless=true}.
+ * 
+ * Regions are rendered in parallel by a pool of workers. Each worker creates
+ * its own painters the first time it is used and keeps them for all the
+ * regions it renders. The painters of each worker acquire the indexes of the
+ * track files in their own group of readers of the {@code IndexHandlePool},
+ * so that workers rendering the same files do not wait for each other's
+ * queries. Tracks are painted with the existing {@code Painter}
+ * implementations, in the same way as in {@link TracksImageExporter}.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class BatchTracksRenderer implements AutoCloseable {
+	private static final AtomicInteger RENDERERS = new AtomicInteger();
+
+	private final String readers = 
+		"batch-" + RENDERERS.incrementAndGet() + "-";
+	private final AtomicInteger workerCount = new AtomicInteger();
+	private final GenomeBrowser genomeBrowser;
+	private final List<File> trackFiles;
+	private final ExecutorService executor;
+	private final ConcurrentLinkedQueue<Worker> workers = 
+		new ConcurrentLinkedQueue<Worker>();
+
+	/**
+	 * Creates a new {@code BatchTracksRenderer} for the specified genome and
+	 * track files that uses as many workers as available processors.
+	 * 
+	 * @param genomeIndex the {@code GenomeIndex} of the reference genome
+	 * @param trackFiles the files of the tracks to render, in order
+	 */
+	public BatchTracksRenderer(GenomeIndex genomeIndex, List<File> trackFiles) {
+		this(genomeIndex, trackFiles, 
+			Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new {@code BatchTracksRenderer} for the specified genome and
+	 * track files that uses the specified number of workers.
+	 * 
+	 * @param genomeIndex the {@code GenomeIndex} of the reference genome
+	 * @param trackFiles the files of the tracks to render, in order
+	 * @param threads the number of workers
+	 */
+	public BatchTracksRenderer(GenomeIndex genomeIndex, List<File> trackFiles,
+		int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one thread is required");
+		}
+		this.genomeBrowser = new GenomeBrowser(genomeIndex);
+		this.trackFiles = new ArrayList<File>(trackFiles);
+		this.executor = Executors.newFixedThreadPool(threads,
+			new TrackRenderScheduler.RenderThreadFactory("genome-browser-batch"));
+	}
+
+	/**
+	 * Renders the specified region in background.
+	 * 
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param width the image width, in pixels
+	 * @return a {@code Future} with the rendered image
+	 */
+	public Future<BufferedImage> render(String sequence, long start, long end,
+		int width) {
+		return this.executor.submit(() -> {
+			Worker worker = takeWorker();
+			try {
+				BufferedImage[] image = new BufferedImage[1];
+				this.genomeBrowser.runInView(sequence, start, end, 
+					worker.tracksPanel, () -> {
+						image[0] = TracksImageExporter.renderImage(
+							worker.painters, worker.tracksPanel, 
+							worker.tracksPanel, sequence, start, end, width);
+					});
+
+				return image[0];
+			} finally {
+				this.workers.add(worker);
+			}
+		});
+	}
+
+	/**
+	 * Renders the specified region in background as a PNG image written into
+	 * the specified file. The image is streamed by strips, as in
+	 * {@link TracksImageExporter}.
+	 * 
+	 * @param file the file where the image is written
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param width the image width, in pixels
+	 * @return a {@code Future} with the file where the image has been written
+	 */
+	public Future<File> exportPNG(File file, String sequence, long start,
+		long end, int width) {
+		return this.executor.submit(() -> {
+			Worker worker = takeWorker();
+			try (OutputStream out = 
+				new BufferedOutputStream(new FileOutputStream(file))) {
+				this.genomeBrowser.runInView(sequence, start, end, 
+					worker.tracksPanel, () -> {
+						try {
+							TracksImageExporter.writePNG(out, worker.painters, 
+								worker.tracksPanel, worker.tracksPanel, sequence, 
+								start, end, width);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			} finally {
+				this.workers.add(worker);
+			}
+
+			return file;
+		});
+	}
+
+	/**
+	 * Renders each of the specified regions as a PNG image in the specified
+	 * directory and waits until all of them have been written. Images are
+	 * named after their regions, as in {@link Region#toString()}.
+	 * 
+	 * @param regions the regions to render
+	 * @param width the image width, in pixels
+	 * @param directory the directory where the images are written
+	 * @return the files where the images have been written, in the order of
+	 *         the regions
+	 * @throws IOException if an error occurs while rendering or writing any
+	 *         of the images
+	 * @throws InterruptedException if the calling thread is interrupted
+	 *         while waiting
+	 */
+	public List<File> exportPNG(List<Region> regions, int width,
+		File directory) throws IOException, InterruptedException {
+		List<Future<File>> futures = new ArrayList<Future<File>>();
+		for (Region region : regions) {
+			futures.add(exportPNG(new File(directory, region + ".png"),
+				region.getSequence(), region.getStart(), region.getEnd(), width));
+		}
+
+		List<File> files = new ArrayList<File>();
+		for (Future<File> future : futures) {
+			try {
+				files.add(future.get());
+			} catch (ExecutionException e) {
+				for (Future<File> pending : futures) {
+					pending.cancel(true);
+				}
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+		}
+
+		return files;
+	}
+
+	/**
+	 * Stops the workers, waiting for the regions already submitted to be
+	 * rendered, and disposes their painters and the hidden
+	 * {@code GenomeBrowser} used to render them.
+	 */
+	@Override
+	public void close() {
+		this.executor.shutdown();
+		try {
+			this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Worker worker;
+		while ((worker = this.workers.poll()) != null) {
+			worker.dispose();
+		}
+		this.genomeBrowser.dispose();
+	}
+
+	private Worker takeWorker() throws IOException {
+		Worker worker = this.workers.poll();
+
+		return worker != null ? worker : new Worker();
+	}
+
+	private class Worker {
+		final TracksPanel tracksPanel;
+		final List<Painter> painters = new ArrayList<Painter>();
+
+		Worker() throws IOException {
+			this.tracksPanel = new TracksPanel(genomeBrowser);
+			String group = readers + workerCount.incrementAndGet();
+			try {
+				IndexHandlePool.withReaders(group, () -> {
+					for (File file : trackFiles) {
+						Painter painter = PainterFactory.getPainter(file);
+						this.painters.add(painter);
+						painter.init(genomeBrowser);
+					}
+
+					return null;
+				});
+			} catch (IOException | RuntimeException e) {
+				this.dispose();
+				throw e;
+			}
+		}
+
+		void dispose() {
+			for (Painter painter : this.painters) {
+				painter.dispose();
+			}
+		}
+	}
+
+	/**
+	 * A genomic region to render.
+	 * 
+	 * @author hlfernandez
+	 * 
+	 */
+	public static class Region {
+		private final String sequence;
+		private final long start;
+		private final long end;
+
+		/**
+		 * Creates a new {@code Region}.
+		 * 
+		 * @param sequence the sequence of the region
+		 * @param start the first position of the region
+		 * @param end the last position of the region
+		 */
+		public Region(String sequence, long start, long end) {
+			this.sequence = sequence;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Returns the sequence of the region.
+		 * 
+		 * @return the sequence of the region
+		 */
+		public String getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * Returns the first position of the region.
+		 * 
+		 * @return the first position of the region
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * Returns the last position of the region.
+		 * 
+		 * @return the last position of the region
+		 */
+		public long getEnd() {
+			return end;
+		}
+
+		/**
+		 * Returns the region as {@code sequence_start-end}.
+		 * 
+		 * @return the region as {@code sequence_start-end}
+		 */
+		@Override
+		public String toString() {
+			return sequence + "_" + start + "-" + end;
+		}
+	}
+}
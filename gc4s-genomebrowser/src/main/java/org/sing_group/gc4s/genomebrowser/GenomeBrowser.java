@@ -34,14 +34,22 @@ import java.awt.event.ItemListener;
 import java.awt.event.KeyListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -59,6 +67,7 @@ import javax.swing.JTextField;
 import javax.swing.JToolBar;
 import javax.swing.JViewport;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -79,9 +88,12 @@ import es.cnio.bioinfo.pileline.refgenomeindex.GenomeIndex;
  */
 public class GenomeBrowser extends JComponent {
 	private static final long serialVersionUID = 1L;
+	private static final int TRACK_LOADERS = 
+		Math.min(4, Runtime.getRuntime().availableProcessors());
 
-	private static HashMap<GenomeIndex, GenomeBrowserState> states = 
-		new HashMap<GenomeIndex, GenomeBrowserState>();
+	private static Map<GenomeIndex, GenomeBrowserState> states = 
+		Collections.synchronizedMap(
+			new WeakHashMap<GenomeIndex, GenomeBrowserState>());
 
 	private JPanel sequenceAndRangeSelectionPanel;
 	private JToolBar toolbar;
@@ -110,16 +122,21 @@ public class GenomeBrowser extends JComponent {
 	private long initialPosition;
 	private long finalPosition;
 	private String currentSequence;
-	private LinkedList<File> files;
-	private LinkedList<Painter> painters = new LinkedList<Painter>();
-	private HashMap<Painter,File> painterToFile = new HashMap<Painter,File>();
-	private HashMap<File,Painter> fileToPainter = new HashMap<File,Painter>();
-	private File nextFile = null;
+	private final TrackRegistry tracks = new TrackRegistry();
+	private final Set<Painter> loadingPainters = 
+		Collections.newSetFromMap(new ConcurrentHashMap<Painter, Boolean>());
+	private int loadingTotal = 0;
 	private JLayeredPane layeredPane;
 	private long MAX;
 	private GenomeBrowserState STATE;
 	private boolean resumeState = false;
 	private TrackFileProvider trackFileProvider;
+	private TrackRenderScheduler renderScheduler;
+	private ThreadPoolExecutor trackLoader;
+	private ReferenceSequenceCache referenceCache;
+	private final ThreadLocal<View> viewOverride = new ThreadLocal<View>();
+	private final List<TrackRenderListener> trackRenderListeners = 
+		new CopyOnWriteArrayList<TrackRenderListener>();
 
 	/**
 	 * Creates a new {@code GenomeBrowser} instance to visualize the reference 
@@ -129,7 +146,7 @@ public class GenomeBrowser extends JComponent {
 	 */
 	public GenomeBrowser(GenomeIndex g) {
 		this.genomeIndex = g;
-		this.files = new LinkedList<File>();
+		this.referenceCache = new ReferenceSequenceCache(g);
 		
 		this.setTrackFileProvider(new TrackFileProvider() {
 			@Override
@@ -149,6 +166,12 @@ public class GenomeBrowser extends JComponent {
 	}
 
 	private void initialize() {
+		this.renderScheduler = new TrackRenderScheduler(this);
+		this.trackLoader = new ThreadPoolExecutor(TRACK_LOADERS, TRACK_LOADERS,
+			30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+			new TrackRenderScheduler.RenderThreadFactory("genome-browser-loader"));
+		this.trackLoader.allowCoreThreadTimeOut(true);
+
 		STATE = GenomeBrowser.states.get(genomeIndex);
 		if (STATE == null) {
 			STATE = new GenomeBrowserState();
@@ -157,7 +180,6 @@ public class GenomeBrowser extends JComponent {
 		if (STATE.getChr() != "null" && STATE.getInitialPosition() != -1
 			&& STATE.getFinalPosition() != -1) {
 			resumeState = true;
-			this.resumeStatus();
 		}
 
 		this.setSize(1000, 600);
@@ -169,6 +191,24 @@ public class GenomeBrowser extends JComponent {
 		this.sequenceAndRangeSelectionPanel = createSequenceAndRangeSelectionPanel();
 		this.toolbar = createToolbar();
 		this.rightPanel = new TracksPanel(this);
+		this.tracks.addTrackRegistryListener(new TrackRegistryListener() {
+
+			@Override
+			public void trackAdded(TrackRegistry.Track track) {
+				rightPanel.setChanged();
+			}
+
+			@Override
+			public void trackRemoved(TrackRegistry.Track track, int index) {
+				rightPanel.invalidateTrack(track.getPainter());
+				rightPanel.setChanged();
+			}
+
+			@Override
+			public void trackMoved(TrackRegistry.Track track, int from, int to) {
+				rightPanel.setChanged();
+			}
+		});
 
 		this.layeredPane = new JLayeredPane();
 
@@ -188,6 +228,8 @@ public class GenomeBrowser extends JComponent {
 					.getWidth() != previousWidth) {
 					this.previousWidth = ((JViewport) arg0.getSource()).getWidth();
 					GenomeBrowser.this.repaintGenomeBrowser();
+				} else {
+					GenomeBrowser.this.rightPanel.visibleAreaChanged();
 				}
 			}
 
@@ -220,6 +262,7 @@ public class GenomeBrowser extends JComponent {
 		this.rightPanel.revalidate();
 
 		if (this.resumeState) {
+			this.resumeStatus();
 			this.resumeState = false;
 		}
 	}
@@ -391,8 +434,7 @@ public class GenomeBrowser extends JComponent {
 
 				File f = trackFileProvider.getTrackFile();
 				if (f != null) {
-					GenomeBrowser.this.nextFile = f;
-					GenomeBrowser.this.repaintGenomeBrowser();
+					GenomeBrowser.this.addTrack(f);
 				} else {
 					return;
 				}
@@ -430,8 +472,8 @@ public class GenomeBrowser extends JComponent {
 		toolbar.addSeparator();
 		toolbar.addSeparator();
 
-		removeTrackButton.setEnabled(this.files.size() > 0);
-		optionTrackButton.setEnabled(this.files.size() > 0);
+		removeTrackButton.setEnabled(this.tracks.size() > 0);
+		optionTrackButton.setEnabled(this.tracks.size() > 0);
 		
 		moreZoomButton = new JButton("Zoom in", Icons.ICON_ZOOM_IN_16);
 
@@ -549,7 +591,20 @@ public class GenomeBrowser extends JComponent {
 	}
 
 	private void lessZoom(JComboBox<String> c) {
-		String newZoom = zooms[c.getSelectedIndex()];
+		long[] window = this.getZoomedOutWindow(c.getSelectedIndex());
+		this.initialPosition = window[0];
+		this.finalPosition = window[1];
+
+		this.initialPositionText.setText(String.valueOf(this.initialPosition));
+		this.finalPositionText.setText(String.valueOf(this.finalPosition));
+
+		this.rightPanel.clearHistogramIntervalsHashMap();
+		this.repaintGenomeBrowser();
+
+	}
+
+	private long[] getZoomedOutWindow(int zoomIndex) {
+		String newZoom = zooms[zoomIndex];
 
 		double factor = 0.0;
 
@@ -560,35 +615,91 @@ public class GenomeBrowser extends JComponent {
 		else if (newZoom.startsWith("10"))
 			factor = 10;
 
-		long visibleBases = this.finalPosition - this.initialPosition + 1;
+		long initialPosition = this.initialPosition;
+		long finalPosition = this.finalPosition;
+
+		long visibleBases = finalPosition - initialPosition + 1;
 		long newVisibleBases = (long) (visibleBases * factor);
 
 		long difference = newVisibleBases - visibleBases;
 		difference = difference / 2;
 
-		this.initialPosition = this.initialPosition - difference;
+		initialPosition = initialPosition - difference;
 
-		if (this.initialPosition < 1) {
-			this.finalPosition = this.finalPosition + difference
-				+ (this.initialPosition * -1);
-			this.initialPosition = 1;
+		if (initialPosition < 1) {
+			finalPosition = finalPosition + difference + (initialPosition * -1);
+			initialPosition = 1;
 		}
 
-		this.finalPosition = this.finalPosition + difference;
+		finalPosition = finalPosition + difference;
 
 		long tope = this.genomeIndex
 			.getSequenceLength((String) this.sequencesCB.getSelectedItem());
 
-		if (this.finalPosition > tope) {
-			this.finalPosition = tope;
+		if (finalPosition > tope) {
+			finalPosition = tope;
 		}
 
-		this.initialPositionText.setText(String.valueOf(this.initialPosition));
-		this.finalPositionText.setText(String.valueOf(this.finalPosition));
+		return new long[] { initialPosition, finalPosition };
+	}
 
-		this.rightPanel.clearHistogramIntervalsHashMap();
-		this.repaintGenomeBrowser();
+	private long[] getMovedWindow(int divisor, boolean left) {
+		long initialPosition = this.initialPosition;
+		long finalPosition = this.finalPosition;
+
+		long visibleBases = finalPosition - initialPosition + 1;
+		long displacement = ((visibleBases * divisor) / 100) / 2;
+
+		if (left) {
+			if (initialPosition == 1)
+				return null;
+
+			initialPosition = initialPosition - displacement;
+			if (initialPosition < 1) {
+				initialPosition = 1;
+				finalPosition = finalPosition - (displacement * 2);
+			} else {
+				finalPosition = finalPosition - displacement;
+			}
+		} else {
+			if (finalPosition == MAX)
+				return null;
+
+			finalPosition = finalPosition + displacement;
+			if (finalPosition > MAX) {
+				finalPosition = MAX;
+				initialPosition = initialPosition + (displacement * 2);
+			} else {
+				initialPosition = initialPosition + displacement;
+			}
+		}
+
+		return new long[] { initialPosition, finalPosition };
+	}
+
+	/**
+	 * Returns the windows that are likely to be visualized next: the ones
+	 * shown by the short move buttons and by the zoom out button.
+	 * 
+	 * @return the windows adjacent to the current one
+	 */
+	List<long[]> getAdjacentWindows() {
+		List<long[]> windows = new ArrayList<long[]>();
+		long[] left = this.getMovedWindow(10, true);
+		if (left != null) {
+			windows.add(left);
+		}
+		long[] right = this.getMovedWindow(10, false);
+		if (right != null) {
+			windows.add(right);
+		}
+		long[] zoomedOut = this.getZoomedOutWindow(zoomCB.getSelectedIndex());
+		if (zoomedOut[0] != this.initialPosition
+			|| zoomedOut[1] != this.finalPosition) {
+			windows.add(zoomedOut);
+		}
 
+		return windows;
 	}
 
 	public void seekButtonAction() {
@@ -646,32 +757,12 @@ public class GenomeBrowser extends JComponent {
 			} else
 				divisor = 30;
 
-			long visibleBases = finalPosition - initialPosition + 1;
-			long displacement = ((visibleBases * divisor) / 100) / 2;
-
-			if (direction == 1) {
-				if (initialPosition == 1)
-					return;
-
-				initialPosition = initialPosition - displacement;
-				if (initialPosition < 1) {
-					initialPosition = 1;
-					finalPosition = finalPosition - (displacement * 2);
-				} else {
-					finalPosition = finalPosition - displacement;
-				}
-			} else {
-				if (finalPosition == MAX)
-					return;
-
-				finalPosition = finalPosition + displacement;
-				if (finalPosition > MAX) {
-					finalPosition = MAX;
-					initialPosition = initialPosition + (displacement * 2);
-				} else {
-					initialPosition = initialPosition + displacement;
-				}
+			long[] window = getMovedWindow(divisor, direction == 1);
+			if (window == null) {
+				return;
 			}
+			initialPosition = window[0];
+			finalPosition = window[1];
 
 			GenomeBrowser.this.initialPositionText
 				.setText(String.valueOf(GenomeBrowser.this.initialPosition));
@@ -683,29 +774,25 @@ public class GenomeBrowser extends JComponent {
 	}
 
 	/**
-	 * Tells the genome browser to repaint.
+	 * Tells the genome browser to repaint. Tracks are rendered in background
+	 * and a new call cancels the rendering started by the previous one.
 	 * 
 	 */
 	public void repaintGenomeBrowser() {
 		toolTipsPane.enableWait();
-		new Thread() {
-			public void run() {
-
-				rightPanel.setChanged();
-				if (nextFile != null) {
-					createPainter(GenomeBrowser.this.nextFile);
-				}
-
-				rightPanel.updateDoubleBuffer();
-				saveStatus();
-				rightPanel.repaint();
-				toolTipsPane.disableWait();
+		rightPanel.setChanged();
+		renderScheduler.requestRender();
+	}
 
-			}
-		}.start();
+	/**
+	 * Renders the tracks of the current frame that have become visible
+	 * without discarding the tracks already rendered.
+	 */
+	void renderVisibleTracks() {
+		renderScheduler.requestVisibleTracks();
 	}
 
-	private void saveStatus() {
+	void saveStatus() {
 		STATE.saveStatus(this);
 	}
 
@@ -769,7 +856,9 @@ public class GenomeBrowser extends JComponent {
 	 * @return the current sequence
 	 */
 	public String getCurrentSequence() {
-		return this.currentSequence;
+		View view = this.viewOverride.get();
+
+		return view != null ? view.sequence : this.currentSequence;
 	}
 
 	/**
@@ -840,42 +929,146 @@ public class GenomeBrowser extends JComponent {
 		this.repaintGenomeBrowser();
 	}
 
-	private void createPainter(File f) {
+	private void loadTrack(File f) {
+		this.loadTrack(f, null);
+	}
+
+	private void loadTrack(File f, Collection<TrackOption> options) {
+		if (this.trackLoader.isShutdown()) {
+			return;
+		}
 		Painter newPainter = PainterFactory.getPainter(f);
+		if (options != null) {
+			newPainter.setOptions(options);
+		}
+
+		this.loadingPainters.add(newPainter);
+		this.loadingTotal++;
+		this.tracks.add(f, newPainter);
+		this.updateLoadingProgress();
 
-		this.painters.add(newPainter);
-		this.files.add(f);
-		this.painterToFile.put(newPainter, f);
-		this.fileToPainter.put(f, newPainter);
+		this.trackLoader.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				initPainter(newPainter);
+			}
+		});
+	}
 
+	private void initPainter(Painter newPainter) {
+		String warning = null;
+		String error = null;
 		try {
 			newPainter.init(this);
 		} catch (RuntimeException ex) {
-			JOptionPane.showMessageDialog(this, ex.getMessage(), "Warning",
-				JOptionPane.WARNING_MESSAGE);
+			warning = ex.getMessage();
 		} catch (IOException ex) {
-			JOptionPane.showMessageDialog(this, ex.getMessage(), "Invalid file",
-				JOptionPane.ERROR_MESSAGE);
-			this.removePainter(newPainter);
+			error = ex.getMessage();
+		}
+
+		if (this.tracks.getTrack(newPainter) == null) {
+			newPainter.dispose();
+			SwingUtilities.invokeLater(() -> {
+				loadingPainters.remove(newPainter);
+				updateLoadingProgress();
+			});
+			return;
+		}
+
+		final String warningMessage = warning;
+		final String errorMessage = error;
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				loadingPainters.remove(newPainter);
+				rightPanel.invalidateTrack(newPainter);
+				if (errorMessage != null) {
+					removePainter(newPainter);
+				}
+				updateLoadingProgress();
+				repaintGenomeBrowser();
+
+				if (warningMessage != null) {
+					JOptionPane.showMessageDialog(GenomeBrowser.this,
+						warningMessage, "Warning", JOptionPane.WARNING_MESSAGE);
+				} else if (errorMessage != null) {
+					JOptionPane.showMessageDialog(GenomeBrowser.this,
+						errorMessage, "Invalid file", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		});
+	}
+
+	private void updateLoadingProgress() {
+		int loading = this.loadingPainters.size();
+		if (loading == 0) {
+			this.loadingTotal = 0;
+			this.toolTipsPane.setProgress(null);
+		} else {
+			this.toolTipsPane.setProgress("Loading tracks: "
+				+ (this.loadingTotal - loading) + " of " + this.loadingTotal
+				+ " ready");
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the specified track is still being loaded and
+	 * {@code false} otherwise. Tracks being loaded are displayed as empty
+	 * tracks until they are ready.
+	 * 
+	 * @param painter a track painter
+	 * @return {@code true} if the track is being loaded and {@code false}
+	 *         otherwise
+	 */
+	public boolean isLoading(Painter painter) {
+		return this.loadingPainters.contains(painter);
+	}
+
+	/**
+	 * Adds a listener that receives the render metrics of each track.
+	 * 
+	 * @param listener the {@code TrackRenderListener} to add
+	 */
+	public void addTrackRenderListener(TrackRenderListener listener) {
+		this.trackRenderListeners.add(listener);
+	}
+
+	/**
+	 * Removes the specified track render listener.
+	 * 
+	 * @param listener the {@code TrackRenderListener} to remove
+	 */
+	public void removeTrackRenderListener(TrackRenderListener listener) {
+		this.trackRenderListeners.remove(listener);
+	}
+
+	boolean hasTrackRenderListeners() {
+		return !this.trackRenderListeners.isEmpty();
+	}
+
+	void fireTrackRendered(TrackRenderMetrics metrics) {
+		for (TrackRenderListener listener : this.trackRenderListeners) {
+			listener.trackRendered(metrics);
 		}
+	}
 
-		this.nextFile = null;
+	/**
+	 * Shows or hides an overlay with the render metrics of each track.
+	 * 
+	 * @param visible whether the overlay must be visible or not
+	 */
+	public void setMetricsOverlayVisible(boolean visible) {
+		this.rightPanel.setMetricsOverlayVisible(visible);
 	}
 
 	private void resumeStatus() {
-		LinkedList<Painter> statusPainters = STATE.getPainters();
 		LinkedList<File> statusFiles = STATE.getFiles();
-		this.files = new LinkedList<File>();
-		if (statusPainters != null) {
-			for (int i = 0; i < statusFiles.size(); i++) {
-				Painter p = statusPainters.get(i);
-				File f = statusFiles.get(i);
-				p.setOptions(STATE.getTrackOptions(p));
-
-				this.painters.add(p);
-				this.files.add(f);
-				this.painterToFile.put(p, f);
-				this.fileToPainter.put(f, p);
+		if (statusFiles != null) {
+			int index = 0;
+			for (File f : statusFiles) {
+				this.loadTrack(f, STATE.getTrackOptions(index++));
 			}
 		}
 	}
@@ -900,7 +1093,9 @@ public class GenomeBrowser extends JComponent {
 	 * @return the actual initial position being visualized
 	 */
 	public long getInitialPosition() {
-		return initialPosition;
+		View view = this.viewOverride.get();
+
+		return view != null ? view.start : initialPosition;
 	}
 
 	/**
@@ -909,7 +1104,64 @@ public class GenomeBrowser extends JComponent {
 	 * @return the the actual final position being visualized
 	 */
 	public long getFinalPosition() {
-		return finalPosition;
+		View view = this.viewOverride.get();
+
+		return view != null ? view.end : finalPosition;
+	}
+
+	/**
+	 * Runs the specified task in the calling thread as if the specified
+	 * region was being visualized, so that painters can render a region other
+	 * than the current one without changing what the user sees.
+	 * 
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param task the task to run
+	 */
+	void runInView(String sequence, long start, long end, Runnable task) {
+		this.runInView(sequence, start, end, null, task);
+	}
+
+	/**
+	 * Runs the specified task in the calling thread as if the specified
+	 * region was being visualized in the specified tracks panel, so that
+	 * painters can render off-screen, at a width other than the current one.
+	 * 
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param tracksPanel the tracks panel returned by
+	 *        {@link #getTracksPanel()} or {@code null} to use the visible one
+	 * @param task the task to run
+	 */
+	void runInView(String sequence, long start, long end,
+		TracksPanel tracksPanel, Runnable task) {
+		View previous = this.viewOverride.get();
+		this.viewOverride.set(new View(sequence, start, end, tracksPanel));
+		try {
+			task.run();
+		} finally {
+			if (previous == null) {
+				this.viewOverride.remove();
+			} else {
+				this.viewOverride.set(previous);
+			}
+		}
+	}
+
+	private static class View {
+		final String sequence;
+		final long start;
+		final long end;
+		final TracksPanel tracksPanel;
+
+		View(String sequence, long start, long end, TracksPanel tracksPanel) {
+			this.sequence = sequence;
+			this.start = start;
+			this.end = end;
+			this.tracksPanel = tracksPanel;
+		}
 	}
 
 	/**
@@ -918,11 +1170,25 @@ public class GenomeBrowser extends JComponent {
 	 * @param p the painter to remove
 	 */
 	public void removePainter(Painter p) {
-		File toRemove = painterToFile.get(p);
-		this.files.remove(toRemove);
-		this.painters.remove(p);
-		this.painterToFile.remove(p);
-		this.fileToPainter.remove(toRemove);
+		if (this.tracks.remove(this.tracks.getTrack(p))) {
+			p.dispose();
+		}
+	}
+
+	/**
+	 * Releases the resources of the genome browser: its render and track
+	 * loading threads are stopped, the painters of all tracks are removed
+	 * and disposed and the reference sequence cache is cleared. The genome
+	 * browser is not repainted after this call, so it must be called by the
+	 * owner of the component once it is no longer going to be displayed.
+	 */
+	public void dispose() {
+		this.renderScheduler.shutdown();
+		this.trackLoader.shutdown();
+		for (Painter painter : this.getPainters()) {
+			this.removePainter(painter);
+		}
+		this.referenceCache.clear();
 	}
 
 	/**
@@ -931,8 +1197,10 @@ public class GenomeBrowser extends JComponent {
 	 * @param f the file to remove its associated painter
 	 */
 	public void removeFile(File f) {
-		Painter toRemove = this.fileToPainter.get(f);
-		this.removePainter(toRemove);
+		TrackRegistry.Track toRemove = this.tracks.getTrack(f);
+		if (toRemove != null) {
+			this.removePainter(toRemove.getPainter());
+		}
 	}
 
 	/**
@@ -944,6 +1212,16 @@ public class GenomeBrowser extends JComponent {
 		return this.genomeIndex;
 	}
 
+	/**
+	 * Returns the {@code ReferenceSequenceCache} that provides the bases of
+	 * the reference sequences.
+	 * 
+	 * @return the {@code ReferenceSequenceCache}
+	 */
+	public ReferenceSequenceCache getReferenceSequenceCache() {
+		return this.referenceCache;
+	}
+
 	/**
 	 * Returns the {@code ToolTipPane}.
 	 * 
@@ -968,6 +1246,11 @@ public class GenomeBrowser extends JComponent {
 	 * @return the {@code TracksPanel}
 	 */
 	public TracksPanel getTracksPanel() {
+		View view = this.viewOverride.get();
+		if (view != null && view.tracksPanel != null) {
+			return view.tracksPanel;
+		}
+
 		return this.rightPanel;
 	}
 
@@ -981,22 +1264,42 @@ public class GenomeBrowser extends JComponent {
 	}
 	
 	/**
-	 * Adds a track associated to the specified file.
+	 * Adds a track associated to the specified file. The track is loaded in
+	 * background and it is displayed as a loading track until it is ready.
 	 * 
 	 * @param f the file containing the track information
 	 */
 	public void addTrack(File f) {
-		this.nextFile = f;
-		this.repaintGenomeBrowser();
+		if (SwingUtilities.isEventDispatchThread()) {
+			this.loadTrack(f);
+			this.repaintGenomeBrowser();
+		} else {
+			SwingUtilities.invokeLater(new Runnable() {
+
+				@Override
+				public void run() {
+					addTrack(f);
+				}
+			});
+		}
 	}
 
 	/**
-	 * Returns the current list of {@code Painter}s.
+	 * Returns the registry of the tracks of this genome browser.
+	 * 
+	 * @return the {@code TrackRegistry} of this genome browser
+	 */
+	public TrackRegistry getTrackRegistry() {
+		return this.tracks;
+	}
+
+	/**
+	 * Returns an immutable snapshot of the current list of {@code Painter}s.
 	 * 
 	 * @return the current list of {@code Painter}s
 	 */
 	public List<Painter> getPainters() {
-		return this.painters;
+		return this.tracks.getPainters();
 	}
 
 	/**
@@ -1007,16 +1310,18 @@ public class GenomeBrowser extends JComponent {
 	 * @return the file associated to the painter
 	 */
 	public File getPainter(Painter p) {
-		return this.painterToFile.get(p);
+		TrackRegistry.Track track = this.tracks.getTrack(p);
+
+		return track == null ? null : track.getFile();
 	}
 	
 	/**
-	 * Returns the current list of file tracks.
+	 * Returns an immutable snapshot of the current list of file tracks.
 	 * 
 	 * @return the current list of file tracks.
 	 */
 	public List<File> getFiles() {
-		return files;
+		return this.tracks.getFiles();
 	}
 	
 	/**
@@ -23,11 +23,10 @@
 package org.sing_group.gc4s.genomebrowser;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.LinkedList;
-
-import org.sing_group.gc4s.genomebrowser.painter.Painter;
+import java.util.List;
 
 /**
  * This class encapsulates the state of a {@code GenomeBrowser}.
@@ -39,9 +38,8 @@ public class GenomeBrowserState {
 	private long initialPosition = -1;
 	private long finalPosition = -1;
 	private String chr = "null";
-	private HashMap<Painter, Collection<TrackOption>> tracks;
+	private List<Collection<TrackOption>> trackOptions;
 	private LinkedList<File> files;
-	private LinkedList<Painter> painters;
 	private int numberOfIntervals = -1;
 
 	/**
@@ -86,16 +84,38 @@ public class GenomeBrowserState {
 		return this.files;
 	}
 
-	public LinkedList<Painter> getPainters() {
-		return this.painters;
-	}
-
-	public Collection<TrackOption> getTrackOptions(Painter p) {
-		try {
-			return this.tracks.get(p);
-		} catch (Exception ex) {
+	/**
+	 * Returns a copy of the options of the track at the specified position of
+	 * the saved tracks, that is, of the track of the file at that position of
+	 * {@link #getFiles()}. The copy does not depend on the painter the options
+	 * were saved from.
+	 * 
+	 * @param index the position of the track
+	 * @return the options of the track or {@code null} if they have not been
+	 *         saved
+	 */
+	public Collection<TrackOption> getTrackOptions(int index) {
+		List<Collection<TrackOption>> options = this.trackOptions;
+		if (options == null || index < 0 || index >= options.size()) {
 			return null;
 		}
+
+		return options.get(index);
+	}
+
+	/**
+	 * Returns a copy of the options of the first saved track of the specified
+	 * file. When the same file has been added as several tracks, use
+	 * {@link #getTrackOptions(int)} to get the options of each one.
+	 * 
+	 * @param f a track file
+	 * @return the options of the track or {@code null} if they have not been
+	 *         saved
+	 */
+	public Collection<TrackOption> getTrackOptions(File f) {
+		LinkedList<File> files = this.files;
+
+		return files == null ? null : getTrackOptions(files.indexOf(f));
 	}
 
 	/**
@@ -105,16 +125,60 @@ public class GenomeBrowserState {
 	 * @param genomeBrowser a {@code GenomeBrowser} object
 	 */
 	public void saveStatus(GenomeBrowser genomeBrowser) {
-		this.tracks = new HashMap<Painter, Collection<TrackOption>>();
-		this.files = new LinkedList<File>();
-		this.painters = new LinkedList<Painter>();
-		for (Painter p : genomeBrowser.getPainters()) {
-			painters.addLast(p);
-			files.addLast(genomeBrowser.getPainter(p));
-			this.tracks.put(p, p.getOptions());
+		List<Collection<TrackOption>> trackOptions = 
+			new ArrayList<Collection<TrackOption>>();
+		LinkedList<File> files = new LinkedList<File>();
+		for (TrackRegistry.Track track : 
+			genomeBrowser.getTrackRegistry().getTracks()) {
+			files.addLast(track.getFile());
+			trackOptions.add(copyOptions(track.getPainter().getOptions()));
 		}
+		this.trackOptions = trackOptions;
+		this.files = files;
 		this.chr = genomeBrowser.getCurrentSequence();
 		this.initialPosition = genomeBrowser.getInitialPosition();
 		this.finalPosition = genomeBrowser.getFinalPosition();
 	}
+
+	private static Collection<TrackOption> copyOptions(
+		Collection<TrackOption> options) {
+		List<TrackOption> copies = new ArrayList<TrackOption>();
+		for (TrackOption option : options) {
+			copies.add(new SavedOption(option));
+		}
+
+		return copies;
+	}
+
+	private static class SavedOption implements TrackOption {
+		private final String name;
+		private final Class<?> type;
+		private Object value;
+
+		SavedOption(TrackOption option) {
+			this.name = option.getName();
+			this.type = option.getType();
+			this.value = option.getValue();
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Class<?> getType() {
+			return type;
+		}
+
+		@Override
+		public Object getValue() {
+			return value;
+		}
+
+		@Override
+		public void setValue(Object value) {
+			this.value = value;
+		}
+	}
 }
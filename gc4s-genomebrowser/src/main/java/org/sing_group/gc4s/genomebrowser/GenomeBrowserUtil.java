@@ -27,7 +27,6 @@ import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -36,16 +35,14 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.StringTokenizer;
 
-import javax.imageio.ImageIO;
 import javax.swing.JFileChooser;
 
 import org.sing_group.gc4s.genomebrowser.grid.FileInfo;
 import org.sing_group.gc4s.genomebrowser.grid.GridInfo;
+import org.sing_group.gc4s.genomebrowser.painter.BgzfInputStream;
 import org.sing_group.gc4s.genomebrowser.painter.Painter;
 
 import es.cnio.bioinfo.pileline.core.GPFileConstants;
-//import htsjdk.samtools.util.BlockCompressedInputStream;
-import net.sf.samtools.util.BlockCompressedInputStream;
 
 /**
  * This class provides different utilities for the genome browser and its
@@ -83,6 +80,21 @@ public class GenomeBrowserUtil {
 		return max;
 	}
 
+	/**
+	 * Returns the maximum value in the specified array of integers.
+	 * 
+	 * @param v an array of integers
+	 * @return the maximum value in the array
+	 */
+	public static int getMaxIntegerValue(int[] v) {
+		int max = 0;
+		for (int n : v) {
+			if (n > max)
+				max = n;
+		}
+		return max;
+	}
+
 	/**
 	 * Returns the maximum value in the specified list of doubles.
 	 * 
@@ -239,7 +251,11 @@ public class GenomeBrowserUtil {
 					destFile.delete();
 					destFile = f;
 				}
-				ImageIO.write(tracksPanel.getDoubleBuffer(), "png", destFile);
+				GenomeBrowser genomeBrowser = tracksPanel.getGenomeBrowser();
+				new TracksImageExporter(genomeBrowser).exportPNG(destFile,
+					genomeBrowser.getCurrentSequence(),
+					genomeBrowser.getInitialPosition(),
+					genomeBrowser.getFinalPosition(), tracksPanel.getWidth());
 			}
 		} catch (IOException ex) {
 		}
@@ -278,31 +294,35 @@ public class GenomeBrowserUtil {
 			FileReader fr = new FileReader(file);
 			br = new BufferedReader(fr);
 		} else if (file.getName().endsWith(".pileup.bgz")) {
-			br = new BufferedReader(new InputStreamReader(
-				new BlockCompressedInputStream(new FileInputStream(file))));
+			br = new BufferedReader(
+				new InputStreamReader(new BgzfInputStream(file)));
 		} else {
 			throw new IllegalArgumentException("The specified file is not a pileup");
 		}
 
-		String line = br.readLine();
-		while (line != null && line.startsWith("#")) {
-			if (line.contains(GPFileConstants.COLNAMES_HEADER))
-				break;
-			line = br.readLine();
-		}
-		if (line != null && line.contains(GPFileConstants.COLNAMES_HEADER)) {
-
-		} else if (line != null) {
-			StringTokenizer columnsTokens = new StringTokenizer(line);
-			LinkedList<String> columnsNamesList = new LinkedList<String>();
-			while (columnsTokens.hasMoreTokens()) {
-				columnsNamesList.addLast(columnsTokens.nextToken("\t"));
+		try {
+			String line = br.readLine();
+			while (line != null && line.startsWith("#")) {
+				if (line.contains(GPFileConstants.COLNAMES_HEADER))
+					break;
+				line = br.readLine();
 			}
-			try {
-				Integer.valueOf(columnsNamesList.get(3));
-			} catch (NumberFormatException nFe) {
-				toret = true;
+			if (line != null && line.contains(GPFileConstants.COLNAMES_HEADER)) {
+
+			} else if (line != null) {
+				StringTokenizer columnsTokens = new StringTokenizer(line);
+				LinkedList<String> columnsNamesList = new LinkedList<String>();
+				while (columnsTokens.hasMoreTokens()) {
+					columnsNamesList.addLast(columnsTokens.nextToken("\t"));
+				}
+				try {
+					Integer.valueOf(columnsNamesList.get(3));
+				} catch (NumberFormatException nFe) {
+					toret = true;
+				}
 			}
+		} finally {
+			br.close();
 		}
 		return toret;
 	}
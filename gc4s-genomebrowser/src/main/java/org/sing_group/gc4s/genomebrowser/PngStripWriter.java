@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a true color PNG image incrementally, so that images much larger
+ * than the available memory can be encoded: rows are added in strips, which
+ * are filtered and compressed as they are written, and only the current
+ * strip needs to be kept in memory.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class PngStripWriter implements Closeable {
+	private static final byte[] SIGNATURE = 
+		{ (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final byte FILTER_SUB = 1;
+
+	private final DataOutputStream out;
+	private final int width;
+	private final int height;
+	private final Deflater deflater;
+	private final DeflaterOutputStream data;
+	private final byte[] row;
+	private final int[] pixels;
+	private int rowsWritten = 0;
+
+	/**
+	 * Creates a new {@code PngStripWriter} that writes an image with the
+	 * specified size into the specified stream. The stream is closed when
+	 * the writer is closed.
+	 * 
+	 * @param out the stream where the image is written
+	 * @param width the image width
+	 * @param height the image height
+	 * @throws IOException if an error occurs while writing the image header
+	 */
+	public PngStripWriter(OutputStream out, int width, int height)
+		throws IOException {
+		if (width < 1 || height < 1) {
+			throw new IllegalArgumentException("Invalid image size: " + width
+				+ "x" + height);
+		}
+		this.out = new DataOutputStream(out);
+		this.width = width;
+		this.height = height;
+		this.row = new byte[1 + 3 * width];
+		this.pixels = new int[width];
+
+		this.out.write(SIGNATURE);
+		ChunkOutputStream header = new ChunkOutputStream("IHDR");
+		header.writeInt(width);
+		header.writeInt(height);
+		header.write(8);
+		header.write(2);
+		header.write(0);
+		header.write(0);
+		header.write(0);
+		header.close();
+
+		this.deflater = new Deflater(Deflater.BEST_SPEED);
+		this.data = new DeflaterOutputStream(new IdatOutputStream(),
+			this.deflater, CHUNK_SIZE);
+	}
+
+	/**
+	 * Returns the number of rows written so far.
+	 * 
+	 * @return the number of rows written so far
+	 */
+	public int getRowsWritten() {
+		return rowsWritten;
+	}
+
+	/**
+	 * Appends the first {@code rows} rows of the specified image. The image
+	 * must be at least as wide as the PNG image.
+	 * 
+	 * @param image the image that contains the rows
+	 * @param rows the number of rows to append
+	 * @throws IOException if an error occurs while writing the rows
+	 */
+	public void writeRows(BufferedImage image, int rows) throws IOException {
+		if (image.getWidth() < this.width) {
+			throw new IllegalArgumentException("The image is too narrow");
+		}
+		if (rows > this.height - this.rowsWritten || rows > image.getHeight()) {
+			throw new IllegalArgumentException("Too many rows");
+		}
+
+		int[] buffer = null;
+		int stride = image.getWidth();
+		if (image.getType() == BufferedImage.TYPE_INT_RGB
+			|| image.getType() == BufferedImage.TYPE_INT_ARGB
+		) {
+			buffer = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		}
+
+		for (int y = 0; y < rows; y++) {
+			int[] pixels = this.pixels;
+			int offset = 0;
+			if (buffer != null) {
+				pixels = buffer;
+				offset = y * stride;
+			} else {
+				image.getRGB(0, y, this.width, 1, pixels, 0, this.width);
+			}
+
+			byte[] row = this.row;
+			row[0] = FILTER_SUB;
+			int previous = 0;
+			for (int x = 0, i = 1; x < this.width; x++, i += 3) {
+				int rgb = pixels[offset + x];
+				row[i] = (byte) ((rgb >> 16) - (previous >> 16));
+				row[i + 1] = (byte) ((rgb >> 8) - (previous >> 8));
+				row[i + 2] = (byte) (rgb - previous);
+				previous = rgb;
+			}
+			this.data.write(row);
+		}
+		this.rowsWritten += rows;
+	}
+
+	/**
+	 * Finishes the image and closes the underlying stream.
+	 * 
+	 * @throws IOException if not all the rows have been written or if an
+	 *         error occurs while writing the image
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			this.data.finish();
+			this.data.flush();
+			this.deflater.end();
+			new ChunkOutputStream("IEND").close();
+			this.out.flush();
+		} finally {
+			this.out.close();
+		}
+		if (this.rowsWritten != this.height) {
+			throw new IOException("Only " + this.rowsWritten + " of "
+				+ this.height + " rows have been written");
+		}
+	}
+
+	private void writeChunk(String type, byte[] data, int length)
+		throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		this.out.writeInt(length);
+		this.out.write(typeBytes);
+		this.out.write(data, 0, length);
+		this.out.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * Buffers the compressed image data and writes it as {@code IDAT} chunks.
+	 */
+	private class IdatOutputStream extends OutputStream {
+		private final byte[] buffer = new byte[CHUNK_SIZE];
+		private int count = 0;
+
+		@Override
+		public void write(int b) throws IOException {
+			if (this.count == this.buffer.length) {
+				flush();
+			}
+			this.buffer[this.count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (this.count == this.buffer.length) {
+					flush();
+				}
+				int copied = Math.min(len, this.buffer.length - this.count);
+				System.arraycopy(b, off, this.buffer, this.count, copied);
+				this.count += copied;
+				off += copied;
+				len -= copied;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (this.count > 0) {
+				writeChunk("IDAT", this.buffer, this.count);
+				this.count = 0;
+			}
+		}
+	}
+
+	/**
+	 * Collects the contents of a small chunk and writes it when closed.
+	 */
+	private class ChunkOutputStream extends DataOutputStream {
+		private final String type;
+
+		ChunkOutputStream(String type) {
+			super(new ByteArrayOutputStream());
+			this.type = type;
+		}
+
+		@Override
+		public void close() throws IOException {
+			byte[] contents = ((ByteArrayOutputStream) this.out)
+				.toByteArray();
+			writeChunk(this.type, contents, contents.length);
+		}
+	}
+}
@@ -0,0 +1,380 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import es.cnio.bioinfo.pileline.refgenomeindex.GenomeIndex;
+
+/**
+ * Provides the bases of the reference sequences of a {@code GenomeIndex}
+ * from a memory-mapped cache where each sequence is packed using two bits per
+ * base.
+ * 
+ * The first time that the bases of a sequence are requested, the sequence is
+ * packed into a temporary file in background and, meanwhile, the bases are
+ * read from the {@code GenomeIndex}. Once the sequence is packed, the bases of
+ * any window are decoded directly from the mapped file. Bases other than
+ * {@code A}, {@code C}, {@code G} and {@code T}, such as {@code N} runs, and
+ * soft-masked (lowercase) regions are kept as sorted runs, so the cached
+ * bases are exactly the ones returned by the {@code GenomeIndex}.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class ReferenceSequenceCache {
+	private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+	private static final int CHUNK_SIZE = 1 << 20;
+	private static final char MASKED = 'm';
+
+	private static ExecutorService builder;
+
+	private final GenomeIndex genomeIndex;
+	private final ConcurrentHashMap<String, PackedSequence> sequences = 
+		new ConcurrentHashMap<String, PackedSequence>();
+	private final Set<String> building = 
+		Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/**
+	 * Creates a new {@code ReferenceSequenceCache} for the specified
+	 * {@code GenomeIndex}.
+	 * 
+	 * @param genomeIndex the {@code GenomeIndex} that provides the bases
+	 */
+	public ReferenceSequenceCache(GenomeIndex genomeIndex) {
+		this.genomeIndex = genomeIndex;
+	}
+
+	/**
+	 * Returns {@code true} if the specified sequence has already been packed
+	 * and {@code false} otherwise.
+	 * 
+	 * @param sequence the sequence name
+	 * @return {@code true} if the specified sequence has already been packed
+	 */
+	public boolean isCached(String sequence) {
+		return this.sequences.containsKey(sequence);
+	}
+
+	/**
+	 * Reads {@code length} bases of the specified sequence starting at
+	 * {@code start}, using the same coordinates as
+	 * {@link GenomeIndex#seek(String, int, int)}. If the sequence has not been
+	 * packed yet, the bases are read from the {@code GenomeIndex} and the
+	 * sequence is packed in background.
+	 * 
+	 * @param sequence the sequence name
+	 * @param start the position of the first base
+	 * @param bases the array where the bases are stored
+	 * @param length the number of bases to read
+	 * @return the number of bases read
+	 * @throws IOException if an error occurs while reading the bases
+	 */
+	public int getBases(String sequence, long start, char[] bases, int length)
+		throws IOException {
+		PackedSequence packed = this.sequences.get(sequence);
+		if (packed != null) {
+			return packed.getBases(start, bases, length);
+		}
+		this.build(sequence);
+
+		return this.readBases(sequence, start, bases, length);
+	}
+
+	/**
+	 * Discards all the packed sequences and deletes their temporary files.
+	 * Sequences being packed are discarded when they are finished.
+	 */
+	public synchronized void clear() {
+		this.generation.incrementAndGet();
+		this.building.clear();
+		for (String sequence : this.sequences.keySet()) {
+			PackedSequence packed = this.sequences.remove(sequence);
+			if (packed != null) {
+				packed.file.delete();
+			}
+		}
+	}
+
+	private int readBases(String sequence, long start, char[] bases,
+		int length) throws IOException {
+		if (length <= 0) {
+			return 0;
+		}
+		synchronized (this.genomeIndex) {
+			Reader reader = this.genomeIndex.seek(sequence, (int) start,
+				(int) (start + length - 1));
+			try {
+				int read = 0;
+				while (read < length) {
+					int count = reader.read(bases, read, length - read);
+					if (count < 0) {
+						break;
+					}
+					read += count;
+				}
+
+				return read;
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private void build(final String sequence) {
+		if (!this.building.add(sequence)) {
+			return;
+		}
+		final int buildGeneration = this.generation.get();
+		getBuilder().submit(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					PackedSequence packed = pack(sequence);
+					synchronized (ReferenceSequenceCache.this) {
+						if (buildGeneration == generation.get()) {
+							sequences.put(sequence, packed);
+						} else {
+							packed.file.delete();
+						}
+					}
+				} catch (IOException | RuntimeException e) {
+					e.printStackTrace();
+					building.remove(sequence);
+				}
+			}
+		});
+	}
+
+	private static synchronized ExecutorService getBuilder() {
+		if (builder == null) {
+			builder = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "genome-browser-reference");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+
+				return thread;
+			});
+		}
+
+		return builder;
+	}
+
+	private PackedSequence pack(String sequence) throws IOException {
+		long length;
+		synchronized (this.genomeIndex) {
+			length = this.genomeIndex.getSequenceLength(sequence);
+		}
+
+		File file = File.createTempFile("gc4s-reference-", ".2bit");
+		file.deleteOnExit();
+		try {
+			return this.pack(sequence, length, file);
+		} catch (IOException | RuntimeException e) {
+			file.delete();
+			throw e;
+		}
+	}
+
+	private PackedSequence pack(String sequence, long length, File file)
+		throws IOException {
+		Runs exceptions = new Runs();
+		Runs lowercase = new Runs();
+		char[] chunk = new char[CHUNK_SIZE];
+		ByteBuffer packed = ByteBuffer.allocate(CHUNK_SIZE / 4);
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			FileChannel channel = out.getChannel();
+			long index = 0;
+			while (index < length) {
+				int count = (int) Math.min(CHUNK_SIZE, length - index);
+				int read = this.readBases(sequence, index + 1, chunk, count);
+				if (read < count) {
+					Arrays.fill(chunk, read, count, 'N');
+				}
+
+				packed.clear();
+				for (int i = 0; i < count; i += 4) {
+					int value = 0;
+					for (int j = 0; j < 4; j++) {
+						value <<= 2;
+						if (i + j < count) {
+							long position = index + i + j;
+							char base = chunk[i + j];
+							char upper = Character.toUpperCase(base);
+							lowercase.add(position, base != upper ? MASKED : 0);
+							int code = codeOf(upper);
+							exceptions.add(position, code < 0 ? upper : 0);
+							value |= Math.max(code, 0);
+						}
+					}
+					packed.put((byte) value);
+				}
+				packed.flip();
+				while (packed.hasRemaining()) {
+					channel.write(packed);
+				}
+				index += count;
+			}
+			exceptions.add(length, (char) 0);
+			lowercase.add(length, (char) 0);
+
+			MappedByteBuffer data = 
+				channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			return new PackedSequence(file, data, length, exceptions, lowercase);
+		}
+	}
+
+	private static int codeOf(char base) {
+		switch (base) {
+			case 'A':
+				return 0;
+			case 'C':
+				return 1;
+			case 'G':
+				return 2;
+			case 'T':
+				return 3;
+			default:
+				return -1;
+		}
+	}
+
+	private static class PackedSequence {
+		private final File file;
+		private final ByteBuffer data;
+		private final long length;
+		private final Runs exceptions;
+		private final Runs lowercase;
+
+		PackedSequence(File file, ByteBuffer data, long length,
+			Runs exceptions, Runs lowercase) {
+			this.file = file;
+			this.data = data;
+			this.length = length;
+			this.exceptions = exceptions;
+			this.lowercase = lowercase;
+		}
+
+		int getBases(long start, char[] bases, int length) {
+			long first = Math.max(0, start - 1);
+			long last = Math.min(this.length, start - 1 + length);
+			if (last <= first) {
+				return 0;
+			}
+			int count = (int) (last - first);
+			for (int i = 0; i < count; i++) {
+				long index = first + i;
+				int value = this.data.get((int) (index >>> 2));
+				int shift = 6 - 2 * (int) (index & 3);
+				bases[i] = BASES[(value >> shift) & 3];
+			}
+
+			Runs runs = this.exceptions;
+			for (int run = runs.first(first);
+				run < runs.size && runs.starts[run] < last; run++
+			) {
+				int from = (int) (Math.max(first, runs.starts[run]) - first);
+				int to = (int) (Math.min(last, runs.ends[run]) - first);
+				Arrays.fill(bases, from, to, runs.values[run]);
+			}
+
+			runs = this.lowercase;
+			for (int run = runs.first(first);
+				run < runs.size && runs.starts[run] < last; run++
+			) {
+				int from = (int) (Math.max(first, runs.starts[run]) - first);
+				int to = (int) (Math.min(last, runs.ends[run]) - first);
+				for (int i = from; i < to; i++) {
+					bases[i] = Character.toLowerCase(bases[i]);
+				}
+			}
+
+			return count;
+		}
+	}
+
+	/**
+	 * Sorted, non-overlapping runs of consecutive positions sharing the same
+	 * value. Positions with a value of {@code 0} do not belong to any run.
+	 */
+	private static class Runs {
+		private long[] starts = new long[16];
+		private long[] ends = new long[16];
+		private char[] values = new char[16];
+		private int size = 0;
+
+		private long runStart = -1;
+		private char runValue = 0;
+
+		void add(long position, char value) {
+			if (value == this.runValue) {
+				return;
+			}
+			if (this.runValue != 0) {
+				if (this.size == this.starts.length) {
+					int capacity = this.size * 2;
+					this.starts = Arrays.copyOf(this.starts, capacity);
+					this.ends = Arrays.copyOf(this.ends, capacity);
+					this.values = Arrays.copyOf(this.values, capacity);
+				}
+				this.starts[this.size] = this.runStart;
+				this.ends[this.size] = position;
+				this.values[this.size] = this.runValue;
+				this.size++;
+			}
+			this.runStart = position;
+			this.runValue = value;
+		}
+
+		int first(long position) {
+			int low = 0;
+			int high = this.size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (this.ends[middle] <= position) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+
+			return low;
+		}
+	}
+}
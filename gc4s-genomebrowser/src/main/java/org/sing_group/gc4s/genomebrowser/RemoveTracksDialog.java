@@ -29,8 +29,7 @@ import java.awt.GridLayout;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.File;
-import java.util.HashMap;
+import java.util.List;
 
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
@@ -43,6 +42,7 @@ import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
 import javax.swing.table.DefaultTableModel;
 
+import org.sing_group.gc4s.genomebrowser.TrackRegistry.Track;
 import org.sing_group.gc4s.ui.icons.Icons;
 
 /**
@@ -64,7 +64,7 @@ public class RemoveTracksDialog extends JDialog {
 	private JPanel mainPanel = new JPanel(new BorderLayout());
 	private JPanel buttonsPanel;
 	private JTable filesTable;
-	private HashMap<String, File> stringToFile = new HashMap<String, File>();
+	private List<Track> tracks;
 	private DefaultTableModel filesTableModel;
 
 	/**
@@ -106,9 +106,8 @@ public class RemoveTracksDialog extends JDialog {
 			public void actionPerformed(ActionEvent arg0) {
 
 				for (int i = 0; i < filesTableModel.getRowCount(); i++) {
-					if (filesTableModel.getValueAt(i, 1) != null) {
-						genomeBrowser.removeFile(
-							stringToFile.get(filesTableModel.getValueAt(i, 0)));
+					if (Boolean.TRUE.equals(filesTableModel.getValueAt(i, 1))) {
+						genomeBrowser.removePainter(tracks.get(i).getPainter());
 					}
 				}
 
@@ -154,9 +153,9 @@ public class RemoveTracksDialog extends JDialog {
 		filesTable
 			.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 		filesTable.setModel(filesTableModel);
-		for (File f : genomeBrowser.getFiles()) {
-			values[0] = f.getName();
-			stringToFile.put(f.getName(), f);
+		this.tracks = genomeBrowser.getTrackRegistry().getTracks();
+		for (Track t : this.tracks) {
+			values[0] = t.getFile().getName();
 			filesTableModel.addRow(values);
 		}
 
@@ -26,8 +26,8 @@ import java.awt.BorderLayout;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.File;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -39,7 +39,7 @@ import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.ListSelectionModel;
 
-import org.sing_group.gc4s.genomebrowser.painter.Painter;
+import org.sing_group.gc4s.genomebrowser.TrackRegistry.Track;
 import org.sing_group.gc4s.ui.icons.Icons;
 
 /**
@@ -66,8 +66,7 @@ public class SortTracksDialog extends JDialog{
 	
 	private GenomeBrowser genomeBrowser;
 	private JPanel buttons;
-	private LinkedList<File> files;
-	private LinkedList<Painter> painters;
+	private ArrayList<Track> tracks;
 	
 	private JButton downButton, upButton;
 	private JList<String> tracksJList;
@@ -108,19 +107,18 @@ public class SortTracksDialog extends JDialog{
 	}
 	
 	private void copyLists() {
-		this.files = new LinkedList<File>();
-		this.painters = new LinkedList<Painter>();
-		for (File f : genomeBrowser.getFiles()) this.files.addLast(f);
-		for (Painter p : genomeBrowser.getPainters()) this.painters.addLast(p);
+		this.tracks = new ArrayList<Track>(
+			genomeBrowser.getTrackRegistry().getTracks());
 	}
 
 	private void copyNewLists() {
-		genomeBrowser.getFiles().clear();
-		genomeBrowser.getPainters().clear();
-		for (File f : this.files)
-			genomeBrowser.getFiles().add(f);
-		for (Painter p : this.painters)
-			genomeBrowser.getPainters().add(p);
+		TrackRegistry registry = genomeBrowser.getTrackRegistry();
+		for (int i = 0; i < this.tracks.size(); i++) {
+			int current = this.tracks.get(i).getIndex();
+			if (current >= 0 && current != i && i < registry.size()) {
+				registry.move(current, i);
+			}
+		}
 	}
 
 	private void createSortPane(){
@@ -128,10 +126,10 @@ public class SortTracksDialog extends JDialog{
 		sortPane.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(),"Tracks order"));
 		sortPane.setLayout(new BoxLayout(sortPane,BoxLayout.X_AXIS));
 
-		String	tracksData[] = new String[this.files.size()];
+		String	tracksData[] = new String[this.tracks.size()];
 		int i = 0;
-		for (File f : this.files) {
-			tracksData[i++] = f.getName();
+		for (Track t : this.tracks) {
+			tracksData[i++] = t.getFile().getName();
 		}
 		tracksJList = new JList<>(tracksData);
 		tracksJList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -200,13 +198,13 @@ public class SortTracksDialog extends JDialog{
 			}
 
 			if (arg0.getSource().equals(SortTracksDialog.this.downButton)){
-				if (selectedIndex >= 0 && selectedIndex < SortTracksDialog.this.files.size()-1){
+				if (selectedIndex >= 0 && selectedIndex < SortTracksDialog.this.tracks.size()-1){
 					SortTracksDialog.this.changePositions(selectedIndex,selectedIndex+1);
-					String	tracksData[] = new String[genomeBrowser.getFiles().size()];
+					String	tracksData[] = new String[SortTracksDialog.this.tracks.size()];
 
 					int i = 0;
-					for (File f : SortTracksDialog.this.files){
-						tracksData[i++] = f.getName();
+					for (Track t : SortTracksDialog.this.tracks){
+						tracksData[i++] = t.getFile().getName();
 					}
 					DefaultListModel<String> model = new DefaultListModel<>();
 					model.setSize(tracksData.length);
@@ -219,12 +217,12 @@ public class SortTracksDialog extends JDialog{
 				}
 
 			} else 	if (arg0.getSource().equals(SortTracksDialog.this.upButton)){
-				if (selectedIndex > 0 && selectedIndex < SortTracksDialog.this.files.size()){
+				if (selectedIndex > 0 && selectedIndex < SortTracksDialog.this.tracks.size()){
 					SortTracksDialog.this.changePositions(selectedIndex-1,selectedIndex);
-					String	tracksData[] = new String[SortTracksDialog.this.files.size()];
+					String	tracksData[] = new String[SortTracksDialog.this.tracks.size()];
 					int i = 0;
-					for (File f : SortTracksDialog.this.files){
-						tracksData[i++] = f.getName();
+					for (Track t : SortTracksDialog.this.tracks){
+						tracksData[i++] = t.getFile().getName();
 					}
 					DefaultListModel<String> model = new DefaultListModel<>();
 					model.setSize(tracksData.length);
@@ -241,18 +239,11 @@ public class SortTracksDialog extends JDialog{
 	}
 
 	private void changePositions(int position1, int position2) {
-		if (position1 < 0 || position1 >= this.files.size() || position2 < 0
-			|| position2 >= this.files.size())
+		if (position1 < 0 || position1 >= this.tracks.size() || position2 < 0
+			|| position2 >= this.tracks.size())
 			return;
 
-		File file1 = this.files.get(position1);
-		File file2 = this.files.get(position2);
-		this.files.set(position1, file2);
-		this.files.set(position2, file1);
-		Painter painter1 = this.painters.get(position1);
-		Painter painter2 = this.painters.get(position2);
-		this.painters.set(position1, painter2);
-		this.painters.set(position2, painter1);
+		Collections.swap(this.tracks, position1, position2);
 	}
 
 	public int getStatus() {
@@ -48,6 +48,7 @@ public class ToolTipPane extends JPanel{
 
 	private GridInfo gridInfo;
 	private boolean wait = false;
+	private volatile String progress = null;
 	private GenomeBrowser genomeBrower;
 
 	private int Y_OFFSET = 24;
@@ -218,6 +219,24 @@ public class ToolTipPane extends JPanel{
 				inicio + 120);
 
 		}
+
+		String progress = this.progress;
+		if (progress != null) {
+			int inicio = genomeBrower.getScroll().getVerticalScrollBar()
+				.getValue();
+			f = new Font("Arial", Font.BOLD, 12);
+			g2.setFont(f);
+			FontMetrics fm = g2.getFontMetrics();
+			int width = fm.stringWidth(progress) + 20;
+			Rectangle2D r2 = new Rectangle2D.Float(this.getWidth() - width - 25,
+				inicio + 5, width, 22);
+			g2.setColor(GenomeBrowserUtil.GRAY_1);
+			g2.fill(r2);
+			g2.setColor(Color.GRAY);
+			g2.draw(r2);
+			g2.setColor(GenomeBrowserUtil.LIGHT_BLACK);
+			g2.drawString(progress, this.getWidth() - width - 15, inicio + 20);
+		}
 	}
 
 	private double getMaxLineWidth(List<String> columns, FontMetrics fm) {
@@ -238,6 +257,16 @@ public class ToolTipPane extends JPanel{
 		this.repaint();
 	}
 
+	/**
+	 * Shows the specified progress message or hides it if it is {@code null}.
+	 * 
+	 * @param progress the progress message or {@code null} to hide it
+	 */
+	public void setProgress(String progress) {
+		this.progress = progress;
+		this.repaint();
+	}
+
 	/**
 	 * Hides the wait message.
 	 */
@@ -0,0 +1,262 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.sing_group.gc4s.genomebrowser.TracksPanel.TrackLayer;
+import org.sing_group.gc4s.genomebrowser.painter.Painter;
+
+/**
+ * A cache of rendered track layers. Layers are indexed by track, visible
+ * region, size and a hash of the track options, and the least recently used
+ * layers are evicted when the memory taken by the cached images exceeds the
+ * cache budget. Layers do not depend on the position of their track, so they
+ * are reused when other tracks are moved or removed. The heights of the
+ * tracks are also cached, indexed by track, visible region, width and
+ * options, so that a cached layer can be reused without computing the track
+ * layout again.
+ * 
+ * Each layer is the whole visible region of a track, not a tile of it: the
+ * key holds the exact first and last visible positions. A layer is only
+ * reused when the same region is shown again, that is, when going back to a
+ * previous view or when other tracks change. Panning shows a region that
+ * shares no key with the previous one, so it renders every track again in
+ * full. The only panning win is the {@code TrackPrefetcher}, which renders
+ * the adjacent windows into this cache before the user moves to them.
+ * 
+ * @author hlfernandez
+ * 
+ */
+class TrackLayerCache {
+	private static final long DEFAULT_MAX_BYTES = 
+		Math.min(Runtime.getRuntime().maxMemory() / 8, 128L * 1024 * 1024);
+	private static final int MAX_HEIGHTS = 4096;
+
+	private final long maxBytes;
+	private final LinkedHashMap<Key, TrackLayer> layers = 
+		new LinkedHashMap<Key, TrackLayer>(16, 0.75f, true);
+	private long bytes = 0;
+	private final LinkedHashMap<Key, Integer> heights = 
+		new LinkedHashMap<Key, Integer>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+				return size() > MAX_HEIGHTS;
+			}
+		};
+
+	/**
+	 * Creates a new {@code TrackLayerCache} with the default memory budget.
+	 */
+	public TrackLayerCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Creates a new {@code TrackLayerCache} with the specified memory budget.
+	 * 
+	 * @param maxBytes the maximum number of bytes taken by cached images
+	 */
+	public TrackLayerCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the cached layer for the specified key or {@code null} if there
+	 * is no such layer.
+	 * 
+	 * @param key the layer key
+	 * @return the cached layer or {@code null} if there is no such layer
+	 */
+	public synchronized TrackLayer get(Key key) {
+		return this.layers.get(key);
+	}
+
+	/**
+	 * Caches the specified layer.
+	 * 
+	 * @param key the layer key
+	 * @param layer the rendered layer
+	 */
+	public synchronized void put(Key key, TrackLayer layer) {
+		long layerBytes = bytes(layer.image);
+		if (layerBytes > this.maxBytes) {
+			return;
+		}
+
+		TrackLayer previous = this.layers.put(key, layer);
+		if (previous != null) {
+			this.bytes -= bytes(previous.image);
+		}
+		this.bytes += layerBytes;
+
+		Iterator<TrackLayer> eldest = this.layers.values().iterator();
+		while (this.bytes > this.maxBytes && eldest.hasNext()) {
+			this.bytes -= bytes(eldest.next().image);
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Returns the cached height for the specified key or {@code null} if
+	 * there is no such height.
+	 * 
+	 * @param key the height key, as returned by
+	 *        {@link Key#height(Painter, String, long, long, int, int)}
+	 * @return the cached height or {@code null} if there is no such height
+	 */
+	public synchronized Integer getHeight(Key key) {
+		return this.heights.get(key);
+	}
+
+	/**
+	 * Caches the specified track height.
+	 * 
+	 * @param key the height key, as returned by
+	 *        {@link Key#height(Painter, String, long, long, int, int)}
+	 * @param height the track height
+	 */
+	public synchronized void putHeight(Key key, int height) {
+		this.heights.put(key, height);
+	}
+
+	/**
+	 * Removes all the cached layers and heights of the specified track.
+	 * 
+	 * @param painter the track painter
+	 */
+	public synchronized void invalidate(Painter painter) {
+		Iterator<Map.Entry<Key, TrackLayer>> it = 
+			this.layers.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Key, TrackLayer> entry = it.next();
+			if (entry.getKey().painter == painter) {
+				this.bytes -= bytes(entry.getValue().image);
+				it.remove();
+			}
+		}
+		this.heights.keySet().removeIf(key -> key.painter == painter);
+	}
+
+	/**
+	 * Removes all the cached layers and heights.
+	 */
+	public synchronized void clear() {
+		this.layers.clear();
+		this.heights.clear();
+		this.bytes = 0;
+	}
+
+	private static long bytes(BufferedImage image) {
+		return 4L * image.getWidth() * image.getHeight();
+	}
+
+	/**
+	 * Computes a hash of the current options of the specified painter.
+	 * 
+	 * @param painter a track painter
+	 * @return a hash of the painter options
+	 */
+	public static int optionsHash(Painter painter) {
+		int hash = Objects.hash(painter.getTrackName(), painter.getTrackColor(),
+			painter.getBackgroundColor());
+		for (TrackOption option : painter.getOptions()) {
+			hash = 31 * hash + Objects.hashCode(option.getName());
+			hash = 31 * hash + Objects.hashCode(option.getValue());
+		}
+
+		return hash;
+	}
+
+	/**
+	 * The key of a rendered track layer.
+	 */
+	static final class Key {
+		private final Painter painter;
+		private final String sequence;
+		private final long start;
+		private final long end;
+		private final int width;
+		private final int height;
+		private final int optionsHash;
+
+		Key(Painter painter, String sequence, long start, long end, int width,
+			int height, int optionsHash) {
+			this.painter = painter;
+			this.sequence = sequence;
+			this.start = start;
+			this.end = end;
+			this.width = width;
+			this.height = height;
+			this.optionsHash = optionsHash;
+		}
+
+		/**
+		 * Creates the key of the height of a track, which depends on the
+		 * width of the tracks panel since interval layouts pack the intervals
+		 * by their size in pixels.
+		 * 
+		 * @param painter the track painter
+		 * @param sequence the visible sequence
+		 * @param start the first visible position
+		 * @param end the last visible position
+		 * @param width the width of the tracks panel
+		 * @param optionsHash the hash of the track options
+		 * @return the key of the track height
+		 */
+		static Key height(Painter painter, String sequence, long start,
+			long end, int width, int optionsHash) {
+			return new Key(painter, sequence, start, end, width, 0, 
+				optionsHash);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(painter), sequence,
+				start, end, width, height, optionsHash);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+
+			return this.painter == other.painter
+				&& Objects.equals(this.sequence, other.sequence)
+				&& this.start == other.start && this.end == other.end
+				&& this.width == other.width && this.height == other.height
+				&& this.optionsHash == other.optionsHash;
+		}
+	}
+}
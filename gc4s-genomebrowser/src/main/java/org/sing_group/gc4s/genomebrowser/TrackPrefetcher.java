@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sing_group.gc4s.genomebrowser.painter.Painter;
+
+/**
+ * Speculatively renders the windows adjacent to the current one, that is, the
+ * windows shown by the move and zoom out buttons, so that they are taken from
+ * the layers cache when the user navigates to them.
+ * 
+ * Prefetching runs in a single low priority thread, after the current frame
+ * has been rendered, and it is cancelled as soon as a new frame is requested
+ * so that it never competes with the foreground rendering. Tracks are
+ * prefetched with copies of their painters that have their own index
+ * readers, so a track being prefetched when a new frame is requested never
+ * delays it, even if its query is slow. The prefetched layers are stored in
+ * the bounded {@code TrackLayerCache}, where they are evicted as any other
+ * layer.
+ * 
+ * @author hlfernandez
+ * 
+ */
+class TrackPrefetcher {
+	private final GenomeBrowser genomeBrowser;
+	private final ExecutorService executor;
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/**
+	 * Creates a new {@code TrackPrefetcher} for the specified
+	 * {@code GenomeBrowser}.
+	 * 
+	 * @param genomeBrowser a {@code GenomeBrowser} instance
+	 */
+	public TrackPrefetcher(GenomeBrowser genomeBrowser) {
+		this.genomeBrowser = genomeBrowser;
+		this.executor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "genome-browser-prefetch");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts prefetching the windows adjacent to the current one for the
+	 * specified tracks. Any prefetch in progress is cancelled.
+	 * 
+	 * @param painters the track painters
+	 */
+	public void prefetch(List<Painter> painters) {
+		int prefetchGeneration = this.generation.incrementAndGet();
+		String sequence = this.genomeBrowser.getCurrentSequence();
+		List<long[]> windows = this.genomeBrowser.getAdjacentWindows();
+		this.executor.execute(() -> {
+			TracksPanel tracksPanel = this.genomeBrowser.getTracksPanel();
+			for (long[] window : windows) {
+				if (isCancelled(prefetchGeneration)) {
+					return;
+				}
+				try {
+					tracksPanel.prefetch(painters, sequence, window[0], window[1],
+						() -> isCancelled(prefetchGeneration));
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Cancels the prefetch in progress, if any. The track being prefetched,
+	 * if any, is finished before the prefetch stops.
+	 */
+	public void cancel() {
+		this.generation.incrementAndGet();
+	}
+
+	/**
+	 * Stops the prefetch thread.
+	 */
+	public void shutdown() {
+		this.cancel();
+		this.executor.shutdownNow();
+	}
+
+	private boolean isCancelled(int prefetchGeneration) {
+		return prefetchGeneration != this.generation.get()
+			|| Thread.currentThread().isInterrupted();
+	}
+}
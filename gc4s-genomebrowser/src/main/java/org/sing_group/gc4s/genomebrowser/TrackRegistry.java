@@ -0,0 +1,368 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.sing_group.gc4s.genomebrowser.painter.Painter;
+
+/**
+ * The ordered tracks of a {@code GenomeBrowser}. Each track has a unique id
+ * and knows its own position, so tracks can be looked up by id, painter or
+ * file and their positions obtained in constant time. Removing or moving a
+ * track only updates the positions of the tracks between the old and the new
+ * position, and the listeners are notified of each change so that only the
+ * affected tracks are laid out again.
+ * 
+ * The lists returned by {@link #getPainters()} and {@link #getFiles()} are
+ * immutable snapshots that are created on demand the first time they are
+ * requested after a change, so render threads can iterate them without
+ * copying or locking and a batch of changes only creates them once.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class TrackRegistry {
+	private final ArrayList<Track> tracks = new ArrayList<Track>();
+	private final HashMap<Long, Track> idToTrack = new HashMap<Long, Track>();
+	private final IdentityHashMap<Painter, Track> painterToTrack = 
+		new IdentityHashMap<Painter, Track>();
+	private final HashMap<File, List<Track>> fileToTracks = 
+		new HashMap<File, List<Track>>();
+	private final List<TrackRegistryListener> listeners = 
+		new CopyOnWriteArrayList<TrackRegistryListener>();
+	private long nextId = 1;
+
+	private volatile List<Painter> painters = Collections.emptyList();
+	private volatile List<File> files = Collections.emptyList();
+
+	/**
+	 * Adds a track at the end of the registry.
+	 * 
+	 * @param file the track file
+	 * @param painter the track painter
+	 * @return the new track
+	 */
+	public Track add(File file, Painter painter) {
+		Track track;
+		synchronized (this) {
+			if (this.painterToTrack.containsKey(painter)) {
+				throw new IllegalArgumentException(
+					"The painter is already registered");
+			}
+			track = new Track(this.nextId++, file, painter);
+			track.index = this.tracks.size();
+			this.tracks.add(track);
+			this.idToTrack.put(track.id, track);
+			this.painterToTrack.put(painter, track);
+			this.fileToTracks.computeIfAbsent(file, f -> new ArrayList<Track>(1))
+				.add(track);
+			this.updateSnapshots();
+		}
+		for (TrackRegistryListener listener : this.listeners) {
+			listener.trackAdded(track);
+		}
+
+		return track;
+	}
+
+	/**
+	 * Removes the specified track.
+	 * 
+	 * @param track the track to remove
+	 * @return {@code true} if the track was removed and {@code false} if it
+	 *         was not registered
+	 */
+	public boolean remove(Track track) {
+		int index;
+		synchronized (this) {
+			if (track == null || this.idToTrack.get(track.id) != track) {
+				return false;
+			}
+			index = track.index;
+			this.tracks.remove(index);
+			for (int i = index; i < this.tracks.size(); i++) {
+				this.tracks.get(i).index = i;
+			}
+			this.idToTrack.remove(track.id);
+			this.painterToTrack.remove(track.painter);
+			List<Track> fileTracks = this.fileToTracks.get(track.file);
+			fileTracks.remove(track);
+			if (fileTracks.isEmpty()) {
+				this.fileToTracks.remove(track.file);
+			}
+			track.index = -1;
+			this.updateSnapshots();
+		}
+		for (TrackRegistryListener listener : this.listeners) {
+			listener.trackRemoved(track, index);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Moves the track at position {@code from} to position {@code to},
+	 * shifting the tracks in between.
+	 * 
+	 * @param from the current position of the track
+	 * @param to the new position of the track
+	 */
+	public void move(int from, int to) {
+		Track track;
+		synchronized (this) {
+			if (from < 0 || from >= this.tracks.size() || to < 0
+				|| to >= this.tracks.size()) {
+				throw new IndexOutOfBoundsException(
+					"Invalid move from " + from + " to " + to);
+			}
+			if (from == to) {
+				return;
+			}
+			track = this.tracks.get(from);
+			int step = from < to ? 1 : -1;
+			for (int i = from; i != to; i += step) {
+				Track next = this.tracks.get(i + step);
+				next.index = i;
+				this.tracks.set(i, next);
+			}
+			track.index = to;
+			this.tracks.set(to, track);
+			this.updateSnapshots();
+		}
+		for (TrackRegistryListener listener : this.listeners) {
+			listener.trackMoved(track, from, to);
+		}
+	}
+
+	/**
+	 * Returns the number of tracks.
+	 * 
+	 * @return the number of tracks
+	 */
+	public synchronized int size() {
+		return this.tracks.size();
+	}
+
+	/**
+	 * Returns the track at the specified position.
+	 * 
+	 * @param index the track position
+	 * @return the track at the specified position
+	 */
+	public synchronized Track get(int index) {
+		return this.tracks.get(index);
+	}
+
+	/**
+	 * Returns the track with the specified id.
+	 * 
+	 * @param id the track id
+	 * @return the track or {@code null} if there is no track with that id
+	 */
+	public synchronized Track getById(long id) {
+		return this.idToTrack.get(id);
+	}
+
+	/**
+	 * Returns the track rendered by the specified painter.
+	 * 
+	 * @param painter a track painter
+	 * @return the track or {@code null} if the painter is not registered
+	 */
+	public synchronized Track getTrack(Painter painter) {
+		return this.painterToTrack.get(painter);
+	}
+
+	/**
+	 * Returns the earliest added track of the specified file that is still
+	 * registered.
+	 * 
+	 * @param file a track file
+	 * @return the track or {@code null} if there is no track of that file
+	 */
+	public synchronized Track getTrack(File file) {
+		List<Track> fileTracks = this.fileToTracks.get(file);
+
+		return fileTracks == null ? null : fileTracks.get(0);
+	}
+
+	/**
+	 * Returns the position of the track rendered by the specified painter.
+	 * 
+	 * @param painter a track painter
+	 * @return the track position or {@code -1} if the painter is not
+	 *         registered
+	 */
+	public synchronized int indexOf(Painter painter) {
+		Track track = this.painterToTrack.get(painter);
+
+		return track == null ? -1 : track.index;
+	}
+
+	/**
+	 * Returns a snapshot of the tracks, in order.
+	 * 
+	 * @return a snapshot of the tracks
+	 */
+	public synchronized List<Track> getTracks() {
+		return Collections.unmodifiableList(new ArrayList<Track>(this.tracks));
+	}
+
+	/**
+	 * Returns an immutable snapshot of the track painters, in order.
+	 * 
+	 * @return an immutable snapshot of the track painters
+	 */
+	public List<Painter> getPainters() {
+		List<Painter> painters = this.painters;
+		if (painters == null) {
+			painters = this.createSnapshots();
+		}
+
+		return painters;
+	}
+
+	/**
+	 * Returns an immutable snapshot of the track files, in order.
+	 * 
+	 * @return an immutable snapshot of the track files
+	 */
+	public List<File> getFiles() {
+		List<File> files = this.files;
+		if (files == null) {
+			synchronized (this) {
+				this.createSnapshots();
+				files = this.files;
+			}
+		}
+
+		return files;
+	}
+
+	/**
+	 * Adds a listener that is notified of the changes in the tracks. Listeners
+	 * are notified in the thread that makes the change.
+	 * 
+	 * @param listener a {@code TrackRegistryListener}
+	 */
+	public void addTrackRegistryListener(TrackRegistryListener listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * Removes the specified listener.
+	 * 
+	 * @param listener a {@code TrackRegistryListener}
+	 */
+	public void removeTrackRegistryListener(TrackRegistryListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	private void updateSnapshots() {
+		this.painters = null;
+		this.files = null;
+	}
+
+	private synchronized List<Painter> createSnapshots() {
+		if (this.painters != null) {
+			return this.painters;
+		}
+		Painter[] painters = new Painter[this.tracks.size()];
+		File[] files = new File[this.tracks.size()];
+		for (int i = 0; i < painters.length; i++) {
+			Track track = this.tracks.get(i);
+			painters[i] = track.painter;
+			files[i] = track.file;
+		}
+		this.files = Collections.unmodifiableList(Arrays.asList(files));
+		this.painters = Collections.unmodifiableList(Arrays.asList(painters));
+
+		return this.painters;
+	}
+
+	/**
+	 * A track of the registry: a file and the painter that renders it.
+	 */
+	public static class Track {
+		private final long id;
+		private final File file;
+		private final Painter painter;
+		private volatile int index;
+
+		private Track(long id, File file, Painter painter) {
+			this.id = id;
+			this.file = file;
+			this.painter = painter;
+		}
+
+		/**
+		 * Returns the unique id of the track.
+		 * 
+		 * @return the unique id of the track
+		 */
+		public long getId() {
+			return id;
+		}
+
+		/**
+		 * Returns the track file.
+		 * 
+		 * @return the track file
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * Returns the track painter.
+		 * 
+		 * @return the track painter
+		 */
+		public Painter getPainter() {
+			return painter;
+		}
+
+		/**
+		 * Returns the current position of the track or {@code -1} if it has
+		 * been removed.
+		 * 
+		 * @return the current position of the track
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		@Override
+		public String toString() {
+			return file.getName();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import org.sing_group.gc4s.genomebrowser.TrackRegistry.Track;
+
+/**
+ * A listener that is notified of the changes in the tracks of a
+ * {@code TrackRegistry}.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public interface TrackRegistryListener {
+
+	/**
+	 * Invoked when a track has been added at the end of the registry.
+	 * 
+	 * @param track the added track
+	 */
+	public void trackAdded(Track track);
+
+	/**
+	 * Invoked when a track has been removed. The tracks after it have been
+	 * shifted one position up.
+	 * 
+	 * @param track the removed track
+	 * @param index the position the track had
+	 */
+	public void trackRemoved(Track track, int index);
+
+	/**
+	 * Invoked when a track has been moved. The tracks between both positions
+	 * have been shifted one position towards {@code from}.
+	 * 
+	 * @param track the moved track
+	 * @param from the previous position of the track
+	 * @param to the new position of the track
+	 */
+	public void trackMoved(Track track, int from, int to);
+}
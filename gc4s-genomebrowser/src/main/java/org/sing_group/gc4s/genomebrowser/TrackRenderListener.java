@@ -0,0 +1,41 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+/**
+ * A listener that receives the metrics of each track rendered by a
+ * {@code GenomeBrowser}.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public interface TrackRenderListener {
+
+	/**
+	 * Invoked when a track has been rendered. This method is invoked from the
+	 * render threads, not from the event dispatch thread.
+	 * 
+	 * @param metrics the metrics of the rendered track
+	 */
+	public void trackRendered(TrackRenderMetrics metrics);
+}
@@ -0,0 +1,261 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import java.util.Locale;
+
+import org.sing_group.gc4s.genomebrowser.painter.Painter;
+
+/**
+ * The metrics of a track rendered for a genomic region: the time spent
+ * querying its file, computing its layout and painting it, the records
+ * scanned and their size in characters, the tooltip cells added and the size
+ * of the image allocated for the track.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class TrackRenderMetrics {
+	/**
+	 * The header of the CSV rows returned by {@link #toCsv()}.
+	 */
+	public static final String CSV_HEADER = "track,sequence,start,end,cached,"
+		+ "queryNanos,layoutNanos,paintNanos,recordsScanned,recordChars,"
+		+ "tooltipCells,bufferBytes";
+
+	private final Painter painter;
+	private final String sequence;
+	private final long start;
+	private final long end;
+	private final boolean cached;
+	private final long queryNanos;
+	private final long layoutNanos;
+	private final long paintNanos;
+	private final long recordsScanned;
+	private final long recordChars;
+	private final int tooltipCells;
+	private final long bufferBytes;
+
+	/**
+	 * Creates a new {@code TrackRenderMetrics} instance.
+	 * 
+	 * @param painter the track painter
+	 * @param sequence the sequence of the rendered region
+	 * @param start the first position of the rendered region
+	 * @param end the last position of the rendered region
+	 * @param cached whether the track has been taken from the layers cache
+	 * @param queryNanos the time spent querying the track file
+	 * @param layoutNanos the time spent computing the track height, excluding
+	 *        the query time
+	 * @param paintNanos the time spent painting the track, excluding the query
+	 *        time
+	 * @param recordsScanned the number of records scanned
+	 * @param recordChars the number of characters of the records scanned
+	 * @param tooltipCells the number of tooltip cells added
+	 * @param bufferBytes the size of the image allocated for the track
+	 */
+	public TrackRenderMetrics(Painter painter, String sequence, long start,
+		long end, boolean cached, long queryNanos, long layoutNanos,
+		long paintNanos, long recordsScanned, long recordChars,
+		int tooltipCells, long bufferBytes) {
+		this.painter = painter;
+		this.sequence = sequence;
+		this.start = start;
+		this.end = end;
+		this.cached = cached;
+		this.queryNanos = queryNanos;
+		this.layoutNanos = layoutNanos;
+		this.paintNanos = paintNanos;
+		this.recordsScanned = recordsScanned;
+		this.recordChars = recordChars;
+		this.tooltipCells = tooltipCells;
+		this.bufferBytes = bufferBytes;
+	}
+
+	/**
+	 * Returns the track painter.
+	 * 
+	 * @return the track painter
+	 */
+	public Painter getPainter() {
+		return painter;
+	}
+
+	/**
+	 * Returns the sequence of the rendered region.
+	 * 
+	 * @return the sequence of the rendered region
+	 */
+	public String getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns the first position of the rendered region.
+	 * 
+	 * @return the first position of the rendered region
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the last position of the rendered region.
+	 * 
+	 * @return the last position of the rendered region
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns {@code true} if the track has been taken from the layers cache
+	 * instead of being rendered and {@code false} otherwise.
+	 * 
+	 * @return {@code true} if the track has been taken from the layers cache
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * Returns the time spent querying the track file, in nanoseconds.
+	 * 
+	 * @return the time spent querying the track file, in nanoseconds
+	 */
+	public long getQueryNanos() {
+		return queryNanos;
+	}
+
+	/**
+	 * Returns the time spent computing the track height, excluding the query
+	 * time, in nanoseconds.
+	 * 
+	 * @return the time spent computing the track height, in nanoseconds
+	 */
+	public long getLayoutNanos() {
+		return layoutNanos;
+	}
+
+	/**
+	 * Returns the time spent painting the track, excluding the query time, in
+	 * nanoseconds.
+	 * 
+	 * @return the time spent painting the track, in nanoseconds
+	 */
+	public long getPaintNanos() {
+		return paintNanos;
+	}
+
+	/**
+	 * Returns the total time spent rendering the track, in nanoseconds.
+	 * 
+	 * @return the total time spent rendering the track, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return queryNanos + layoutNanos + paintNanos;
+	}
+
+	/**
+	 * Returns the number of records scanned.
+	 * 
+	 * @return the number of records scanned
+	 */
+	public long getRecordsScanned() {
+		return recordsScanned;
+	}
+
+	/**
+	 * Returns the number of characters of the records scanned. This is the
+	 * size of the records themselves and not the size of the
+	 * blocks decompressed to read them.
+	 * 
+	 * @return the number of characters of the records scanned
+	 */
+	public long getRecordChars() {
+		return recordChars;
+	}
+
+	/**
+	 * Returns the number of tooltip cells added by the track.
+	 * 
+	 * @return the number of tooltip cells added by the track
+	 */
+	public int getTooltipCells() {
+		return tooltipCells;
+	}
+
+	/**
+	 * Returns the size, in bytes, of the image allocated for the track.
+	 * 
+	 * @return the size of the image allocated for the track
+	 */
+	public long getBufferBytes() {
+		return bufferBytes;
+	}
+
+	/**
+	 * Returns these metrics as a CSV row with the columns described by
+	 * {@link #CSV_HEADER}.
+	 * 
+	 * @return a CSV row
+	 */
+	public String toCsv() {
+		return String.join(",", 
+			quote(painter.getTrackName()), quote(sequence),
+			String.valueOf(start), String.valueOf(end), String.valueOf(cached),
+			String.valueOf(queryNanos), String.valueOf(layoutNanos),
+			String.valueOf(paintNanos), String.valueOf(recordsScanned),
+			String.valueOf(recordChars), String.valueOf(tooltipCells),
+			String.valueOf(bufferBytes));
+	}
+
+	private static String quote(String value) {
+		return "\"" + String.valueOf(value).replace("\"", "\"\"") + "\"";
+	}
+
+	/**
+	 * Returns a short summary of these metrics to be displayed.
+	 * 
+	 * @return a short summary of these metrics
+	 */
+	public String toSummary() {
+		if (cached) {
+			return String.format(Locale.ENGLISH, "cached | %,d cells",
+				tooltipCells);
+		}
+
+		return String.format(Locale.ENGLISH,
+			"query %.1f ms | layout %.1f ms | paint %.1f ms | %,d records | "
+				+ "%,d K chars | %,d cells | %,d KB buffer",
+			queryNanos / 1e6, layoutNanos / 1e6, paintNanos / 1e6,
+			recordsScanned, recordChars / 1024, tooltipCells,
+			bufferBytes / 1024);
+	}
+
+	@Override
+	public String toString() {
+		return painter.getTrackName() + " [" + sequence + ":" + start + "-"
+			+ end + "] " + toSummary();
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * A {@code TrackRenderListener} that writes the metrics of each rendered
+ * track as a CSV row, so that the render times of a navigation session can be
+ * recorded and compared between versions.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class TrackRenderMetricsWriter implements TrackRenderListener, Closeable {
+	private final PrintWriter writer;
+
+	/**
+	 * Creates a new {@code TrackRenderMetricsWriter} that writes the CSV rows
+	 * into the specified writer. The CSV header is written immediately.
+	 * 
+	 * @param writer the writer where the CSV rows are written
+	 */
+	public TrackRenderMetricsWriter(Writer writer) {
+		this.writer = new PrintWriter(writer);
+		this.writer.println(TrackRenderMetrics.CSV_HEADER);
+		this.writer.flush();
+	}
+
+	@Override
+	public synchronized void trackRendered(TrackRenderMetrics metrics) {
+		this.writer.println(metrics.toCsv());
+		this.writer.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.writer.close();
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sing_group.gc4s.genomebrowser.TracksPanel.Frame;
+import org.sing_group.gc4s.genomebrowser.TracksPanel.TrackLayer;
+import org.sing_group.gc4s.genomebrowser.painter.Painter;
+
+/**
+ * Schedules the rendering of the {@code GenomeBrowser} tracks in background.
+ * 
+ * Render requests are coalesced: only the most recent request is rendered
+ * and a request that arrives while a frame is being rendered cancels it.
+ * Each track is rendered by its own task in a bounded pool of workers and
+ * composited into the tracks buffer as soon as it is finished. Only the
+ * tracks close to the visible area are rendered with the frame; the rest
+ * are rendered when they are scrolled into view. Once a frame is finished,
+ * the adjacent windows are prefetched by a {@code TrackPrefetcher}.
+ * 
+ * @author hlfernandez
+ * 
+ */
+class TrackRenderScheduler {
+	private static final int MAX_WORKERS = 
+		Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	private final GenomeBrowser genomeBrowser;
+	private final ExecutorService coordinator;
+	private final ThreadPoolExecutor workers;
+	private final TrackPrefetcher prefetcher;
+
+	private final AtomicInteger generation = new AtomicInteger();
+	private final AtomicBoolean pending = new AtomicBoolean(false);
+	private final List<Future<?>> currentTasks = new ArrayList<Future<?>>();
+
+	/**
+	 * Creates a new {@code TrackRenderScheduler} for the specified 
+	 * {@code GenomeBrowser}.
+	 * 
+	 * @param genomeBrowser a {@code GenomeBrowser} instance
+	 */
+	public TrackRenderScheduler(GenomeBrowser genomeBrowser) {
+		this.genomeBrowser = genomeBrowser;
+		this.coordinator = Executors.newSingleThreadExecutor(
+			new RenderThreadFactory("genome-browser-render"));
+		this.workers = new ThreadPoolExecutor(MAX_WORKERS, MAX_WORKERS, 30,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+			new RenderThreadFactory("genome-browser-track"));
+		this.workers.allowCoreThreadTimeOut(true);
+		this.prefetcher = new TrackPrefetcher(genomeBrowser);
+	}
+
+	/**
+	 * Requests a new frame. The frame being rendered, if any, is cancelled.
+	 */
+	public void requestRender() {
+		if (this.coordinator.isShutdown()) {
+			return;
+		}
+		this.generation.incrementAndGet();
+		this.prefetcher.cancel();
+		this.cancelCurrentTasks();
+		if (this.pending.compareAndSet(false, true)) {
+			this.coordinator.execute(this::renderLatest);
+		}
+	}
+
+	/**
+	 * Requests the rendering of the tracks of the current frame that have
+	 * become visible since the frame was started.
+	 */
+	public void requestVisibleTracks() {
+		if (this.coordinator.isShutdown()) {
+			return;
+		}
+		this.prefetcher.cancel();
+		this.coordinator.execute(() -> {
+			int frameGeneration = this.generation.get();
+			TracksPanel tracksPanel = this.genomeBrowser.getTracksPanel();
+			Frame frame = tracksPanel.getCurrentFrame();
+			if (frame == null || this.pending.get()) {
+				return;
+			}
+			try {
+				this.renderTracks(tracksPanel, frame, 
+					tracksPanel.claimVisibleTracks(frame), frameGeneration);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		});
+	}
+
+	/**
+	 * Stops the render threads. Render requests made after this call are
+	 * ignored.
+	 */
+	public void shutdown() {
+		this.generation.incrementAndGet();
+		this.cancelCurrentTasks();
+		this.coordinator.shutdownNow();
+		this.workers.shutdownNow();
+		this.prefetcher.shutdown();
+	}
+
+	private boolean isStale(int frameGeneration) {
+		return frameGeneration != this.generation.get();
+	}
+
+	private void cancelCurrentTasks() {
+		synchronized (this.currentTasks) {
+			for (Future<?> task : this.currentTasks) {
+				task.cancel(false);
+			}
+			this.currentTasks.clear();
+		}
+	}
+
+	private void renderLatest() {
+		this.pending.set(false);
+		int frameGeneration = this.generation.get();
+		try {
+			this.render(frameGeneration);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		} finally {
+			if (!isStale(frameGeneration)) {
+				this.genomeBrowser.getToolTipsPane().disableWait();
+			}
+		}
+	}
+
+	private void render(int frameGeneration) {
+		TracksPanel tracksPanel = this.genomeBrowser.getTracksPanel();
+		if (isStale(frameGeneration)) {
+			return;
+		}
+
+		List<Painter> painters = this.genomeBrowser.getPainters();
+		tracksPanel.prepareFrame(painters);
+
+		CompletionService<Integer> heightTasks = 
+			new ExecutorCompletionService<Integer>(this.workers);
+		List<Future<Integer>> heightFutures = new ArrayList<Future<Integer>>();
+		for (Painter painter : painters) {
+			heightFutures.add(submit(heightTasks,
+				() -> tracksPanel.computeTrackHeight(painter, 
+					() -> isStale(frameGeneration))));
+		}
+
+		int[] heights = new int[painters.size()];
+		for (int i = 0; i < heights.length; i++) {
+			if (!await(heightTasks, frameGeneration)) {
+				return;
+			}
+		}
+		for (int i = 0; i < heights.length; i++) {
+			heights[i] = getOrZero(heightFutures.get(i));
+		}
+
+		if (isStale(frameGeneration)) {
+			return;
+		}
+
+		Frame frame = tracksPanel.beginFrame(painters, heights);
+		this.genomeBrowser.getToolTipsPane().disableWait();
+
+		this.renderTracks(tracksPanel, frame, 
+			tracksPanel.claimVisibleTracks(frame), frameGeneration);
+
+		if (!isStale(frameGeneration)) {
+			this.genomeBrowser.saveStatus();
+			this.prefetcher.prefetch(painters);
+		}
+	}
+
+	private void renderTracks(TracksPanel tracksPanel, Frame frame,
+		List<Integer> tracks, int frameGeneration) {
+		CompletionService<TrackLayer> trackTasks = 
+			new ExecutorCompletionService<TrackLayer>(this.workers);
+		for (int index : tracks) {
+			submit(trackTasks, () -> tracksPanel.renderTrack(frame, index, 
+				() -> isStale(frameGeneration)));
+		}
+
+		for (int i = 0; i < tracks.size(); i++) {
+			try {
+				Future<TrackLayer> rendered = trackTasks.take();
+				TrackLayer layer = rendered.get();
+				if (isStale(frameGeneration)) {
+					return;
+				}
+				if (layer != null) {
+					tracksPanel.composite(frame, layer);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+			}
+		}
+	}
+
+	private <T> Future<T> submit(CompletionService<T> service, Callable<T> task) {
+		synchronized (this.currentTasks) {
+			Future<T> future = service.submit(task);
+			this.currentTasks.add(future);
+			return future;
+		}
+	}
+
+	private boolean await(CompletionService<?> service, int frameGeneration) {
+		try {
+			service.take();
+			return !isStale(frameGeneration);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static int getOrZero(Future<Integer> height) {
+		try {
+			return height.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		} catch (CancellationException e) {
+			return 0;
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			return 0;
+		}
+	}
+
+	static class RenderThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		public RenderThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = 
+				new Thread(r, this.prefix + "-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+}
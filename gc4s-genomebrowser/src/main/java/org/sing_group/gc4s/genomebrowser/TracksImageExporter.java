@@ -0,0 +1,220 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sing_group.gc4s.genomebrowser.TracksPanel.Frame;
+import org.sing_group.gc4s.genomebrowser.painter.Painter;
+
+/**
+ * Exports the tracks of a {@code GenomeBrowser} as PNG images of any region
+ * and width, independently of what is being displayed.
+ * 
+ * The image is rendered off-screen in horizontal strips of bounded size and
+ * each strip is streamed to a {@link PngStripWriter} as soon as it is
+ * painted, so the memory needed does not depend on the image height. Tracks
+ * are painted through the usual {@code Painter.paint} contract, using an
+ * off-screen {@code TracksPanel} of the requested width.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class TracksImageExporter {
+	private static final long STRIP_BYTES = 32L * 1024 * 1024;
+
+	private final GenomeBrowser genomeBrowser;
+
+	/**
+	 * Creates a new {@code TracksImageExporter} for the specified
+	 * {@code GenomeBrowser}.
+	 * 
+	 * @param genomeBrowser a {@code GenomeBrowser} instance
+	 */
+	public TracksImageExporter(GenomeBrowser genomeBrowser) {
+		this.genomeBrowser = genomeBrowser;
+	}
+
+	/**
+	 * Exports the specified region as a PNG image with the specified width
+	 * into the specified file.
+	 * 
+	 * @param file the file where the image is written
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param width the image width, in pixels
+	 * @throws IOException if an error occurs while writing the image
+	 */
+	public void exportPNG(File file, String sequence, long start, long end,
+		int width) throws IOException {
+		exportPNG(new BufferedOutputStream(new FileOutputStream(file)), 
+			sequence, start, end, width);
+	}
+
+	/**
+	 * Exports the specified region as a PNG image with the specified width
+	 * into the specified stream, which is closed at the end.
+	 * 
+	 * @param out the stream where the image is written
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param width the image width, in pixels
+	 * @throws IOException if an error occurs while writing the image
+	 */
+	public void exportPNG(OutputStream out, String sequence, long start,
+		long end, int width) throws IOException {
+		TracksPanel source = this.genomeBrowser.getTracksPanel();
+		TracksPanel offscreen = new TracksPanel(this.genomeBrowser);
+		try {
+			this.genomeBrowser.runInView(sequence, start, end, offscreen, () -> {
+				try {
+					export(out, source, offscreen, sequence, start, end, width);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void export(OutputStream out, TracksPanel source,
+		TracksPanel offscreen, String sequence, long start, long end, int width)
+		throws IOException {
+		List<Painter> painters = new ArrayList<Painter>();
+		for (Painter painter : this.genomeBrowser.getPainters()) {
+			if (!this.genomeBrowser.isLoading(painter)) {
+				painters.add(painter);
+			}
+		}
+		writePNG(out, painters, source, offscreen, sequence, start, end, width);
+	}
+
+	/**
+	 * Renders the specified tracks as a PNG image, strip by strip. It must be
+	 * called in the view of the region, with {@code offscreen} as its tracks
+	 * panel.
+	 * 
+	 * @param out the stream where the image is written
+	 * @param painters the track painters
+	 * @param source the tracks panel that owns the painters state
+	 * @param offscreen the tracks panel where the image is laid out
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param width the image width, in pixels
+	 * @throws IOException if an error occurs while writing the image
+	 */
+	static void writePNG(OutputStream out, List<Painter> painters,
+		TracksPanel source, TracksPanel offscreen, String sequence, long start,
+		long end, int width) throws IOException {
+		Frame frame = 
+			layout(painters, source, offscreen, sequence, start, end, width);
+		int height = getHeight(frame);
+
+		int stripRows = (int) Math.max(1, 
+			Math.min(height, STRIP_BYTES / (4L * width)));
+		BufferedImage strip = 
+			new BufferedImage(width, stripRows, BufferedImage.TYPE_INT_RGB);
+
+		PngStripWriter writer = new PngStripWriter(out, width, height);
+		for (int top = 0; top < height; top += stripRows) {
+			int rows = Math.min(stripRows, height - top);
+			paintStrip(strip, offscreen, frame, top, rows, source);
+			writer.writeRows(strip, rows);
+		}
+		writer.close();
+	}
+
+	/**
+	 * Renders the specified tracks as a single image. It must be called in
+	 * the view of the region, with {@code offscreen} as its tracks panel.
+	 * 
+	 * @param painters the track painters
+	 * @param source the tracks panel that owns the painters state
+	 * @param offscreen the tracks panel where the image is laid out
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param width the image width, in pixels
+	 * @return the rendered image
+	 */
+	static BufferedImage renderImage(List<Painter> painters,
+		TracksPanel source, TracksPanel offscreen, String sequence, long start,
+		long end, int width) {
+		Frame frame = 
+			layout(painters, source, offscreen, sequence, start, end, width);
+		int height = getHeight(frame);
+
+		BufferedImage image = 
+			new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		paintStrip(image, offscreen, frame, 0, height, source);
+
+		return image;
+	}
+
+	private static Frame layout(List<Painter> painters, TracksPanel source,
+		TracksPanel offscreen, String sequence, long start, long end,
+		int width) {
+		offscreen.setOffscreenWidth(width);
+		int[] heights = new int[painters.size()];
+		for (int i = 0; i < heights.length; i++) {
+			heights[i] = source.computeSpeculativeTrackHeight(painters.get(i));
+		}
+
+		return offscreen.beginOffscreenFrame(painters, heights, sequence, start,
+			end, width);
+	}
+
+	private static int getHeight(Frame frame) {
+		int height = 200;
+		for (int trackHeight : frame.heights) {
+			height += trackHeight;
+		}
+
+		return height;
+	}
+
+	private static void paintStrip(BufferedImage strip, TracksPanel offscreen,
+		Frame frame, int top, int rows, TracksPanel source) {
+		Graphics2D g2 = strip.createGraphics();
+		try {
+			offscreen.paintOffscreenStrip(g2, frame, top, rows, source);
+		} finally {
+			g2.dispose();
+		}
+	}
+}
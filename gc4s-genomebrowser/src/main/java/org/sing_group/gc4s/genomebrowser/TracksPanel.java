@@ -22,7 +22,6 @@
  */
 package org.sing_group.gc4s.genomebrowser;
 
-import static org.sing_group.gc4s.genomebrowser.grid.Coordinates.calculateXYCoordinates;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -32,6 +31,8 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -42,12 +43,22 @@ import java.awt.geom.Area;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.io.IOException;
-import java.io.Reader;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -55,11 +66,16 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.SwingUtilities;
 
 import org.sing_group.gc4s.genomebrowser.grid.Coordinates;
 import org.sing_group.gc4s.genomebrowser.grid.GenomeBrowserInfo;
 import org.sing_group.gc4s.genomebrowser.grid.GridInfo;
+import org.sing_group.gc4s.genomebrowser.grid.TooltipGrid;
+import org.sing_group.gc4s.genomebrowser.painter.IndexHandlePool;
 import org.sing_group.gc4s.genomebrowser.painter.Painter;
+import org.sing_group.gc4s.genomebrowser.painter.PainterFactory;
+import org.sing_group.gc4s.genomebrowser.painter.PainterMetrics;
 import org.sing_group.gc4s.ui.icons.Icons;
 
 import es.cnio.bioinfo.pileline.refgenomeindex.GenomeIndex;
@@ -67,6 +83,13 @@ import es.cnio.bioinfo.pileline.refgenomeindex.GenomeIndex;
 /**
  * A panel for managing tracks and track painters.
  * 
+ * Rendered tracks are kept in a {@link TrackLayerCache}. Its layers cover
+ * the whole visible region of a track, not tiles, so a layer is only reused
+ * when exactly the same region is shown again. Panning renders every track
+ * of the new region in full, unless the region was one of the adjacent
+ * windows that {@link #prefetch(List, String, long, long, BooleanSupplier)}
+ * has already rendered. The prefetch is the only panning win.
+ * 
  * @author hlfernandez
  *
  */
@@ -96,22 +119,48 @@ public class TracksPanel extends JPanel
 		Color.decode("#F6B9AC") 
 	};
 
-	private BufferedImage doubleBuffer;
-	private boolean changed = true;
-	private boolean changedGenomicPositions = true;
-	private boolean changedPileupColumFilters = false;
+	private volatile BufferedImage doubleBuffer;
+	private volatile boolean changed = true;
+	private volatile boolean changedGenomicPositions = true;
+	private volatile boolean changedPileupColumFilters = false;
 
 	private CenterHereJMenuItem centerHereMenuItem = 
 		new CenterHereJMenuItem("Center here");
 	private JPopupMenu popup;
 
-	private HashMap<JButton, Painter> buttonToPainter = new HashMap<JButton, Painter>();
+	private final Map<Painter, JButton[]> trackButtons = 
+		new IdentityHashMap<Painter, JButton[]>();
+
+	private final TrackLayerCache layerCache = new TrackLayerCache();
 
 	private static final int DEFAULT_SQUARE_WIDTH = 10;
+	private static final int LOADING_TRACK_HEIGHT = 65;
+	private static final BooleanSupplier NOT_CANCELLED = () -> false;
+	private static final String SPECULATIVE_READERS = "speculative";
 	private int squareWidth = DEFAULT_SQUARE_WIDTH;
 
-	private HashMap<Coordinates, LinkedList<GridInfo>> coordinatesMapping = 
-		new HashMap<Coordinates, LinkedList<GridInfo>>();
+	private final TooltipGrid coordinatesMapping = new TooltipGrid(squareWidth);
+
+	private static final ThreadLocal<TrackGrid> TRACK_GRID = 
+		new ThreadLocal<TrackGrid>();
+
+	private final Set<Painter> pendingResets = 
+		Collections.newSetFromMap(new ConcurrentHashMap<Painter, Boolean>());
+	private final ConcurrentHashMap<Painter, SpeculativePainter> 
+		speculativePainters = 
+			new ConcurrentHashMap<Painter, SpeculativePainter>();
+	private volatile Frame currentFrame;
+
+	private final AtomicLong bufferVersion = new AtomicLong();
+	private VolatileImage screenBuffer;
+	private long screenBufferVersion = -1;
+	private volatile Rectangle visibleArea;
+
+	private volatile boolean metricsOverlayVisible = false;
+	private final ConcurrentHashMap<Painter, LayoutMetrics> layoutMetrics = 
+		new ConcurrentHashMap<Painter, LayoutMetrics>();
+	private final ConcurrentHashMap<Painter, TrackRenderMetrics> lastMetrics = 
+		new ConcurrentHashMap<Painter, TrackRenderMetrics>();
 
 	private int XmousePressed;
 	private int YmousePressed;
@@ -154,10 +203,20 @@ public class TracksPanel extends JPanel
 	protected void paintComponent(Graphics g) {
 		super.paintComponent(g);
 		genomeBrowser.changeCursor(Cursor.WAIT_CURSOR);
-		int height = GenomeBrowserUtil.computeHeight(genomeBrowser);
+		int height = this.height;
+
+		this.visibleArea = this.getVisibleRect();
 
 		Graphics2D realGraphics = (Graphics2D) g;
-		realGraphics.drawImage(doubleBuffer, 0, 0, width, height, this);
+		BufferedImage doubleBuffer = this.doubleBuffer;
+		if (doubleBuffer != null && !drawScreenBuffer(realGraphics, doubleBuffer)) {
+			synchronized (doubleBuffer) {
+				realGraphics.drawImage(doubleBuffer, 0, 0, width, height, this);
+			}
+		}
+		if (metricsOverlayVisible) {
+			this.paintMetricsOverlay(realGraphics);
+		}
 
 		genomeBrowser.setOptionTrackButtonEnabled(genomeBrowser.getFiles().size() > 0);
 		genomeBrowser.setRemoveTrackButtonEnabled(genomeBrowser.getFiles().size() > 0);
@@ -173,56 +232,761 @@ public class TracksPanel extends JPanel
 		genomeBrowser.changeCursor(Cursor.DEFAULT_CURSOR);
 	}
 
-	private boolean painting = false;
+	private void paintMetricsOverlay(Graphics2D g2) {
+		Frame frame = this.currentFrame;
+		if (frame == null) {
+			return;
+		}
+		FontMetrics fm = g2.getFontMetrics();
+		for (int i = 0; i < frame.painters.size(); i++) {
+			TrackRenderMetrics metrics = lastMetrics.get(frame.painters.get(i));
+			if (metrics == null) {
+				continue;
+			}
+			String summary = metrics.toSummary();
+			int textWidth = fm.stringWidth(summary);
+			int x = getX(875) - textWidth - 4;
+			int y = frame.offsets[i] - 65 + 2;
+			g2.setColor(new Color(255, 255, 224, 220));
+			g2.fillRect(x - 3, y, textWidth + 6, fm.getHeight() + 2);
+			g2.setColor(Color.DARK_GRAY);
+			g2.drawString(summary, x, y + fm.getAscent() + 1);
+		}
+	}
 
+	/**
+	 * Shows or hides an overlay with the render metrics of each track.
+	 * 
+	 * @param visible whether the overlay must be visible or not
+	 */
+	public void setMetricsOverlayVisible(boolean visible) {
+		this.metricsOverlayVisible = visible;
+		this.repaint();
+	}
+
+	/**
+	 * Returns {@code true} if the render metrics overlay is visible and
+	 * {@code false} otherwise.
+	 * 
+	 * @return {@code true} if the render metrics overlay is visible
+	 */
+	public boolean isMetricsOverlayVisible() {
+		return metricsOverlayVisible;
+	}
+
+	private boolean isRecordingMetrics() {
+		return metricsOverlayVisible || genomeBrowser.hasTrackRenderListeners();
+	}
+
+	/**
+	 * Draws the double buffer through an accelerated {@code VolatileImage}.
+	 * The double buffer is only copied into the volatile image when it has
+	 * changed since the last copy or when the volatile image contents are
+	 * lost, so repaints caused by scrolling or tooltips are plain blits.
+	 * 
+	 * @param g the graphics where the buffer must be drawn
+	 * @param buffer the double buffer
+	 * @return {@code true} if the buffer was drawn and {@code false} if
+	 *         volatile images are not available
+	 */
+	private boolean drawScreenBuffer(Graphics2D g, BufferedImage buffer) {
+		GraphicsConfiguration configuration = this.getGraphicsConfiguration();
+		if (configuration == null) {
+			return false;
+		}
+
+		int bufferWidth = buffer.getWidth();
+		int bufferHeight = buffer.getHeight();
+		for (int attempt = 0; attempt < 3; attempt++) {
+			if (screenBuffer == null
+				|| screenBuffer.getWidth() != bufferWidth
+				|| screenBuffer.getHeight() != bufferHeight
+			) {
+				if (screenBuffer != null) {
+					screenBuffer.flush();
+				}
+				screenBuffer = this.createVolatileImage(bufferWidth, bufferHeight);
+				screenBufferVersion = -1;
+				if (screenBuffer == null) {
+					return false;
+				}
+			}
+
+			int validation = screenBuffer.validate(configuration);
+			if (validation == VolatileImage.IMAGE_INCOMPATIBLE) {
+				screenBuffer.flush();
+				screenBuffer = null;
+				continue;
+			}
+
+			long version = bufferVersion.get();
+			if (validation == VolatileImage.IMAGE_RESTORED
+				|| version != screenBufferVersion
+			) {
+				Graphics2D screenGraphics = screenBuffer.createGraphics();
+				synchronized (buffer) {
+					screenGraphics.drawImage(buffer, 0, 0, null);
+				}
+				screenGraphics.dispose();
+				screenBufferVersion = version;
+			}
+
+			g.drawImage(screenBuffer, 0, 0, width, height, this);
+			if (!screenBuffer.contentsLost()) {
+				return true;
+			}
+			screenBufferVersion = -1;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Renders all tracks into the double buffer in the calling thread.
+	 */
 	public void updateDoubleBuffer() {
-		if (!painting && changed) {
-			int currentHeight = GenomeBrowserUtil.computeHeight(genomeBrowser);
-			painting = true;
-			gridLineCount = -1;
-
-			if (changedGenomicPositions || changedPileupColumFilters) {
-				for (Painter p : genomeBrowser.getPainters()) {
-					p.reset();
+		if (changed) {
+			List<Painter> painters = genomeBrowser.getPainters();
+			prepareFrame(painters);
+
+			int[] heights = new int[painters.size()];
+			for (int i = 0; i < heights.length; i++) {
+				heights[i] = computeTrackHeight(painters.get(i));
+			}
+
+			Frame frame = beginFrame(painters, heights);
+			for (int i = 0; i < heights.length; i++) {
+				composite(frame, renderTrack(frame, i));
+			}
+		}
+	}
+
+	/**
+	 * Marks the painters that must be reset before the next frame is rendered.
+	 * 
+	 * @param painters the painters of the next frame
+	 */
+	void prepareFrame(List<Painter> painters) {
+		if (changedPileupColumFilters) {
+			for (SpeculativePainter copy : speculativePainters.values()) {
+				copy.invalidate();
+			}
+		}
+		if (changedGenomicPositions || changedPileupColumFilters) {
+			pendingResets.addAll(painters);
+			changedGenomicPositions = false;
+			changedPileupColumFilters = false;
+		}
+	}
+
+	/**
+	 * Computes the height of a track, resetting its painter first if it is
+	 * pending. The painter is locked so that it is never used by two render
+	 * threads at the same time.
+	 * 
+	 * @param painter the track painter
+	 * @return the track height
+	 */
+	int computeTrackHeight(Painter painter) {
+		return computeTrackHeight(painter, false, NOT_CANCELLED);
+	}
+
+	/**
+	 * Computes the height of a track as {@link #computeTrackHeight(Painter)}
+	 * does, unless {@code cancelled} becomes true before the painter starts
+	 * its layout, in which case {@code 0} is returned.
+	 * 
+	 * @param painter the track painter
+	 * @param cancelled a supplier that tells if the frame has been cancelled
+	 * @return the track height
+	 */
+	int computeTrackHeight(Painter painter, BooleanSupplier cancelled) {
+		return computeTrackHeight(painter, false, cancelled);
+	}
+
+	private int computeTrackHeight(Painter painter, boolean speculative,
+		BooleanSupplier cancelled) {
+		if (genomeBrowser.isLoading(painter)) {
+			return LOADING_TRACK_HEIGHT;
+		}
+		String sequence = genomeBrowser.getCurrentSequence();
+		long initialPosition = genomeBrowser.getInitialPosition();
+		long finalPosition = genomeBrowser.getFinalPosition();
+		int panelWidth = genomeBrowser.getTracksPanel().getWidth();
+		TrackLayerCache.Key key = TrackLayerCache.Key.height(painter, sequence,
+			initialPosition, finalPosition, panelWidth,
+			TrackLayerCache.optionsHash(painter));
+		Integer cached = layerCache.getHeight(key);
+		if (cached != null) {
+			return cached;
+		}
+
+		SpeculativePainter copy = null;
+		if (speculative) {
+			copy = getSpeculativePainter(painter);
+			if (copy == null) {
+				return 0;
+			}
+		}
+
+		PainterMetrics io = null;
+		if (!speculative && isRecordingMetrics()) {
+			io = PainterMetrics.start();
+		}
+		long start = System.nanoTime();
+		int height;
+		try {
+			Painter renderer = speculative ? copy.painter : painter;
+			synchronized (renderer) {
+				if (cancelled.getAsBoolean()) {
+					return 0;
+				}
+				if (speculative) {
+					copy.prepare(painter, genomeBrowser);
+				} else if (pendingResets.remove(painter)) {
+					painter.reset();
 				}
+				height = renderer.computeHeight(genomeBrowser);
 			}
+		} finally {
+			if (io != null) {
+				io.stop();
+				layoutMetrics.put(painter, 
+					new LayoutMetrics(System.nanoTime() - start, io));
+			}
+		}
+
+		if (Objects.equals(sequence, genomeBrowser.getCurrentSequence())
+			&& initialPosition == genomeBrowser.getInitialPosition()
+			&& finalPosition == genomeBrowser.getFinalPosition()
+			&& panelWidth == genomeBrowser.getTracksPanel().getWidth()
+			&& (!speculative || copy == speculativePainters.get(painter))
+		) {
+			layerCache.putHeight(key, height);
+		}
+
+		return height;
+	}
+
+	/**
+	 * Starts a new frame: the ruler and the track backgrounds are drawn into
+	 * the double buffer, which is reused while its size does not change, and
+	 * the tooltips of the previous frame are discarded. Tracks are
+	 * composited into the frame as they are rendered.
+	 * 
+	 * @param painters the track painters
+	 * @param heights the height of each track
+	 * @return the new frame
+	 */
+	Frame beginFrame(List<Painter> painters, int[] heights) {
+		int currentHeight = 200;
+		for (int trackHeight : heights) {
+			currentHeight += trackHeight;
+		}
+		gridLineCount = -1;
+
+		synchronized (coordinatesMapping) {
 			coordinatesMapping.clear();
+		}
 
-			maxHeight = this.getHeight();
-			maxHeight = currentHeight;
+		maxHeight = currentHeight;
+		width = this.getSize().width;
 
-			Dimension size = this.getSize();
+		getY(currentHeight);
 
-			width = size.width;
-			height = maxHeight;
+		BufferedImage doubleBuffer = this.doubleBuffer;
+		if (doubleBuffer == null
+			|| doubleBuffer.getWidth() != width
+			|| doubleBuffer.getHeight() != currentHeight
+		) {
+			doubleBuffer = new BufferedImage(
+				Math.max(1, width), currentHeight, BufferedImage.TYPE_INT_RGB);
+		}
 
-			BufferedImage dummyBuffer = 
-				new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		synchronized (doubleBuffer) {
+			this.currentFrame = null;
+			Frame frame = this.drawFrame(doubleBuffer, painters, heights, currentHeight);
+			this.doubleBuffer = doubleBuffer;
+			this.currentFrame = frame;
+			this.bufferVersion.incrementAndGet();
 
-			Graphics2D g2 = (Graphics2D) dummyBuffer.createGraphics();
+			SwingUtilities.invokeLater(() -> createTrackButtons(frame));
+			this.repaint();
 
-			getY(currentHeight);
+			return frame;
+		}
+	}
 
-			BufferedImage doubleBuffer = 
-				new BufferedImage(width, currentHeight, BufferedImage.TYPE_INT_RGB);
+	private Frame drawFrame(BufferedImage doubleBuffer, List<Painter> painters,
+		int[] heights, int currentHeight) {
+		Graphics2D g2 = (Graphics2D) doubleBuffer.createGraphics();
 
-			g2 = (Graphics2D) doubleBuffer.createGraphics();
+		g2.setBackground(this.getBackground());
 
-			g2.setBackground(this.getBackground());
+		g2.setColor(Color.WHITE);
+		g2.fillRect(0, 0, width, currentHeight);
 
-			g2.setColor(Color.WHITE);
-			g2.fillRect(0, 0, width, currentHeight);
+		g2.setColor(Color.BLACK);
 
-			g2.setColor(Color.BLACK);
-			
-			this.paintRuler(g2);
-			this.paintTracks(g2);
+		this.height = currentHeight;
+		this.paintRuler(g2);
 
-			this.changed = false;
-			this.changedGenomicPositions = false;
-			this.doubleBuffer = doubleBuffer;
-			this.painting = false;
+		Frame frame = new Frame(painters, heights, width, g2.getFont(),
+			genomeBrowser.getCurrentSequence(),
+			genomeBrowser.getInitialPosition(),
+			genomeBrowser.getFinalPosition());
+		for (int i = 0; i < painters.size(); i++) {
+			Painter painter = painters.get(i);
+			if (painter.getTrackColor() == null) {
+				painter.setTrackColor(this.nextTrackColor(frame.colorSelector++));
+			}
+			this.fillTrackBackground(g2, frame, i);
+			g2.setColor(Color.GRAY);
+			g2.drawString("Rendering...", getX(125) + 5, frame.offsets[i] - 50);
 		}
+		g2.dispose();
+
+		this.changed = false;
+
+		return frame;
+	}
+
+	/**
+	 * Renders a track of the specified frame in its own layer. Tooltips added
+	 * by the painter are kept in the layer until it is composited.
+	 * 
+	 * @param frame the frame being rendered
+	 * @param index the index of the track
+	 * @return the rendered track layer
+	 */
+	TrackLayer renderTrack(Frame frame, int index) {
+		return renderTrack(frame, index, false, NOT_CANCELLED);
+	}
+
+	/**
+	 * Renders a track of the specified frame as
+	 * {@link #renderTrack(Frame, int)} does, unless {@code cancelled} becomes
+	 * true before the painter starts painting, in which case {@code null} is
+	 * returned, so that tracks waiting for their painter do not query nor
+	 * paint a frame that is no longer displayed.
+	 * 
+	 * @param frame the frame being rendered
+	 * @param index the index of the track
+	 * @param cancelled a supplier that tells if the frame has been cancelled
+	 * @return the rendered track layer or {@code null} if the frame has been
+	 *         cancelled
+	 */
+	TrackLayer renderTrack(Frame frame, int index, BooleanSupplier cancelled) {
+		return renderTrack(frame, index, false, cancelled);
+	}
+
+	private TrackLayer renderTrack(Frame frame, int index,
+		boolean speculative, BooleanSupplier cancelled) {
+		Painter painter = frame.painters.get(index);
+		if (genomeBrowser.isLoading(painter)) {
+			return renderLoadingTrack(frame, index);
+		}
+		TrackLayerCache.Key key = new TrackLayerCache.Key(painter,
+			frame.sequence, frame.start, frame.end, frame.width,
+			frame.heights[index], TrackLayerCache.optionsHash(painter));
+		boolean recording = !speculative && isRecordingMetrics();
+		LayoutMetrics layout = speculative ? null : layoutMetrics.remove(painter);
+		TrackLayer cached = layerCache.get(key);
+		if (cached != null) {
+			if (recording) {
+				this.trackRendered(new TrackRenderMetrics(painter, frame.sequence,
+					frame.start, frame.end, true, 0, 0, 0, 0, 0,
+					cached.grid.size(), 0));
+			}
+			return new TrackLayer(index, cached.image, cached.grid);
+		}
+
+		SpeculativePainter copy = null;
+		if (speculative) {
+			copy = getSpeculativePainter(painter);
+			if (copy == null) {
+				return null;
+			}
+		}
+
+		BufferedImage image = new BufferedImage(frame.width,
+			frame.heights[index], BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = image.createGraphics();
+		g2.setFont(frame.font);
+		g2.setColor(Color.BLACK);
+		g2.setStroke(new BasicStroke(0.01f));
+
+		TooltipGrid grid = new TooltipGrid(squareWidth);
+		TRACK_GRID.set(new TrackGrid(grid, frame.offsets[index] - 65));
+		PainterMetrics io = recording ? PainterMetrics.start() : null;
+		long start = System.nanoTime();
+		try {
+			Painter renderer = speculative ? copy.painter : painter;
+			synchronized (renderer) {
+				if (cancelled.getAsBoolean()) {
+					return null;
+				}
+				if (speculative) {
+					copy.prepare(painter, genomeBrowser);
+				} else if (pendingResets.remove(painter)) {
+					painter.reset();
+				}
+				renderer.paint(g2, genomeBrowser, frame.offsets[index]);
+			}
+		} finally {
+			TRACK_GRID.remove();
+			g2.dispose();
+			if (io != null) {
+				io.stop();
+			}
+		}
+
+		if (recording) {
+			long paintNanos = System.nanoTime() - start - io.getQueryNanos();
+			long queryNanos = io.getQueryNanos();
+			long records = io.getRecordsScanned();
+			long bytes = io.getRecordChars();
+			long layoutNanos = 0;
+			if (layout != null) {
+				layoutNanos = layout.nanos - layout.io.getQueryNanos();
+				queryNanos += layout.io.getQueryNanos();
+				records += layout.io.getRecordsScanned();
+				bytes += layout.io.getRecordChars();
+			}
+			this.trackRendered(new TrackRenderMetrics(painter, frame.sequence,
+				frame.start, frame.end, false, queryNanos, layoutNanos,
+				paintNanos, records, bytes, grid.size(),
+				4L * frame.width * frame.heights[index]));
+		}
+
+		TrackLayer layer = new TrackLayer(index, image, grid);
+		if (frame.isCurrentView(genomeBrowser)
+			&& (!speculative || copy == speculativePainters.get(painter))
+		) {
+			layerCache.put(key, layer);
+		}
+
+		return layer;
+	}
+
+	/**
+	 * Renders the tracks of the specified region into the layers cache
+	 * without changing the current frame, so that the region is displayed
+	 * immediately if it is visualized next. The region is rendered with
+	 * copies of the track painters, so the painters of the current frame and
+	 * their indexes are neither reset nor locked. Tracks whose painter can
+	 * not be copied are not prefetched.
+	 * 
+	 * @param painters the track painters
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param cancelled a supplier that tells if the prefetch must be stopped,
+	 *        which is checked before each track
+	 */
+	void prefetch(List<Painter> painters, String sequence, long start,
+		long end, BooleanSupplier cancelled) {
+		Frame current = this.currentFrame;
+		if (current == null) {
+			return;
+		}
+		genomeBrowser.runInView(sequence, start, end, () -> {
+			int[] heights = new int[painters.size()];
+			for (int i = 0; i < heights.length; i++) {
+				if (cancelled.getAsBoolean()) {
+					return;
+				}
+				heights[i] = computeTrackHeight(painters.get(i), true, cancelled);
+			}
+
+			Frame frame = new Frame(painters, heights, current.width,
+				current.font, sequence, start, end);
+			for (int i = 0; i < heights.length; i++) {
+				if (cancelled.getAsBoolean()) {
+					return;
+				}
+				if (!genomeBrowser.isLoading(painters.get(i))) {
+					renderTrack(frame, i, true, cancelled);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Computes the height of a track for the region being visualized by the
+	 * calling thread, which may not be the current one, using a copy of its
+	 * painter. If the painter can not be copied, the painter itself is used
+	 * and it is reset before it is used again for the current region.
+	 * 
+	 * @param painter the track painter
+	 * @return the track height
+	 */
+	int computeSpeculativeTrackHeight(Painter painter) {
+		if (genomeBrowser.isLoading(painter)
+			|| getSpeculativePainter(painter) != null) {
+			return computeTrackHeight(painter, true, NOT_CANCELLED);
+		}
+		synchronized (painter) {
+			painter.reset();
+			int height = painter.computeHeight(genomeBrowser);
+			pendingResets.add(painter);
+
+			return height;
+		}
+	}
+
+	/**
+	 * Paints a track for the region being visualized by the calling thread,
+	 * which may not be the current one, discarding its tooltips. As in
+	 * {@link #computeSpeculativeTrackHeight(Painter)}, a copy of the painter
+	 * is used when it can be created.
+	 * 
+	 * @param painter the track painter
+	 * @param g2 the graphics where the track is painted, translated to the
+	 *        track top
+	 * @param offset the track offset
+	 */
+	void paintSpeculatively(Painter painter, Graphics2D g2, int offset) {
+		TRACK_GRID.set(new TrackGrid(new TooltipGrid(squareWidth), offset - 65));
+		try {
+			SpeculativePainter copy = getSpeculativePainter(painter);
+			if (copy != null) {
+				synchronized (copy.painter) {
+					copy.prepare(painter, genomeBrowser);
+					copy.painter.paint(g2, genomeBrowser, offset);
+				}
+			} else {
+				synchronized (painter) {
+					painter.reset();
+					painter.paint(g2, genomeBrowser, offset);
+					pendingResets.add(painter);
+				}
+			}
+		} finally {
+			TRACK_GRID.remove();
+		}
+	}
+
+	/**
+	 * Returns the copy of the specified painter used to render regions other
+	 * than the current one, creating and initializing it the first time. The
+	 * copy is created by the {@code PainterFactory} for the file of the
+	 * track, so painters of other classes can not be copied. Copies open
+	 * their indexes in a separate group of readers of the
+	 * {@code IndexHandlePool}, so that their queries never hold the locks of
+	 * the indexes queried by the painters of the current frame.
+	 * 
+	 * @param painter the track painter
+	 * @return the copy of the painter or {@code null} if it can not be copied
+	 */
+	private SpeculativePainter getSpeculativePainter(Painter painter) {
+		SpeculativePainter speculative = speculativePainters.get(painter);
+		if (speculative != null) {
+			return speculative.painter == null ? null : speculative;
+		}
+
+		TrackRegistry.Track track = 
+			genomeBrowser.getTrackRegistry().getTrack(painter);
+		if (track == null) {
+			return null;
+		}
+		Painter copy = PainterFactory.getPainter(track.getFile());
+		if (copy.getClass() != painter.getClass()) {
+			copy = null;
+		} else {
+			copy.setOptions(painter.getOptions());
+			Painter toInit = copy;
+			try {
+				IndexHandlePool.withReaders(SPECULATIVE_READERS, () -> {
+					toInit.init(genomeBrowser);
+
+					return null;
+				});
+			} catch (RuntimeException e) {
+				// Warnings are reported by the painter of the track
+			} catch (IOException e) {
+				e.printStackTrace();
+				copy.dispose();
+				copy = null;
+			}
+		}
+
+		speculative = new SpeculativePainter(copy);
+		SpeculativePainter previous = 
+			speculativePainters.putIfAbsent(painter, speculative);
+		if (previous != null) {
+			speculative.dispose();
+			speculative = previous;
+		} else if (genomeBrowser.getTrackRegistry().getTrack(painter) == null) {
+			speculativePainters.remove(painter, speculative);
+			speculative.dispose();
+			return null;
+		}
+
+		return speculative.painter == null ? null : speculative;
+	}
+
+	/**
+	 * Sets the width of this panel when it is used to paint tracks
+	 * off-screen. It must be set before the heights of the tracks are
+	 * computed, since the layout of some tracks depends on it.
+	 * 
+	 * @param width the width of the off-screen image
+	 */
+	void setOffscreenWidth(int width) {
+		this.width = width;
+	}
+
+	/**
+	 * Lays out the specified tracks to be painted off-screen by this panel at
+	 * the specified width, without a double buffer.
+	 * 
+	 * @param painters the track painters
+	 * @param heights the height of each track
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param width the width of the off-screen image
+	 * @return the off-screen frame
+	 */
+	Frame beginOffscreenFrame(List<Painter> painters, int[] heights,
+		String sequence, long start, long end, int width) {
+		int currentHeight = 200;
+		for (int trackHeight : heights) {
+			currentHeight += trackHeight;
+		}
+		this.width = width;
+		this.height = currentHeight;
+		this.maxHeight = currentHeight;
+		this.gridLineCount = -1;
+
+		Frame frame = new Frame(painters, heights, width,
+			new Font(Font.DIALOG, Font.PLAIN, 12), sequence, start, end);
+		for (int i = 0; i < painters.size(); i++) {
+			Painter painter = painters.get(i);
+			if (painter.getTrackColor() == null) {
+				painter.setTrackColor(this.nextTrackColor(frame.colorSelector++));
+			}
+		}
+
+		return frame;
+	}
+
+	/**
+	 * Paints the rows of an off-screen frame between {@code top} and
+	 * {@code top + rows}. The ruler is painted in every strip, clipped, so
+	 * that its grid lines are the same as in the double buffer, and each
+	 * track that intersects the strip is painted by {@code source}.
+	 * 
+	 * @param g2 the graphics of the strip image
+	 * @param frame the off-screen frame
+	 * @param top the first row of the strip
+	 * @param rows the number of rows of the strip
+	 * @param source the tracks panel that owns the painters state
+	 */
+	void paintOffscreenStrip(Graphics2D g2, Frame frame, int top, int rows,
+		TracksPanel source) {
+		g2.translate(0, -top);
+		g2.clipRect(0, top, frame.width, rows);
+		g2.setColor(Color.WHITE);
+		g2.fillRect(0, top, frame.width, rows);
+		g2.setColor(Color.BLACK);
+		this.paintRuler(g2);
+
+		for (int i = 0; i < frame.painters.size(); i++) {
+			int trackTop = frame.offsets[i] - 65;
+			if (trackTop >= top + rows || trackTop + frame.heights[i] <= top) {
+				continue;
+			}
+			this.fillTrackBackground(g2, frame, i);
+
+			Graphics2D track = (Graphics2D) g2.create(0, trackTop, frame.width,
+				frame.heights[i]);
+			try {
+				track.setFont(frame.font);
+				track.setColor(Color.BLACK);
+				track.setStroke(new BasicStroke(0.01f));
+				source.paintSpeculatively(frame.painters.get(i), track,
+					frame.offsets[i]);
+			} finally {
+				track.dispose();
+			}
+		}
+	}
+
+	private void trackRendered(TrackRenderMetrics metrics) {
+		lastMetrics.put(metrics.getPainter(), metrics);
+		genomeBrowser.fireTrackRendered(metrics);
+	}
+
+	private TrackLayer renderLoadingTrack(Frame frame, int index) {
+		Painter painter = frame.painters.get(index);
+		BufferedImage image = new BufferedImage(frame.width,
+			frame.heights[index], BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = image.createGraphics();
+		g2.setFont(frame.font);
+
+		TooltipGrid grid = new TooltipGrid(squareWidth);
+		TRACK_GRID.set(new TrackGrid(grid, frame.offsets[index] - 65));
+		try {
+			GenomeBrowserUtil.drawString(g2, painter.getTrackName(), 60, this,
+				frame.offsets[index]);
+			g2.setColor(Color.GRAY);
+			g2.drawString("Loading...", getX(125) + 5, 40);
+		} finally {
+			TRACK_GRID.remove();
+			g2.dispose();
+		}
+
+		return new TrackLayer(index, image, grid);
+	}
+
+	/**
+	 * Discards the cached renderings and metrics of the specified track, so
+	 * that it is painted again in the next frame.
+	 * 
+	 * @param painter the track painter
+	 */
+	public void invalidateTrack(Painter painter) {
+		SpeculativePainter speculative = 
+			this.speculativePainters.remove(painter);
+		if (speculative != null) {
+			speculative.dispose();
+		}
+		this.layerCache.invalidate(painter);
+		this.layoutMetrics.remove(painter);
+		this.lastMetrics.remove(painter);
+	}
+
+	/**
+	 * Composites a rendered track layer into the double buffer, as long as its
+	 * frame is still the current one.
+	 * 
+	 * @param frame the frame being rendered
+	 * @param layer the rendered track layer
+	 */
+	void composite(Frame frame, TrackLayer layer) {
+		if (frame != this.currentFrame) {
+			return;
+		}
+
+		BufferedImage buffer = this.doubleBuffer;
+		synchronized (buffer) {
+			if (frame != this.currentFrame) {
+				return;
+			}
+			Graphics2D g2 = buffer.createGraphics();
+			this.fillTrackBackground(g2, frame, layer.index);
+			g2.drawImage(layer.image, 0, frame.offsets[layer.index] - 65, null);
+			g2.dispose();
+			this.bufferVersion.incrementAndGet();
+		}
+
+		synchronized (coordinatesMapping) {
+			frame.grids[layer.index] = layer.grid;
+		}
+
+		this.repaint();
 	}
 
 	public int getX(int value) {
@@ -337,12 +1101,12 @@ public class TracksPanel extends JPanel
 			);
 
 			try {
-				Reader r = genomeIndex.seek(
+				char[] sequence = new char[bases];
+				int read = genomeBrowser.getReferenceSequenceCache().getBases(
 					genomeBrowser.getCurrentSequence(),
-					(int) genomeBrowser.getInitialPosition(),
-					(int) genomeBrowser.getFinalPosition()
-				);
-				
+					genomeBrowser.getInitialPosition(), sequence, bases);
+				Arrays.fill(sequence, read, bases, 'N');
+
 				double initialXPos = getX(125);
 				
 				gridLineCount = (int) 
@@ -350,9 +1114,8 @@ public class TracksPanel extends JPanel
 
 				paintGrid(g2, 0, height);
 				
-				for (int i = 0; i < (int) (genomeBrowser.getFinalPosition()
-					- genomeBrowser.getInitialPosition()); i++) {
-					char current = (char) r.read();
+				for (int i = 0; i < bases; i++) {
+					char current = sequence[i];
 					float posicionCaracter = (float) ((float) (baseWidth/2) - 3.5f);
 					
 					g2.setColor(GenomeBrowserUtil.getNucleotideColor(current));
@@ -478,76 +1241,82 @@ public class TracksPanel extends JPanel
 		return 0.0f;
 	}
 
-	private void paintTracks(Graphics2D g2) {
-		TracksPanel.this.removeAll();
-		int trackColorSelector = 0;
-		int trackPosition = 200;
-		this.fillBackground(g2, trackPosition);
+	private void createTrackButtons(Frame frame) {
+		if (frame != this.currentFrame) {
+			return;
+		}
 
-		for (Painter painter : genomeBrowser.getPainters()) {
-			int trackHeight = painter.computeHeight(genomeBrowser);
-			Graphics area = ((Graphics) g2).create(0, trackPosition - 65,
-				this.width, trackHeight);
-			if (painter.getTrackColor() == null) {
-				painter
-					.setTrackColor(this.nextTrackColor(trackColorSelector++));
+		Iterator<Map.Entry<Painter, JButton[]>> buttons = 
+			trackButtons.entrySet().iterator();
+		while (buttons.hasNext()) {
+			Map.Entry<Painter, JButton[]> entry = buttons.next();
+			if (genomeBrowser.getTrackRegistry().getTrack(entry.getKey()) == null) {
+				for (JButton button : entry.getValue()) {
+					this.remove(button);
+				}
+				buttons.remove();
 			}
-			painter.paint((Graphics2D) area, genomeBrowser, trackPosition);
-			trackPosition += trackHeight;
+		}
+
+		for (int i = 0; i < frame.painters.size(); i++) {
+			Painter painter = frame.painters.get(i);
+			int trackHeight = frame.heights[i];
+			int trackPosition = frame.offsets[i] + trackHeight;
+
+			JButton[] painterButtons = trackButtons.get(painter);
+			if (painterButtons == null) {
+				painterButtons = createTrackButtons(painter);
+				trackButtons.put(painter, painterButtons);
+			}
+			painterButtons[0].setBounds(getX(978),
+				trackPosition - trackHeight - 63, 20, 20);
+			painterButtons[1].setBounds(getX(978),
+				trackPosition - trackHeight - 43, 20, 20);
+		}
+		this.repaint();
+	}
+
+	private JButton[] createTrackButtons(Painter painter) {
+		JButton options = new JButton();
+		options.setIcon(TRACK_SETTINGS_ICON);
+		this.add(options);
+		options.addActionListener(new ActionListener() {
 			
-			JButton options = new JButton();
-			options.setBounds(getX(978), trackPosition - trackHeight - 63, 20,
-				20);
-			options.setIcon(TRACK_SETTINGS_ICON);
-			this.add(options);
-			buttonToPainter.put(options, painter);
-			options.addActionListener(new ActionListener() {
-				
-				@Override
-				public void actionPerformed(ActionEvent arg0) {
-					Painter painter = buttonToPainter
-						.get((JButton) arg0.getSource());
-					TrackOptionsDialog optionsDialog = new TrackOptionsDialog(
-						painter.getOptions());
-					optionsDialog.setVisible(true);
-					if (optionsDialog.getStatus() == TrackOptionsDialog.OK) {
-						TracksPanel.this.setChanged();
-						TracksPanel.this.genomeBrowser
-							.repaintGenomeBrowser();
-					}
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				int optionsHash = TrackLayerCache.optionsHash(painter);
+				TrackOptionsDialog optionsDialog = new TrackOptionsDialog(
+					painter.getOptions());
+				optionsDialog.setVisible(true);
+				if (optionsDialog.getStatus() == TrackOptionsDialog.OK
+					&& optionsHash != TrackLayerCache.optionsHash(painter)) {
+					TracksPanel.this.invalidateTrack(painter);
+					TracksPanel.this.setChanged();
+					TracksPanel.this.genomeBrowser
+						.repaintGenomeBrowser();
 				}
-			});
-
-			JButton remove = new JButton();
-			remove.setBounds(getX(978), trackPosition - trackHeight - 43, 20,
-				20);
-			remove.setIcon(TRACK_REMOVE_ICON);
-			remove.setToolTipText("Remove track");
-			buttonToPainter.put(remove, painter);
-			remove.addActionListener(new ActionListener() {
-
-				@Override
-				public void actionPerformed(ActionEvent arg0) {
-					int option = JOptionPane.showConfirmDialog(
-						TracksPanel.this,
-						"Are you sure to delete this track?");
-					if (option == JOptionPane.OK_OPTION) {
-						Painter p = TracksPanel.this.buttonToPainter
-							.get((JButton) arg0.getSource());
-						if (p != null) {
-							TracksPanel.this.buttonToPainter
-								.remove((JButton) arg0.getSource());
-							TracksPanel.this.genomeBrowser
-								.removePainter(p);
-							TracksPanel.this.setChanged();
-							TracksPanel.this.genomeBrowser
-								.repaintGenomeBrowser();
-						}
-					}
+			}
+		});
+
+		JButton remove = new JButton();
+		remove.setIcon(TRACK_REMOVE_ICON);
+		remove.setToolTipText("Remove track");
+		remove.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				int option = JOptionPane.showConfirmDialog(
+					TracksPanel.this,
+					"Are you sure to delete this track?");
+				if (option == JOptionPane.OK_OPTION) {
+					TracksPanel.this.genomeBrowser.removePainter(painter);
+					TracksPanel.this.genomeBrowser.repaintGenomeBrowser();
 				}
-			});
-			this.add(remove);
-		}
+			}
+		});
+		this.add(remove);
+
+		return new JButton[] { options, remove };
 	}
 	
 	private Color nextTrackColor(int nextTrackColorPosition) {
@@ -570,11 +1339,10 @@ public class TracksPanel extends JPanel
 	public void mouseClicked(MouseEvent e) {
 		genomeBrowser.getDraggingPane().reset();
 		if (e.getButton() == MouseEvent.BUTTON1) {
-			Coordinates c = calculateXYCoordinates(e.getX(), e.getY(),
-				squareWidth);
-			LinkedList<GridInfo> list = coordinatesMapping.get(c);
-			if (list != null) {
-				GridInfo cuadriculas = list.getFirst();
+			GridInfo cuadriculas = getCuadriculaInfo(e.getX(), e.getY());
+			if (cuadriculas != null) {
+				cuadriculas.setCoordinates(
+					getCuadriculaCoordinates(e.getX(), e.getY()));
 				if ((cuadriculas.getType() == GridInfo.FILENAME)
 					|| (cuadriculas.getType() == GridInfo.TRACKINFO)
 					|| (cuadriculas.getType() == GridInfo.GENOMEBROWSERINFO)
@@ -628,42 +1396,43 @@ public class TracksPanel extends JPanel
 	}
 
 	public void addCuadriculaInfo(double x, double y, GridInfo cI) {
-		Coordinates c = calculateXYCoordinates(x, y, squareWidth);
-		LinkedList<GridInfo> list = coordinatesMapping.get(c);
-		cI.setCoordinates(c);
-		if (list != null) {
-			list.add(cI);
-			coordinatesMapping.remove(c);
-			coordinatesMapping.put(c, list);
+		TrackGrid trackGrid = TRACK_GRID.get();
+		if (trackGrid != null) {
+			trackGrid.grid.add(x, y - trackGrid.top, cI);
 		} else {
-			list = new LinkedList<GridInfo>();
-			list.add(cI);
-			coordinatesMapping.put(c, list);
+			synchronized (coordinatesMapping) {
+				coordinatesMapping.add(x, y, cI);
+			}
 		}
 	}
 
 	public void addCuadriculaAtRectangle(GridInfo gridInfo, float xStart,
 		float yStart, float width, float height) {
-		int squareHeight = 0;
-		int squareWidth = 0;
-		while (squareHeight < height) {
-			while (squareWidth < width) {
-				addCuadriculaInfo(
-					xStart + squareWidth, 
-					yStart + squareHeight,
-					gridInfo
-				);
-				squareWidth += this.squareWidth;
+		TrackGrid trackGrid = TRACK_GRID.get();
+		if (trackGrid != null) {
+			addCuadriculaAtRectangle(trackGrid.grid, gridInfo, xStart,
+				yStart - trackGrid.top, width, height);
+		} else {
+			synchronized (coordinatesMapping) {
+				addCuadriculaAtRectangle(coordinatesMapping, gridInfo, xStart,
+					yStart, width, height);
+			}
+		}
+	}
+
+	private static void addCuadriculaAtRectangle(TooltipGrid grid,
+		GridInfo gridInfo, float xStart, float yStart, float width,
+		float height) {
+		int step = grid.getCellSize();
+		for (int squareHeight = 0; squareHeight < height; squareHeight += step) {
+			for (int squareWidth = 0; squareWidth < width; squareWidth += step) {
+				grid.add(xStart + squareWidth, yStart + squareHeight, gridInfo);
 			}
-			squareHeight += this.squareWidth;
 		}
 	}
 
 	public void clearHistogramIntervalsHashMap() {
 		changedGenomicPositions = true;
-		for (Painter p : genomeBrowser.getPainters()) {
-			p.reset();
-		}
 	}
 
 	private class CenterHereJMenuItem extends JMenuItem {
@@ -723,9 +1492,7 @@ public class TracksPanel extends JPanel
 
 	@Override
 	public void mouseMoved(MouseEvent e) {
-		Coordinates c = calculateXYCoordinates(e.getX(), e.getY(), squareWidth);
-		LinkedList<GridInfo> list = coordinatesMapping.get(c);
-		if (list != null) {
+		if (getCuadriculaInfo(e.getX(), e.getY()) != null) {
 			genomeBrowser.changeCursor(Cursor.HAND_CURSOR);
 
 		} else {
@@ -733,32 +1500,29 @@ public class TracksPanel extends JPanel
 		}
 	}
 
-	private void fillBackground(Graphics2D g2, int y) {
-		int selector = 0;
-		for (Painter painter : genomeBrowser.getPainters()) {
-			int trackHeight = painter.computeHeight(genomeBrowser);
-			Rectangle2D rectangle = new Rectangle2D.Float(
-				(float) 0,
-				(float) (y - 65), 
-				(float) this.getWidth(), 
-				(float) trackHeight
-			);
-			Color backGroundColor = nextTrackBackgroundColor(selector++);
-			Color painterBackGround = painter.getBackgroundColor();
-			Color oldColor = g2.getColor();
-
-			if (painterBackGround == null)
-				g2.setColor(backGroundColor);
-			else {
-				g2.setColor(painterBackGround);
-			}
+	private void fillTrackBackground(Graphics2D g2, Frame frame, int index) {
+		int y = frame.offsets[index];
+		int trackHeight = frame.heights[index];
+		Rectangle2D rectangle = new Rectangle2D.Float(
+			(float) 0,
+			(float) (y - 65), 
+			(float) this.getWidth(), 
+			(float) trackHeight
+		);
+		Color backGroundColor = nextTrackBackgroundColor(index);
+		Color painterBackGround = frame.painters.get(index).getBackgroundColor();
+		Color oldColor = g2.getColor();
 
-			Area a = new Area(rectangle);
-			g2.fill(a);
-			g2.setColor(oldColor);
-			paintGrid(g2, y - 65, y + trackHeight);
-			y += trackHeight;
+		if (painterBackGround == null)
+			g2.setColor(backGroundColor);
+		else {
+			g2.setColor(painterBackGround);
 		}
+
+		Area a = new Area(rectangle);
+		g2.fill(a);
+		g2.setColor(oldColor);
+		paintGrid(g2, y - 65, y + trackHeight);
 	}
 
 	public int getMaxHistogramValue() {
@@ -769,6 +1533,14 @@ public class TracksPanel extends JPanel
 		this.maxHistogramValue = maxHistogramValue;
 	}
 
+	/**
+	 * Sets whether all the painters must be reset before the next frame is
+	 * rendered. The flag is cleared once the resets are queued. Painters whose
+	 * data filters change should reset themselves instead, so that only their
+	 * track is queried again.
+	 * 
+	 * @param b {@code true} to reset all the painters in the next frame
+	 */
 	public void setPileupColumnsFiltersChanged(boolean b) {
 		this.changedPileupColumFilters = b;
 	}
@@ -792,7 +1564,61 @@ public class TracksPanel extends JPanel
 	public BufferedImage getDoubleBuffer() {
 		return doubleBuffer;
 	}
+
+	/**
+	 * Notifies that the visible area of the panel has changed, so that the
+	 * tracks that have become visible are rendered.
+	 */
+	public void visibleAreaChanged() {
+		this.visibleArea = this.getVisibleRect();
+		this.genomeBrowser.renderVisibleTracks();
+	}
+
+	/**
+	 * Returns the indexes of the tracks of the specified frame that are
+	 * within the visible area, or close to it, and have not been requested
+	 * yet. The returned tracks are marked as requested.
+	 * 
+	 * @param frame a frame
+	 * @return the indexes of the tracks to render
+	 */
+	List<Integer> claimVisibleTracks(Frame frame) {
+		Rectangle visibleArea = this.visibleArea;
+		int top = Integer.MIN_VALUE;
+		int bottom = Integer.MAX_VALUE;
+		if (visibleArea != null && visibleArea.height > 0) {
+			top = visibleArea.y - visibleArea.height;
+			bottom = visibleArea.y + 2 * visibleArea.height;
+		}
+
+		List<Integer> claimed = new ArrayList<Integer>();
+		synchronized (frame) {
+			for (int i = 0; i < frame.painters.size(); i++) {
+				int trackTop = frame.offsets[i] - 65;
+				int trackBottom = frame.offsets[i] + frame.heights[i];
+				if (!frame.requested[i] && trackBottom >= top && trackTop <= bottom) {
+					frame.requested[i] = true;
+					claimed.add(i);
+				}
+			}
+		}
+
+		return claimed;
+	}
+
+	/**
+	 * Returns the frame currently shown in the double buffer.
+	 * 
+	 * @return the current frame or {@code null} if no frame has been started
+	 */
+	Frame getCurrentFrame() {
+		return this.currentFrame;
+	}
 	
+	GenomeBrowser getGenomeBrowser() {
+		return genomeBrowser;
+	}
+
 	public int getSquareWidth() {
 		return squareWidth;
 	}
@@ -800,4 +1626,208 @@ public class TracksPanel extends JPanel
 	public void repaintTracks() {
 		super.repaint();
 	}
+
+	private GridInfo getCuadriculaInfo(double x, double y) {
+		synchronized (coordinatesMapping) {
+			GridInfo info = coordinatesMapping.get(x, y);
+			if (info == null) {
+				Frame frame = this.currentFrame;
+				int index = trackAt(frame, y);
+				if (index >= 0 && frame.grids[index] != null) {
+					info = frame.grids[index].get(x,
+						y - (frame.offsets[index] - 65));
+				}
+			}
+
+			return info;
+		}
+	}
+
+	private Coordinates getCuadriculaCoordinates(double x, double y) {
+		synchronized (coordinatesMapping) {
+			if (coordinatesMapping.get(x, y) == null) {
+				Frame frame = this.currentFrame;
+				int index = trackAt(frame, y);
+				if (index >= 0 && frame.grids[index] != null) {
+					int top = frame.offsets[index] - 65;
+					Coordinates cell = 
+						frame.grids[index].getCellCoordinates(x, y - top);
+
+					return new Coordinates(cell.getX(), cell.getY() + top);
+				}
+			}
+
+			return coordinatesMapping.getCellCoordinates(x, y);
+		}
+	}
+
+	/*
+	 * Returns the index of the track of the frame that contains the specified
+	 * y coordinate, or -1 if there is none.
+	 */
+	private static int trackAt(Frame frame, double y) {
+		if (frame == null) {
+			return -1;
+		}
+		int low = 0;
+		int high = frame.offsets.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int top = frame.offsets[middle] - 65;
+			if (y < top) {
+				high = middle - 1;
+			} else if (y >= top + frame.heights[middle]) {
+				low = middle + 1;
+			} else {
+				return middle;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * The layout of the tracks being rendered in a double buffer.
+	 */
+	static class Frame {
+		final List<Painter> painters;
+		final int[] heights;
+		final int[] offsets;
+		final int width;
+		final Font font;
+		final String sequence;
+		final long start;
+		final long end;
+		final boolean[] requested;
+		final TooltipGrid[] grids;
+		int colorSelector = 0;
+
+		Frame(List<Painter> painters, int[] heights, int width, Font font,
+			String sequence, long start, long end) {
+			this.painters = painters;
+			this.heights = heights;
+			this.width = width;
+			this.font = font;
+			this.sequence = sequence;
+			this.start = start;
+			this.end = end;
+			this.offsets = new int[heights.length];
+			this.requested = new boolean[heights.length];
+			this.grids = new TooltipGrid[heights.length];
+			int trackPosition = 200;
+			for (int i = 0; i < heights.length; i++) {
+				this.offsets[i] = trackPosition;
+				trackPosition += heights[i];
+			}
+		}
+
+		boolean isCurrentView(GenomeBrowser genomeBrowser) {
+			return Objects.equals(this.sequence, genomeBrowser.getCurrentSequence())
+				&& this.start == genomeBrowser.getInitialPosition()
+				&& this.end == genomeBrowser.getFinalPosition();
+		}
+	}
+
+	/**
+	 * A copy of a track painter used to render regions other than the
+	 * current one. It remembers the region it has been prepared for, so that
+	 * it is only reset when it is used for a different region.
+	 */
+	private static class SpeculativePainter {
+		final Painter painter;
+		private volatile boolean stale = true;
+		private String sequence;
+		private long start;
+		private long end;
+		private int width;
+
+		SpeculativePainter(Painter painter) {
+			this.painter = painter;
+		}
+
+		/**
+		 * Prepares the copy to render the region visualized by the calling
+		 * thread with the current options and color of the track painter. It
+		 * must be called while holding the monitor of the copy.
+		 * 
+		 * @param source the track painter
+		 * @param genomeBrowser the {@code GenomeBrowser}
+		 */
+		void prepare(Painter source, GenomeBrowser genomeBrowser) {
+			this.painter.setOptions(source.getOptions());
+			this.painter.setTrackColor(source.getTrackColor());
+
+			String sequence = genomeBrowser.getCurrentSequence();
+			long start = genomeBrowser.getInitialPosition();
+			long end = genomeBrowser.getFinalPosition();
+			int width = genomeBrowser.getTracksPanel().getWidth();
+			if (this.stale || !Objects.equals(this.sequence, sequence)
+				|| this.start != start || this.end != end
+				|| this.width != width
+			) {
+				this.painter.reset();
+				this.stale = false;
+				this.sequence = sequence;
+				this.start = start;
+				this.end = end;
+				this.width = width;
+			}
+		}
+
+		void invalidate() {
+			this.stale = true;
+		}
+
+		void dispose() {
+			if (this.painter != null) {
+				this.painter.dispose();
+			}
+		}
+	}
+
+	/**
+	 * The time spent computing the height of a track and its I/O.
+	 */
+	private static class LayoutMetrics {
+		final long nanos;
+		final PainterMetrics io;
+
+		LayoutMetrics(long nanos, PainterMetrics io) {
+			this.nanos = nanos;
+			this.io = io;
+		}
+	}
+
+	/**
+	 * The tooltips grid of the track being painted in the current thread and
+	 * the top of the track, since painters add their tooltips at absolute
+	 * coordinates but track grids keep them relative to the track top.
+	 */
+	private static class TrackGrid {
+		final TooltipGrid grid;
+		final int top;
+
+		TrackGrid(TooltipGrid grid, int top) {
+			this.grid = grid;
+			this.top = top;
+		}
+	}
+
+	/**
+	 * A track rendered in its own image, along with its tooltips, which are
+	 * relative to the track top so that the layer can be composited at any
+	 * offset.
+	 */
+	static class TrackLayer {
+		final int index;
+		final BufferedImage image;
+		final TooltipGrid grid;
+
+		TrackLayer(int index, BufferedImage image,
+			TooltipGrid grid) {
+			this.index = index;
+			this.image = image;
+			this.grid = grid;
+		}
+	}
 }
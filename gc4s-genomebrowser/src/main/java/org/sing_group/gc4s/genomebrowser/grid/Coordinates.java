@@ -62,7 +62,7 @@ public class Coordinates {
 
 	@Override
 	public int hashCode() {
-		return (int) (x + y);
+		return 31 * Double.hashCode(x) + Double.hashCode(y);
 	}
 
 	@Override
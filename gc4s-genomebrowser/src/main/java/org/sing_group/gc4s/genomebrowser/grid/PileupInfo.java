@@ -47,7 +47,8 @@ public class PileupInfo implements GenericInfo{
 	private boolean isCompletePileup;
 
 	/**
-	 * Creates a new {@code PileupInfo} instance for the pileup line.
+	 * Creates a new {@code PileupInfo} instance for the pileup line. The line
+	 * is parsed the first time its information is requested.
 	 * 
 	 * @param line the pileup line to parse
 	 * @param color the tooltip color
@@ -57,11 +58,11 @@ public class PileupInfo implements GenericInfo{
 		this.info = line;
 		this.color = color;
 		this.isCompletePileup = complete;
-		parsePileupLine(this.info);
 	}
 
 	@Override
 	public String toString() {
+		parseIfNeeded();
 		return "Ref = " + ref;
 	}
 
@@ -72,6 +73,7 @@ public class PileupInfo implements GenericInfo{
 
 	@Override
 	public List<String> getLines() {
+		parseIfNeeded();
 		List<String> toret = new LinkedList<String>();
 		toret.add(new String("Ref = " + ref));
 		if (isCompletePileup) {
@@ -98,6 +100,12 @@ public class PileupInfo implements GenericInfo{
 		return toret;
 	}
 
+	private synchronized void parseIfNeeded() {
+		if (this.ref == null) {
+			parsePileupLine(this.info);
+		}
+	}
+
 	protected void parsePileupLine(String line) {
 		StringTokenizer tokenizer = new StringTokenizer(line);
 		tokenizer.nextToken();
@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.grid;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index that maps the square cells of a grid to the
+ * {@code GridInfo} shown at them. Cells are stored by a primitive key in an
+ * open addressing table, so that adding and looking up cells does not create
+ * intermediate objects and the index can be cleared and rebuilt cheaply for
+ * each frame. When several {@code GridInfo} are added at the same cell, the
+ * first one is kept.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class TooltipGrid {
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+	private final int cellSize;
+	private long[] keys;
+	private GridInfo[] values;
+	private int size;
+
+	/**
+	 * Creates a new {@code TooltipGrid} with the specified cell size.
+	 * 
+	 * @param cellSize the width and height of the grid cells
+	 */
+	public TooltipGrid(int cellSize) {
+		if (cellSize < 1) {
+			throw new IllegalArgumentException("The cell size must be positive");
+		}
+		this.cellSize = cellSize;
+		this.keys = new long[INITIAL_CAPACITY];
+		this.values = new GridInfo[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Returns the width and height of the grid cells.
+	 * 
+	 * @return the width and height of the grid cells
+	 */
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Returns the number of cells that contain a {@code GridInfo}.
+	 * 
+	 * @return the number of non-empty cells
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds the specified {@code GridInfo} at the cell that contains the point
+	 * {@code (x, y)}, unless that cell already contains one.
+	 * 
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @param info the {@code GridInfo} to add
+	 */
+	public void add(double x, double y, GridInfo info) {
+		put(key(cell(x), cell(y)), info);
+	}
+
+	/**
+	 * Returns the {@code GridInfo} at the cell that contains the point
+	 * {@code (x, y)} or {@code null} if the cell is empty.
+	 * 
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @return the {@code GridInfo} at the cell or {@code null} if the cell is
+	 *         empty
+	 */
+	public GridInfo get(double x, double y) {
+		long key = key(cell(x), cell(y));
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Adds all the cells of the specified grid that are empty in this one.
+	 * 
+	 * @param other a {@code TooltipGrid} with the same cell size
+	 */
+	public void addAll(TooltipGrid other) {
+		if (other.cellSize != this.cellSize) {
+			throw new IllegalArgumentException("The cell sizes do not match");
+		}
+		for (int i = 0; i < other.values.length; i++) {
+			if (other.values[i] != null) {
+				put(other.keys[i], other.values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Removes all the cells, releasing the memory taken by large frames.
+	 */
+	public void clear() {
+		if (values.length > MAX_RETAINED_CAPACITY) {
+			keys = new long[INITIAL_CAPACITY];
+			values = new GridInfo[INITIAL_CAPACITY];
+		} else {
+			Arrays.fill(values, null);
+		}
+		size = 0;
+	}
+
+	/**
+	 * Returns the coordinates of the upper left corner of the cell that
+	 * contains the point {@code (x, y)}.
+	 * 
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @return the coordinates of the cell that contains the point
+	 */
+	public Coordinates getCellCoordinates(double x, double y) {
+		return new Coordinates((double) cell(x) * cellSize,
+			(double) cell(y) * cellSize);
+	}
+
+	private int cell(double value) {
+		return (int) Math.floor(value / cellSize);
+	}
+
+	private static long key(int cellX, int cellY) {
+		return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private void put(long key, GridInfo info) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return;
+			}
+		}
+		keys[i] = key;
+		values[i] = info;
+		if (++size * 4 > keys.length * 3) {
+			resize();
+		}
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		GridInfo[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new GridInfo[oldValues.length * 2];
+		size = 0;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+}
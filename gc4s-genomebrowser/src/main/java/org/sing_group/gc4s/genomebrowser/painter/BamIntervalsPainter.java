@@ -30,9 +30,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 
 import org.sing_group.gc4s.genomebrowser.GenomeBrowser;
@@ -43,7 +41,6 @@ import org.sing_group.gc4s.genomebrowser.grid.GridInfo;
 import org.sing_group.gc4s.genomebrowser.grid.IntervalInfo;
 
 import es.cnio.bioinfo.pileline.core.BamIntervalsIndex;
-import es.cnio.bioinfo.pileline.core.Interval;
 import es.cnio.bioinfo.pileline.core.IntervalsIndex;
 
 /**
@@ -54,11 +51,14 @@ import es.cnio.bioinfo.pileline.core.IntervalsIndex;
  */
 public class BamIntervalsPainter implements Painter {
 	private File file;
-	private IntervalsIndex interval;
+	private IndexHandlePool.Handle<IntervalsIndex> interval;
 	private GenomeBrowser genomeBrowser;
 
 	private int currentTrackHeight;
+	private IntervalsLayout heightLayout;
 	private int offset;
+	private IntervalsLayout layout;
+	private int layoutDepth;
 
 	private TrackOption backGroundColorOption;
 	private TrackOption trackColorOption;
@@ -79,9 +79,11 @@ public class BamIntervalsPainter implements Painter {
 	public void init(GenomeBrowser genomeBrowser)
 		throws RuntimeException, IOException {
 		this.genomeBrowser = genomeBrowser;
-		this.interval = new BamIntervalsIndex(this.file.getName(), this.file);
+		this.interval = IndexHandlePool.acquire(this.file, "bam",
+			file -> new BamIntervalsIndex(file.getName(), file));
 
-		Set<String> fileSequences = this.interval.getSequences();
+		Set<String> fileSequences = 
+			this.interval.queryOrRelease(IntervalsIndex::getSequences);
 		Set<String> genomeSequences = genomeBrowser.getGenomeIndex()
 			.getSequences();
 		HashSet<String> intersect = new HashSet<String>();
@@ -122,27 +124,22 @@ public class BamIntervalsPainter implements Painter {
     	Color currentColor = getTrackColor();
 		g2.setColor(currentColor);
 
-		HashMap<Integer,Long> floorToPosition = new HashMap<Integer, Long>();
-		floorToPosition.put(0, new Long(0));
-		int currentFloor = 0;
-		Long lastRight;
 		boolean outOfRangeEnd;
 		boolean outOfRangeStart;
 		
 		int maxYposition = trackPosition;
 		
 		try {
-			Iterator<Interval> result = this.interval.getOverlappingIntervals(
-				genomeBrowser.getCurrentSequence(), 
-				(int) genomeBrowser.getInitialPosition(),
-				(int) genomeBrowser.getFinalPosition()
-			);
-		
-			while (result.hasNext()) {
-				Interval interval = result.next();
+			IntervalsLayout layout = this.getLayout(genomeBrowser);
+			if (layout.isDensity()) {
+				layout.getDensity().paint(g2, genomeBrowser, offset, currentColor);
+				maxYposition = 65 + IntervalsDensity.HEIGHT;
+			}
+
+			for (int read = 0; read < layout.size(); read++) {
 				outOfRangeEnd = false;
 				outOfRangeStart = false;
-				long start = interval.getStart();
+				long start = layout.getStart(read);
 				if (start < genomeBrowser.getInitialPosition()) {
 					outOfRangeStart = true;
 					start = genomeBrowser.getInitialPosition();
@@ -150,7 +147,7 @@ public class BamIntervalsPainter implements Painter {
 				
 				double xCoordinateStart= computeTrackLinePosition(start,ancho,genomeBrowser.getInitialPosition());
 				
-				long stop = interval.getStop() ;
+				long stop = layout.getStop(read);
 				if (stop >  genomeBrowser.getFinalPosition())
 					{
 						outOfRangeEnd = true;
@@ -159,35 +156,7 @@ public class BamIntervalsPainter implements Painter {
 				
 				double xCoordinateStop = computeTrackLinePosition(stop+1,ancho,genomeBrowser.getInitialPosition());
 				
-				lastRight = floorToPosition.get(currentFloor);
-				if (lastRight!=null)
-				{
-					if (lastRight >= start-1)
-					{
-						
-						if (currentFloor < this.getMaxDepth() - 1) {
-							trackPosition += 23;
-							currentFloor++;
-						} else {
-							continue;
-						}
-					}
-
-					if (lastRight < interval.getStart()) 
-					{
-						
-						while (currentFloor > 0
-							&& floorToPosition.get(currentFloor) != null
-							&& floorToPosition.get(currentFloor) < start) {
-							
-							currentFloor--;
-							trackPosition-=23;
-						}
-					}
-				}
-				
-				floorToPosition.remove(currentFloor);
-				floorToPosition.put(new Integer(currentFloor), stop);
+				trackPosition = 65 + layout.getRow(read) * 23;
 
 				double lineXstart = genomeBrowser.getTracksPanel().getX(125) + xCoordinateStart;
 				double lineXend = genomeBrowser.getTracksPanel().getX( 125) + xCoordinateStop;
@@ -220,7 +189,7 @@ public class BamIntervalsPainter implements Painter {
 					g2.draw(line);
 				}
 
-				String data = interval.getData();
+				String data = layout.getData(read);
 				
 				boolean drawNucleotides = this.genomeBrowser.getTracksPanel().drawNucleotides(g2) > 0.0f;
 				
@@ -237,9 +206,9 @@ public class BamIntervalsPainter implements Painter {
 				}
 				
 				if (xCoordinateStop - xCoordinateStart > 1) {
-					GenericInfo iI = new IntervalInfo(interval.getData(),
-						String.valueOf(interval.getStart()),
-						String.valueOf(interval.getStop()));
+					GenericInfo iI = new IntervalInfo(data,
+						String.valueOf(layout.getStart(read)),
+						String.valueOf(layout.getStop(read)));
 					GridInfo aux = new GridInfo(iI, GridInfo.INTERVALINFO);
 					genomeBrowser.getTracksPanel().addCuadriculaInfo(
 						(int) (genomeBrowser.getTracksPanel().getX(125)
@@ -252,12 +221,11 @@ public class BamIntervalsPainter implements Painter {
 						+ xCoordinateStart; x < genomeBrowser.getTracksPanel()
 							.getX(125) + xCoordinateStop; x += genomeBrowser
 								.getTracksPanel().getSquareWidth()) {
-						GridInfo auxC = new GridInfo(iI, GridInfo.INTERVALINFO);
 						genomeBrowser.getTracksPanel().addCuadriculaInfo((int) x,
 							trackPosition
 								- genomeBrowser.getTracksPanel().getSquareWidth() / 2
 								+ offset - 65,
-							auxC);
+							aux);
 					}
 				}
 
@@ -281,76 +249,66 @@ public class BamIntervalsPainter implements Painter {
 	}
 
 	@Override
-	public void reset() {
+	public synchronized void reset() {
 		this.currentTrackHeight = 0;
+		this.heightLayout = null;
+		this.layout = null;
 	}
 
 	@Override
-	public synchronized int computeHeight(GenomeBrowser genomeBrowser) {
-		if (this.currentTrackHeight == 0 && this.interval != null) {
-			int maxFloor = 0;
-
-			Iterator<Interval> result = this.interval.getOverlappingIntervals(
-				genomeBrowser.getCurrentSequence(),
-				(int) genomeBrowser.getInitialPosition(),
-				(int) genomeBrowser.getFinalPosition());
-			HashMap<Integer, Long> floorToPosition = new HashMap<Integer, Long>();
-			floorToPosition.put(0, new Long(0));
-			int currentFloor = 0;
-			Long lastRight;
-			maxFloor = 0;
-			while (result.hasNext()) {
-				Interval interval = result.next();
-				long temp = interval.getStart();
-				if (temp < genomeBrowser.getInitialPosition())
-					temp = genomeBrowser.getInitialPosition();
-
-				temp = interval.getStop();
-				if (temp > genomeBrowser.getFinalPosition()) {
-					temp = genomeBrowser.getFinalPosition();
-				}
-
-				lastRight = floorToPosition.get(currentFloor);
-				if (lastRight != null) {
-
-					if (lastRight >= interval.getStart() - 1) {
-
-						if (currentFloor < this.getMaxDepth() - 1) {
-							currentFloor++;
-						} else {
-							continue;
-						}
-					}
-
-					if (lastRight < interval.getStart()) {
-
-						while (currentFloor > 0
-							&& floorToPosition.get(currentFloor) != null
-							&& floorToPosition.get(currentFloor) < interval
-								.getStart()) {
-
-							currentFloor--;
-
-						}
-					}
-				}
-
-				floorToPosition.remove(currentFloor);
-				floorToPosition.put(new Integer(currentFloor),
-					interval.getStop());
-
-				if (currentFloor > maxFloor) {
-					maxFloor = currentFloor;
-				}
+	public synchronized void dispose() {
+		if (this.interval != null) {
+			this.interval.release();
+		}
+	}
 
+	@Override
+	public synchronized int computeHeight(GenomeBrowser genomeBrowser) {
+		if (this.interval == null) {
+			return currentTrackHeight;
+		}
+		IntervalsLayout layout = this.getLayout(genomeBrowser);
+		if (layout != this.heightLayout) {
+			int height;
+			if (layout.isDensity()) {
+				height = IntervalsDensity.HEIGHT + 5;
+			} else {
+				height = (layout.getRowCount() * 23) + 5;
 			}
-
-			int height = ((maxFloor+1) * 23) + 5;
 			this.currentTrackHeight = height + 65;
+			this.heightLayout = layout;
 		}
 		return currentTrackHeight;
 	}
 
+	private synchronized IntervalsLayout getLayout(GenomeBrowser genomeBrowser) {
+		String sequence = genomeBrowser.getCurrentSequence();
+		long initialPosition = genomeBrowser.getInitialPosition();
+		long finalPosition = genomeBrowser.getFinalPosition();
+		double width = genomeBrowser.getTracksPanel().getWidth() * 0.75;
+		int maxDepth = this.getMaxDepth();
+		if (this.layout == null || this.layoutDepth != maxDepth
+			|| !this.layout.isLayoutOf(sequence, initialPosition, finalPosition,
+				width)
+		) {
+			IntervalsIndex index = this.interval.lock();
+			if (index == null) {
+				return IntervalsLayout.empty(sequence, initialPosition,
+					finalPosition, width);
+			}
+			try {
+				this.layout = IntervalsLayout.create(index, sequence,
+					initialPosition, finalPosition, width,
+					new ReadPileupLayout(maxDepth));
+				this.layoutDepth = maxDepth;
+			} finally {
+				this.interval.unlock();
+			}
+		}
+
+		return this.layout;
+	}
+
 	private void initializeOptions() {
 
 		this.trackNameOption = new TrackOption() {
@@ -0,0 +1,443 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A least recently used cache of inflated BGZF blocks, identified by their
+ * file and by their offset in the compressed file, that is shared by all the
+ * {@link BgzfInputStream}s. The cache is limited by the number of inflated
+ * bytes that it holds. The region seeks of bgzipped tracks are done through
+ * it by {@link BgzfRecordSeeker}, so that the blocks inflated to draw a view
+ * are reused when the view is drawn again, panned or zoomed, and by the
+ * other tracks of the same file.
+ * 
+ * Blocks that are likely to be read next can be inflated in advance by a
+ * small pool of background threads, so that sequential reads inflate several
+ * blocks in parallel.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class BgzfBlockCache {
+	/**
+	 * The default capacity of the shared cache, in bytes.
+	 */
+	public static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+	private static final int HEADER_SIZE = 18;
+	private static final int INFLATERS = Math.max(1,
+		Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+	private static BgzfBlockCache shared;
+	private static ExecutorService inflaters;
+
+	private final long capacity;
+	private final LinkedHashMap<Key, Block> blocks = 
+		new LinkedHashMap<Key, Block>(16, 0.75f, true);
+	private final Map<Key, FutureTask<Block>> loading = 
+		new HashMap<Key, FutureTask<Block>>();
+	private long size;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a new {@code BgzfBlockCache} with the specified capacity.
+	 * 
+	 * @param capacity the maximum number of inflated bytes held by the cache
+	 */
+	public BgzfBlockCache(long capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the cache shared by all the tracks.
+	 * 
+	 * @return the shared {@code BgzfBlockCache}
+	 */
+	public static synchronized BgzfBlockCache getShared() {
+		if (shared == null) {
+			shared = new BgzfBlockCache(DEFAULT_CAPACITY);
+		}
+
+		return shared;
+	}
+
+	private static synchronized ExecutorService getInflaters() {
+		if (inflaters == null) {
+			AtomicInteger count = new AtomicInteger();
+			inflaters = Executors.newFixedThreadPool(INFLATERS, r -> {
+				Thread thread = new Thread(r, 
+					"genome-browser-bgzf-" + count.incrementAndGet());
+				thread.setDaemon(true);
+
+				return thread;
+			});
+		}
+
+		return inflaters;
+	}
+
+	/**
+	 * Returns the block at the specified offset of the specified file,
+	 * reading and inflating it if it is not in the cache.
+	 * 
+	 * @param channel the channel of the compressed file
+	 * @param path the identifier of the compressed file
+	 * @param offset the offset of the block in the compressed file
+	 * @return the block or {@code null} if the offset is at the end of the
+	 *         file
+	 * @throws IOException if an error occurs while reading the block
+	 */
+	Block getBlock(FileChannel channel, String path, long offset)
+		throws IOException {
+		Key key = new Key(path, offset);
+		FutureTask<Block> task;
+		boolean owner = false;
+		synchronized (this) {
+			Block block = this.blocks.get(key);
+			if (block != null) {
+				this.hits++;
+				return block;
+			}
+			task = this.loading.get(key);
+			if (task == null) {
+				task = newLoadTask(channel, key, 0);
+				owner = true;
+			}
+		}
+		if (owner) {
+			task.run();
+		}
+
+		Block block;
+		boolean miss = owner;
+		try {
+			block = task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (owner) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+			block = readBlock(channel, key, 0);
+			loaded(key, block);
+			miss = true;
+		}
+		this.count(block, miss);
+
+		return block;
+	}
+
+	private synchronized void count(Block block, boolean miss) {
+		if (block == null) {
+			return;
+		}
+		if (miss) {
+			this.misses++;
+		} else {
+			this.hits++;
+		}
+	}
+
+	/**
+	 * Reads and inflates in background the blocks that are not in the cache
+	 * among the specified number of consecutive blocks, starting at the
+	 * specified offset.
+	 * 
+	 * @param channel the channel of the compressed file
+	 * @param path the identifier of the compressed file
+	 * @param offset the offset of the first block in the compressed file
+	 * @param count the number of blocks
+	 */
+	void prefetch(FileChannel channel, String path, long offset, int count) {
+		FutureTask<Block> task;
+		synchronized (this) {
+			Key key = new Key(path, offset);
+			while (count > 0) {
+				if (this.loading.containsKey(key)) {
+					return;
+				}
+				Block cached = this.blocks.get(key);
+				if (cached == null) {
+					break;
+				}
+				count--;
+				key = new Key(path, key.offset + cached.compressedSize);
+			}
+			if (count < 1) {
+				return;
+			}
+			task = newLoadTask(channel, key, count - 1);
+		}
+		getInflaters().execute(task);
+	}
+
+	private FutureTask<Block> newLoadTask(FileChannel channel, Key key,
+		int prefetch) {
+		FutureTask<Block> task = new FutureTask<Block>(() -> {
+			try {
+				Block block = readBlock(channel, key, prefetch);
+				loaded(key, block);
+
+				return block;
+			} finally {
+				synchronized (this) {
+					this.loading.remove(key);
+				}
+			}
+		});
+		this.loading.put(key, task);
+
+		return task;
+	}
+
+	private Block readBlock(FileChannel channel, Key key, int prefetch)
+		throws IOException {
+		long offset = key.offset;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		if (!readFully(channel, header, offset)) {
+			return null;
+		}
+		byte[] h = header.array();
+		if ((h[0] & 0xff) != 31 || (h[1] & 0xff) != 139 || h[2] != 8
+			|| (h[3] & 4) == 0) {
+			throw new IOException("Invalid BGZF block at " + offset);
+		}
+		int xlen = (h[10] & 0xff) | (h[11] & 0xff) << 8;
+		ByteBuffer extra = ByteBuffer.allocate(xlen);
+		if (!readFully(channel, extra, offset + 12)) {
+			throw new IOException("Truncated BGZF block at " + offset);
+		}
+		int blockSize = getBlockSize(extra.array(), offset);
+
+		ByteBuffer data = ByteBuffer.allocate(blockSize - 12 - xlen);
+		if (!readFully(channel, data, offset + 12 + xlen)) {
+			throw new IOException("Truncated BGZF block at " + offset);
+		}
+		prefetch(channel, key.path, offset + blockSize, prefetch);
+
+		byte[] compressed = data.array();
+		int compressedLength = compressed.length - 8;
+		int crc = readInt(compressed, compressedLength);
+		int inflatedSize = readInt(compressed, compressedLength + 4);
+
+		byte[] inflated = new byte[inflatedSize];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(compressed, 0, compressedLength);
+			int length = 0;
+			while (length < inflatedSize) {
+				int read = inflater.inflate(inflated, length, 
+					inflatedSize - length);
+				if (read == 0 
+					&& (inflater.finished() || inflater.needsInput())) {
+					break;
+				}
+				length += read;
+			}
+			if (length != inflatedSize) {
+				throw new IOException("Corrupt BGZF block at " + offset);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt BGZF block at " + offset, e);
+		} finally {
+			inflater.end();
+		}
+
+		CRC32 checksum = new CRC32();
+		checksum.update(inflated, 0, inflatedSize);
+		if ((int) checksum.getValue() != crc) {
+			throw new IOException("Wrong checksum of BGZF block at " + offset);
+		}
+
+		return new Block(inflated, blockSize);
+	}
+
+	private static int getBlockSize(byte[] extra, long offset)
+		throws IOException {
+		int i = 0;
+		while (i + 4 <= extra.length) {
+			int length = (extra[i + 2] & 0xff) | (extra[i + 3] & 0xff) << 8;
+			if (extra[i] == 66 && extra[i + 1] == 67 && length == 2) {
+				return ((extra[i + 4] & 0xff) | (extra[i + 5] & 0xff) << 8) + 1;
+			}
+			i += 4 + length;
+		}
+
+		throw new IOException("Missing BGZF block size at " + offset);
+	}
+
+	private static int readInt(byte[] bytes, int i) {
+		return (bytes[i] & 0xff) | (bytes[i + 1] & 0xff) << 8
+			| (bytes[i + 2] & 0xff) << 16 | (bytes[i + 3] & 0xff) << 24;
+	}
+
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer,
+		long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				if (buffer.position() == 0) {
+					return false;
+				}
+				throw new IOException("Unexpected end of BGZF file");
+			}
+		}
+
+		return true;
+	}
+
+	private synchronized void loaded(Key key, Block block) {
+		if (block == null || this.blocks.containsKey(key)) {
+			return;
+		}
+		this.blocks.put(key, block);
+		this.size += block.data.length;
+
+		Iterator<Block> eldest = this.blocks.values().iterator();
+		while (this.size > this.capacity && eldest.hasNext()) {
+			Block evicted = eldest.next();
+			if (evicted == block) {
+				break;
+			}
+			this.size -= evicted.data.length;
+			this.evictions++;
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Returns the number of blocks found in the cache or already being read.
+	 * Reads past the end of a file are not counted.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of blocks that had to be read and inflated by the
+	 * caller. Reads past the end of a file are not counted.
+	 * 
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the number of blocks evicted to respect the cache capacity.
+	 * 
+	 * @return the number of evicted blocks
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Returns the number of inflated bytes held by the cache.
+	 * 
+	 * @return the number of inflated bytes held by the cache
+	 */
+	public synchronized long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the maximum number of inflated bytes held by the cache.
+	 * 
+	 * @return the capacity of the cache, in bytes
+	 */
+	public long getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Removes all the blocks from the cache and resets its statistics.
+	 */
+	public synchronized void clear() {
+		this.blocks.clear();
+		this.size = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	static class Block {
+		final byte[] data;
+		final int compressedSize;
+
+		Block(byte[] data, int compressedSize) {
+			this.data = data;
+			this.compressedSize = compressedSize;
+		}
+	}
+
+	private static class Key {
+		final String path;
+		final long offset;
+
+		Key(String path, long offset) {
+			this.path = path;
+			this.offset = offset;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, offset);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+
+			return offset == other.offset && path.equals(other.path);
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.sing_group.gc4s.genomebrowser.painter.BgzfBlockCache.Block;
+
+/**
+ * An {@code InputStream} that reads the uncompressed data of a BGZF file
+ * through a {@link BgzfBlockCache}, so that the blocks already inflated by
+ * any other stream of the same file are not inflated again.
+ * 
+ * While reading sequentially, the next blocks of the file are inflated in
+ * background. As in other BGZF readers, positions can be set with virtual
+ * file pointers, whose 48 most significant bits are the offset of a block in
+ * the compressed file and whose 16 least significant bits are an offset in
+ * the inflated block.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class BgzfInputStream extends InputStream {
+	private static final int READ_AHEAD = 4;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final String id;
+	private final BgzfBlockCache cache;
+	private long blockAddress;
+	private Block block;
+	private boolean loaded;
+	private int position;
+
+	/**
+	 * Creates a new {@code BgzfInputStream} that reads the specified file
+	 * through the shared {@code BgzfBlockCache}.
+	 * 
+	 * @param file a BGZF file
+	 * @throws IOException if an error occurs while opening the file
+	 */
+	public BgzfInputStream(File file) throws IOException {
+		this(file, BgzfBlockCache.getShared());
+	}
+
+	/**
+	 * Creates a new {@code BgzfInputStream} that reads the specified file
+	 * through the specified {@code BgzfBlockCache}.
+	 * 
+	 * @param file a BGZF file
+	 * @param cache the cache of inflated blocks
+	 * @throws IOException if an error occurs while opening the file
+	 */
+	public BgzfInputStream(File file, BgzfBlockCache cache) 
+		throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		this.channel = this.file.getChannel();
+		this.id = getId(file);
+		this.cache = cache;
+	}
+
+	/**
+	 * Creates a new {@code BgzfInputStream} that reads a file through an
+	 * already open channel, which is not closed with the stream.
+	 * 
+	 * @param channel the channel of the BGZF file
+	 * @param id the identifier of the file in the cache, as returned by
+	 *        {@link #getId(File)}
+	 * @param cache the cache of inflated blocks
+	 */
+	BgzfInputStream(FileChannel channel, String id, BgzfBlockCache cache) {
+		this.file = null;
+		this.channel = channel;
+		this.id = id;
+		this.cache = cache;
+	}
+
+	/**
+	 * Returns the identifier of the specified file in the block caches, made
+	 * of its canonical path and its modification time, so that the blocks of
+	 * a file that has been replaced are not reused.
+	 * 
+	 * @param file a BGZF file
+	 * @return the identifier of the file
+	 * @throws IOException if the canonical path of the file can not be
+	 *         obtained
+	 */
+	static String getId(File file) throws IOException {
+		return file.getCanonicalPath() + "@" + file.lastModified();
+	}
+
+	/**
+	 * Moves the stream to the specified virtual file pointer.
+	 * 
+	 * @param virtualFilePointer the virtual file pointer
+	 * @throws IOException if an error occurs while reading the block
+	 */
+	public void seek(long virtualFilePointer) throws IOException {
+		this.blockAddress = virtualFilePointer >>> 16;
+		this.loadBlock(false);
+		int offset = (int) (virtualFilePointer & 0xffff);
+		if (this.block == null ? offset > 0 : offset > this.block.data.length) {
+			throw new IOException("Invalid virtual file pointer");
+		}
+		this.position = offset;
+	}
+
+	/**
+	 * Returns the virtual file pointer of the next byte to read.
+	 * 
+	 * @return the virtual file pointer of the next byte to read
+	 */
+	public long getFilePointer() {
+		if (this.block != null && this.position == this.block.data.length) {
+			return (this.blockAddress + this.block.compressedSize) << 16;
+		}
+
+		return this.blockAddress << 16 | this.position;
+	}
+
+	/**
+	 * Reads a line of text, decoding each byte as a character as genomic
+	 * position files are plain ASCII. The line terminator, either
+	 * {@code \n} or {@code \r\n}, is not included.
+	 * 
+	 * @return the line read or {@code null} at the end of the file
+	 * @throws IOException if an error occurs while reading the file
+	 */
+	public String readLine() throws IOException {
+		StringBuilder line = null;
+		while (this.ensureAvailable()) {
+			byte[] data = this.block.data;
+			int start = this.position;
+			int end = start;
+			while (end < data.length && data[end] != '\n') {
+				end++;
+			}
+			if (end < data.length) {
+				this.position = end + 1;
+				if (line == null) {
+					if (end > start && data[end - 1] == '\r') {
+						end--;
+					}
+					return new String(data, start, end - start,
+						StandardCharsets.ISO_8859_1);
+				}
+				append(line, data, start, end);
+
+				return toLine(line);
+			}
+			if (line == null) {
+				line = new StringBuilder();
+			}
+			append(line, data, start, end);
+			this.position = end;
+		}
+
+		return line == null ? null : toLine(line);
+	}
+
+	private static void append(StringBuilder line, byte[] data, int start,
+		int end) {
+		for (int i = start; i < end; i++) {
+			line.append((char) (data[i] & 0xff));
+		}
+	}
+
+	private static String toLine(StringBuilder line) {
+		int length = line.length();
+		if (length > 0 && line.charAt(length - 1) == '\r') {
+			line.setLength(length - 1);
+		}
+
+		return line.toString();
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!this.ensureAvailable()) {
+			return -1;
+		}
+
+		return this.block.data[this.position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!this.ensureAvailable()) {
+			return -1;
+		}
+		int read = Math.min(len, this.block.data.length - this.position);
+		System.arraycopy(this.block.data, this.position, b, off, read);
+		this.position += read;
+
+		return read;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return this.block == null ? 0 : this.block.data.length - this.position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.file != null) {
+			this.file.close();
+		}
+	}
+
+	private boolean ensureAvailable() throws IOException {
+		if (!this.loaded) {
+			this.loadBlock(true);
+		}
+		while (this.block != null && this.position == this.block.data.length) {
+			this.blockAddress += this.block.compressedSize;
+			this.position = 0;
+			this.loadBlock(true);
+		}
+
+		return this.block != null;
+	}
+
+	private void loadBlock(boolean readAhead) throws IOException {
+		this.block = 
+			this.cache.getBlock(this.channel, this.id, this.blockAddress);
+		this.loaded = true;
+		if (readAhead && this.block != null) {
+			this.cache.prefetch(this.channel, this.id, 
+				this.blockAddress + this.block.compressedSize, READ_AHEAD);
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a region of a bgzipped genomic position file through
+ * a {@link BgzfBlockCache}, starting at the virtual file pointer given by the
+ * {@link SummaryIndex} of the file. Blocks inflated by previous seeks of any
+ * track of the same file are reused, so redrawing, panning or zooming a view
+ * only inflates the blocks that have not been read yet.
+ * 
+ * Seeks can be done concurrently from several threads. The file is kept
+ * open until the seeker is closed, and it is opened again if its channel
+ * has been closed by the interruption of a reading thread.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class BgzfRecordSeeker implements Closeable {
+	private final File file;
+	private final String id;
+	private final SummaryIndex summary;
+	private final BgzfBlockCache cache;
+	private RandomAccessFile randomAccessFile;
+	private boolean closed;
+
+	/**
+	 * Creates a new {@code BgzfRecordSeeker} for the specified file that
+	 * reads it through the shared {@code BgzfBlockCache}.
+	 * 
+	 * @param file a bgzipped genomic position file
+	 * @param summary the summary of the file, which must hold virtual file
+	 *        pointers
+	 * @throws IOException if an error occurs while opening the file
+	 */
+	public BgzfRecordSeeker(File file, SummaryIndex summary)
+		throws IOException {
+		this(file, summary, BgzfBlockCache.getShared());
+	}
+
+	/**
+	 * Creates a new {@code BgzfRecordSeeker} for the specified file that
+	 * reads it through the specified {@code BgzfBlockCache}.
+	 * 
+	 * @param file a bgzipped genomic position file
+	 * @param summary the summary of the file, which must hold virtual file
+	 *        pointers
+	 * @param cache the cache of inflated blocks
+	 * @throws IOException if an error occurs while opening the file
+	 */
+	public BgzfRecordSeeker(File file, SummaryIndex summary,
+		BgzfBlockCache cache) throws IOException {
+		if (!summary.hasBlockPointers()) {
+			throw new IllegalArgumentException(
+				"The summary of " + file + " has no virtual file pointers");
+		}
+		this.file = file;
+		this.id = BgzfInputStream.getId(file);
+		this.summary = summary;
+		this.cache = cache;
+		this.randomAccessFile = new RandomAccessFile(file, "r");
+	}
+
+	/**
+	 * Returns the lines of the records of the specified region, in file
+	 * order. The second column of each record must be its position, as in
+	 * the files read by pileline's {@code FastSeeker}.
+	 * 
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @return the lines of the records between {@code start} and
+	 *         {@code end}, both included. Read errors are thrown as
+	 *         {@code UncheckedIOException}s by the iterator
+	 * @throws IOException if an error occurs while reading the first block
+	 */
+	public Iterator<String> seek(String sequence, long start, long end)
+		throws IOException {
+		long pointer = this.summary.getBlockPointer(sequence, start, end);
+		if (pointer < 0) {
+			return Collections.emptyIterator();
+		}
+		BgzfInputStream in = 
+			new BgzfInputStream(this.getChannel(), this.id, this.cache);
+		in.seek(pointer);
+
+		return new RecordIterator(in, sequence, start, end);
+	}
+
+	private synchronized FileChannel getChannel() throws IOException {
+		if (this.closed) {
+			throw new IOException("The seeker of " + this.file + " is closed");
+		}
+		if (!this.randomAccessFile.getChannel().isOpen()) {
+			this.randomAccessFile.close();
+			this.randomAccessFile = new RandomAccessFile(this.file, "r");
+		}
+
+		return this.randomAccessFile.getChannel();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.closed = true;
+		this.randomAccessFile.close();
+	}
+
+	private static class RecordIterator implements Iterator<String> {
+		private final BgzfInputStream in;
+		private final String sequence;
+		private final long start;
+		private final long end;
+		private final PileupRecord record = new PileupRecord();
+		private String next;
+		private boolean finished;
+
+		RecordIterator(BgzfInputStream in, String sequence, long start,
+			long end) {
+			this.in = in;
+			this.sequence = sequence;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (this.next == null && !this.finished) {
+				try {
+					this.next = this.readNext();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				this.finished = this.next == null;
+			}
+
+			return this.next != null;
+		}
+
+		@Override
+		public String next() {
+			if (!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			String line = this.next;
+			this.next = null;
+
+			return line;
+		}
+
+		private String readNext() throws IOException {
+			String line;
+			while ((line = this.in.readLine()) != null) {
+				if (line.isEmpty() || line.charAt(0) == '#') {
+					continue;
+				}
+				PileupRecord record = this.record.parse(line);
+				if (record.getColumnCount() < 2) {
+					continue;
+				}
+				int nameStart = record.getColumnStart(0);
+				int nameLength = record.getColumnEnd(0) - nameStart;
+				if (nameLength != this.sequence.length() || !line
+					.regionMatches(nameStart, this.sequence, 0, nameLength)) {
+					return null;
+				}
+				long position;
+				try {
+					position = record.getLong(1);
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				if (position > this.end) {
+					return null;
+				}
+				if (position >= this.start) {
+					return line;
+				}
+			}
+
+			return null;
+		}
+	}
+}
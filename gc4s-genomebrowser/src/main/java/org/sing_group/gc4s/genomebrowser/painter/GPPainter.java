@@ -31,12 +31,15 @@ import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.Vector;
 
 import org.sing_group.gc4s.genomebrowser.GenomeBrowser;
 import org.sing_group.gc4s.genomebrowser.GenomeBrowserUtil;
@@ -56,7 +59,7 @@ import es.cnio.bioinfo.pileline.core.FastSeekerFactory;
  */
 public class GPPainter implements Painter {
 	protected File file;
-	protected FastSeeker seek;
+	protected IndexHandlePool.Handle<FastSeeker> seek;
 	protected Color trackColor;
 	protected int trackHeight = 65;
 	protected Color backGroundColor = null;
@@ -66,8 +69,15 @@ public class GPPainter implements Painter {
 	protected int offset;
 	protected int histogramIntervals;
 	protected int maxHistogramValue;
-	protected Vector<Integer> tmpValues = new Vector<Integer>();
+	protected int[] histogramValues;
 	protected String trackName = "default";
+	protected volatile SummaryIndex summary;
+	private volatile BgzfRecordSeeker blockSeeker;
+	private volatile boolean disposed;
+	private List<String> regionLines;
+	private String regionSequence;
+	private long regionStart;
+	private long regionEnd;
 
 	/**
 	 * Creates a new {@code GPPainter} for the specified track file.
@@ -82,9 +92,11 @@ public class GPPainter implements Painter {
 	@Override
 	public void init(GenomeBrowser genomeBrowser)
 		throws RuntimeException, IOException {
-		this.seek = FastSeekerFactory.createFastSeeker(this.file);
+		this.seek = IndexHandlePool.acquire(this.file, "fast-seeker",
+			FastSeekerFactory::createFastSeeker);
 
-		Set<String> fileSequences = this.seek.getSequences();
+		Set<String> fileSequences = 
+			this.seek.queryOrRelease(FastSeeker::getSequences);
 		Set<String> genomeSequences = genomeBrowser.getGenomeIndex()
 			.getSequences();
 		HashSet<String> intersect = new HashSet<String>();
@@ -98,6 +110,169 @@ public class GPPainter implements Painter {
 			throw new RuntimeException("Sequences in genome and track ("
 				+ this.file.getName() + ") have poor overlapping.");
 		}
+
+		SummaryIndex.load(this.file, this.getSummaryDepthColumn(),
+			this.getSummarySnpColumn(), index -> {
+				this.summary = index;
+				BgzfRecordSeeker blockSeeker = 
+					createBlockSeeker(this.file, index);
+				this.blockSeeker = blockSeeker;
+				if (this.disposed) {
+					index.close();
+					close(blockSeeker);
+				}
+			});
+	}
+
+	private static BgzfRecordSeeker createBlockSeeker(File file,
+		SummaryIndex summary) {
+		if (!summary.hasBlockPointers()) {
+			return null;
+		}
+		try {
+			return new BgzfRecordSeeker(file, summary);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static void close(BgzfRecordSeeker blockSeeker) {
+		if (blockSeeker != null) {
+			try {
+				blockSeeker.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Runs the specified query over the lines of the track file. Bgzipped
+	 * files whose summary has already been loaded are read through a
+	 * {@link BgzfRecordSeeker}, which reuses the blocks inflated by previous
+	 * queries of any track of the file and does not need to lock the
+	 * {@code FastSeeker} of the track. Other files, and bgzipped files until
+	 * their summary is loaded, are read with the {@code FastSeeker}, which is
+	 * locked while the query runs.
+	 * 
+	 * @param query the query to run
+	 * @return {@code true} if the query has run and {@code false} if the track
+	 *         has been disposed
+	 * @throws IOException if an error occurs while reading the file
+	 */
+	protected boolean query(LineQuery query) throws IOException {
+		if (this.disposed) {
+			return false;
+		}
+		BgzfRecordSeeker blockSeeker = this.blockSeeker;
+		if (blockSeeker != null) {
+			try {
+				query.run((sequence, start, end) -> 
+					PainterMetrics.seek(blockSeeker, sequence, start, end));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			return true;
+		}
+
+		FastSeeker seeker = this.seek.lock();
+		if (seeker == null) {
+			return false;
+		}
+		try {
+			query.run((sequence, start, end) -> 
+				PainterMetrics.seek(seeker, sequence, (int) start, (int) end));
+		} finally {
+			this.seek.unlock();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Seeks the lines of the regions of the track file.
+	 */
+	protected interface LineSeeker {
+		/**
+		 * Returns the lines of the specified region.
+		 * 
+		 * @param sequence the sequence of the region
+		 * @param start the first position of the region
+		 * @param end the last position of the region
+		 * @return an iterator over the lines of the region
+		 * @throws IOException if an error occurs while seeking the file
+		 */
+		Iterator<String> seek(String sequence, long start, long end)
+			throws IOException;
+	}
+
+	/**
+	 * A query over the lines of the track file.
+	 */
+	protected interface LineQuery {
+		/**
+		 * Runs the query.
+		 * 
+		 * @param seeker the seeker of the lines of the track file
+		 * @throws IOException if an error occurs while reading the file
+		 */
+		void run(LineSeeker seeker) throws IOException;
+	}
+
+	/**
+	 * Returns the column with the depth of the records that is stored in the
+	 * track summary or {@code -1} if the records do not have depth.
+	 * 
+	 * @return the depth column or {@code -1} if there is no such column
+	 */
+	protected int getSummaryDepthColumn() {
+		return -1;
+	}
+
+	/**
+	 * Returns the column with the SNP quality of the records that is stored
+	 * in the track summary or {@code -1} if the records do not have SNP
+	 * quality.
+	 * 
+	 * @return the SNP quality column or {@code -1} if there is no such column
+	 */
+	protected int getSummarySnpColumn() {
+		return -1;
+	}
+
+	/**
+	 * Computes the histogram bins of the current region from the track
+	 * summary, if it has already been built and it is detailed enough for the
+	 * current zoom.
+	 * 
+	 * @param genomeBrowser the {@code GenomeBrowser}
+	 * @param size the number of histogram bins
+	 * @param minSnp the minimum SNP quality
+	 * @param maxSnp the maximum SNP quality or {@code -1} for no maximum
+	 * @return the histogram bins or {@code null} if they can not be computed
+	 *         from the track summary
+	 */
+	protected HistogramBins getSummaryBins(GenomeBrowser genomeBrowser,
+		int size, int minSnp, int maxSnp) {
+		SummaryIndex summary = this.summary;
+		if (summary == null) {
+			return null;
+		}
+		HistogramBins bins = new HistogramBins(
+			genomeBrowser.getInitialPosition(),
+			genomeBrowser.getFinalPosition(), size);
+		long queryStart = System.nanoTime();
+		boolean filled = summary.fill(genomeBrowser.getCurrentSequence(),
+			genomeBrowser.getInitialPosition(),
+			genomeBrowser.getFinalPosition(), bins, minSnp, maxSnp);
+		PainterMetrics.recordQuery(System.nanoTime() - queryStart, 0, 0);
+		if (!filled) {
+			return null;
+		}
+
+		return bins;
 	}
 
 	@Override
@@ -132,6 +307,21 @@ public class GPPainter implements Painter {
 
 	}
 	
+	private HistogramBins readBins(GenomeBrowser genomeBrowser, int size) {
+		HistogramBins bins = new HistogramBins(
+			genomeBrowser.getInitialPosition(),
+			genomeBrowser.getFinalPosition(), size);
+		String sequence = genomeBrowser.getCurrentSequence();
+		try {
+			this.query(lines -> 
+				bins.count((start, end) -> lines.seek(sequence, start, end)));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		return bins;
+	}
+
 	private void renderHistogram(Graphics2D g2, File current, GenomeBrowser genomeBrowser) {
 		g2.setColor(this.trackColor);
 		FontMetrics fm = g2.getFontMetrics();
@@ -141,45 +331,19 @@ public class GPPainter implements Painter {
 			trackPosition - 1, genomeBrowser.getTracksPanel().getX(875),
 			trackPosition - 1);
 		g2.draw(line);
-		int maxValue = 0;
-
 		int size = this.histogramIntervals;
 
-		if (tmpValues.isEmpty()) {
-			tmpValues = new Vector<Integer>(size);
-			Iterator<String> it;
-			long intervalStart = genomeBrowser.getInitialPosition();
-			long histogramIntervalSize = (genomeBrowser.getFinalPosition()
-				- genomeBrowser.getInitialPosition()) / size;
-			long intervalEnd = genomeBrowser.getInitialPosition() + histogramIntervalSize;
-			int sum = 0;
-			try {
-
-				for (int c = 0; c < size; c++) {
-
-					it = this.seek.seek(genomeBrowser.getCurrentSequence(),
-						(int) intervalStart, (int) intervalEnd);
-					while (it.hasNext()) {
-						it.next();
-						sum++;
-					}
-					tmpValues.add(sum);
-					if (sum > maxValue)
-						maxValue = sum;
-					sum = 0;
-					intervalStart += histogramIntervalSize;
-					intervalEnd += histogramIntervalSize;
-					if (intervalEnd > genomeBrowser.getFinalPosition())
-						intervalEnd = genomeBrowser.getFinalPosition();
-				}
-			} catch (IOException e) {
-				e.printStackTrace();
+		if (histogramValues == null) {
+			HistogramBins bins = this.getSummaryBins(genomeBrowser, size, 0, -1);
+			if (bins == null) {
+				bins = this.readBins(genomeBrowser, size);
 			}
-
+			histogramValues = bins.getCounts();
 		}
+
 		
 		Color barsColor = this.trackColor;
-		maxValue = GenomeBrowserUtil.getMaxIntegerValue(tmpValues);
+		int maxValue = GenomeBrowserUtil.getMaxIntegerValue(histogramValues);
 		if (maxValue > 0) {
 			double unitHeight;
 			int limit;
@@ -198,7 +362,7 @@ public class GPPainter implements Painter {
 			double initialXPos = genomeBrowser.getTracksPanel().getX(125);
 			Color oldColor = g2.getColor();
 			int total = 0;
-			for (Integer x : tmpValues) {
+			for (int x : histogramValues) {
 				total += x;
 				Rectangle2D rectangle;
 				Area a;
@@ -289,74 +453,102 @@ public class GPPainter implements Painter {
 		int trackPosition = this.trackHeight;
 		boolean displayColums = this.columnToDisplay > 1;
 
-		try {
-			Iterator<String> it = this.seek.seek(gv.getCurrentSequence(),
-				(int) gv.getInitialPosition(), (int) gv.getFinalPosition() - 1);
+		for (String tmp : this.getRegionLines(gv)) {
+			StringTokenizer tokenizer = new StringTokenizer(tmp);
+			String genomePosition = "0";
+			try {
+				tokenizer.nextToken();
+				genomePosition = tokenizer.nextToken();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
 
-			while (it.hasNext()) {
+			double xCoordinate = computeTrackLinePosition(
+				Long.valueOf(genomePosition), width,
+				gv.getInitialPosition());
 
-				String tmp = it.next();
-				StringTokenizer tokenizer = new StringTokenizer(tmp);
-				String genomePosition = "0";
-				try {
-					tokenizer.nextToken();
-					genomePosition = tokenizer.nextToken();
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
+			String columValue = this.parseLine(tmp, this.columnToDisplay);
 
-				double xCoordinate = computeTrackLinePosition(
-					Long.valueOf(genomePosition), width,
-					gv.getInitialPosition());
-
-				String columValue = this.parseLine(tmp, this.columnToDisplay);
-
-				Color nucleotidColor = currentColor;
-				if (!displayColums)
-					nucleotidColor = this.trackColor;
-				else if (this.columnToDisplay == 2 || this.columnToDisplay == 3)
-					nucleotidColor = GenomeBrowserUtil.getColors().get(columValue);
-				if (nucleotidColor == null)
-					nucleotidColor = this.trackColor;
-				g2.setColor(nucleotidColor);
-
-				Rectangle2D rectangle = new Rectangle2D.Float(
-					(float) ((float) gv.getTracksPanel().getX(125)
-						+ xCoordinate),
-					(float) gv.getTracksPanel().getY(trackPosition) - 19,
-					(float) width, (float) 16);
-				g2.draw(rectangle);
-				Area a = new Area(rectangle);
-				g2.fill(a);
-
-				if ((displayColums) && (width > fm.stringWidth(columValue))) {
-
-					g2.setColor(Color.DARK_GRAY);
-					g2.drawString(columValue,
-						(int) (gv.getTracksPanel().getX(125) + xCoordinate
-							+ ((width / 2) - (fm.stringWidth(columValue) / 2))),
-						gv.getTracksPanel().getY(trackPosition - 7));
+			Color nucleotidColor = currentColor;
+			if (!displayColums)
+				nucleotidColor = this.trackColor;
+			else if (this.columnToDisplay == 2 || this.columnToDisplay == 3)
+				nucleotidColor = GenomeBrowserUtil.getColors().get(columValue);
+			if (nucleotidColor == null)
+				nucleotidColor = this.trackColor;
+			g2.setColor(nucleotidColor);
 
-				}
-				GenericInfo data = new TrackPositionInfo(columValue,
-					Long.valueOf(genomePosition), currentColor);
-				GridInfo aux = new GridInfo(data, GridInfo.TRACKPOSITION);
-				gv.getTracksPanel().addCuadriculaInfo(
-					(int) (gv.getTracksPanel().getX(125) + xCoordinate
-						+ ((width / 2) - (fm.stringWidth("-") / 2))),
-					gv.getTracksPanel().getY(-7 + offset), aux);
-				g2.setColor(Color.black);
-				g2.setColor(nucleotidColor);
+			Rectangle2D rectangle = new Rectangle2D.Float(
+				(float) ((float) gv.getTracksPanel().getX(125)
+					+ xCoordinate),
+				(float) gv.getTracksPanel().getY(trackPosition) - 19,
+				(float) width, (float) 16);
+			g2.draw(rectangle);
+			Area a = new Area(rectangle);
+			g2.fill(a);
+
+			if ((displayColums) && (width > fm.stringWidth(columValue))) {
 
-				g2.setColor(currentColor);
+				g2.setColor(Color.DARK_GRAY);
+				g2.drawString(columValue,
+					(int) (gv.getTracksPanel().getX(125) + xCoordinate
+						+ ((width / 2) - (fm.stringWidth(columValue) / 2))),
+					gv.getTracksPanel().getY(trackPosition - 7));
 
 			}
+			GenericInfo data = new TrackPositionInfo(columValue,
+				Long.valueOf(genomePosition), currentColor);
+			GridInfo aux = new GridInfo(data, GridInfo.TRACKPOSITION);
+			gv.getTracksPanel().addCuadriculaInfo(
+				(int) (gv.getTracksPanel().getX(125) + xCoordinate
+					+ ((width / 2) - (fm.stringWidth("-") / 2))),
+				gv.getTracksPanel().getY(-7 + offset), aux);
+			g2.setColor(Color.black);
+			g2.setColor(nucleotidColor);
 
-		} catch (IOException e) {
+			g2.setColor(currentColor);
+
+		}
+	}
 
+	/**
+	 * Returns the lines of the file in the visible region. The lines are read
+	 * once and kept until the region changes or the painter is reset, so that
+	 * repainting the track (e.g. after changing its color) does not query the
+	 * file again.
+	 * 
+	 * @param gv the {@code GenomeBrowser} that shows the track
+	 * @return the lines of the file in the visible region
+	 */
+	protected List<String> getRegionLines(GenomeBrowser gv) {
+		String sequence = gv.getCurrentSequence();
+		long start = gv.getInitialPosition();
+		long end = gv.getFinalPosition();
+		if (this.regionLines != null && sequence.equals(this.regionSequence)
+			&& start == this.regionStart && end == this.regionEnd) {
+			return this.regionLines;
+		}
+
+		List<String> lines = new ArrayList<String>();
+		try {
+			boolean queried = this.query(seeker -> {
+				Iterator<String> it = seeker.seek(sequence, start, end - 1);
+				while (it.hasNext()) {
+					lines.add(it.next());
+				}
+			});
+			if (!queried) {
+				return Collections.emptyList();
+			}
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		this.regionLines = lines;
+		this.regionSequence = sequence;
+		this.regionStart = start;
+		this.regionEnd = end;
 
+		return lines;
 	}
 
 	private String parseLine(String tmp, int columnToDisplay) {
@@ -374,7 +566,21 @@ public class GPPainter implements Painter {
 
 	@Override
 	public void reset() {
-		this.tmpValues.clear();
+		this.histogramValues = null;
+		this.regionLines = null;
+	}
+
+	@Override
+	public void dispose() {
+		this.disposed = true;
+		if (this.seek != null) {
+			this.seek.release();
+		}
+		SummaryIndex summary = this.summary;
+		if (summary != null) {
+			summary.close();
+		}
+		close(this.blockSeeker);
 	}
 
 	@Override
@@ -0,0 +1,353 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Accumulates the records of a genomic region into a fixed number of equally
+ * sized histogram bins. Records are assigned to their bin by position, so the
+ * whole region can be binned from a single seek instead of one seek per
+ * histogram interval. Dense regions, where parsing each record would cost
+ * more than a seek, are counted with a seek per bin (see
+ * {@link #count(RecordSeeker)}).
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class HistogramBins {
+	/**
+	 * The number of records of a bin above which its records are counted
+	 * with a seek of the bin instead of parsing their positions.
+	 */
+	public static final int DENSE_BIN_RECORDS = 16384;
+
+	private final long start;
+	private final long end;
+	private final long span;
+	private final int[] counts;
+	private final double[] sums;
+
+	/**
+	 * Creates a new {@code HistogramBins} dividing the region between
+	 * {@code start} and {@code end} into the specified number of bins.
+	 * 
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param bins the number of bins
+	 */
+	public HistogramBins(long start, long end, int bins) {
+		if (bins < 1) {
+			throw new IllegalArgumentException("At least one bin is required");
+		}
+		this.start = start;
+		this.end = end;
+		this.span = Math.max(1, end - start);
+		this.counts = new int[bins];
+		this.sums = new double[bins];
+	}
+
+	/**
+	 * Seeks the records of a region of a genomic position file.
+	 */
+	public interface RecordSeeker {
+		/**
+		 * Returns the records of the specified region, sorted by position.
+		 * 
+		 * @param start the first position of the region
+		 * @param end the last position of the region
+		 * @return the records of the region
+		 * @throws IOException if an error occurs while reading the records
+		 */
+		Iterator<? extends CharSequence> seek(long start, long end)
+			throws IOException;
+	}
+
+	/**
+	 * Returns the number of bins.
+	 * 
+	 * @return the number of bins
+	 */
+	public int getBinCount() {
+		return this.counts.length;
+	}
+
+	/**
+	 * Returns the bin that contains the specified position or {@code -1} if
+	 * the position is out of the binned region.
+	 * 
+	 * @param position a genomic position
+	 * @return the bin index or {@code -1} if the position is out of range
+	 */
+	public int binOf(long position) {
+		long shift = position - this.start;
+		if (shift < 0 || shift > this.span) {
+			return -1;
+		}
+		int bin = (int) ((shift * this.counts.length) / this.span);
+
+		return bin < this.counts.length ? bin : this.counts.length - 1;
+	}
+
+	/**
+	 * Returns the first position of the specified bin.
+	 * 
+	 * @param bin the bin index
+	 * @return the first position of the bin
+	 */
+	public long getBinStart(int bin) {
+		return bin == 0 ? this.start : this.getBinEnd(bin - 1);
+	}
+
+	/**
+	 * Returns the position after the last position of the specified bin.
+	 * 
+	 * @param bin the bin index
+	 * @return the position after the last position of the bin
+	 */
+	public long getBinEnd(int bin) {
+		if (bin >= this.counts.length - 1) {
+			return this.start + this.span + 1;
+		}
+		long n = this.counts.length;
+
+		return this.start + ((bin + 1) * this.span + n - 1) / n;
+	}
+
+	/**
+	 * Counts a record at the specified position.
+	 * 
+	 * @param position the record position
+	 * @return {@code true} if the record falls into a bin and {@code false}
+	 *         otherwise
+	 */
+	public boolean add(long position) {
+		return add(position, 0d);
+	}
+
+	/**
+	 * Counts a record at the specified position and adds {@code value} to the
+	 * sum of its bin.
+	 * 
+	 * @param position the record position
+	 * @param value the value to accumulate
+	 * @return {@code true} if the record falls into a bin and {@code false}
+	 *         otherwise
+	 */
+	public boolean add(long position, double value) {
+		int bin = binOf(position);
+		if (bin < 0) {
+			return false;
+		}
+		this.counts[bin]++;
+		this.sums[bin] += value;
+
+		return true;
+	}
+
+	/**
+	 * Counts a group of records summarized at the specified position and adds
+	 * the sum of their values to the sum of its bin.
+	 * 
+	 * @param position the position of the records
+	 * @param count the number of records
+	 * @param sum the sum of the values of the records
+	 * @return {@code true} if the records fall into a bin and {@code false}
+	 *         otherwise
+	 */
+	public boolean add(long position, int count, double sum) {
+		int bin = binOf(position);
+		if (bin < 0) {
+			return false;
+		}
+		this.counts[bin] += count;
+		this.sums[bin] += sum;
+
+		return true;
+	}
+
+	/**
+	 * Counts the records of the binned region of a genomic position file.
+	 * The region is read with a single seek and each record is counted in the
+	 * bin of its position. When a bin turns out to have more than
+	 * {@link #DENSE_BIN_RECORDS} records, parsing the position of every
+	 * record costs more than a seek, so the rest of the region is read with
+	 * one seek per bin, whose records are counted without being parsed.
+	 * 
+	 * @param seeker the seeker of the records of the file
+	 * @throws IOException if an error occurs while reading the records
+	 */
+	public void count(RecordSeeker seeker) throws IOException {
+		long resume = this.addSorted(seeker.seek(this.start, this.end),
+			DENSE_BIN_RECORDS);
+		if (resume < 0) {
+			return;
+		}
+		for (int bin = this.binOf(resume); bin < this.counts.length; bin++) {
+			long binStart = Math.max(resume, this.getBinStart(bin));
+			long binEnd = Math.min(this.end, this.getBinEnd(bin) - 1);
+			Iterator<? extends CharSequence> records = 
+				seeker.seek(binStart, binEnd);
+			int count = 0;
+			while (records.hasNext()) {
+				records.next();
+				count++;
+			}
+			this.counts[bin] += count;
+		}
+	}
+
+	/**
+	 * Counts the genomic position file records returned by a seek of the
+	 * binned region. As the records of a seek are sorted by position, the bin
+	 * of a record is only computed when its position is out of the bin of the
+	 * previous record, so the records of the same bin are just counted.
+	 * Records that are not sorted are also counted in their bins.
+	 * 
+	 * Counting stops at the first record whose bin already has
+	 * {@code maxBinRecords} records and whose position is greater than the
+	 * position of the previous record, so that all the records before that
+	 * position, and none after it, have been counted.
+	 * 
+	 * @param records the genomic position file records, sorted by position
+	 * @param maxBinRecords the number of records of a bin after which
+	 *        counting stops
+	 * @return the position of the first record not counted or {@code -1} if
+	 *         all the records have been counted
+	 */
+	public long addSorted(Iterator<? extends CharSequence> records,
+		int maxBinRecords) {
+		int bin = -1;
+		long binStart = Long.MAX_VALUE;
+		long binEnd = Long.MIN_VALUE;
+		long previous = -1;
+		int count = 0;
+		try {
+			while (records.hasNext()) {
+				long position = parsePosition(records.next());
+				if (position < binStart || position >= binEnd) {
+					if (bin >= 0) {
+						this.counts[bin] += count;
+					}
+					count = 0;
+					bin = position < 0 ? -1 : this.binOf(position);
+					if (bin < 0) {
+						binStart = Long.MAX_VALUE;
+						binEnd = Long.MIN_VALUE;
+						continue;
+					}
+					binStart = this.getBinStart(bin);
+					binEnd = this.getBinEnd(bin);
+				} else if (count >= maxBinRecords && position > previous) {
+					return position;
+				}
+				previous = position;
+				count++;
+			}
+		} finally {
+			if (bin >= 0) {
+				this.counts[bin] += count;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the number of records counted at each bin. The returned array is
+	 * the internal accumulator and must not be modified.
+	 * 
+	 * @return the number of records counted at each bin
+	 */
+	public int[] getCounts() {
+		return this.counts;
+	}
+
+	/**
+	 * Returns the sum of the values accumulated at each bin. The returned
+	 * array is the internal accumulator and must not be modified.
+	 * 
+	 * @return the sum of the values accumulated at each bin
+	 */
+	public double[] getSums() {
+		return this.sums;
+	}
+
+	/**
+	 * Returns the average value of each bin, being {@code 0} for empty bins.
+	 * 
+	 * @return the average value of each bin
+	 */
+	public double[] getAverages() {
+		double[] averages = new double[this.counts.length];
+		for (int i = 0; i < averages.length; i++) {
+			if (this.counts[i] > 0) {
+				averages[i] = this.sums[i] / this.counts[i];
+			}
+		}
+
+		return averages;
+	}
+
+	/**
+	 * Parses the position of a genomic position file record, that is, its
+	 * second whitespace-separated column, without creating intermediate
+	 * objects.
+	 * 
+	 * @param line a genomic position file line
+	 * @return the record position or {@code -1} if it can not be parsed
+	 */
+	public static long parsePosition(CharSequence line) {
+		int length = line.length();
+		int i = 0;
+		while (i < length && Character.isWhitespace(line.charAt(i))) {
+			i++;
+		}
+		while (i < length && !Character.isWhitespace(line.charAt(i))) {
+			i++;
+		}
+		while (i < length && Character.isWhitespace(line.charAt(i))) {
+			i++;
+		}
+		if (i == length) {
+			return -1;
+		}
+
+		long position = 0;
+		int digits = 0;
+		for (; i < length; i++) {
+			char c = line.charAt(i);
+			if (c >= '0' && c <= '9') {
+				position = position * 10 + (c - '0');
+				digits++;
+			} else if (Character.isWhitespace(c)) {
+				break;
+			} else {
+				return -1;
+			}
+		}
+
+		return digits > 0 ? position : -1;
+	}
+}
@@ -0,0 +1,443 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A process-wide pool of the indexes opened by track painters, so that all the
+ * painters of the same file share a single index, even when they belong to
+ * different {@code GenomeBrowser} instances.
+ * 
+ * Indexes are identified by the canonical path of their file and by their
+ * kind, which stands for the class and parameters used to open them. Each
+ * painter acquires a {@link Handle} and releases it when it is disposed. The
+ * index is closed when its last handle is released.
+ * 
+ * An index can only be queried by one thread at a time. Painters that are
+ * queried concurrently with the painters of the same file, such as those of
+ * the batch renderer workers or those used to prefetch regions, acquire their
+ * handles in a separate group of readers through
+ * {@link #withReaders(String, IndexAction)}, so that they get their own
+ * instance of the index instead of waiting for the shared one.
+ * 
+ * The number of open indexes is limited by {@link #setMaxOpenIndexes(int)}.
+ * When it is exceeded, the least recently used indexes that are not being
+ * queried are closed, and they are reopened the next time they are queried.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class IndexHandlePool {
+	/**
+	 * The default maximum number of open indexes.
+	 */
+	public static final int DEFAULT_MAX_OPEN_INDEXES = 128;
+
+	private static final Map<Key, Entry<?>> ENTRIES = new HashMap<Key, Entry<?>>();
+	private static final LinkedHashSet<Entry<?>> OPEN = 
+		new LinkedHashSet<Entry<?>>();
+	private static int maxOpenIndexes = DEFAULT_MAX_OPEN_INDEXES;
+	private static final ThreadLocal<String> READERS = new ThreadLocal<String>();
+
+	/**
+	 * Opens the index of a file.
+	 * 
+	 * @param <T> the type of the index
+	 */
+	public interface IndexOpener<T> {
+		/**
+		 * Opens the index of the specified file.
+		 * 
+		 * @param file the indexed file
+		 * @return the index of the file
+		 * @throws IOException if an error occurs while opening the index
+		 */
+		T open(File file) throws IOException;
+	}
+
+	/**
+	 * A query run on a locked index.
+	 * 
+	 * @param <T> the type of the index
+	 * @param <R> the type of the query result
+	 */
+	public interface IndexQuery<T, R> {
+		/**
+		 * Runs the query on the specified index.
+		 * 
+		 * @param index the locked index
+		 * @return the query result
+		 * @throws IOException if an error occurs while reading the index
+		 */
+		R query(T index) throws IOException;
+	}
+
+	/**
+	 * An action that acquires index handles.
+	 * 
+	 * @param <R> the type of the action result
+	 */
+	public interface IndexAction<R> {
+		/**
+		 * Runs the action.
+		 * 
+		 * @return the action result
+		 * @throws IOException if an error occurs while opening an index
+		 */
+		R run() throws IOException;
+	}
+
+	/**
+	 * Runs the specified action so that the handles it acquires refer to the
+	 * indexes of the specified group of readers. Indexes of different groups
+	 * are different instances, each one with its own lock, while the handles
+	 * acquired in the same group share them. Handles acquired outside of this
+	 * method belong to the default group.
+	 * 
+	 * @param <R> the type of the action result
+	 * @param group the name of the group of readers
+	 * @param action the action that acquires the handles
+	 * @return the action result
+	 * @throws IOException if an error occurs while opening an index
+	 */
+	public static <R> R withReaders(String group, IndexAction<R> action)
+		throws IOException {
+		String previous = READERS.get();
+		READERS.set(Objects.requireNonNull(group));
+		try {
+			return action.run();
+		} finally {
+			if (previous == null) {
+				READERS.remove();
+			} else {
+				READERS.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * Acquires a handle to the index of the specified kind of the specified
+	 * file, opening the index if it is not in the pool. The index belongs to
+	 * the group of readers of the calling thread, as set by
+	 * {@link #withReaders(String, IndexAction)}.
+	 * 
+	 * @param <T> the type of the index
+	 * @param file the indexed file
+	 * @param kind the kind of index, which must identify the class and the
+	 *        parameters used by {@code opener}
+	 * @param opener the opener used if the index is not in the pool
+	 * @return a handle to the index
+	 * @throws IOException if an error occurs while opening the index
+	 */
+	public static <T> Handle<T> acquire(File file, String kind,
+		IndexOpener<T> opener) throws IOException {
+		File canonicalFile = file.getCanonicalFile();
+		String group = READERS.get();
+		Key key = new Key(canonicalFile.getPath(), kind, 
+			group == null ? "" : group);
+		Entry<T> entry;
+		synchronized (IndexHandlePool.class) {
+			@SuppressWarnings("unchecked")
+			Entry<T> pooled = (Entry<T>) ENTRIES.get(key);
+			entry = pooled;
+			if (entry == null) {
+				entry = new Entry<T>(key, canonicalFile, opener);
+				ENTRIES.put(key, entry);
+			}
+			entry.references++;
+		}
+
+		Handle<T> handle = new Handle<T>(entry);
+		entry.lock.lock();
+		try {
+			entry.open();
+			used(entry);
+		} catch (IOException | RuntimeException e) {
+			entry.lock.unlock();
+			handle.release();
+			throw e;
+		}
+		entry.lock.unlock();
+
+		return handle;
+	}
+
+	/**
+	 * Sets the maximum number of indexes that can be open at the same time.
+	 * The limit may be exceeded while all the open indexes are being queried.
+	 * 
+	 * @param max the maximum number of open indexes
+	 */
+	public static void setMaxOpenIndexes(int max) {
+		if (max < 1) {
+			throw new IllegalArgumentException("At least one index is required");
+		}
+		synchronized (IndexHandlePool.class) {
+			maxOpenIndexes = max;
+			evict(null);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of indexes that can be open at the same time.
+	 * 
+	 * @return the maximum number of open indexes
+	 */
+	public static synchronized int getMaxOpenIndexes() {
+		return maxOpenIndexes;
+	}
+
+	/**
+	 * Returns the number of indexes that are currently open.
+	 * 
+	 * @return the number of open indexes
+	 */
+	public static synchronized int getOpenIndexCount() {
+		return OPEN.size();
+	}
+
+	/**
+	 * Returns the number of indexes that have, at least, one handle, including
+	 * those that have been closed to respect the maximum.
+	 * 
+	 * @return the number of indexes in the pool
+	 */
+	public static synchronized int getIndexCount() {
+		return ENTRIES.size();
+	}
+
+	private static synchronized void used(Entry<?> entry) {
+		OPEN.remove(entry);
+		OPEN.add(entry);
+		evict(entry);
+	}
+
+	private static void evict(Entry<?> inUse) {
+		Iterator<Entry<?>> eldest = OPEN.iterator();
+		while (OPEN.size() > maxOpenIndexes && eldest.hasNext()) {
+			Entry<?> entry = eldest.next();
+			if (entry != inUse && !entry.lock.isHeldByCurrentThread()
+				&& entry.lock.tryLock()) {
+				try {
+					entry.close();
+					eldest.remove();
+				} finally {
+					entry.lock.unlock();
+				}
+			}
+		}
+	}
+
+	private static void release(Entry<?> entry) {
+		synchronized (IndexHandlePool.class) {
+			if (--entry.references > 0) {
+				return;
+			}
+			ENTRIES.remove(entry.key);
+			OPEN.remove(entry);
+		}
+		entry.lock.lock();
+		try {
+			entry.released = true;
+			entry.close();
+		} finally {
+			entry.lock.unlock();
+		}
+	}
+
+	/**
+	 * A reference to a pooled index. The index must be queried between
+	 * {@link #lock()} and {@link #unlock()}, including the iteration over the
+	 * query results, since indexes read their files lazily and can not be
+	 * used by several threads at the same time.
+	 * 
+	 * @author hlfernandez
+	 * 
+	 * @param <T> the type of the index
+	 */
+	public static class Handle<T> {
+		private final Entry<T> entry;
+		private volatile boolean released;
+
+		private Handle(Entry<T> entry) {
+			this.entry = entry;
+		}
+
+		/**
+		 * Locks the index for the calling thread, reopening it if it has been
+		 * closed to respect the maximum number of open indexes.
+		 * 
+		 * @return the index or {@code null} if this handle has been released
+		 *         or the index can not be reopened, in which case the index is
+		 *         not locked
+		 */
+		public T lock() {
+			if (this.released) {
+				return null;
+			}
+			this.entry.lock.lock();
+			try {
+				if (this.entry.released) {
+					this.entry.lock.unlock();
+					return null;
+				}
+				this.entry.open();
+			} catch (IOException | RuntimeException e) {
+				e.printStackTrace();
+				this.entry.lock.unlock();
+				return null;
+			}
+			used(this.entry);
+
+			return this.entry.index;
+		}
+
+		/**
+		 * Runs the specified query on the index while it is locked. It is
+		 * intended for the first query of a painter, when it is initialized:
+		 * if the index can not be locked or the query fails, this handle is
+		 * released and an {@code IOException} is thrown, so that the painter
+		 * can be discarded.
+		 * 
+		 * @param <R> the type of the query result
+		 * @param query the query to run
+		 * @return the query result
+		 * @throws IOException if the index can not be locked or the query
+		 *         fails
+		 */
+		public <R> R queryOrRelease(IndexQuery<T, R> query) throws IOException {
+			T index = this.lock();
+			if (index == null) {
+				this.release();
+				throw new IOException("Can't open the index of " 
+					+ this.entry.file.getName());
+			}
+			R result;
+			try {
+				result = query.query(index);
+			} catch (IOException | RuntimeException e) {
+				this.unlock();
+				this.release();
+				if (e instanceof IOException) {
+					throw (IOException) e;
+				}
+				throw new IOException("Can't read the index of " 
+					+ this.entry.file.getName(), e);
+			}
+			this.unlock();
+
+			return result;
+		}
+
+		/**
+		 * Unlocks the index locked by {@link #lock()}.
+		 */
+		public void unlock() {
+			this.entry.lock.unlock();
+		}
+
+		/**
+		 * Releases this handle, closing the index if it is the last handle.
+		 * Releasing a handle more than once has no effect.
+		 */
+		public void release() {
+			synchronized (this) {
+				if (this.released) {
+					return;
+				}
+				this.released = true;
+			}
+			IndexHandlePool.release(this.entry);
+		}
+	}
+
+	private static class Entry<T> {
+		final Key key;
+		final File file;
+		final IndexOpener<T> opener;
+		final ReentrantLock lock = new ReentrantLock();
+		int references;
+		boolean released;
+		T index;
+
+		Entry(Key key, File file, IndexOpener<T> opener) {
+			this.key = key;
+			this.file = file;
+			this.opener = opener;
+		}
+
+		void open() throws IOException {
+			if (this.index == null) {
+				this.index = this.opener.open(this.file);
+			}
+		}
+
+		void close() {
+			T index = this.index;
+			this.index = null;
+			if (index instanceof AutoCloseable) {
+				try {
+					((AutoCloseable) index).close();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private static class Key {
+		final String path;
+		final String kind;
+		final String group;
+
+		Key(String path, String kind, String group) {
+			this.path = path;
+			this.kind = kind;
+			this.group = group;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, kind, group);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+
+			return path.equals(other.path) && kind.equals(other.kind)
+				&& group.equals(other.group);
+		}
+	}
+}
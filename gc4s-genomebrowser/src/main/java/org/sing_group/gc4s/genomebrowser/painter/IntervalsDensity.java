@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import org.sing_group.gc4s.genomebrowser.GenomeBrowser;
+import org.sing_group.gc4s.genomebrowser.GenomeBrowserUtil;
+import org.sing_group.gc4s.genomebrowser.TracksPanel;
+import org.sing_group.gc4s.genomebrowser.grid.GridInfo;
+import org.sing_group.gc4s.genomebrowser.grid.TrackPositionInfo;
+
+/**
+ * The per-pixel coverage of the intervals that overlap a genomic region. Each
+ * interval is accumulated in constant time into a difference array with one
+ * entry per pixel of the track, so the coverage of a region is computed in a
+ * single streaming pass and painted at a cost bounded by the track width
+ * instead of by the number of intervals.
+ * 
+ * Interval tracks use it as their level-of-detail representation: once a
+ * region has more than {@link #MAX_RECORDS_PER_PIXEL} intervals per pixel,
+ * drawing them individually only produces overplotting, so the coverage is
+ * painted instead.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class IntervalsDensity {
+	/**
+	 * The number of intervals per pixel above which a region is painted as a
+	 * coverage profile instead of as individual intervals.
+	 */
+	public static final int MAX_RECORDS_PER_PIXEL = 4;
+
+	/**
+	 * The height of the coverage profile.
+	 */
+	public static final int HEIGHT = 46;
+
+	private final long initialPosition;
+	private final long finalPosition;
+	private final double width;
+	private final double scale;
+	private final int[] changes;
+	private long records = 0;
+
+	/**
+	 * Creates a new {@code IntervalsDensity} of the specified region.
+	 * 
+	 * @param initialPosition the first position of the region
+	 * @param finalPosition the last position of the region
+	 * @param width the width of the track area, in pixels
+	 */
+	public IntervalsDensity(long initialPosition, long finalPosition,
+		double width) {
+		this.initialPosition = initialPosition;
+		this.finalPosition = finalPosition;
+		this.width = width;
+		this.scale = width / Math.max(1, finalPosition - initialPosition);
+		this.changes = new int[Math.max(1, (int) Math.ceil(width)) + 1];
+	}
+
+	/**
+	 * Returns the width of the track area, in pixels.
+	 * 
+	 * @return the width of the track area, in pixels
+	 */
+	public double getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the number of pixels of the coverage profile.
+	 * 
+	 * @return the number of pixels of the coverage profile
+	 */
+	public int getPixels() {
+		return this.changes.length - 1;
+	}
+
+	/**
+	 * Adds an interval to the coverage. The interval is clipped to the region.
+	 * 
+	 * @param start the start of the interval
+	 * @param stop the stop of the interval
+	 */
+	public void add(long start, long stop) {
+		this.records++;
+		start = Math.max(start, this.initialPosition);
+		stop = Math.min(stop, this.finalPosition);
+		if (stop < start) {
+			return;
+		}
+		int pixels = getPixels();
+		int from = (int) ((start - this.initialPosition) * this.scale);
+		int to = (int) Math.ceil((stop + 1 - this.initialPosition) * this.scale);
+		from = Math.min(Math.max(from, 0), pixels - 1);
+		to = Math.min(Math.max(to, from + 1), pixels);
+		this.changes[from]++;
+		this.changes[to]--;
+	}
+
+	/**
+	 * Returns the number of intervals added.
+	 * 
+	 * @return the number of intervals added
+	 */
+	public long getRecords() {
+		return records;
+	}
+
+	/**
+	 * Returns {@code true} if the number of intervals added exceeds
+	 * {@link #MAX_RECORDS_PER_PIXEL} intervals per pixel and {@code false}
+	 * otherwise.
+	 * 
+	 * @return {@code true} if the intervals are too dense to be painted
+	 *         individually and {@code false} otherwise
+	 */
+	public boolean isTooDense() {
+		return this.records > (long) MAX_RECORDS_PER_PIXEL * getPixels();
+	}
+
+	/**
+	 * Returns the number of intervals that cover each pixel.
+	 * 
+	 * @return the number of intervals that cover each pixel
+	 */
+	public int[] getCoverage() {
+		int[] coverage = new int[getPixels()];
+		int current = 0;
+		for (int i = 0; i < coverage.length; i++) {
+			current += this.changes[i];
+			coverage[i] = current;
+		}
+
+		return coverage;
+	}
+
+	/**
+	 * Paints the coverage profile of a track and registers the coverage of
+	 * each tooltip cell.
+	 * 
+	 * @param g2 a {@code Graphics2D} object
+	 * @param genomeBrowser the {@code GenomeBrowser} in which the track is
+	 *        painted
+	 * @param offset the absolute offset of the track
+	 * @param color the coverage color
+	 */
+	public void paint(Graphics2D g2, GenomeBrowser genomeBrowser, int offset,
+		Color color) {
+		TracksPanel tracksPanel = genomeBrowser.getTracksPanel();
+		int[] coverage = getCoverage();
+		int maxValue = GenomeBrowserUtil.getMaxIntegerValue(coverage);
+		int baseline = 65 + HEIGHT - 10;
+		int initialX = tracksPanel.getX(125);
+
+		g2.setColor(color);
+		g2.drawLine(initialX, tracksPanel.getY(baseline, offset),
+			tracksPanel.getX(875), tracksPanel.getY(baseline, offset));
+		if (maxValue > 0) {
+			double unitHeight = (double) HEIGHT / (double) maxValue;
+			for (int x = 0; x < coverage.length; x++) {
+				if (coverage[x] > 0) {
+					int height = Math.max(1, (int) (coverage[x] * unitHeight));
+					g2.fillRect(initialX + x, baseline - height, 1, height);
+				}
+			}
+
+			int squareWidth = tracksPanel.getSquareWidth();
+			for (int x = 0; x < coverage.length; x += squareWidth) {
+				int cellMax = 0;
+				for (int i = x; i < Math.min(x + squareWidth, coverage.length); i++) {
+					cellMax = Math.max(cellMax, coverage[i]);
+				}
+				if (cellMax > 0) {
+					GridInfo info = new GridInfo(
+						new TrackPositionInfo(cellMax, color), GridInfo.TRACKINFO);
+					tracksPanel.addCuadriculaAtRectangle(info, initialX + x,
+						baseline - HEIGHT + offset - 65, squareWidth, HEIGHT);
+				}
+			}
+		}
+
+		g2.setColor(GenomeBrowserUtil.LIGHT_BLACK);
+		g2.drawString("Max = " + tracksPanel.getFormatter().format(maxValue),
+			tracksPanel.getX(875) + 2, baseline - HEIGHT + 15);
+		g2.drawString(
+			tracksPanel.getFormatter().format(this.records) + " features",
+			tracksPanel.getX(875) + 10, baseline - 5);
+	}
+}
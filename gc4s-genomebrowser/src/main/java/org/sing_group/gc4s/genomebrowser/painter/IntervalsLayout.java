@@ -0,0 +1,367 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+
+import es.cnio.bioinfo.pileline.core.Interval;
+import es.cnio.bioinfo.pileline.core.IntervalsIndex;
+
+/**
+ * The layout of the intervals that overlap a genomic region, that is, the
+ * intervals packed into non-overlapping rows. The layout is computed from a
+ * single query to the intervals index and can be reused to compute the track
+ * height, to paint the intervals and to register their tooltips as long as
+ * the region does not change.
+ * 
+ * While the intervals are packed, their per-pixel coverage is accumulated in
+ * an {@link IntervalsDensity}. If the region turns out to have too many
+ * intervals per pixel, the packed intervals are discarded and the rest of the
+ * query only updates the coverage, so the layout becomes a density layout
+ * whose memory and painting cost are bounded by the track width.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class IntervalsLayout {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final String sequence;
+	private final long initialPosition;
+	private final long finalPosition;
+	private final IntervalsDensity density;
+
+	private long[] starts = new long[INITIAL_CAPACITY];
+	private long[] stops = new long[INITIAL_CAPACITY];
+	private int[] rows = new int[INITIAL_CAPACITY];
+	private String[] data = new String[INITIAL_CAPACITY];
+	private int size = 0;
+	private int rowCount = 1;
+
+	private IntervalsLayout(String sequence, long initialPosition,
+		long finalPosition, double width) {
+		this.sequence = sequence;
+		this.initialPosition = initialPosition;
+		this.finalPosition = finalPosition;
+		this.density = new IntervalsDensity(initialPosition, finalPosition, width);
+	}
+
+	/**
+	 * Returns a layout of the specified region without intervals.
+	 * 
+	 * @param sequence the sequence of the region
+	 * @param initialPosition the first position of the region
+	 * @param finalPosition the last position of the region
+	 * @param width the width of the track area, in pixels
+	 * @return an empty layout of the region
+	 */
+	public static IntervalsLayout empty(String sequence, long initialPosition,
+		long finalPosition, double width) {
+		return new IntervalsLayout(sequence, initialPosition, finalPosition,
+			width);
+	}
+
+	/**
+	 * Queries the specified index for the intervals that overlap the region
+	 * and packs them into rows, switching to a density layout if there are
+	 * too many intervals per pixel.
+	 * 
+	 * @param index the intervals index
+	 * @param sequence the sequence of the region
+	 * @param initialPosition the first position of the region
+	 * @param finalPosition the last position of the region
+	 * @param width the width of the track area, in pixels
+	 * @return the layout of the intervals that overlap the region
+	 */
+	public static IntervalsLayout create(IntervalsIndex index, String sequence,
+		long initialPosition, long finalPosition, double width) {
+		return create(index, new Packer(sequence, initialPosition,
+			finalPosition, width, null));
+	}
+
+	/**
+	 * Queries the specified index for the reads that overlap the region and
+	 * places them with the specified pileup layout, discarding the reads that
+	 * it can not place. As in
+	 * {@link #create(IntervalsIndex, String, long, long, double)}, the layout
+	 * switches to a density layout if there are too many reads per pixel.
+	 * 
+	 * @param index the reads index
+	 * @param sequence the sequence of the region
+	 * @param initialPosition the first position of the region
+	 * @param finalPosition the last position of the region
+	 * @param width the width of the track area, in pixels
+	 * @param pileup the layout used to place the reads into rows
+	 * @return the layout of the reads that overlap the region
+	 */
+	public static IntervalsLayout create(IntervalsIndex index, String sequence,
+		long initialPosition, long finalPosition, double width,
+		ReadPileupLayout pileup) {
+		return create(index, new Packer(sequence, initialPosition,
+			finalPosition, width, pileup));
+	}
+
+	private static IntervalsLayout create(IntervalsIndex index,
+		Packer packer) {
+		IntervalsLayout layout = packer.getLayout();
+		Iterator<Interval> result = PainterMetrics.getOverlappingIntervals(
+			index, layout.sequence,
+			(int) layout.initialPosition, (int) layout.finalPosition);
+
+		while (result.hasNext()) {
+			Interval interval = result.next();
+			packer.add(interval.getStart(), interval.getStop(),
+				interval.getData());
+		}
+
+		return layout;
+	}
+
+	/*
+	 * Adds the interval to the coverage and returns whether the layout is a
+	 * density layout, discarding the packed intervals when the threshold is
+	 * first exceeded.
+	 */
+	private boolean addCoverage(long start, long stop) {
+		boolean wasDensity = isDensity();
+		this.density.add(start, stop);
+		if (!wasDensity && isDensity()) {
+			this.starts = new long[0];
+			this.stops = new long[0];
+			this.rows = new int[0];
+			this.data = new String[0];
+			this.size = 0;
+			this.rowCount = 1;
+		}
+
+		return isDensity();
+	}
+
+	private void add(long start, long stop, int row, String data) {
+		if (this.size == this.starts.length) {
+			int capacity = this.size * 2;
+			this.starts = Arrays.copyOf(this.starts, capacity);
+			this.stops = Arrays.copyOf(this.stops, capacity);
+			this.rows = Arrays.copyOf(this.rows, capacity);
+			this.data = Arrays.copyOf(this.data, capacity);
+		}
+		this.starts[this.size] = start;
+		this.stops[this.size] = stop;
+		this.rows[this.size] = row;
+		this.data[this.size] = data;
+		this.size++;
+	}
+
+	/**
+	 * Returns {@code true} if this layout corresponds to the specified region
+	 * and {@code false} otherwise.
+	 * 
+	 * @param sequence the sequence of the region
+	 * @param initialPosition the first position of the region
+	 * @param finalPosition the last position of the region
+	 * @param width the width of the track area, in pixels
+	 * @return {@code true} if this layout corresponds to the specified region
+	 *         and {@code false} otherwise
+	 */
+	public boolean isLayoutOf(String sequence, long initialPosition,
+		long finalPosition, double width) {
+		return Objects.equals(this.sequence, sequence)
+			&& this.initialPosition == initialPosition
+			&& this.finalPosition == finalPosition
+			&& this.density.getWidth() == width;
+	}
+
+	/**
+	 * Returns {@code true} if the region has too many intervals per pixel to
+	 * paint them individually, in which case this layout contains no
+	 * intervals and only their coverage must be painted.
+	 * 
+	 * @return {@code true} if this is a density layout and {@code false}
+	 *         otherwise
+	 */
+	public boolean isDensity() {
+		return this.density.isTooDense();
+	}
+
+	/**
+	 * Returns the per-pixel coverage of the intervals that overlap the region.
+	 * 
+	 * @return the per-pixel coverage of the intervals
+	 */
+	public IntervalsDensity getDensity() {
+		return density;
+	}
+
+	/**
+	 * Returns the number of intervals.
+	 * 
+	 * @return the number of intervals
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of rows used to pack the intervals.
+	 * 
+	 * @return the number of rows
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the start of the specified interval.
+	 * 
+	 * @param i the interval index
+	 * @return the start of the interval
+	 */
+	public long getStart(int i) {
+		return starts[i];
+	}
+
+	/**
+	 * Returns the stop of the specified interval.
+	 * 
+	 * @param i the interval index
+	 * @return the stop of the interval
+	 */
+	public long getStop(int i) {
+		return stops[i];
+	}
+
+	/**
+	 * Returns the row in which the specified interval is placed.
+	 * 
+	 * @param i the interval index
+	 * @return the row of the interval
+	 */
+	public int getRow(int i) {
+		return rows[i];
+	}
+
+	/**
+	 * Returns the data of the specified interval.
+	 * 
+	 * @param i the interval index
+	 * @return the data of the interval
+	 */
+	public String getData(int i) {
+		return data[i];
+	}
+
+	/**
+	 * Packs the intervals of a region into the rows of a new layout. The
+	 * intervals must be added in increasing order of their start position, as
+	 * returned by the intervals index. Without a {@code ReadPileupLayout},
+	 * each interval is placed in the row after the one of the previous
+	 * interval if it overlaps it, or back in the lowest row that is free at
+	 * its start otherwise.
+	 */
+	static class Packer {
+		private final IntervalsLayout layout;
+		private final ReadPileupLayout pileup;
+
+		private long[] rowToPosition = new long[INITIAL_CAPACITY];
+		private int currentRow = 0;
+
+		/**
+		 * Creates a new {@code Packer} of the specified region.
+		 * 
+		 * @param sequence the sequence of the region
+		 * @param initialPosition the first position of the region
+		 * @param finalPosition the last position of the region
+		 * @param width the width of the track area, in pixels
+		 * @param pileup the layout used to place the intervals into rows or
+		 *        {@code null} to pack them one after the other
+		 */
+		Packer(String sequence, long initialPosition, long finalPosition,
+			double width, ReadPileupLayout pileup) {
+			this.layout = new IntervalsLayout(sequence, initialPosition,
+				finalPosition, width);
+			this.pileup = pileup;
+		}
+
+		/**
+		 * Adds an interval to the layout.
+		 * 
+		 * @param start the start of the interval
+		 * @param stop the stop of the interval
+		 * @param data the data of the interval
+		 */
+		void add(long start, long stop, String data) {
+			if (this.layout.addCoverage(start, stop)) {
+				return;
+			}
+			long from = Math.max(start, this.layout.initialPosition);
+			long to = Math.min(stop, this.layout.finalPosition);
+
+			int row;
+			if (this.pileup != null) {
+				row = this.pileup.place(from, to);
+				if (row < 0) {
+					return;
+				}
+			} else {
+				row = pack(start, from, to);
+			}
+			this.layout.rowCount = Math.max(this.layout.rowCount, row + 1);
+			this.layout.add(start, stop, row, data);
+		}
+
+		private int pack(long start, long from, long to) {
+			if (this.currentRow < this.layout.rowCount) {
+				long lastRight = this.rowToPosition[this.currentRow];
+				if (lastRight >= from - 1) {
+					this.currentRow++;
+				}
+				if (lastRight < start) {
+					while (this.currentRow > 0
+						&& this.currentRow < this.layout.rowCount
+						&& this.rowToPosition[this.currentRow] < from) {
+						this.currentRow--;
+					}
+				}
+			}
+
+			if (this.currentRow == this.rowToPosition.length) {
+				this.rowToPosition = 
+					Arrays.copyOf(this.rowToPosition, this.currentRow * 2);
+			}
+			this.rowToPosition[this.currentRow] = to;
+
+			return this.currentRow;
+		}
+
+		/**
+		 * Returns the layout of the intervals added.
+		 * 
+		 * @return the layout of the intervals added
+		 */
+		IntervalsLayout getLayout() {
+			return this.layout;
+		}
+	}
+}
@@ -30,9 +30,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 
 import org.sing_group.gc4s.genomebrowser.GenomeBrowser;
@@ -42,7 +40,6 @@ import org.sing_group.gc4s.genomebrowser.grid.GenericInfo;
 import org.sing_group.gc4s.genomebrowser.grid.GridInfo;
 import org.sing_group.gc4s.genomebrowser.grid.IntervalInfo;
 
-import es.cnio.bioinfo.pileline.core.Interval;
 import es.cnio.bioinfo.pileline.core.IntervalsIndex;
 import es.cnio.bioinfo.pileline.core.IntervalsIndexFactory;
 
@@ -54,10 +51,12 @@ import es.cnio.bioinfo.pileline.core.IntervalsIndexFactory;
  */
 public class IntervalsPainter implements Painter {
 	private File file;
-	private IntervalsIndex interval;
+	private IndexHandlePool.Handle<IntervalsIndex> interval;
 	
 	private int currentTrackHeight;
+	private IntervalsLayout heightLayout;
 	private int offset;
+	private IntervalsLayout layout;
 	
 	private TrackOption backGroundColorOption;
 	private TrackOption trackColorOption;
@@ -78,14 +77,17 @@ public class IntervalsPainter implements Painter {
 		throws RuntimeException, IOException {
 		String fileName = this.file.getName();
 		if (fileName.endsWith("bed") || fileName.endsWith("bed.bgz")) {
-			this.interval = IntervalsIndexFactory.createIntervalsIndex(fileName,
-				this.file, 1, 2, 3, 1, false);
+			this.interval = IndexHandlePool.acquire(this.file, "bed",
+				file -> IntervalsIndexFactory.createIntervalsIndex(fileName,
+					file, 1, 2, 3, 1, false));
 		} else {
-			this.interval = IntervalsIndexFactory.createIntervalsIndex(
-				fileName, this.file, 1, 4, 5, 0, true);
+			this.interval = IndexHandlePool.acquire(this.file, "gff",
+				file -> IntervalsIndexFactory.createIntervalsIndex(fileName,
+					file, 1, 4, 5, 0, true));
 		}
 
-		Set<String> fileSequences = this.interval.getSequences();
+		Set<String> fileSequences = 
+			this.interval.queryOrRelease(IntervalsIndex::getSequences);
 		Set<String> genomeSequences = genomeBrowser.getGenomeIndex().getSequences();
 		HashSet<String> intersect = new HashSet<String>();
 		for (String s : fileSequences) {
@@ -122,25 +124,19 @@ public class IntervalsPainter implements Painter {
 		Color currentColor = getTrackColor();
 		g2.setColor(currentColor);
 
-		HashMap<Integer,Long> floorToPosition = new HashMap<Integer, Long>();
-		floorToPosition.put(0, new Long(0));
-		int currentFloor = 0;
-		Long lastRight;
-		boolean outOfRange;
-		boolean outOfRangeStart;
-		
 		int maxYposition = trackPosition;
 
 		try {
-			Iterator<Interval> result = this.interval.getOverlappingIntervals(
-				genomeBrowser.getCurrentSequence(), (int) genomeBrowser.getInitialPosition(),
-				(int) genomeBrowser.getFinalPosition());
-
-			while (result.hasNext()) {
-				Interval interval = result.next();
-				outOfRange = false;
-				outOfRangeStart = false;
-				long start = interval.getStart();
+			IntervalsLayout layout = this.getLayout(genomeBrowser);
+			if (layout.isDensity()) {
+				layout.getDensity().paint(g2, genomeBrowser, offset, currentColor);
+				maxYposition = 65 + IntervalsDensity.HEIGHT;
+			}
+
+			for (int i = 0; i < layout.size(); i++) {
+				boolean outOfRange = false;
+				boolean outOfRangeStart = false;
+				long start = layout.getStart(i);
 				if (start < genomeBrowser.getInitialPosition()) {
 					outOfRangeStart = true;
 					start = genomeBrowser.getInitialPosition();
@@ -149,7 +145,7 @@ public class IntervalsPainter implements Painter {
 				double xCoordinateStart = computeTrackLinePosition(start, width,
 					genomeBrowser.getInitialPosition());
 
-				long stop = interval.getStop();
+				long stop = layout.getStop(i);
 				if (stop > genomeBrowser.getFinalPosition()) {
 					outOfRange = true;
 					stop = genomeBrowser.getFinalPosition();
@@ -158,25 +154,7 @@ public class IntervalsPainter implements Painter {
 				double xCoordinateStop = computeTrackLinePosition(stop + 1,
 					width, genomeBrowser.getInitialPosition());
 
-				lastRight = floorToPosition.get(currentFloor);
-				if (lastRight != null) {
-					if (lastRight >= start - 1) {
-						trackPosition += 23;
-						currentFloor++;
-					}
-					if (lastRight < interval.getStart()) {
-						while (currentFloor > 0
-							&& floorToPosition.get(currentFloor) != null
-							&& floorToPosition.get(currentFloor) < start) {
-
-							currentFloor--;
-							trackPosition -= 23;
-						}
-					}
-				}
-				
-				floorToPosition.remove(currentFloor);
-				floorToPosition.put(new Integer(currentFloor), stop);
+				trackPosition = 65 + layout.getRow(i) * 23;
 
 				line = new Line2D.Double(
 					genomeBrowser.getTracksPanel().getX(125) + xCoordinateStart,
@@ -206,7 +184,7 @@ public class IntervalsPainter implements Painter {
 					g2.draw(line);
 				}
 				
-				String data = interval.getData();
+				String data = layout.getData(i);
 
 				if (fm.stringWidth(data)
 					+ 4 < (xCoordinateStop - xCoordinateStart)) {
@@ -220,9 +198,9 @@ public class IntervalsPainter implements Painter {
 				}
 
 				if (xCoordinateStop - xCoordinateStart > 1) {
-					GenericInfo iI = new IntervalInfo(interval.getData(),
-						String.valueOf(interval.getStart()),
-						String.valueOf(interval.getStop()));
+					GenericInfo iI = new IntervalInfo(data,
+						String.valueOf(layout.getStart(i)),
+						String.valueOf(layout.getStop(i)));
 					GridInfo aux = new GridInfo(iI, GridInfo.INTERVALINFO);
 					genomeBrowser.getTracksPanel().addCuadriculaInfo(
 						(int) (genomeBrowser.getTracksPanel().getX(125)
@@ -235,12 +213,11 @@ public class IntervalsPainter implements Painter {
 						+ xCoordinateStart; x < genomeBrowser.getTracksPanel()
 							.getX(125) + xCoordinateStop; x += genomeBrowser
 								.getTracksPanel().getSquareWidth()) {
-						GridInfo auxC = new GridInfo(iI, GridInfo.INTERVALINFO);
 						genomeBrowser.getTracksPanel().addCuadriculaInfo((int) x,
 							trackPosition
 								- genomeBrowser.getTracksPanel().getSquareWidth() / 2
 								+ offset - 65,
-							auxC);
+							aux);
 					}
 				}
 
@@ -264,67 +241,63 @@ public class IntervalsPainter implements Painter {
 	}
 
 	@Override
-	public void reset() {
+	public synchronized void reset() {
 		this.currentTrackHeight = 0;
+		this.heightLayout = null;
+		this.layout = null;
 	}
 
 	@Override
-	public synchronized int computeHeight(GenomeBrowser genomeBrowser) {
-		if (this.currentTrackHeight == 0 && this.interval != null) {
-			int maxFloor = 0;
-
-			Iterator<Interval> result = this.interval.getOverlappingIntervals(
-				genomeBrowser.getCurrentSequence(),
-				(int) genomeBrowser.getInitialPosition(),
-				(int) genomeBrowser.getFinalPosition());
-			HashMap<Integer, Long> floorToPosition = new HashMap<Integer, Long>();
-			floorToPosition.put(0, new Long(0));
-			int currentFloor = 0;
-			Long ultimoDerecha;
-			maxFloor = 0;
-			while (result.hasNext()) {
-				Interval interval = result.next();
-				long temp = interval.getStart();
-				if (temp < genomeBrowser.getInitialPosition())
-					temp = genomeBrowser.getInitialPosition();
-
-				temp = interval.getStop();
-				if (temp > genomeBrowser.getFinalPosition()) {
-					temp = genomeBrowser.getFinalPosition();
-				}
-
-				ultimoDerecha = floorToPosition.get(currentFloor);
-				if (ultimoDerecha != null) {
-					if (ultimoDerecha >= interval.getStart()) {
-
-						currentFloor++;
-					}
-
-					if (ultimoDerecha < interval.getStart()) {
-						while (currentFloor > 0
-							&& floorToPosition.get(currentFloor) != null
-							&& floorToPosition.get(currentFloor) < interval
-								.getStart()) {
-
-							currentFloor--;
-
-						}
-					}
-				}
-
-				floorToPosition.remove(currentFloor);
-				floorToPosition.put(new Integer(currentFloor), interval.getStop());
-				if (currentFloor > maxFloor)
-					maxFloor = currentFloor;
+	public synchronized void dispose() {
+		if (this.interval != null) {
+			this.interval.release();
+		}
+	}
 
+	@Override
+	public synchronized int computeHeight(GenomeBrowser genomeBrowser) {
+		if (this.interval == null) {
+			return currentTrackHeight;
+		}
+		IntervalsLayout layout = this.getLayout(genomeBrowser);
+		if (layout != this.heightLayout) {
+			int height;
+			if (layout.isDensity()) {
+				height = IntervalsDensity.HEIGHT + 5;
+			} else {
+				height = ((layout.getRowCount() - 1) * 23) + 5;
 			}
-
-			int height = (maxFloor * 23) + 5;
 			this.currentTrackHeight = height + 65;
+			this.heightLayout = layout;
 		}
 		return currentTrackHeight;
 	}
 
+	private synchronized IntervalsLayout getLayout(GenomeBrowser genomeBrowser) {
+		String sequence = genomeBrowser.getCurrentSequence();
+		long initialPosition = genomeBrowser.getInitialPosition();
+		long finalPosition = genomeBrowser.getFinalPosition();
+		double width = genomeBrowser.getTracksPanel().getWidth() * 0.75;
+		if (this.layout == null
+			|| !this.layout.isLayoutOf(sequence, initialPosition, finalPosition,
+				width)
+		) {
+			IntervalsIndex index = this.interval.lock();
+			if (index == null) {
+				return IntervalsLayout.empty(sequence, initialPosition,
+					finalPosition, width);
+			}
+			try {
+				this.layout = IntervalsLayout.create(index, sequence,
+					initialPosition, finalPosition, width);
+			} finally {
+				this.interval.unlock();
+			}
+		}
+
+		return this.layout;
+	}
+
 	private void initializeOptions() {
 		
 		this.trackNameOption = new TrackOption() {
@@ -75,6 +75,13 @@ public interface Painter {
 	 */
 	void reset();
 
+	/**
+	 * Releases the resources held by the track painter, such as the handles
+	 * to its file indexes. The painter can not be used after being disposed.
+	 */
+	default void dispose() {
+	}
+
 	/**
 	 * Sets the track color.
 	 * 
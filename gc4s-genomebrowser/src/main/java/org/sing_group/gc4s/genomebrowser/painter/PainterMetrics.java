@@ -0,0 +1,236 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.ToLongFunction;
+
+import es.cnio.bioinfo.pileline.core.FastSeeker;
+import es.cnio.bioinfo.pileline.core.Interval;
+import es.cnio.bioinfo.pileline.core.IntervalsIndex;
+
+/**
+ * Accumulates the I/O done by a painter in the current thread: the time spent
+ * querying its file, the number of records scanned and their size in
+ * characters. The size of the blocks decompressed by the file readers is not
+ * available to the painters, so it is not measured.
+ * 
+ * Painters run their queries through
+ * {@link #seek(FastSeeker, String, int, int)},
+ * {@link #seek(BgzfRecordSeeker, String, long, long)} and
+ * {@link #getOverlappingIntervals(IntervalsIndex, String, int, int)}. When
+ * no recording has been started in the current thread, these methods return
+ * the query iterators unchanged, so painting without metrics has no overhead.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class PainterMetrics {
+	private static final ThreadLocal<PainterMetrics> CURRENT =
+		new ThreadLocal<PainterMetrics>();
+
+	private static final ToLongFunction<String> LINE_SIZE =
+		line -> line.length() + 1;
+	private static final ToLongFunction<Interval> INTERVAL_SIZE =
+		interval -> interval.getData() == null 
+			? 0 : interval.getData().length() + 1;
+
+	private long queryNanos;
+	private long recordsScanned;
+	private long recordChars;
+
+	/**
+	 * Starts recording the I/O done in the current thread.
+	 * 
+	 * @return the {@code PainterMetrics} where the I/O is recorded
+	 */
+	public static PainterMetrics start() {
+		PainterMetrics metrics = new PainterMetrics();
+		CURRENT.set(metrics);
+
+		return metrics;
+	}
+
+	/**
+	 * Stops recording the I/O done in the current thread.
+	 */
+	public void stop() {
+		if (CURRENT.get() == this) {
+			CURRENT.remove();
+		}
+	}
+
+	/**
+	 * Returns the time spent querying files, in nanoseconds.
+	 * 
+	 * @return the time spent querying files, in nanoseconds
+	 */
+	public long getQueryNanos() {
+		return queryNanos;
+	}
+
+	/**
+	 * Returns the number of records scanned.
+	 * 
+	 * @return the number of records scanned
+	 */
+	public long getRecordsScanned() {
+		return recordsScanned;
+	}
+
+	/**
+	 * Returns the number of characters of the records scanned, counting lines
+	 * with their line terminator and intervals by the size of their data.
+	 * Intervals without data are not counted.
+	 * 
+	 * @return the number of characters of the records scanned
+	 */
+	public long getRecordChars() {
+		return recordChars;
+	}
+
+	/**
+	 * Records a query done in the current thread, if a recording has been
+	 * started.
+	 * 
+	 * @param nanos the time spent in the query, in nanoseconds
+	 * @param records the number of records scanned
+	 * @param chars the number of characters of the records scanned
+	 */
+	public static void recordQuery(long nanos, long records, long chars) {
+		PainterMetrics metrics = CURRENT.get();
+		if (metrics != null) {
+			metrics.queryNanos += nanos;
+			metrics.recordsScanned += records;
+			metrics.recordChars += chars;
+		}
+	}
+
+	/**
+	 * Seeks the lines of the specified region, recording the query time, the
+	 * number of lines and their size.
+	 * 
+	 * @param seeker the file seeker
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @return an iterator over the lines of the region
+	 * @throws IOException if an error occurs while seeking the file
+	 */
+	public static Iterator<String> seek(FastSeeker seeker, String sequence,
+		int start, int end) throws IOException {
+		PainterMetrics metrics = CURRENT.get();
+		if (metrics == null) {
+			return seeker.seek(sequence, start, end);
+		}
+		long queryStart = System.nanoTime();
+		Iterator<String> lines = seeker.seek(sequence, start, end);
+		metrics.queryNanos += System.nanoTime() - queryStart;
+
+		return new MeteredIterator<String>(lines, metrics, LINE_SIZE);
+	}
+
+	/**
+	 * Seeks the lines of the specified region of a bgzipped file, recording
+	 * the query time, the number of lines and their size.
+	 * 
+	 * @param seeker the bgzipped file seeker
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @return an iterator over the lines of the region
+	 * @throws IOException if an error occurs while seeking the file
+	 */
+	public static Iterator<String> seek(BgzfRecordSeeker seeker,
+		String sequence, long start, long end) throws IOException {
+		PainterMetrics metrics = CURRENT.get();
+		if (metrics == null) {
+			return seeker.seek(sequence, start, end);
+		}
+		long queryStart = System.nanoTime();
+		Iterator<String> lines = seeker.seek(sequence, start, end);
+		metrics.queryNanos += System.nanoTime() - queryStart;
+
+		return new MeteredIterator<String>(lines, metrics, LINE_SIZE);
+	}
+
+	/**
+	 * Queries the intervals that overlap the specified region, recording the
+	 * query time, the number of intervals and the size of their data.
+	 * 
+	 * @param index the intervals index
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @return an iterator over the intervals that overlap the region
+	 */
+	public static Iterator<Interval> getOverlappingIntervals(
+		IntervalsIndex index, String sequence, int start, int end) {
+		PainterMetrics metrics = CURRENT.get();
+		if (metrics == null) {
+			return index.getOverlappingIntervals(sequence, start, end);
+		}
+		long queryStart = System.nanoTime();
+		Iterator<Interval> intervals =
+			index.getOverlappingIntervals(sequence, start, end);
+		metrics.queryNanos += System.nanoTime() - queryStart;
+
+		return new MeteredIterator<Interval>(intervals, metrics, INTERVAL_SIZE);
+	}
+
+	private static class MeteredIterator<T> implements Iterator<T> {
+		private final Iterator<T> iterator;
+		private final PainterMetrics metrics;
+		private final ToLongFunction<? super T> size;
+
+		MeteredIterator(Iterator<T> iterator, PainterMetrics metrics,
+			ToLongFunction<? super T> size) {
+			this.iterator = iterator;
+			this.metrics = metrics;
+			this.size = size;
+		}
+
+		@Override
+		public boolean hasNext() {
+			long start = System.nanoTime();
+			boolean hasNext = this.iterator.hasNext();
+			this.metrics.queryNanos += System.nanoTime() - start;
+
+			return hasNext;
+		}
+
+		@Override
+		public T next() {
+			long start = System.nanoTime();
+			T next = this.iterator.next();
+			this.metrics.queryNanos += System.nanoTime() - start;
+			this.metrics.recordsScanned++;
+			if (this.size != null) {
+				this.metrics.recordChars += this.size.applyAsLong(next);
+			}
+
+			return next;
+		}
+	}
+}
@@ -33,9 +33,8 @@ import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.StringTokenizer;
-import java.util.Vector;
 
 import org.sing_group.gc4s.genomebrowser.GenomeBrowser;
 import org.sing_group.gc4s.genomebrowser.GenomeBrowserUtil;
@@ -69,7 +68,8 @@ public class PileupPainter extends GPPainter {
 	private boolean entrycount = true;
 	private boolean isCompletePileup = false;
 	
-	private Vector<Double> avgValues = new Vector<Double>();
+	private double[] avgValues;
+	private final PileupRecord record = new PileupRecord();
 
 	/**
 	 * Creates a new {@code PileupPainter} for the specified track file.
@@ -83,12 +83,12 @@ public class PileupPainter extends GPPainter {
 		} catch (IOException e) {
 		}
 		this.initializeOptions();
-		this.fillOptions(null);
+		this.fillOptions();
 	}
 
 	@Override
 	public void paint(Graphics2D g2, GenomeBrowser genomeBrowser, int offset) {
-		this.fillOptions(genomeBrowser);
+		this.fillOptions();
 		if (customColor != null)
 			this.trackColor = customColor;
 		this.offset = offset;
@@ -107,6 +107,43 @@ public class PileupPainter extends GPPainter {
 		}
 	}
 
+	private HistogramBins readBins(GenomeBrowser gv, int size) {
+		HistogramBins bins = new HistogramBins(gv.getInitialPosition(),
+			gv.getFinalPosition(), size);
+		int depthColumn = getSummaryDepthColumn();
+		try {
+			this.query(seeker -> {
+				Iterator<String> it = seeker.seek(gv.getCurrentSequence(),
+					gv.getInitialPosition(), gv.getFinalPosition());
+				while (it.hasNext()) {
+					PileupRecord record = this.record.parse(it.next());
+					if (isValidRecord(record)) {
+						long position = record.getLong(1);
+						if (entrycount) {
+							bins.add(position);
+						} else {
+							bins.add(position, record.getInt(depthColumn));
+						}
+					}
+				}
+			});
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		return bins;
+	}
+
+	@Override
+	protected int getSummaryDepthColumn() {
+		return isCompletePileup ? 7 : 3;
+	}
+
+	@Override
+	protected int getSummarySnpColumn() {
+		return isCompletePileup ? 5 : -1;
+	}
+
 	private void renderHistogram(Graphics2D g2, File current, GenomeBrowser gv) {
 		g2.setColor(this.trackColor);
 		FontMetrics fm = g2.getFontMetrics();
@@ -116,66 +153,33 @@ public class PileupPainter extends GPPainter {
 			trackPosition - 1, gv.getTracksPanel().getX(875),
 			trackPosition - 1);
 		g2.draw(line);
-		int maxValue = 0;
-
 		int size = this.histogramIntervals;
 
-		if (tmpValues.isEmpty()) {
-			tmpValues = new Vector<Integer>(size);
-			avgValues = new Vector<Double>(size);
-			Iterator<String> it;
-			long intervalStart = gv.getInitialPosition();
-			long histogramIntervalSize = (gv.getFinalPosition()
-				- gv.getInitialPosition()) / size;
-
-			long intervalEnd = gv.getInitialPosition() + histogramIntervalSize;
-			int sum = 0;
-			String currentLine;
-			int depthAcum = 0;
-			try {
+		if (histogramValues == null) {
+			HistogramBins bins = null;
+			if (this.maxDepth == -1 && this.minDepth == 0
+				&& this.maxConsQual == -1 && this.minConsQual == 0) {
+				bins = isCompletePileup
+					? this.getSummaryBins(gv, size, this.minSNPQual, this.maxSNPQual)
+					: this.getSummaryBins(gv, size, 0, -1);
+			}
+			if (bins == null) {
+				bins = this.readBins(gv, size);
+			}
 
+			if (entrycount) {
+				histogramValues = bins.getCounts();
+			} else {
+				avgValues = bins.getAverages();
+				histogramValues = new int[size];
 				for (int c = 0; c < size; c++) {
-
-					it = this.seek.seek(gv.getCurrentSequence(),
-						(int) intervalStart, (int) intervalEnd);
-					while (it.hasNext()) {
-						currentLine = it.next();
-						if (isValidLine(currentLine, gv)) {
-							sum++;
-							if (!entrycount) {
-								depthAcum += Integer
-									.valueOf(parsePileupLine(currentLine, 7));
-							}
-						}
-					}
-					if (entrycount) {
-						tmpValues.add(sum);
-						if (sum > maxValue)
-							maxValue = sum;
-					} else {
-						int media = 0;
-						if (depthAcum > 0)
-							media = depthAcum / sum;
-						tmpValues.add(media);
-						avgValues.add((double) depthAcum / (double) sum);
-						if (media > maxValue)
-							maxValue = media;
-					}
-					sum = 0;
-					depthAcum = 0;
-					intervalStart += histogramIntervalSize;
-					intervalEnd += histogramIntervalSize;
-					if (intervalEnd > gv.getFinalPosition())
-						intervalEnd = gv.getFinalPosition();
+					histogramValues[c] = (int) avgValues[c];
 				}
-			} catch (IOException e) {
-				e.printStackTrace();
 			}
-
 		}
 
 		Color barsColor = this.trackColor;
-		maxValue = GenomeBrowserUtil.getMaxIntegerValue(tmpValues);
+		int maxValue = GenomeBrowserUtil.getMaxIntegerValue(histogramValues);
 		if (maxValue > 0) {
 			double unitHeight;
 			int limit;
@@ -194,7 +198,8 @@ public class PileupPainter extends GPPainter {
 			double initialXPos = gv.getTracksPanel().getX(125);
 			Color old = g2.getColor();
 			int total = 0;
-			for (Integer x : tmpValues) {
+			for (int c = 0; c < histogramValues.length; c++) {
+				int x = histogramValues[c];
 				total += x;
 				Rectangle2D rectangle;
 				Area a;
@@ -231,8 +236,8 @@ public class PileupPainter extends GPPainter {
 				}
 				String count = gv.getTracksPanel().getFormatter()
 					.format(x);
-				if (!entrycount && tmpValues.indexOf((x)) < avgValues.size()) {
-					count = avgValues.get(tmpValues.indexOf((x))).toString();
+				if (!entrycount && avgValues != null) {
+					count = Double.toString(avgValues[c]);
 				}
 				if (fm.stringWidth(count) + 4 <= anchoIntervalo && x != 0) {
 					g2.setColor(GenomeBrowserUtil.LIGHT_BLACK);
@@ -268,8 +273,6 @@ public class PileupPainter extends GPPainter {
 
 				max = gv.getTracksPanel().getFormatter().format(maxValue);
 				if (!entrycount) {
-					max = GenomeBrowserUtil.getMaxDoubleValue(avgValues)
-						.toString();
 					max = df.format(maxValue).toString();
 				}
 			} else {
@@ -305,10 +308,22 @@ public class PileupPainter extends GPPainter {
 	}
 
 	protected boolean isValidLine(String line, GenomeBrowser gv) {
+		return isValidRecord(new PileupRecord().parse(line));
+	}
+
+	/**
+	 * Returns {@code true} if the specified pileup record passes the quality
+	 * and depth filters of this track and {@code false} otherwise.
+	 * 
+	 * @param record a parsed pileup record
+	 * @return {@code true} if the record passes the track filters and
+	 *         {@code false} otherwise
+	 */
+	protected boolean isValidRecord(PileupRecord record) {
 		if (isCompletePileup) {
-			int depth = Integer.valueOf(parsePileupLine(line, 7));
-			int snp = Integer.valueOf(parsePileupLine(line, 5));
-			int phredCons = Integer.valueOf(parsePileupLine(line, 4));
+			int depth = record.getInt(7);
+			int snp = record.getInt(5);
+			int phredCons = record.getInt(4);
 
 			return (((this.maxConsQual == -1 && phredCons >= this.minConsQual)
 				|| (this.maxConsQual > this.minConsQual
@@ -321,7 +336,7 @@ public class PileupPainter extends GPPainter {
 					|| (this.maxSNPQual > this.minSNPQual
 						&& snp >= this.minSNPQual && snp <= this.maxSNPQual)));
 		} else {
-			int depth = Integer.valueOf(parsePileupLine(line, 3));
+			int depth = record.getInt(3);
 			return ((this.maxDepth == -1 && depth >= this.minDepth)
 				|| (this.maxDepth > this.minDepth && depth >= this.minDepth
 					&& depth <= this.maxDepth));
@@ -340,78 +355,71 @@ public class PileupPainter extends GPPainter {
 				gv.getTracksPanel().getX(875 + 5),
 				gv.getTracksPanel().getY(trackPosition) - 5);
 
-		try {
-			Iterator<String> it = this.seek.seek(gv.getCurrentSequence(),
-				(int) gv.getInitialPosition(), (int) gv.getFinalPosition() - 1);
-
-			while (it.hasNext()) {
-
-				String tmp = it.next();
-				StringTokenizer tokenizer = new StringTokenizer(tmp);
-				String genomePosition = "0";
-				try {
-					tokenizer.nextToken();
-					genomePosition = tokenizer.nextToken();
-				} catch (Exception e) {
-
-					e.printStackTrace();
-				}
-
-				double xCoordinate = computeTrackLinePosition(
-					Long.valueOf(genomePosition), width,
-					gv.getInitialPosition());
+		HashMap<String, Color> colors = GenomeBrowserUtil.getColors();
+		for (String tmp : this.getRegionLines(gv)) {
+			PileupRecord record = this.record.parse(tmp);
+			long genomePosition = 0;
+			try {
+				genomePosition = record.getLong(1);
+			} catch (NumberFormatException e) {
 
-				String columValue = parsePileupLine(tmp, this.columnToDisplay);
+				e.printStackTrace();
+			}
 
-				Color nucleotidColor = currentColor;
-				if (!displayColums)
-					nucleotidColor = this.trackColor;
+			double xCoordinate = computeTrackLinePosition(
+				genomePosition, width,
+				gv.getInitialPosition());
 
-				else if (this.columnToDisplay == 2 || this.columnToDisplay == 3)
-					nucleotidColor = GenomeBrowserUtil.getColors().get(columValue);
-				if (nucleotidColor == null)
-					nucleotidColor = this.trackColor;
-				g2.setColor(nucleotidColor);
+			String columValue = null;
+			if (displayColums) {
+				int column = Math.min(this.columnToDisplay,
+					record.getColumnCount() - 1);
+				columValue = record.getString(column);
+			}
 
-				Rectangle2D rectangle = new Rectangle2D.Float(
-					(float) ((float) gv.getTracksPanel().getX(125)
-						+ xCoordinate),
-					(float) gv.getTracksPanel().getY(trackPosition) - 19,
-					(float) width, (float) 16);
+			Color nucleotidColor = currentColor;
+			if (!displayColums)
+				nucleotidColor = this.trackColor;
 
-				g2.draw(rectangle);
-				Area a = new Area(rectangle);
-				g2.fill(a);
+			else if (this.columnToDisplay == 2 || this.columnToDisplay == 3)
+				nucleotidColor = colors.get(columValue);
+			if (nucleotidColor == null)
+				nucleotidColor = this.trackColor;
+			g2.setColor(nucleotidColor);
 
-				if ((displayColums) && (width > fm.stringWidth(columValue))) {
+			Rectangle2D rectangle = new Rectangle2D.Float(
+				(float) ((float) gv.getTracksPanel().getX(125)
+					+ xCoordinate),
+				(float) gv.getTracksPanel().getY(trackPosition) - 19,
+				(float) width, (float) 16);
 
-					g2.setColor(Color.DARK_GRAY);
-					g2.drawString(columValue,
-						(int) (gv.getTracksPanel().getX(125) + xCoordinate
-							+ ((width / 2) - (fm.stringWidth(columValue) / 2))),
-						gv.getTracksPanel().getY(trackPosition - 7));
+			g2.draw(rectangle);
+			Area a = new Area(rectangle);
+			g2.fill(a);
 
-				}
+			if ((displayColums) && (width > fm.stringWidth(columValue))) {
 
-				PileupInfo pileupInfo = new PileupInfo(tmp, nucleotidColor,
-					isCompletePileup);
-				GridInfo aux = new GridInfo(pileupInfo, GridInfo.PILEUPINFO);
-				gv.getTracksPanel().addCuadriculaInfo(
+				g2.setColor(Color.DARK_GRAY);
+				g2.drawString(columValue,
 					(int) (gv.getTracksPanel().getX(125) + xCoordinate
-						+ ((width / 2) - (fm.stringWidth("-") / 2))),
-					gv.getTracksPanel().getY(-7 + offset), aux);
+						+ ((width / 2) - (fm.stringWidth(columValue) / 2))),
+					gv.getTracksPanel().getY(trackPosition - 7));
 
-				g2.setColor(Color.black);
-				g2.setColor(nucleotidColor);
-
-				g2.setColor(currentColor);
 			}
 
-		} catch (IOException e) {
+			PileupInfo pileupInfo = new PileupInfo(tmp, nucleotidColor,
+				isCompletePileup);
+			GridInfo aux = new GridInfo(pileupInfo, GridInfo.PILEUPINFO);
+			gv.getTracksPanel().addCuadriculaInfo(
+				(int) (gv.getTracksPanel().getX(125) + xCoordinate
+					+ ((width / 2) - (fm.stringWidth("-") / 2))),
+				gv.getTracksPanel().getY(-7 + offset), aux);
 
-			e.printStackTrace();
-		}
+			g2.setColor(Color.black);
+			g2.setColor(nucleotidColor);
 
+			g2.setColor(currentColor);
+		}
 	}
 
 	private void initializeOptions() {
@@ -842,7 +850,7 @@ public class PileupPainter extends GPPainter {
 		}
 	}
 
-	private void fillOptions(GenomeBrowser genomeBrowser) {
+	private void fillOptions() {
 
 		boolean changedColumnFilters = false;
 		for (TrackOption option : this.options) {
@@ -957,8 +965,7 @@ public class PileupPainter extends GPPainter {
 			}
 		}
 		if (changedColumnFilters)
-			genomeBrowser.getTracksPanel()
-				.setPileupColumnsFiltersChanged(true);
+			this.reset();
 	}
 
 	private int getPileupColum(Object value) {
@@ -1043,19 +1050,7 @@ public class PileupPainter extends GPPainter {
 
 	@Override
 	public void reset() {
-		this.avgValues.clear();
-		this.tmpValues.clear();
-	}
-
-	private String parsePileupLine(String line, int i) {
-		StringTokenizer tokenizer = new StringTokenizer(line);
-		String toret = null;
-		int j = 0;
-		while (tokenizer.hasMoreTokens() && (j <= i)) {
-			toret = tokenizer.nextToken();
-			j++;
-		}
-
-		return toret;
+		super.reset();
+		this.avgValues = null;
 	}
 }
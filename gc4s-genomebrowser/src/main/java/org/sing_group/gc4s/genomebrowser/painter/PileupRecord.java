@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.util.Arrays;
+
+/**
+ * A reusable parser for pileup lines. Each line is scanned once to find the
+ * boundaries of its whitespace-separated columns, and numeric columns are
+ * then parsed directly from the line, so that filtering and rendering pileup
+ * records does not create any objects per line.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class PileupRecord {
+	private CharSequence line;
+	private int[] starts = new int[10];
+	private int[] ends = new int[10];
+	private int columnCount;
+
+	/**
+	 * Parses the specified line, replacing the previously parsed one.
+	 * 
+	 * @param line a pileup line
+	 * @return this record
+	 */
+	public PileupRecord parse(CharSequence line) {
+		this.line = line;
+		this.columnCount = 0;
+
+		int length = line.length();
+		int i = 0;
+		while (true) {
+			while (i < length && Character.isWhitespace(line.charAt(i))) {
+				i++;
+			}
+			if (i == length) {
+				break;
+			}
+			int start = i;
+			while (i < length && !Character.isWhitespace(line.charAt(i))) {
+				i++;
+			}
+			if (this.columnCount == this.starts.length) {
+				this.starts = Arrays.copyOf(this.starts, this.columnCount * 2);
+				this.ends = Arrays.copyOf(this.ends, this.columnCount * 2);
+			}
+			this.starts[this.columnCount] = start;
+			this.ends[this.columnCount] = i;
+			this.columnCount++;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Returns the parsed line.
+	 * 
+	 * @return the parsed line
+	 */
+	public CharSequence getLine() {
+		return line;
+	}
+
+	/**
+	 * Returns the number of columns of the parsed line.
+	 * 
+	 * @return the number of columns
+	 */
+	public int getColumnCount() {
+		return columnCount;
+	}
+
+	/**
+	 * Returns the offset of the first character of the specified column.
+	 * 
+	 * @param column the column index, starting at 0
+	 * @return the offset of the first character of the column
+	 */
+	public int getColumnStart(int column) {
+		checkColumn(column);
+		return starts[column];
+	}
+
+	/**
+	 * Returns the offset after the last character of the specified column.
+	 * 
+	 * @param column the column index, starting at 0
+	 * @return the offset after the last character of the column
+	 */
+	public int getColumnEnd(int column) {
+		checkColumn(column);
+		return ends[column];
+	}
+
+	/**
+	 * Returns the first character of the specified column.
+	 * 
+	 * @param column the column index, starting at 0
+	 * @return the first character of the column
+	 */
+	public char getChar(int column) {
+		return line.charAt(getColumnStart(column));
+	}
+
+	/**
+	 * Returns the value of the specified column as a {@code String}.
+	 * 
+	 * @param column the column index, starting at 0
+	 * @return the value of the column
+	 */
+	public String getString(int column) {
+		return line.subSequence(getColumnStart(column), ends[column])
+			.toString();
+	}
+
+	/**
+	 * Parses the value of the specified column as an integer.
+	 * 
+	 * @param column the column index, starting at 0
+	 * @return the value of the column
+	 * @throws NumberFormatException if the column is not an integer
+	 */
+	public int getInt(int column) {
+		long value = getLong(column);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new NumberFormatException(
+				"Value out of range: " + value);
+		}
+
+		return (int) value;
+	}
+
+	/**
+	 * Parses the value of the specified column as a long.
+	 * 
+	 * @param column the column index, starting at 0
+	 * @return the value of the column
+	 * @throws NumberFormatException if the column is not an integer
+	 */
+	public long getLong(int column) {
+		if (column < 0 || column >= this.columnCount) {
+			throw new NumberFormatException("Missing column " + column);
+		}
+		int i = starts[column];
+		int end = ends[column];
+		boolean negative = false;
+		char first = line.charAt(i);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			i++;
+		}
+		if (i == end || end - i > 18) {
+			throw new NumberFormatException(
+				"Invalid number at column " + column);
+		}
+
+		long value = 0;
+		for (; i < end; i++) {
+			char c = line.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new NumberFormatException(
+					"Invalid number at column " + column);
+			}
+			value = value * 10 + (c - '0');
+		}
+
+		return negative ? -value : value;
+	}
+
+	private void checkColumn(int column) {
+		if (column < 0 || column >= this.columnCount) {
+			throw new IndexOutOfBoundsException("Missing column " + column);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.util.Arrays;
+
+/**
+ * Packs reads into rows so that the reads placed in the same row do not
+ * overlap. Each read is placed in the lowest row that is free at its start,
+ * using a heap of busy rows ordered by their end and a heap of free rows
+ * ordered by their index. Reads must be placed in increasing order of their
+ * start position, as returned by the intervals index. The layout only keeps
+ * primitive arrays whose size depends on the number of rows, so placing reads
+ * does not create any objects.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class ReadPileupLayout {
+	private final int maxRows;
+
+	private long[] busyEnds = new long[16];
+	private int[] busyRows = new int[16];
+	private int busyCount = 0;
+
+	private int[] freeRows = new int[16];
+	private int freeCount = 0;
+
+	private int rowCount = 0;
+
+	/**
+	 * Creates a new {@code ReadPileupLayout} with the specified maximum number
+	 * of rows.
+	 * 
+	 * @param maxRows the maximum number of rows
+	 */
+	public ReadPileupLayout(int maxRows) {
+		if (maxRows < 1) {
+			throw new IllegalArgumentException("At least one row is required");
+		}
+		this.maxRows = maxRows;
+	}
+
+	/**
+	 * Places a read in the lowest row that is free at its start. Reads that
+	 * end right before the start of another read are considered overlapping,
+	 * so that they are not drawn touching each other.
+	 * 
+	 * @param start the start of the read
+	 * @param stop the end of the read
+	 * @return the row of the read or {@code -1} if all the rows are busy
+	 */
+	public int place(long start, long stop) {
+		while (this.busyCount > 0 && this.busyEnds[0] < start - 1) {
+			pushFree(this.busyRows[0]);
+			popBusy();
+		}
+
+		int row;
+		if (this.freeCount > 0) {
+			row = popFree();
+		} else if (this.rowCount < this.maxRows) {
+			row = this.rowCount++;
+		} else {
+			return -1;
+		}
+		pushBusy(stop, row);
+
+		return row;
+	}
+
+	/**
+	 * Returns the number of rows used.
+	 * 
+	 * @return the number of rows used
+	 */
+	public int getRowCount() {
+		return this.rowCount;
+	}
+
+	/**
+	 * Removes all the reads, so that the layout can be reused.
+	 */
+	public void clear() {
+		this.busyCount = 0;
+		this.freeCount = 0;
+		this.rowCount = 0;
+	}
+
+	private void pushBusy(long end, int row) {
+		if (this.busyCount == this.busyEnds.length) {
+			this.busyEnds = Arrays.copyOf(this.busyEnds, this.busyCount * 2);
+			this.busyRows = Arrays.copyOf(this.busyRows, this.busyCount * 2);
+		}
+		int i = this.busyCount++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (this.busyEnds[parent] <= end) {
+				break;
+			}
+			this.busyEnds[i] = this.busyEnds[parent];
+			this.busyRows[i] = this.busyRows[parent];
+			i = parent;
+		}
+		this.busyEnds[i] = end;
+		this.busyRows[i] = row;
+	}
+
+	private void popBusy() {
+		long end = this.busyEnds[--this.busyCount];
+		int row = this.busyRows[this.busyCount];
+		int i = 0;
+		int half = this.busyCount / 2;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < this.busyCount
+				&& this.busyEnds[child + 1] < this.busyEnds[child]) {
+				child++;
+			}
+			if (end <= this.busyEnds[child]) {
+				break;
+			}
+			this.busyEnds[i] = this.busyEnds[child];
+			this.busyRows[i] = this.busyRows[child];
+			i = child;
+		}
+		this.busyEnds[i] = end;
+		this.busyRows[i] = row;
+	}
+
+	private void pushFree(int row) {
+		if (this.freeCount == this.freeRows.length) {
+			this.freeRows = Arrays.copyOf(this.freeRows, this.freeCount * 2);
+		}
+		int i = this.freeCount++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (this.freeRows[parent] <= row) {
+				break;
+			}
+			this.freeRows[i] = this.freeRows[parent];
+			i = parent;
+		}
+		this.freeRows[i] = row;
+	}
+
+	private int popFree() {
+		int top = this.freeRows[0];
+		int row = this.freeRows[--this.freeCount];
+		int i = 0;
+		int half = this.freeCount / 2;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < this.freeCount
+				&& this.freeRows[child + 1] < this.freeRows[child]) {
+				child++;
+			}
+			if (row <= this.freeRows[child]) {
+				break;
+			}
+			this.freeRows[i] = this.freeRows[child];
+			i = child;
+		}
+		if (this.freeCount > 0) {
+			this.freeRows[i] = row;
+		}
+
+		return top;
+	}
+}
@@ -0,0 +1,685 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * A multi-resolution summary of a genomic position file, stored in a cache
+ * directory so that the directory of the track file is never written. By
+ * default, summaries are stored in a {@code gc4s-genomebrowser-summaries}
+ * directory in the system temporary directory, which can be changed with
+ * {@link #setCacheDirectory(File)}. For each sequence and resolution the
+ * summary holds the number of records, the sum of their depth and the minimum
+ * and maximum of their SNP quality at each bin, so that zoomed out histograms
+ * can be computed from a memory-mapped file in time proportional to the
+ * number of bins instead of the number of records.
+ * </p>
+ * 
+ * <p>
+ * The summaries of bgzipped files also hold, for each bin of the finest
+ * resolution, the virtual file pointer of its first record. They are used by
+ * {@link BgzfRecordSeeker} to read the records of a region through the shared
+ * {@link BgzfBlockCache}.
+ * </p>
+ * 
+ * <p>
+ * Histograms computed from a summary are approximate: the records of a
+ * summary bin that spans several histogram bins are split among them in
+ * proportion to their overlap, and summaries are only used when every
+ * histogram bin spans at least {@value #MIN_SUMMARY_BINS_PER_BIN} summary
+ * bins.
+ * </p>
+ * 
+ * <p>
+ * Summaries are optional: when the cache directory is disabled or it can not
+ * be written, tracks are drawn reading their records.
+ * </p>
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class SummaryIndex {
+	/**
+	 * The extension added to the track file name to create its summary file.
+	 */
+	public static final String EXTENSION = ".summary";
+
+	private static final int MAGIC = 0x47433453;
+	private static final int VERSION = 3;
+	private static final int BASE_BIN_SIZE = 4096;
+	private static final int LEVEL_FACTOR = 4;
+	private static final int LEVELS = 6;
+	private static final int RECORD_BYTES = 20;
+	private static final int MIN_SUMMARY_BINS_PER_BIN = 8;
+	private static final long BUILD_CACHE_CAPACITY = 4L * 1024 * 1024;
+
+	private static ExecutorService builder;
+	private static File cacheDirectory = new File(
+		System.getProperty("java.io.tmpdir"), "gc4s-genomebrowser-summaries");
+
+	private final Map<String, int[]> binCounts;
+	private final Map<String, long[]> offsets;
+	private final Map<String, Long> pointerOffsets;
+	private final MappedByteBuffer data;
+	private boolean closed;
+
+	private SummaryIndex(Map<String, int[]> binCounts,
+		Map<String, long[]> offsets, Map<String, Long> pointerOffsets,
+		MappedByteBuffer data) {
+		this.binCounts = binCounts;
+		this.offsets = offsets;
+		this.pointerOffsets = pointerOffsets;
+		this.data = data;
+	}
+
+	/**
+	 * Sets the directory where summaries are stored. A {@code null} directory
+	 * disables summaries.
+	 * 
+	 * @param directory the directory where summaries are stored or
+	 *        {@code null} to disable them
+	 */
+	public static synchronized void setCacheDirectory(File directory) {
+		cacheDirectory = directory;
+	}
+
+	/**
+	 * Returns the directory where summaries are stored.
+	 * 
+	 * @return the directory where summaries are stored or {@code null} if
+	 *         summaries are disabled
+	 */
+	public static synchronized File getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * Returns the summary file of the specified track file in the cache
+	 * directory. Its name includes a hash of the track file path, so that
+	 * tracks with the same name in different directories do not share it.
+	 * 
+	 * @param source a genomic position file
+	 * @return the summary file of the track file or {@code null} if summaries
+	 *         are disabled
+	 */
+	public static File getSummaryFile(File source) {
+		File directory = getCacheDirectory();
+		if (directory == null) {
+			return null;
+		}
+
+		return new File(directory, source.getName() + "-" 
+			+ Integer.toHexString(source.getAbsolutePath().hashCode())
+			+ EXTENSION);
+	}
+
+	private static boolean isCacheWritable() {
+		File directory = getCacheDirectory();
+		if (directory == null) {
+			return false;
+		}
+		if (!directory.isDirectory()) {
+			directory.mkdirs();
+		}
+
+		return directory.isDirectory() && directory.canWrite();
+	}
+
+	/**
+	 * Loads the summary of the specified track file in a background thread,
+	 * building it first if it does not exist or is out of date and the cache
+	 * directory can be written. The callback is only invoked if the summary
+	 * can be loaded.
+	 * 
+	 * @param source a genomic position file
+	 * @param depthColumn the column with the depth of each record or
+	 *        {@code -1} if there is no such column
+	 * @param snpColumn the column with the SNP quality of each record or
+	 *        {@code -1} if there is no such column
+	 * @param callback the callback that receives the loaded summary
+	 */
+	public static void load(final File source, final int depthColumn,
+		final int snpColumn, final Consumer<SummaryIndex> callback) {
+		getBuilder().submit(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					SummaryIndex index = open(source, depthColumn, snpColumn);
+					if (index == null && isCacheWritable()) {
+						build(source, depthColumn, snpColumn);
+						index = open(source, depthColumn, snpColumn);
+					}
+					if (index != null) {
+						callback.accept(index);
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	private static synchronized ExecutorService getBuilder() {
+		if (builder == null) {
+			builder = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "genome-browser-summary");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+
+				return thread;
+			});
+		}
+
+		return builder;
+	}
+
+	/**
+	 * Opens the summary of the specified track file.
+	 * 
+	 * @param source a genomic position file
+	 * @param depthColumn the column with the depth of each record or
+	 *        {@code -1} if there is no such column
+	 * @param snpColumn the column with the SNP quality of each record or
+	 *        {@code -1} if there is no such column
+	 * @return the summary of the track file or {@code null} if it does not
+	 *         exist, it is out of date or summaries are disabled
+	 * @throws IOException if an error occurs while reading the summary file
+	 */
+	public static SummaryIndex open(File source, int depthColumn,
+		int snpColumn) throws IOException {
+		File summaryFile = getSummaryFile(source);
+		if (summaryFile == null || !summaryFile.isFile()) {
+			return null;
+		}
+
+		try (RandomAccessFile raf = new RandomAccessFile(summaryFile, "r")) {
+			if (raf.length() < 40 
+				|| raf.readInt() != MAGIC
+				|| raf.readInt() != VERSION
+				|| raf.readLong() != source.length()
+				|| raf.readLong() != source.lastModified()
+				|| raf.readInt() != depthColumn
+				|| raf.readInt() != snpColumn
+				|| raf.readInt() != BASE_BIN_SIZE
+				|| raf.readInt() != LEVEL_FACTOR
+				|| raf.readInt() != LEVELS
+				|| !raf.readUTF().equals(source.getAbsolutePath())
+			) {
+				return null;
+			}
+
+			int sequences = raf.readInt();
+			Map<String, int[]> binCounts = new HashMap<String, int[]>();
+			Map<String, long[]> offsets = new HashMap<String, long[]>();
+			Map<String, Long> pointerOffsets = new HashMap<String, Long>();
+			for (int s = 0; s < sequences; s++) {
+				String sequence = raf.readUTF();
+				int[] sequenceBinCounts = new int[LEVELS];
+				long[] sequenceOffsets = new long[LEVELS];
+				for (int l = 0; l < LEVELS; l++) {
+					sequenceBinCounts[l] = raf.readInt();
+					sequenceOffsets[l] = raf.readLong();
+				}
+				binCounts.put(sequence, sequenceBinCounts);
+				offsets.put(sequence, sequenceOffsets);
+				long pointerOffset = raf.readLong();
+				if (pointerOffset >= 0) {
+					pointerOffsets.put(sequence, pointerOffset);
+				}
+			}
+
+			long dataStart = raf.getFilePointer();
+			MappedByteBuffer data = raf.getChannel().map(
+				FileChannel.MapMode.READ_ONLY, dataStart,
+				raf.length() - dataStart);
+
+			return new SummaryIndex(binCounts, offsets, pointerOffsets, data);
+		}
+	}
+
+	/**
+	 * Builds the summary of the specified track file in the cache directory,
+	 * reading it once. Bgzipped files are read through a private
+	 * {@link BgzfBlockCache}, so that building a summary does not evict the
+	 * blocks of the shared one.
+	 * 
+	 * @param source a genomic position file
+	 * @param depthColumn the column with the depth of each record or
+	 *        {@code -1} if there is no such column
+	 * @param snpColumn the column with the SNP quality of each record or
+	 *        {@code -1} if there is no such column
+	 * @throws IOException if an error occurs while reading the track file or
+	 *         writing the summary file, or if summaries are disabled
+	 */
+	public static void build(File source, int depthColumn, int snpColumn)
+		throws IOException {
+		long sourceLength = source.length();
+		long sourceLastModified = source.lastModified();
+
+		Map<String, Bins> sequences = new LinkedHashMap<String, Bins>();
+		PileupRecord record = new PileupRecord();
+		try (LineReader reader = new LineReader(source)) {
+			String sequence = null;
+			Bins bins = null;
+			long pointer = reader.getFilePointer();
+			String line;
+			for (; (line = reader.readLine()) != null;
+				pointer = reader.getFilePointer()) {
+				if (line.isEmpty() || line.charAt(0) == '#') {
+					continue;
+				}
+				record.parse(line);
+				if (record.getColumnCount() < 2) {
+					continue;
+				}
+				long position;
+				int depth = 0;
+				int snp = 0;
+				try {
+					position = record.getLong(1);
+					if (depthColumn >= 0) {
+						depth = record.getInt(depthColumn);
+					}
+					if (snpColumn >= 0) {
+						snp = record.getInt(snpColumn);
+					}
+				} catch (NumberFormatException | IndexOutOfBoundsException e) {
+					continue;
+				}
+				if (position < 0) {
+					continue;
+				}
+
+				int nameStart = record.getColumnStart(0);
+				int nameLength = record.getColumnEnd(0) - nameStart;
+				if (sequence == null || sequence.length() != nameLength
+					|| !line.regionMatches(nameStart, sequence, 0, nameLength)) {
+					sequence = line.substring(nameStart, nameStart + nameLength);
+					bins = sequences.get(sequence);
+					if (bins == null) {
+						bins = new Bins();
+						sequences.put(sequence, bins);
+					}
+				}
+				bins.add(position, depth, snp, pointer);
+			}
+		}
+
+		File summaryFile = getSummaryFile(source);
+		if (summaryFile == null) {
+			throw new IOException("Summaries are disabled");
+		}
+		File tmpFile = new File(summaryFile.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+			new BufferedOutputStream(new FileOutputStream(tmpFile)))
+		) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sourceLength);
+			out.writeLong(sourceLastModified);
+			out.writeInt(depthColumn);
+			out.writeInt(snpColumn);
+			out.writeInt(BASE_BIN_SIZE);
+			out.writeInt(LEVEL_FACTOR);
+			out.writeInt(LEVELS);
+			out.writeUTF(source.getAbsolutePath());
+			out.writeInt(sequences.size());
+
+			Map<String, Bins[]> levels = new LinkedHashMap<String, Bins[]>();
+			long offset = 0;
+			for (Map.Entry<String, Bins> entry : sequences.entrySet()) {
+				Bins[] sequenceLevels = new Bins[LEVELS];
+				sequenceLevels[0] = entry.getValue();
+				for (int l = 1; l < LEVELS; l++) {
+					sequenceLevels[l] = sequenceLevels[l - 1].merge(LEVEL_FACTOR);
+				}
+				levels.put(entry.getKey(), sequenceLevels);
+
+				out.writeUTF(entry.getKey());
+				for (Bins level : sequenceLevels) {
+					out.writeInt(level.size);
+					out.writeLong(offset);
+					offset += (long) level.size * RECORD_BYTES;
+				}
+				if (sequenceLevels[0].pointers != null) {
+					out.writeLong(offset);
+					offset += (long) sequenceLevels[0].size * 8;
+				} else {
+					out.writeLong(-1);
+				}
+			}
+
+			for (Bins[] sequenceLevels : levels.values()) {
+				for (Bins level : sequenceLevels) {
+					for (int i = 0; i < level.size; i++) {
+						out.writeInt(level.counts[i]);
+						out.writeLong(level.sums[i]);
+						out.writeInt(level.minSnp[i]);
+						out.writeInt(level.maxSnp[i]);
+					}
+				}
+				Bins base = sequenceLevels[0];
+				if (base.pointers != null) {
+					for (int i = 0; i < base.size; i++) {
+						out.writeLong(base.pointers[i]);
+					}
+				}
+			}
+		}
+
+		if (summaryFile.exists() && !summaryFile.delete()) {
+			tmpFile.delete();
+			throw new IOException("Can't replace " + summaryFile);
+		}
+		if (!tmpFile.renameTo(summaryFile)) {
+			tmpFile.delete();
+			throw new IOException("Can't create " + summaryFile);
+		}
+	}
+
+	/**
+	 * Returns whether the summary holds the virtual file pointers of the
+	 * records of its track file, which happens when the track file is
+	 * bgzipped.
+	 * 
+	 * @return {@code true} if the summary holds virtual file pointers and
+	 *         {@code false} otherwise
+	 */
+	public boolean hasBlockPointers() {
+		return !this.pointerOffsets.isEmpty();
+	}
+
+	/**
+	 * Returns the virtual file pointer from which the records of the
+	 * specified region must be read: the pointer of the first record of the
+	 * first summary bin of the region that has records. The records before
+	 * the start of the region that share that bin must be skipped by the
+	 * caller.
+	 * 
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @return the virtual file pointer or {@code -1} if the region has no
+	 *         records, the summary has no virtual file pointers or it has been
+	 *         closed
+	 */
+	public synchronized long getBlockPointer(String sequence, long start,
+		long end) {
+		Long offset = this.pointerOffsets.get(sequence);
+		if (this.closed || offset == null) {
+			return -1;
+		}
+		int size = this.binCounts.get(sequence)[0];
+		int first = (int) Math.max(0, start / BASE_BIN_SIZE);
+		int last = (int) Math.min(size - 1, end / BASE_BIN_SIZE);
+		for (int i = first; i <= last; i++) {
+			long pointer = this.data.getLong((int) (offset + (long) i * 8));
+			if (pointer >= 0) {
+				return pointer;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Adds the records of the specified region to the histogram bins, using
+	 * the coarsest summary level that is detailed enough for them. Records
+	 * whose SNP quality is out of the specified range are not counted. When
+	 * the summary can not answer the query, because there is not a detailed
+	 * enough level or because some summary bins are only partially in the SNP
+	 * quality range, it returns {@code false} and the histogram bins must be
+	 * discarded.
+	 * 
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @param bins the histogram bins to fill
+	 * @param minSnp the minimum SNP quality
+	 * @param maxSnp the maximum SNP quality or {@code -1} for no maximum
+	 * @return {@code true} if the histogram bins have been filled and
+	 *         {@code false} otherwise
+	 */
+	public synchronized boolean fill(String sequence, long start, long end,
+		HistogramBins bins, int minSnp, int maxSnp) {
+		if (this.closed) {
+			return false;
+		}
+		double histogramBinSize = (double) (end - start) / bins.getBinCount();
+		int level = -1;
+		long binSize = BASE_BIN_SIZE;
+		for (int l = 0; l < LEVELS; l++) {
+			if ((double) binSize * MIN_SUMMARY_BINS_PER_BIN > histogramBinSize) {
+				break;
+			}
+			level = l;
+			binSize *= LEVEL_FACTOR;
+		}
+		if (level < 0) {
+			return false;
+		}
+		binSize /= LEVEL_FACTOR;
+
+		int[] sequenceBinCounts = this.binCounts.get(sequence);
+		if (sequenceBinCounts == null) {
+			return true;
+		}
+		long offset = this.offsets.get(sequence)[level];
+		int first = (int) Math.max(0, start / binSize);
+		int last = (int) Math.min(sequenceBinCounts[level] - 1, end / binSize);
+
+		for (int i = first; i <= last; i++) {
+			int position = (int) (offset + (long) i * RECORD_BYTES);
+			int count = this.data.getInt(position);
+			if (count == 0) {
+				continue;
+			}
+			int binMinSnp = this.data.getInt(position + 12);
+			int binMaxSnp = this.data.getInt(position + 16);
+			if (binMaxSnp < minSnp || (maxSnp != -1 && binMinSnp > maxSnp)) {
+				continue;
+			}
+			if (binMinSnp < minSnp || (maxSnp != -1 && binMaxSnp > maxSnp)) {
+				return false;
+			}
+			addSplit(bins, start, i * binSize, (i + 1) * binSize, count,
+				this.data.getLong(position + 4));
+		}
+
+		return true;
+	}
+
+	/**
+	 * Closes the summary, unmapping its file when the JVM allows it. Queries
+	 * made after this call return {@code false}.
+	 */
+	public synchronized void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			Method cleanerMethod = this.data.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(this.data);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// The mapping is released when the buffer is garbage collected
+		}
+	}
+
+	private static void addSplit(HistogramBins bins, long regionStart,
+		long start, long end, int count, double sum) {
+		long length = end - start;
+		long segmentStart = start;
+		while (segmentStart < end && count > 0) {
+			int bin = bins.binOf(segmentStart);
+			long segmentEnd;
+			if (bin >= 0) {
+				segmentEnd = Math.min(end, bins.getBinEnd(bin));
+			} else if (segmentStart < regionStart) {
+				segmentEnd = Math.min(end, regionStart);
+			} else {
+				segmentEnd = end;
+			}
+
+			double fraction = (double) (segmentEnd - segmentStart) / length;
+			int segmentCount = (int) Math.round(count * fraction);
+			double segmentSum = sum * fraction;
+			if (bin >= 0) {
+				bins.add(segmentStart, segmentCount, segmentSum);
+			}
+			count -= segmentCount;
+			sum -= segmentSum;
+			length -= segmentEnd - segmentStart;
+			segmentStart = segmentEnd;
+		}
+	}
+
+	private static final class LineReader implements Closeable {
+		private final BgzfInputStream bgzf;
+		private final BufferedReader reader;
+
+		LineReader(File source) throws IOException {
+			if (source.getName().endsWith(".bgz")) {
+				this.bgzf = new BgzfInputStream(source,
+					new BgzfBlockCache(BUILD_CACHE_CAPACITY));
+				this.reader = null;
+			} else {
+				this.bgzf = null;
+				this.reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(source)));
+			}
+		}
+
+		long getFilePointer() {
+			return this.bgzf == null ? -1 : this.bgzf.getFilePointer();
+		}
+
+		String readLine() throws IOException {
+			return this.bgzf == null 
+				? this.reader.readLine() : this.bgzf.readLine();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (this.bgzf == null) {
+				this.reader.close();
+			} else {
+				this.bgzf.close();
+			}
+		}
+	}
+
+	private static final class Bins {
+		private int size;
+		private int[] counts = new int[64];
+		private long[] sums = new long[64];
+		private int[] minSnp = new int[64];
+		private int[] maxSnp = new int[64];
+		private long[] pointers;
+
+		void add(long position, int depth, int snp, long pointer) {
+			int bin = (int) (position / BASE_BIN_SIZE);
+			if (pointer >= 0 && this.pointers == null) {
+				this.pointers = new long[this.counts.length];
+				Arrays.fill(this.pointers, -1);
+			}
+			ensureSize(bin + 1);
+			if (this.counts[bin] == 0) {
+				this.minSnp[bin] = snp;
+				this.maxSnp[bin] = snp;
+				if (this.pointers != null) {
+					this.pointers[bin] = pointer;
+				}
+			} else {
+				this.minSnp[bin] = Math.min(this.minSnp[bin], snp);
+				this.maxSnp[bin] = Math.max(this.maxSnp[bin], snp);
+			}
+			this.counts[bin]++;
+			this.sums[bin] += depth;
+		}
+
+		Bins merge(int factor) {
+			Bins merged = new Bins();
+			merged.ensureSize((this.size + factor - 1) / factor);
+			for (int i = 0; i < this.size; i++) {
+				if (this.counts[i] == 0) {
+					continue;
+				}
+				int bin = i / factor;
+				if (merged.counts[bin] == 0) {
+					merged.minSnp[bin] = this.minSnp[i];
+					merged.maxSnp[bin] = this.maxSnp[i];
+				} else {
+					merged.minSnp[bin] = Math.min(merged.minSnp[bin], this.minSnp[i]);
+					merged.maxSnp[bin] = Math.max(merged.maxSnp[bin], this.maxSnp[i]);
+				}
+				merged.counts[bin] += this.counts[i];
+				merged.sums[bin] += this.sums[i];
+			}
+
+			return merged;
+		}
+
+		private void ensureSize(int size) {
+			if (size > this.counts.length) {
+				int capacity = Math.max(size, this.counts.length * 2);
+				this.counts = Arrays.copyOf(this.counts, capacity);
+				this.sums = Arrays.copyOf(this.sums, capacity);
+				this.minSnp = Arrays.copyOf(this.minSnp, capacity);
+				this.maxSnp = Arrays.copyOf(this.maxSnp, capacity);
+				if (this.pointers != null) {
+					int length = this.pointers.length;
+					this.pointers = Arrays.copyOf(this.pointers, capacity);
+					Arrays.fill(this.pointers, length, capacity, -1);
+				}
+			}
+			this.size = Math.max(this.size, size);
+		}
+	}
+}
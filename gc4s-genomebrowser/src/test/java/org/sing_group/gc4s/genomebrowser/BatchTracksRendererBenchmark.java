@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import es.cnio.bioinfo.pileline.refgenomeindex.GenomeIndex;
+import es.cnio.bioinfo.pileline.refgenomeindex.PileLineGenomeIndex;
+
+/**
+ * Measures the throughput of the {@code BatchTracksRenderer} when all its
+ * workers render the same track file, which is the case where they used to
+ * wait for each other on the shared index.
+ * 
+ * It needs a real genome index and track, given with the following system
+ * properties, and it is skipped otherwise:
+ * <ul>
+ * <li>{@code benchmark.genome}: the genome index directory or file.</li>
+ * <li>{@code benchmark.track}: the track file (e.g. a BAM file).</li>
+ * <li>{@code benchmark.sequence}: the sequence where regions are taken.</li>
+ * <li>{@code benchmark.regions}: the number of regions (100 by default).</li>
+ * <li>{@code benchmark.regionLength}: the length of the regions (10000 by
+ * default).</li>
+ * </ul>
+ * 
+ * For instance:
+ * {@code mvn -Pbenchmarks test -Dtest=BatchTracksRendererBenchmark
+ * -Dbenchmark.genome=hg19 -Dbenchmark.track=sample.bam
+ * -Dbenchmark.sequence=chr1}
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class BatchTracksRendererBenchmark {
+	private static final int WIDTH = 1200;
+
+	@Test
+	public void sharedTrackThroughput() throws Exception {
+		String genome = System.getProperty("benchmark.genome");
+		String track = System.getProperty("benchmark.track");
+		String sequence = System.getProperty("benchmark.sequence");
+		assumeTrue(genome != null && track != null && sequence != null);
+		int regionCount = Integer.getInteger("benchmark.regions", 100);
+		long length = Long.getLong("benchmark.regionLength", 10000L);
+
+		GenomeIndex genomeIndex = new PileLineGenomeIndex(new File(genome));
+		List<File> tracks = Collections.singletonList(new File(track));
+		List<BatchTracksRenderer.Region> regions = 
+			new ArrayList<BatchTracksRenderer.Region>();
+		for (int i = 0; i < regionCount; i++) {
+			long start = 1 + i * length;
+			regions.add(
+				new BatchTracksRenderer.Region(sequence, start, start + length - 1));
+		}
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= processors; threads *= 2) {
+			try (BatchTracksRenderer renderer = 
+				new BatchTracksRenderer(genomeIndex, tracks, threads)) {
+				render(renderer, regions.subList(0, Math.min(threads, regionCount)));
+				double millis = BenchmarkTimer.measure(threads + " workers, "
+					+ regionCount + " regions of one track", 0, 3,
+					() -> render(renderer, regions));
+				System.out.printf("%d workers: %.1f regions/s%n", threads,
+					regionCount * 1000d / millis);
+			}
+		}
+	}
+
+	private static void render(BatchTracksRenderer renderer,
+		List<BatchTracksRenderer.Region> regions) throws Exception {
+		List<Future<BufferedImage>> images = 
+			new ArrayList<Future<BufferedImage>>();
+		for (BatchTracksRenderer.Region region : regions) {
+			images.add(renderer.render(region.getSequence(), region.getStart(),
+				region.getEnd(), WIDTH));
+		}
+		for (Future<BufferedImage> image : images) {
+			image.get();
+		}
+	}
+}
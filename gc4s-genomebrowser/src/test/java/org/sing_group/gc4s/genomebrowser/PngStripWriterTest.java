@@ -0,0 +1,196 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class PngStripWriterTest {
+
+	@Test
+	public void stripsAreWrittenTest() throws IOException {
+		BufferedImage image = randomImage(300, 250, BufferedImage.TYPE_INT_RGB);
+		byte[] png = write(image, 64);
+
+		assertPixels(image, ImageIO.read(new ByteArrayInputStream(png)));
+		assertEquals("IHDR", chunks(png).get(0));
+		assertEquals("IEND", chunks(png).get(chunks(png).size() - 1));
+	}
+
+	@Test
+	public void largeImagesUseSeveralDataChunksTest() throws IOException {
+		BufferedImage image = 
+			randomImage(1000, 400, BufferedImage.TYPE_INT_RGB);
+		byte[] png = write(image, 100);
+
+		assertPixels(image, ImageIO.read(new ByteArrayInputStream(png)));
+		int dataChunks = 0;
+		for (String chunk : chunks(png)) {
+			if (chunk.equals("IDAT")) {
+				dataChunks++;
+			}
+		}
+		assertTrue(dataChunks > 1);
+	}
+
+	@Test
+	public void otherImageTypesTest() throws IOException {
+		for (int type : new int[] { BufferedImage.TYPE_INT_ARGB,
+			BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_USHORT_565_RGB }) {
+			BufferedImage image = randomImage(77, 31, type);
+			byte[] png = write(image, 10);
+
+			assertPixels(image, ImageIO.read(new ByteArrayInputStream(png)));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void tooManyRowsTest() throws IOException {
+		PngStripWriter writer = 
+			new PngStripWriter(new ByteArrayOutputStream(), 10, 10);
+		writer.writeRows(new BufferedImage(10, 11, BufferedImage.TYPE_INT_RGB),
+			11);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void tooNarrowImageTest() throws IOException {
+		PngStripWriter writer = 
+			new PngStripWriter(new ByteArrayOutputStream(), 10, 10);
+		writer.writeRows(new BufferedImage(9, 10, BufferedImage.TYPE_INT_RGB),
+			10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidSizeTest() throws IOException {
+		new PngStripWriter(new ByteArrayOutputStream(), 0, 10);
+	}
+
+	@Test(expected = IOException.class)
+	public void missingRowsTest() throws IOException {
+		try (PngStripWriter writer = 
+			new PngStripWriter(new ByteArrayOutputStream(), 10, 10)) {
+			writer.writeRows(
+				new BufferedImage(10, 5, BufferedImage.TYPE_INT_RGB), 5);
+			assertEquals(5, writer.getRowsWritten());
+		}
+	}
+
+	private static BufferedImage randomImage(int width, int height, 
+		int type) {
+		Random random = new Random(width * height);
+		BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, y % 7 == 0 
+					? random.nextInt() : 0xFF000000 | (x * 255 / width) << 8);
+			}
+		}
+
+		return image;
+	}
+
+	private static byte[] write(BufferedImage image, int stripHeight)
+		throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (PngStripWriter writer = 
+			new PngStripWriter(out, image.getWidth(), image.getHeight())) {
+			for (int top = 0; top < image.getHeight(); top += stripHeight) {
+				int rows = Math.min(stripHeight, image.getHeight() - top);
+				writer.writeRows(strip(image, top, rows), rows);
+			}
+		}
+
+		return out.toByteArray();
+	}
+
+	/*
+	 * Copies the rows of the strip into a new image of the same type, as the
+	 * strips are rendered into their own images when exporting.
+	 */
+	private static BufferedImage strip(BufferedImage image, int top, 
+		int rows) {
+		BufferedImage strip = 
+			new BufferedImage(image.getWidth(), rows, image.getType());
+		for (int y = 0; y < rows; y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				strip.setRGB(x, y, image.getRGB(x, top + y));
+			}
+		}
+
+		return strip;
+	}
+
+	private static void assertPixels(BufferedImage expected,
+		BufferedImage actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		int width = expected.getWidth();
+		for (int y = 0; y < expected.getHeight(); y++) {
+			int[] expectedRow = expected.getRGB(0, y, width, 1, null, 0, width);
+			int[] actualRow = actual.getRGB(0, y, width, 1, null, 0, width);
+			for (int x = 0; x < width; x++) {
+				expectedRow[x] |= 0xFF000000;
+			}
+			assertArrayEquals("row " + y, expectedRow, actualRow);
+		}
+	}
+
+	/*
+	 * Returns the types of the chunks of the PNG file, checking their CRC.
+	 */
+	private static List<String> chunks(byte[] png) throws IOException {
+		List<String> types = new ArrayList<String>();
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(png));
+		in.skipBytes(8);
+		while (in.available() > 0) {
+			int length = in.readInt();
+			byte[] type = new byte[4];
+			in.readFully(type);
+			byte[] data = new byte[length];
+			in.readFully(data);
+			CRC32 crc = new CRC32();
+			crc.update(type);
+			crc.update(data);
+			assertEquals((int) crc.getValue(), in.readInt());
+			types.add(new String(type, StandardCharsets.US_ASCII));
+		}
+
+		return types;
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sing_group.gc4s.genomebrowser.TrackRegistry.Track;
+import org.sing_group.gc4s.genomebrowser.painter.Painter;
+
+public class TrackRegistryTest {
+	private TrackRegistry registry;
+	private List<String> events;
+	private Track a;
+	private Track b;
+	private Track c;
+	private Track d;
+
+	@Before
+	public void createRegistry() {
+		this.registry = new TrackRegistry();
+		this.a = this.registry.add(new File("a.bam"), painter());
+		this.b = this.registry.add(new File("b.bed"), painter());
+		this.c = this.registry.add(new File("a.bam"), painter());
+		this.d = this.registry.add(new File("d.pileup"), painter());
+
+		this.events = new ArrayList<String>();
+		this.registry.addTrackRegistryListener(new TrackRegistryListener() {
+
+			@Override
+			public void trackAdded(Track track) {
+				events.add("added " + track.getIndex());
+			}
+
+			@Override
+			public void trackRemoved(Track track, int index) {
+				events.add("removed " + index);
+			}
+
+			@Override
+			public void trackMoved(Track track, int from, int to) {
+				events.add("moved " + from + " " + to);
+			}
+		});
+	}
+
+	@Test
+	public void addTest() {
+		assertEquals(4, this.registry.size());
+		assertOrder(this.a, this.b, this.c, this.d);
+		assertSame(this.c, this.registry.getById(this.c.getId()));
+		assertSame(this.c, this.registry.getTrack(this.c.getPainter()));
+		assertSame(this.a, this.registry.getTrack(new File("a.bam")));
+		assertEquals(2, this.registry.indexOf(this.c.getPainter()));
+		assertTrue(this.a.getId() != this.c.getId());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void addPainterTwiceTest() {
+		this.registry.add(new File("e.bed"), this.a.getPainter());
+	}
+
+	@Test
+	public void moveForwardTest() {
+		this.registry.move(0, 2);
+
+		assertOrder(this.b, this.c, this.a, this.d);
+		assertEquals(asList("moved 0 2"), this.events);
+	}
+
+	@Test
+	public void moveBackwardTest() {
+		this.registry.move(3, 1);
+
+		assertOrder(this.a, this.d, this.b, this.c);
+		assertEquals(asList("moved 3 1"), this.events);
+	}
+
+	@Test
+	public void moveToSamePositionTest() {
+		this.registry.move(2, 2);
+
+		assertOrder(this.a, this.b, this.c, this.d);
+		assertTrue(this.events.isEmpty());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void moveOutOfRangeTest() {
+		this.registry.move(1, 4);
+	}
+
+	@Test
+	public void removeTest() {
+		assertTrue(this.registry.remove(this.b));
+
+		assertOrder(this.a, this.c, this.d);
+		assertEquals(-1, this.b.getIndex());
+		assertNull(this.registry.getById(this.b.getId()));
+		assertNull(this.registry.getTrack(this.b.getPainter()));
+		assertNull(this.registry.getTrack(new File("b.bed")));
+		assertEquals(-1, this.registry.indexOf(this.b.getPainter()));
+		assertEquals(asList("removed 1"), this.events);
+
+		assertFalse(this.registry.remove(this.b));
+		assertFalse(this.registry.remove(null));
+		assertEquals(1, this.events.size());
+	}
+
+	@Test
+	public void removeTrackOfSharedFileTest() {
+		this.registry.remove(this.a);
+
+		assertSame(this.c, this.registry.getTrack(new File("a.bam")));
+		this.registry.remove(this.c);
+		assertNull(this.registry.getTrack(new File("a.bam")));
+		assertOrder(this.b, this.d);
+	}
+
+	@Test
+	public void snapshotsAreUpdatedTest() {
+		List<Painter> painters = this.registry.getPainters();
+		List<File> files = this.registry.getFiles();
+		assertSame(painters, this.registry.getPainters());
+
+		this.registry.move(0, 3);
+		assertEquals(this.a.getPainter(), painters.get(0));
+		assertEquals(this.a.getFile(), files.get(0));
+		assertEquals(this.b.getPainter(), this.registry.getPainters().get(0));
+		assertEquals(new File("b.bed"), this.registry.getFiles().get(0));
+
+		Track e = this.registry.add(new File("e.bed"), painter());
+		assertEquals(5, this.registry.getPainters().size());
+		assertEquals(asList("moved 0 3", "added 4"), this.events);
+		assertSame(e, this.registry.get(4));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void snapshotsAreImmutableTest() {
+		this.registry.getPainters().remove(0);
+	}
+
+	private void assertOrder(Track... tracks) {
+		assertEquals(asList(tracks), this.registry.getTracks());
+		for (int i = 0; i < tracks.length; i++) {
+			assertEquals(i, tracks[i].getIndex());
+			assertSame(tracks[i], this.registry.get(i));
+			assertSame(tracks[i].getPainter(), 
+				this.registry.getPainters().get(i));
+			assertSame(tracks[i].getFile(), this.registry.getFiles().get(i));
+		}
+	}
+
+	private static Painter painter() {
+		return (Painter) Proxy.newProxyInstance(Painter.class.getClassLoader(),
+			new Class<?>[] { Painter.class }, (proxy, method, args) -> {
+				switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					return null;
+				}
+			});
+	}
+}
@@ -0,0 +1,259 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.sing_group.gc4s.genomebrowser.BatchTracksRenderer.Region;
+import org.sing_group.gc4s.genomebrowser.painter.Painter;
+import org.sing_group.gc4s.genomebrowser.painter.PainterFactory;
+import org.sing_group.gc4s.genomebrowser.painter.PainterMetrics;
+
+import es.cnio.bioinfo.pileline.refgenomeindex.GenomeIndex;
+import es.cnio.bioinfo.pileline.refgenomeindex.PileLineGenomeIndex;
+
+/**
+ * Replays a navigation session over a set of tracks, so that regressions in
+ * the painters ({@code GPPainter}, {@code PileupPainter},
+ * {@code IntervalsPainter} and {@code BamIntervalsPainter}) show up in
+ * numbers. Each track is rendered off-screen for each region of the session,
+ * in the same way as in {@link TracksImageExporter}, recording its I/O with
+ * {@link PainterMetrics}. For each track, the time to replay the whole
+ * session is measured with {@link BenchmarkTimer} and the metrics of its last
+ * replay are summed up.
+ * 
+ * It needs a real genome index and tracks, given with the following system
+ * properties, and it is skipped otherwise:
+ * <ul>
+ * <li>{@code benchmark.genome}: the genome index directory or file.</li>
+ * <li>{@code benchmark.tracks}: the track files, separated by the path
+ * separator.</li>
+ * <li>{@code benchmark.session}: a CSV file written by a
+ * {@link TrackRenderMetricsWriter} while navigating, whose regions are
+ * replayed in order. Without it, a session of {@code benchmark.sequence} is
+ * generated that pans 10 times by half of {@code benchmark.regionLength}
+ * (10000 by default), zooms out 4 times by a factor of 4 and zooms back
+ * in.</li>
+ * <li>{@code benchmark.runs}: the number of measured replays (5 by
+ * default).</li>
+ * <li>{@code benchmark.output}: an optional CSV file where the metrics of the
+ * last replay are written, with the same columns as the session, so that
+ * replays of different versions can be compared row by row.</li>
+ * </ul>
+ * 
+ * For instance:
+ * {@code mvn -Pbenchmarks test -Dtest=TrackRenderReplayBenchmark
+ * -Dbenchmark.genome=hg19 -Dbenchmark.tracks=sample.bam:sample.pileup.bgz
+ * -Dbenchmark.session=session.csv -Dbenchmark.output=replay.csv}
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class TrackRenderReplayBenchmark {
+	private static final int WIDTH = 1200;
+
+	@Test
+	public void replaySession() throws Exception {
+		String genome = System.getProperty("benchmark.genome");
+		String tracks = System.getProperty("benchmark.tracks");
+		String session = System.getProperty("benchmark.session");
+		String sequence = System.getProperty("benchmark.sequence");
+		assumeTrue(genome != null && tracks != null 
+			&& (session != null || sequence != null));
+		int runs = Integer.getInteger("benchmark.runs", 5);
+		String output = System.getProperty("benchmark.output");
+
+		List<Region> regions = session != null 
+			? readSession(new File(session))
+			: generateSession(sequence, 
+				Long.getLong("benchmark.regionLength", 10000L));
+
+		GenomeIndex genomeIndex = new PileLineGenomeIndex(new File(genome));
+		GenomeBrowser genomeBrowser = new GenomeBrowser(genomeIndex);
+		TracksPanel tracksPanel = new TracksPanel(genomeBrowser);
+		try (Writer out = output != null 
+				? new FileWriter(output) : new StringWriter();
+			TrackRenderMetricsWriter writer = new TrackRenderMetricsWriter(out)
+		) {
+			for (String track : tracks.split(File.pathSeparator)) {
+				Painter painter = PainterFactory.getPainter(new File(track));
+				painter.init(genomeBrowser);
+				try {
+					List<TrackRenderMetrics> metrics = 
+						new ArrayList<TrackRenderMetrics>();
+					BenchmarkTimer.measure(painter.getTrackName() + ": "
+						+ regions.size() + " regions", 1, runs, () -> {
+							metrics.clear();
+							for (Region region : regions) {
+								metrics.add(render(genomeBrowser, tracksPanel,
+									painter, region));
+							}
+						});
+					summarize(metrics);
+					for (TrackRenderMetrics frame : metrics) {
+						writer.trackRendered(frame);
+					}
+				} finally {
+					painter.dispose();
+				}
+			}
+		} finally {
+			genomeBrowser.dispose();
+		}
+	}
+
+	private static TrackRenderMetrics render(GenomeBrowser genomeBrowser,
+		TracksPanel tracksPanel, Painter painter, Region region) {
+		PainterMetrics io = PainterMetrics.start();
+		long start = System.nanoTime();
+		try {
+			genomeBrowser.runInView(region.getSequence(), region.getStart(),
+				region.getEnd(), tracksPanel, () -> {
+					TracksImageExporter.renderImage(
+						Collections.singletonList(painter), tracksPanel,
+						tracksPanel, region.getSequence(), region.getStart(),
+						region.getEnd(), WIDTH);
+				});
+		} finally {
+			io.stop();
+		}
+		long paintNanos = System.nanoTime() - start - io.getQueryNanos();
+
+		return new TrackRenderMetrics(painter, region.getSequence(),
+			region.getStart(), region.getEnd(), false, io.getQueryNanos(), 0,
+			paintNanos, io.getRecordsScanned(), io.getRecordChars(), 0, 0);
+	}
+
+	private static void summarize(List<TrackRenderMetrics> metrics) {
+		long queryNanos = 0;
+		long paintNanos = 0;
+		long records = 0;
+		long chars = 0;
+		for (TrackRenderMetrics frame : metrics) {
+			queryNanos += frame.getQueryNanos();
+			paintNanos += frame.getPaintNanos();
+			records += frame.getRecordsScanned();
+			chars += frame.getRecordChars();
+		}
+		System.out.printf("%-50s query %10.3f ms   paint %10.3f ms   "
+			+ "%,d records   %,d chars%n", "  last replay", queryNanos / 1e6, 
+			paintNanos / 1e6, records, chars);
+	}
+
+	/*
+	 * Reads the regions of a session recorded by a TrackRenderMetricsWriter,
+	 * collapsing the rows of the tracks rendered in the same frame.
+	 */
+	private static List<Region> readSession(File session) throws IOException {
+		List<Region> regions = new ArrayList<Region>();
+		try (BufferedReader reader = 
+			new BufferedReader(new FileReader(session))) {
+			String line = reader.readLine();
+			String previous = null;
+			while ((line = reader.readLine()) != null) {
+				List<String> columns = parseCsv(line);
+				if (columns.size() < 4) {
+					continue;
+				}
+				String key = columns.get(1) + ":" + columns.get(2) + "-"
+					+ columns.get(3);
+				if (!key.equals(previous)) {
+					regions.add(new Region(columns.get(1),
+						Long.parseLong(columns.get(2)),
+						Long.parseLong(columns.get(3))));
+					previous = key;
+				}
+			}
+		}
+
+		return regions;
+	}
+
+	private static List<String> parseCsv(String line) {
+		List<String> columns = new ArrayList<String>();
+		StringBuilder column = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c != '"') {
+					column.append(c);
+				} else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					column.append(c);
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				columns.add(column.toString());
+				column.setLength(0);
+			} else {
+				column.append(c);
+			}
+		}
+		columns.add(column.toString());
+
+		return columns;
+	}
+
+	private static List<Region> generateSession(String sequence, long length) {
+		List<Region> regions = new ArrayList<Region>();
+		long start = 1;
+		for (int i = 0; i <= 10; i++) {
+			regions.add(new Region(sequence, start, start + length - 1));
+			start += length / 2;
+		}
+		long center = start;
+		long zoom = length;
+		for (int i = 0; i < 4; i++) {
+			zoom *= 4;
+			regions.add(zoomed(sequence, center, zoom));
+		}
+		for (int i = 0; i < 4; i++) {
+			zoom /= 4;
+			regions.add(zoomed(sequence, center, zoom));
+		}
+
+		return regions;
+	}
+
+	private static Region zoomed(String sequence, long center, long length) {
+		long start = Math.max(1, center - length / 2);
+
+		return new Region(sequence, start, start + length - 1);
+	}
+}
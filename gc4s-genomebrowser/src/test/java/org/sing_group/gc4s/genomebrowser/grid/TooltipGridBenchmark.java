@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.grid;
+
+import static org.sing_group.gc4s.genomebrowser.grid.Coordinates.calculateXYCoordinates;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.sing_group.gc4s.genomebrowser.BenchmarkTimer;
+
+/**
+ * Compares the memory and the {@code mouseMoved} lookup time of the tooltip
+ * index of a dense BAM track:
+ * <ul>
+ * <li>map: a {@code HashMap<Coordinates, LinkedList<GridInfo>>} keeping all
+ * the {@code GridInfo} added at each cell, as {@code TracksPanel} did before
+ * {@code TooltipGrid}.</li>
+ * <li>grid: a {@link TooltipGrid}, as {@code TracksPanel} does now, which
+ * keeps only the first {@code GridInfo} of each cell.</li>
+ * </ul>
+ * 
+ * Both indexes are filled with the same reads, each one covering all the
+ * cells of its rectangle, and looked up at the same random mouse positions.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class TooltipGridBenchmark {
+	private static final int CELL_SIZE = 10;
+	private static final int WIDTH = 1920;
+	private static final int ROWS = 60;
+	private static final int ROW_HEIGHT = 10;
+	private static final int LOOKUPS = 1_000_000;
+
+	@Test
+	public void denseTrack() throws Exception {
+		for (int reads : new int[] { 10_000, 100_000, 1_000_000 }) {
+			float[][] rectangles = reads(reads);
+			double[][] mouse = mousePositions();
+			GridInfo info = new GridInfo(null, GridInfo.PILEUPINFO);
+
+			String name = reads + " reads: ";
+			System.out.printf("%-50s map %8.1f MB   grid %8.1f MB%n",
+				name + "retained memory", 
+				retained(() -> fillMap(rectangles, info)),
+				retained(() -> fillGrid(rectangles, info)));
+
+			BenchmarkTimer.measure(name + "map fill", 2, 7, 
+				() -> fillMap(rectangles, info));
+			BenchmarkTimer.measure(name + "grid fill", 2, 7, 
+				() -> fillGrid(rectangles, info));
+
+			Map<Coordinates, LinkedList<GridInfo>> map = 
+				fillMap(rectangles, info);
+			TooltipGrid grid = fillGrid(rectangles, info);
+			BenchmarkTimer.measure(name + "map " + LOOKUPS + " lookups", 2, 7,
+				() -> lookupMap(map, mouse));
+			BenchmarkTimer.measure(name + "grid " + LOOKUPS + " lookups", 2, 7,
+				() -> lookupGrid(grid, mouse));
+		}
+	}
+
+	private static float[][] reads(int count) {
+		Random random = new Random(count);
+		float[][] rectangles = new float[count][];
+		for (int i = 0; i < count; i++) {
+			rectangles[i] = new float[] {
+				random.nextInt(WIDTH), 
+				random.nextInt(ROWS) * ROW_HEIGHT,
+				1 + random.nextInt(40), 
+				ROW_HEIGHT 
+			};
+		}
+
+		return rectangles;
+	}
+
+	private static double[][] mousePositions() {
+		Random random = new Random(0);
+		double[][] positions = new double[LOOKUPS][];
+		for (int i = 0; i < LOOKUPS; i++) {
+			positions[i] = new double[] {
+				random.nextInt(WIDTH), random.nextInt(ROWS * ROW_HEIGHT)
+			};
+		}
+
+		return positions;
+	}
+
+	private static Map<Coordinates, LinkedList<GridInfo>> fillMap(
+		float[][] rectangles, GridInfo info) {
+		Map<Coordinates, LinkedList<GridInfo>> map = new HashMap<>();
+		for (float[] r : rectangles) {
+			for (int h = 0; h < r[3]; h += CELL_SIZE) {
+				for (int w = 0; w < r[2]; w += CELL_SIZE) {
+					Coordinates c = 
+						calculateXYCoordinates(r[0] + w, r[1] + h, CELL_SIZE);
+					map.computeIfAbsent(c, k -> new LinkedList<>()).add(info);
+				}
+			}
+		}
+
+		return map;
+	}
+
+	private static TooltipGrid fillGrid(float[][] rectangles, GridInfo info) {
+		TooltipGrid grid = new TooltipGrid(CELL_SIZE);
+		for (float[] r : rectangles) {
+			for (int h = 0; h < r[3]; h += CELL_SIZE) {
+				for (int w = 0; w < r[2]; w += CELL_SIZE) {
+					grid.add(r[0] + w, r[1] + h, info);
+				}
+			}
+		}
+
+		return grid;
+	}
+
+	private static int lookupMap(Map<Coordinates, LinkedList<GridInfo>> map,
+		double[][] mouse) {
+		int found = 0;
+		for (double[] p : mouse) {
+			Coordinates c = calculateXYCoordinates(p[0], p[1], CELL_SIZE);
+			if (map.get(c) != null) {
+				found++;
+			}
+		}
+
+		return found;
+	}
+
+	private static int lookupGrid(TooltipGrid grid, double[][] mouse) {
+		int found = 0;
+		for (double[] p : mouse) {
+			if (grid.get(p[0], p[1]) != null) {
+				found++;
+			}
+		}
+
+		return found;
+	}
+
+	private static double retained(Supplier<?> index) {
+		Runtime runtime = Runtime.getRuntime();
+		long before = used(runtime);
+		Object retained = index.get();
+		long after = used(runtime);
+		if (retained == null) {
+			throw new IllegalStateException();
+		}
+
+		return (after - before) / (1024d * 1024d);
+	}
+
+	private static long used(Runtime runtime) {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.grid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TooltipGridTest {
+
+	@Test
+	public void firstInfoOfTheCellIsKeptTest() {
+		TooltipGrid grid = new TooltipGrid(5);
+		GridInfo first = info();
+		grid.add(0, 0, first);
+		grid.add(4.9, 4.9, info());
+
+		assertEquals(1, grid.size());
+		assertSame(first, grid.get(2, 3));
+		assertNull(grid.get(5, 0));
+		assertNull(grid.get(0, 5));
+	}
+
+	@Test
+	public void negativeCoordinatesTest() {
+		TooltipGrid grid = new TooltipGrid(5);
+		GridInfo negative = info();
+		GridInfo positive = info();
+		grid.add(-1, -1, negative);
+		grid.add(1, 1, positive);
+
+		assertEquals(2, grid.size());
+		assertSame(negative, grid.get(-5, -0.5));
+		assertSame(positive, grid.get(0, 0));
+		assertNull(grid.get(-5.5, -1));
+	}
+
+	@Test
+	public void growsPastInitialCapacityTest() {
+		TooltipGrid grid = new TooltipGrid(2);
+		GridInfo[][] infos = new GridInfo[200][50];
+		for (int x = 0; x < infos.length; x++) {
+			for (int y = 0; y < infos[x].length; y++) {
+				infos[x][y] = info();
+				grid.add(x * 2, y * 2, infos[x][y]);
+			}
+		}
+
+		assertEquals(10_000, grid.size());
+		for (int x = 0; x < infos.length; x++) {
+			for (int y = 0; y < infos[x].length; y++) {
+				assertSame(infos[x][y], grid.get(x * 2 + 1, y * 2 + 1));
+			}
+		}
+	}
+
+	@Test
+	public void clearTest() {
+		TooltipGrid grid = new TooltipGrid(1);
+		for (int x = 0; x < 400; x++) {
+			for (int y = 0; y < 400; y++) {
+				grid.add(x, y, info());
+			}
+		}
+		grid.clear();
+
+		assertEquals(0, grid.size());
+		assertNull(grid.get(10, 10));
+
+		GridInfo info = info();
+		grid.add(10, 10, info);
+		assertEquals(1, grid.size());
+		assertSame(info, grid.get(10, 10));
+	}
+
+	@Test
+	public void addAllTest() {
+		TooltipGrid grid = new TooltipGrid(5);
+		TooltipGrid other = new TooltipGrid(5);
+		GridInfo kept = info();
+		GridInfo added = info();
+		grid.add(0, 0, kept);
+		other.add(0, 0, info());
+		other.add(10, 0, added);
+		grid.addAll(other);
+
+		assertEquals(2, grid.size());
+		assertSame(kept, grid.get(0, 0));
+		assertSame(added, grid.get(12, 3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void addAllCellSizeMismatchTest() {
+		new TooltipGrid(5).addAll(new TooltipGrid(4));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidCellSizeTest() {
+		new TooltipGrid(0);
+	}
+
+	@Test
+	public void cellCoordinatesTest() {
+		TooltipGrid grid = new TooltipGrid(5);
+
+		assertEquals(new Coordinates(10, 5), grid.getCellCoordinates(12, 9.9));
+		assertEquals(new Coordinates(-5, 0), grid.getCellCoordinates(-0.1, 0));
+	}
+
+	private static GridInfo info() {
+		return new GridInfo(null, GridInfo.TRACKINFO);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes BGZF files for the tests: text split into blocks of a fixed number
+ * of uncompressed bytes, each one with the BC extra field that holds its
+ * size, followed by the empty end of file block.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class BgzfFiles {
+
+	/**
+	 * Writes the specified lines to a BGZF file.
+	 * 
+	 * @param file the file to write
+	 * @param lines the lines, which are terminated with {@code \n}
+	 * @param blockSize the number of uncompressed bytes of each block
+	 * @throws IOException if an error occurs while writing the file
+	 */
+	public static void write(File file, List<String> lines, int blockSize)
+		throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (String line : lines) {
+			text.append(line).append('\n');
+		}
+		byte[] data = text.toString().getBytes(StandardCharsets.US_ASCII);
+		try (OutputStream out = new FileOutputStream(file)) {
+			for (int start = 0; start < data.length; start += blockSize) {
+				writeBlock(out, data, start,
+					Math.min(blockSize, data.length - start));
+			}
+			writeBlock(out, data, 0, 0);
+		}
+	}
+
+	private static void writeBlock(OutputStream out, byte[] data, int start,
+		int length) throws IOException {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(data, start, length);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished()) {
+			compressed.write(buffer, 0, deflater.deflate(buffer));
+		}
+		deflater.end();
+
+		CRC32 crc = new CRC32();
+		crc.update(data, start, length);
+		int blockSize = 18 + compressed.size() + 8;
+
+		out.write(new byte[] { 31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255,
+			6, 0, 66, 67, 2, 0 });
+		writeShort(out, blockSize - 1);
+		compressed.writeTo(out);
+		writeInt(out, (int) crc.getValue());
+		writeInt(out, length);
+	}
+
+	private static void writeShort(OutputStream out, int value)
+		throws IOException {
+		out.write(value & 0xff);
+		out.write(value >>> 8 & 0xff);
+	}
+
+	private static void writeInt(OutputStream out, int value)
+		throws IOException {
+		writeShort(out, value & 0xffff);
+		writeShort(out, value >>> 16);
+	}
+}
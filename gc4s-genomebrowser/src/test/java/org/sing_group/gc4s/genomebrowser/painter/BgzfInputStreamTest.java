@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BgzfInputStreamTest {
+	private File file;
+	private List<String> lines;
+
+	@Before
+	public void createFile() throws IOException {
+		this.file = File.createTempFile("gc4s-bgzf", ".bgz");
+		this.lines = new ArrayList<String>();
+		for (int i = 0; i < 2000; i++) {
+			this.lines.add("chr1\t" + (i + 1) + "\tA\t" + (i % 61));
+		}
+		BgzfFiles.write(this.file, this.lines, 1000);
+	}
+
+	@After
+	public void deleteFile() {
+		this.file.delete();
+	}
+
+	@Test
+	public void readLinesAcrossBlocksTest() throws IOException {
+		try (BgzfInputStream in = 
+			new BgzfInputStream(this.file, new BgzfBlockCache(1 << 20))
+		) {
+			for (String line : this.lines) {
+				assertEquals(line, in.readLine());
+			}
+			assertNull(in.readLine());
+		}
+	}
+
+	@Test
+	public void seekFilePointersTest() throws IOException {
+		List<Long> pointers = new ArrayList<Long>();
+		BgzfBlockCache cache = new BgzfBlockCache(1 << 20);
+		try (BgzfInputStream in = new BgzfInputStream(this.file, cache)) {
+			for (int i = 0; i < this.lines.size(); i++) {
+				pointers.add(in.getFilePointer());
+				in.readLine();
+			}
+			for (int i = this.lines.size() - 1; i >= 0; i -= 97) {
+				in.seek(pointers.get(i));
+				assertEquals(this.lines.get(i), in.readLine());
+			}
+		}
+	}
+
+	@Test
+	public void cacheReusesBlocksTest() throws IOException {
+		BgzfBlockCache cache = new BgzfBlockCache(1 << 20);
+		readAll(cache);
+		long misses = cache.getMisses();
+		assertTrue(misses > 0);
+
+		readAll(cache);
+		assertEquals(misses, cache.getMisses());
+		assertTrue(cache.getHits() > 0);
+		assertEquals(0, cache.getEvictions());
+	}
+
+	@Test
+	public void cacheEvictsOverCapacityTest() throws IOException {
+		BgzfBlockCache cache = new BgzfBlockCache(4000);
+		readAll(cache);
+
+		assertTrue(cache.getEvictions() > 0);
+		assertTrue(cache.getSize() <= cache.getCapacity());
+	}
+
+	private void readAll(BgzfBlockCache cache) throws IOException {
+		try (BgzfInputStream in = new BgzfInputStream(this.file, cache)) {
+			int count = 0;
+			while (in.readLine() != null) {
+				count++;
+			}
+			assertEquals(this.lines.size(), count);
+		}
+	}
+}
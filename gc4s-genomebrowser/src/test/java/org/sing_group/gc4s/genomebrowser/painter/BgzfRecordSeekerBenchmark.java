@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.sing_group.gc4s.genomebrowser.BenchmarkTimer;
+
+/**
+ * Measures panning over a bgzipped pileup with {@link BgzfRecordSeeker}: a
+ * 20 kb view is moved 4 kb at a time and the records of each view are read.
+ * <ul>
+ * <li>one block cache: the cache holds a single block, so every seek
+ * inflates its blocks again, as a reader that only keeps its current block
+ * does.</li>
+ * <li>cold cache: a new shared-size cache for each pan, so blocks are
+ * inflated once per pan and reused by the overlapping views.</li>
+ * <li>warm cache: the same cache for all the pans, as when a region is
+ * panned again or redrawn.</li>
+ * </ul>
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class BgzfRecordSeekerBenchmark {
+	private static final int RECORDS = 1_000_000;
+	private static final int STEP = 3;
+	private static final int VIEW = 20_000;
+	private static final int PAN = 4_000;
+	private static final int PANS = 100;
+
+	@Test
+	public void panBgzippedTrack() throws Exception {
+		File directory = Files.createTempDirectory("gc4s-bgzf-bench").toFile();
+		File previous = SummaryIndex.getCacheDirectory();
+		SummaryIndex.setCacheDirectory(directory);
+		File file = new File(directory, "track.pileup.bgz");
+		try {
+			List<String> lines = new ArrayList<String>();
+			for (int i = 0; i < RECORDS; i++) {
+				long position = 1 + (long) i * STEP;
+				lines.add("chr1\t" + position + "\tA\t" + (i % 61) 
+					+ "\t.....,,,,.\tIIIIIIIIII");
+			}
+			BgzfFiles.write(file, lines, 65280);
+			lines = null;
+			SummaryIndex.build(file, 3, -1);
+			SummaryIndex summary = SummaryIndex.open(file, 3, -1);
+
+			BenchmarkTimer.measure("one block cache", 3, 10,
+				() -> pan(file, summary, new BgzfBlockCache(65280)));
+			BenchmarkTimer.measure("cold cache", 3, 10, () -> pan(file,
+				summary, new BgzfBlockCache(BgzfBlockCache.DEFAULT_CAPACITY)));
+			BgzfBlockCache warm = 
+				new BgzfBlockCache(BgzfBlockCache.DEFAULT_CAPACITY);
+			BenchmarkTimer.measure("warm cache", 3, 10, 
+				() -> pan(file, summary, warm));
+			summary.close();
+		} finally {
+			SummaryIndex.setCacheDirectory(previous);
+			for (File child : directory.listFiles()) {
+				child.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	private static long pan(File file, SummaryIndex summary,
+		BgzfBlockCache cache) throws IOException {
+		long records = 0;
+		try (BgzfRecordSeeker seeker = 
+			new BgzfRecordSeeker(file, summary, cache)) {
+			long start = 1_000_000;
+			for (int i = 0; i < PANS; i++, start += PAN) {
+				Iterator<String> it = seeker.seek("chr1", start, start + VIEW);
+				while (it.hasNext()) {
+					it.next();
+					records++;
+				}
+			}
+		}
+
+		return records;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BgzfRecordSeekerTest {
+	private File cacheDirectory;
+	private File previousCacheDirectory;
+	private File file;
+	private List<String> lines;
+	private SummaryIndex summary;
+
+	@Before
+	public void createFile() throws IOException {
+		this.previousCacheDirectory = SummaryIndex.getCacheDirectory();
+		this.cacheDirectory = 
+			Files.createTempDirectory("gc4s-summaries").toFile();
+		SummaryIndex.setCacheDirectory(this.cacheDirectory);
+
+		this.file = new File(this.cacheDirectory, "track.pileup.bgz");
+		this.lines = new ArrayList<String>();
+		this.lines.add("#sequence\tposition\tbase\tdepth");
+		for (String sequence : new String[] { "chr1", "chr2" }) {
+			for (int position = 1; position < 40000; position += 7) {
+				this.lines.add(sequence + "\t" + position + "\tA\t" 
+					+ (position % 61));
+			}
+		}
+		BgzfFiles.write(this.file, this.lines, 4096);
+
+		SummaryIndex.build(this.file, 3, -1);
+		this.summary = SummaryIndex.open(this.file, 3, -1);
+	}
+
+	@After
+	public void deleteFiles() {
+		this.summary.close();
+		SummaryIndex.setCacheDirectory(this.previousCacheDirectory);
+		for (File file : this.cacheDirectory.listFiles()) {
+			file.delete();
+		}
+		this.cacheDirectory.delete();
+	}
+
+	@Test
+	public void summaryHasBlockPointersTest() {
+		assertNotNull(this.summary);
+		assertTrue(this.summary.hasBlockPointers());
+	}
+
+	@Test
+	public void seekMatchesLinearScanTest() throws IOException {
+		try (BgzfRecordSeeker seeker = new BgzfRecordSeeker(this.file,
+			this.summary, new BgzfBlockCache(1 << 20))) {
+			long[][] regions = { { 1, 1 }, { 1, 100 }, { 4090, 4200 },
+				{ 8191, 8193 }, { 10000, 30000 }, { 39990, 50000 },
+				{ 0, 40000 }, { 50000, 60000 } };
+			for (String sequence : new String[] { "chr1", "chr2", "chr3" }) {
+				for (long[] region : regions) {
+					assertEquals(sequence + ":" + region[0] + "-" + region[1],
+						scan(sequence, region[0], region[1]),
+						toList(seeker.seek(sequence, region[0], region[1])));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void seeksReuseCachedBlocksTest() throws IOException {
+		BgzfBlockCache cache = new BgzfBlockCache(1 << 20);
+		try (BgzfRecordSeeker seeker = 
+			new BgzfRecordSeeker(this.file, this.summary, cache)) {
+			toList(seeker.seek("chr1", 10000, 20000));
+			long misses = cache.getMisses();
+
+			toList(seeker.seek("chr1", 12000, 18000));
+			assertEquals(misses, cache.getMisses());
+		}
+	}
+
+	@Test
+	public void closedSummaryHasNoRecordsTest() throws IOException {
+		try (BgzfRecordSeeker seeker = new BgzfRecordSeeker(this.file,
+			this.summary, new BgzfBlockCache(1 << 20))) {
+			this.summary.close();
+
+			assertFalse(seeker.seek("chr1", 1, 40000).hasNext());
+		}
+	}
+
+	private List<String> scan(String sequence, long start, long end) {
+		List<String> region = new ArrayList<String>();
+		for (String line : this.lines) {
+			String[] columns = line.split("\t");
+			if (columns[0].equals(sequence) && !line.startsWith("#")) {
+				long position = Long.parseLong(columns[1]);
+				if (position >= start && position <= end) {
+					region.add(line);
+				}
+			}
+		}
+
+		return region;
+	}
+
+	private static List<String> toList(Iterator<String> iterator) {
+		List<String> list = new ArrayList<String>();
+		while (iterator.hasNext()) {
+			list.add(iterator.next());
+		}
+
+		return list;
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An in-memory genomic position file split into independently deflated
+ * blocks, like a BGZF file, with a seek that behaves as the pileline
+ * {@code FastSeeker}: it inflates the records from the block that contains
+ * the first position of the region and streams them until the last one. It
+ * is used by the benchmarks to compare ways of reading the records of a
+ * region without needing real track files.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class BlockCompressedRecords {
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	private final String sequence;
+	private final List<byte[]> blocks = new ArrayList<byte[]>();
+	private final List<Integer> blockLengths = new ArrayList<Integer>();
+	private long[] blockStarts;
+	private int seeks;
+
+	/**
+	 * Creates a file with one record every {@code step} positions, starting
+	 * at position 1. Each record has the sequence, the position, a reference
+	 * base and a depth column, as a simple pileup.
+	 * 
+	 * @param sequence the sequence of the records
+	 * @param records the number of records
+	 * @param step the distance between consecutive records
+	 */
+	public BlockCompressedRecords(String sequence, int records, int step) {
+		this.sequence = sequence;
+		List<Long> starts = new ArrayList<Long>();
+		StringBuilder block = new StringBuilder();
+		long blockStart = 1;
+		for (int i = 0; i < records; i++) {
+			long position = 1 + (long) i * step;
+			if (block.length() == 0) {
+				blockStart = position;
+			}
+			block.append(sequence).append('\t').append(position).append("\tA\t")
+				.append(i % 61).append('\n');
+			if (block.length() >= BLOCK_SIZE) {
+				this.addBlock(block, blockStart, starts);
+			}
+		}
+		if (block.length() > 0) {
+			this.addBlock(block, blockStart, starts);
+		}
+		this.blockStarts = new long[starts.size()];
+		for (int i = 0; i < this.blockStarts.length; i++) {
+			this.blockStarts[i] = starts.get(i);
+		}
+	}
+
+	private void addBlock(StringBuilder block, long blockStart,
+		List<Long> starts) {
+		byte[] data = block.toString().getBytes(StandardCharsets.US_ASCII);
+		Deflater deflater = new Deflater();
+		deflater.setInput(data);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[BLOCK_SIZE];
+		while (!deflater.finished()) {
+			out.write(buffer, 0, deflater.deflate(buffer));
+		}
+		deflater.end();
+		this.blocks.add(out.toByteArray());
+		this.blockLengths.add(data.length);
+		starts.add(blockStart);
+		block.setLength(0);
+	}
+
+	/**
+	 * Returns the number of blocks of the file.
+	 * 
+	 * @return the number of blocks
+	 */
+	public int getBlockCount() {
+		return this.blocks.size();
+	}
+
+	/**
+	 * Returns the number of seeks done since the file was created.
+	 * 
+	 * @return the number of seeks
+	 */
+	public int getSeekCount() {
+		return this.seeks;
+	}
+
+	/**
+	 * Returns the records of the specified region.
+	 * 
+	 * @param sequence the sequence of the region
+	 * @param start the first position of the region
+	 * @param end the last position of the region
+	 * @return the records between {@code start} and {@code end}, both
+	 *         included
+	 */
+	public Iterator<String> seek(String sequence, long start, long end) {
+		this.seeks++;
+		if (!this.sequence.equals(sequence)) {
+			return new ArrayList<String>().iterator();
+		}
+		int block = Arrays.binarySearch(this.blockStarts, start);
+		if (block < 0) {
+			block = Math.max(0, -block - 2);
+		}
+
+		return new RecordsIterator(block, start, end);
+	}
+
+	private class RecordsIterator implements Iterator<String> {
+		private final long end;
+		private int block;
+		private String[] lines = new String[0];
+		private int line;
+		private String next;
+
+		RecordsIterator(int block, long start, long end) {
+			this.block = block;
+			this.end = end;
+			this.advance();
+			while (this.next != null
+				&& HistogramBins.parsePosition(this.next) < start) {
+				this.advance();
+			}
+		}
+
+		private void advance() {
+			while (this.line >= this.lines.length) {
+				if (this.block >= blocks.size()) {
+					this.next = null;
+					return;
+				}
+				this.lines = inflate(this.block++).split("\n");
+				this.line = 0;
+			}
+			String candidate = this.lines[this.line++];
+			this.next = 
+				HistogramBins.parsePosition(candidate) > this.end ? null : candidate;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		@Override
+		public String next() {
+			if (this.next == null) {
+				throw new NoSuchElementException();
+			}
+			String current = this.next;
+			this.advance();
+
+			return current;
+		}
+	}
+
+	private String inflate(int block) {
+		Inflater inflater = new Inflater();
+		inflater.setInput(this.blocks.get(block));
+		byte[] data = new byte[this.blockLengths.get(block)];
+		try {
+			inflater.inflate(data);
+		} catch (DataFormatException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			inflater.end();
+		}
+
+		return new String(data, StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.junit.Test;
+import org.sing_group.gc4s.genomebrowser.BenchmarkTimer;
+
+/**
+ * Compares the ways of computing the histogram of a region of a genomic
+ * position track:
+ * <ul>
+ * <li>per-interval: one seek per histogram interval, counting its records,
+ * as {@code GPPainter} did before {@code HistogramBins}.</li>
+ * <li>single seek: one seek of the whole region, parsing the position of
+ * each record to find its bin.</li>
+ * <li>count: {@link HistogramBins#count(HistogramBins.RecordSeeker)}, as
+ * {@code GPPainter} does now, which starts with a single seek and switches
+ * to one seek per bin when bins are dense.</li>
+ * </ul>
+ * 
+ * The records are read from a {@link BlockCompressedRecords} file.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class HistogramBinningBenchmark {
+	private static final int STEP = 10;
+
+	@Test
+	public void histogramOfRegion() throws Exception {
+		for (int records : new int[] { 10_000, 100_000, 1_000_000 }) {
+			BlockCompressedRecords file = 
+				new BlockCompressedRecords("chr1", records, STEP);
+			long end = (long) records * STEP;
+			for (int intervals : new int[] { 20, 100 }) {
+				String name = records + " records, " + file.getBlockCount() 
+					+ " blocks, " + intervals + " intervals: ";
+				BenchmarkTimer.measure(name + "per-interval", 5, 15, 
+					() -> perInterval(file, end, intervals));
+				BenchmarkTimer.measure(name + "single seek", 5, 15, 
+					() -> singleSeek(file, end, intervals));
+				BenchmarkTimer.measure(name + "count", 5, 15, 
+					() -> count(file, end, intervals));
+			}
+		}
+	}
+
+	private static int[] perInterval(BlockCompressedRecords file, long end,
+		int size) {
+		int[] values = new int[size];
+		long intervalSize = (end - 1) / size;
+		long intervalStart = 1;
+		long intervalEnd = 1 + intervalSize;
+		for (int c = 0; c < size; c++) {
+			Iterator<String> it = file.seek("chr1", intervalStart, intervalEnd);
+			while (it.hasNext()) {
+				it.next();
+				values[c]++;
+			}
+			intervalStart += intervalSize;
+			intervalEnd = Math.min(intervalEnd + intervalSize, end);
+		}
+
+		return values;
+	}
+
+	private static int[] singleSeek(BlockCompressedRecords file, long end,
+		int size) {
+		HistogramBins bins = new HistogramBins(1, end, size);
+		bins.addSorted(file.seek("chr1", 1, end), Integer.MAX_VALUE);
+
+		return bins.getCounts();
+	}
+
+	private static int[] count(BlockCompressedRecords file, long end,
+		int size) throws IOException {
+		HistogramBins bins = new HistogramBins(1, end, size);
+		bins.count((start, last) -> file.seek("chr1", start, last));
+
+		return bins.getCounts();
+	}
+}
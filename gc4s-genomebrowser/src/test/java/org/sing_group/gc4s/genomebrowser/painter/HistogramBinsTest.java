@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HistogramBinsTest {
+
+	@Test
+	public void binsCoverTheRegionTest() {
+		HistogramBins bins = new HistogramBins(100, 300, 20);
+		for (long position = 100; position <= 300; position++) {
+			bins.add(position);
+		}
+
+		int total = 0;
+		for (int bin = 0; bin < bins.getBinCount(); bin++) {
+			for (long p = bins.getBinStart(bin); p < bins.getBinEnd(bin); p++) {
+				assertEquals(bin, bins.binOf(p));
+			}
+			total += bins.getCounts()[bin];
+		}
+		assertEquals(201, total);
+		assertEquals(-1, bins.binOf(99));
+		assertEquals(-1, bins.binOf(301));
+	}
+
+	@Test
+	public void moreBinsThanPositionsTest() {
+		HistogramBins bins = new HistogramBins(1, 5, 20);
+		for (long position = 1; position <= 5; position++) {
+			bins.add(position);
+		}
+
+		assertEquals(5, Arrays.stream(bins.getCounts()).sum());
+	}
+
+	@Test
+	public void averagesTest() {
+		HistogramBins bins = new HistogramBins(0, 100, 2);
+		bins.add(10, 4d);
+		bins.add(20, 2d);
+		bins.add(70, 3, 9d);
+
+		assertArrayEquals(new int[] { 2, 3 }, bins.getCounts());
+		assertArrayEquals(new double[] { 3d, 3d }, bins.getAverages(), 0d);
+	}
+
+	@Test
+	public void parsePositionTest() {
+		assertEquals(12345L, HistogramBins.parsePosition("chr1\t12345\tA\t3"));
+		assertEquals(7L, HistogramBins.parsePosition("  chr2   7"));
+		assertEquals(-1L, HistogramBins.parsePosition("chr1"));
+		assertEquals(-1L, HistogramBins.parsePosition("chr1\tx12"));
+		assertEquals(-1L, HistogramBins.parsePosition("#chr\tpos"));
+	}
+
+	@Test
+	public void addSortedMatchesAddTest() {
+		List<String> records = records(1, 10_000, 3);
+		HistogramBins expected = new HistogramBins(1, 30_000, 37);
+		for (String record : records) {
+			expected.add(HistogramBins.parsePosition(record));
+		}
+
+		HistogramBins actual = new HistogramBins(1, 30_000, 37);
+		long resume = actual.addSorted(records.iterator(), Integer.MAX_VALUE);
+
+		assertEquals(-1L, resume);
+		assertArrayEquals(expected.getCounts(), actual.getCounts());
+	}
+
+	@Test
+	public void addSortedStopsAfterAPositionTest() {
+		List<String> records = new ArrayList<String>();
+		for (int i = 0; i < 10; i++) {
+			records.add("chr1\t5\tA");
+		}
+		records.add("chr1\t6\tA");
+
+		HistogramBins bins = new HistogramBins(1, 100, 1);
+		long resume = bins.addSorted(records.iterator(), 3);
+
+		assertEquals(6L, resume);
+		assertEquals(10, bins.getCounts()[0]);
+	}
+
+	@Test
+	public void countDenseRegionTest() throws IOException {
+		countTest(1, 200_000, 1, 20);
+	}
+
+	@Test
+	public void countSparseRegionTest() throws IOException {
+		countTest(1, 2_000, 50, 20);
+	}
+
+	@Test
+	public void countRepeatedPositionsTest() throws IOException {
+		List<String> records = new ArrayList<String>();
+		for (int position = 1; position <= 100; position++) {
+			for (int i = 0; i < 500; i++) {
+				records.add("chr1\t" + position + "\tA");
+			}
+		}
+
+		HistogramBins expected = new HistogramBins(1, 100, 4);
+		for (String record : records) {
+			expected.add(HistogramBins.parsePosition(record));
+		}
+
+		HistogramBins actual = new HistogramBins(1, 100, 4);
+		actual.count((start, end) -> seek(records, start, end));
+
+		assertArrayEquals(expected.getCounts(), actual.getCounts());
+		assertEquals(50_000, Arrays.stream(actual.getCounts()).sum());
+	}
+
+	private static void countTest(int first, int records, int step, int size)
+		throws IOException {
+		List<String> file = records(first, records, step);
+		long end = first + (long) (records - 1) * step;
+		HistogramBins expected = new HistogramBins(first, end, size);
+		for (String record : file) {
+			expected.add(HistogramBins.parsePosition(record));
+		}
+
+		int[] seeks = new int[1];
+		HistogramBins actual = new HistogramBins(first, end, size);
+		actual.count((start, last) -> {
+			seeks[0]++;
+			return seek(file, start, last);
+		});
+
+		assertArrayEquals(expected.getCounts(), actual.getCounts());
+		if (records / size <= HistogramBins.DENSE_BIN_RECORDS) {
+			assertEquals(1, seeks[0]);
+		}
+	}
+
+	private static List<String> records(int first, int records, int step) {
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < records; i++) {
+			lines.add("chr1\t" + (first + (long) i * step) + "\tA\t1");
+		}
+
+		return lines;
+	}
+
+	private static Iterator<String> seek(List<String> records, long start,
+		long end) {
+		List<String> region = new ArrayList<String>();
+		for (String record : records) {
+			long position = HistogramBins.parsePosition(record);
+			if (position >= start && position <= end) {
+				region.add(record);
+			}
+		}
+
+		return region.iterator();
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sing_group.gc4s.genomebrowser.BenchmarkTimer;
+
+/**
+ * Measures how the queries of several threads on the same file scale when
+ * all of them share the index of the default group of readers, as the
+ * painters of the same file in a {@code GenomeBrowser} do, and when each
+ * thread acquires its index in its own group, as the batch renderer workers
+ * and the prefetcher do.
+ * 
+ * The index is a plain text file of genomic positions read with a
+ * {@code RandomAccessFile}, so the benchmark does not need any real track.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class IndexHandlePoolBenchmark {
+	private static final int RECORDS = 400_000;
+	private static final int RECORD_LENGTH = 25;
+	private static final int QUERY_RECORDS = 20_000;
+	private static final int QUERIES_PER_THREAD = 40;
+
+	private static File file;
+
+	@BeforeClass
+	public static void createFile() throws IOException {
+		file = File.createTempFile("gc4s-index-benchmark", ".gp");
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+			for (int i = 0; i < RECORDS; i++) {
+				out.write(String.format("chr1\t%010d\t%08d\n", i, i % 97));
+			}
+		}
+	}
+
+	@AfterClass
+	public static void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void sharedFileQueries() throws Exception {
+		int processors = Runtime.getRuntime().availableProcessors();
+		System.out.println("One shared file, " + processors + " processors");
+		for (int threads = 1; threads <= Math.max(4, processors); threads *= 2) {
+			int n = threads;
+			BenchmarkTimer.measure(n + " threads, shared readers", 2, 5,
+				() -> query(n, false));
+			BenchmarkTimer.measure(n + " threads, a group of readers each", 2, 5,
+				() -> query(n, true));
+		}
+	}
+
+	private static void query(int threads, boolean ownReaders) 
+		throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+			for (int t = 0; t < threads; t++) {
+				String group = "benchmark-" + t;
+				results.add(executor.submit(() -> {
+					IndexHandlePool.Handle<LinesIndex> handle = ownReaders
+						? IndexHandlePool.withReaders(group, 
+							() -> IndexHandlePool.acquire(file, "lines", LinesIndex::new))
+						: IndexHandlePool.acquire(file, "lines", LinesIndex::new);
+					try {
+						long sum = 0;
+						for (int q = 0; q < QUERIES_PER_THREAD; q++) {
+							LinesIndex index = handle.lock();
+							try {
+								sum += index.sum((q * 7919L) % (RECORDS - QUERY_RECORDS));
+							} finally {
+								handle.unlock();
+							}
+						}
+
+						return sum;
+					} finally {
+						handle.release();
+					}
+				}));
+			}
+			for (Future<Long> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static class LinesIndex implements AutoCloseable {
+		private final RandomAccessFile input;
+		private final byte[] buffer = new byte[QUERY_RECORDS * RECORD_LENGTH];
+
+		LinesIndex(File file) throws IOException {
+			this.input = new RandomAccessFile(file, "r");
+		}
+
+		long sum(long firstRecord) throws IOException {
+			this.input.seek(firstRecord * RECORD_LENGTH);
+			this.input.readFully(this.buffer);
+			long sum = 0;
+			for (int i = 0; i < QUERY_RECORDS; i++) {
+				sum += HistogramBins.parsePosition(new String(this.buffer, 
+					i * RECORD_LENGTH, RECORD_LENGTH - 1, "US-ASCII"));
+			}
+
+			return sum;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.input.close();
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexHandlePoolTest {
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		this.file = File.createTempFile("gc4s-index-pool", ".gp");
+	}
+
+	@After
+	public void deleteFile() {
+		this.file.delete();
+	}
+
+	@Test
+	public void sameGroupSharesIndexTest() throws IOException {
+		IndexHandlePool.Handle<FakeIndex> first = acquire();
+		IndexHandlePool.Handle<FakeIndex> second = acquire();
+
+		FakeIndex index = lockAndUnlock(first);
+		assertSame(index, lockAndUnlock(second));
+
+		first.release();
+		assertTrue(!index.closed);
+		second.release();
+		assertTrue(index.closed);
+	}
+
+	@Test
+	public void groupsHaveTheirOwnIndexTest() throws IOException {
+		IndexHandlePool.Handle<FakeIndex> shared = acquire();
+		IndexHandlePool.Handle<FakeIndex> worker = 
+			IndexHandlePool.withReaders("worker", this::acquire);
+		IndexHandlePool.Handle<FakeIndex> sameWorker = 
+			IndexHandlePool.withReaders("worker", this::acquire);
+
+		FakeIndex sharedIndex = lockAndUnlock(shared);
+		FakeIndex workerIndex = lockAndUnlock(worker);
+		assertNotSame(sharedIndex, workerIndex);
+		assertSame(workerIndex, lockAndUnlock(sameWorker));
+
+		shared.release();
+		worker.release();
+		sameWorker.release();
+		assertTrue(sharedIndex.closed);
+		assertTrue(workerIndex.closed);
+	}
+
+	@Test
+	public void groupsDoNotBlockEachOtherTest() throws Exception {
+		IndexHandlePool.Handle<FakeIndex> shared = acquire();
+		IndexHandlePool.Handle<FakeIndex> worker = 
+			IndexHandlePool.withReaders("worker", this::acquire);
+
+		shared.lock();
+		try {
+			FakeIndex[] locked = new FakeIndex[1];
+			Thread thread = new Thread(() -> {
+				locked[0] = worker.lock();
+				worker.unlock();
+			});
+			thread.start();
+			thread.join(5000);
+			assertTrue(!thread.isAlive());
+			assertTrue(locked[0] != null);
+		} finally {
+			shared.unlock();
+			shared.release();
+			worker.release();
+		}
+	}
+
+	@Test
+	public void releasedHandleTest() throws IOException {
+		IndexHandlePool.Handle<FakeIndex> handle = acquire();
+		int count = IndexHandlePool.getIndexCount();
+		handle.release();
+		handle.release();
+
+		assertNull(handle.lock());
+		assertEquals(count - 1, IndexHandlePool.getIndexCount());
+	}
+
+	private IndexHandlePool.Handle<FakeIndex> acquire() throws IOException {
+		return IndexHandlePool.acquire(this.file, "fake", FakeIndex::new);
+	}
+
+	private static FakeIndex lockAndUnlock(
+		IndexHandlePool.Handle<FakeIndex> handle) {
+		FakeIndex index = handle.lock();
+		handle.unlock();
+
+		return index;
+	}
+
+	private static class FakeIndex implements AutoCloseable {
+		boolean closed;
+
+		FakeIndex(File file) {}
+
+		@Override
+		public void close() {
+			this.closed = true;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntervalsDensityTest {
+
+	@Test
+	public void coverageTest() {
+		IntervalsDensity density = new IntervalsDensity(1, 161, 10);
+		density.add(1, 161);
+		density.add(33, 64);
+		density.add(50, 50);
+
+		assertEquals(10, density.getPixels());
+		assertEquals(3, density.getRecords());
+		assertArrayEquals(new int[] { 1, 1, 2, 3, 1, 1, 1, 1, 1, 1 },
+			density.getCoverage());
+	}
+
+	@Test
+	public void intervalsAreClippedTest() {
+		IntervalsDensity density = new IntervalsDensity(1000, 2600, 10);
+		density.add(1, 1200);
+		density.add(2500, 5000);
+		density.add(1, 999);
+		density.add(2601, 5000);
+
+		assertEquals(4, density.getRecords());
+		assertArrayEquals(new int[] { 1, 1, 0, 0, 0, 0, 0, 0, 0, 1 },
+			density.getCoverage());
+	}
+
+	@Test
+	public void everyIntervalCoversAPixelTest() {
+		IntervalsDensity density = new IntervalsDensity(1, 1 + (1 << 20), 128);
+		density.add(1 + 50 * 8192 + 100, 1 + 50 * 8192 + 100);
+		density.add(1 + (1 << 20), 1 + (1 << 20));
+
+		int[] coverage = density.getCoverage();
+		assertEquals(1, coverage[50]);
+		assertEquals(1, coverage[127]);
+		assertEquals(2, sum(coverage));
+	}
+
+	@Test
+	public void coverageMatchesIntervalsTest() {
+		long initialPosition = 10_000;
+		long finalPosition = 74_000;
+		int width = 500;
+		IntervalsDensity density = 
+			new IntervalsDensity(initialPosition, finalPosition, width);
+		long[] starts = new long[5000];
+		long[] stops = new long[5000];
+		Random random = new Random(0);
+		for (int i = 0; i < starts.length; i++) {
+			starts[i] = random.nextInt(84_000);
+			stops[i] = starts[i] + random.nextInt(2_000);
+			density.add(starts[i], stops[i]);
+		}
+
+		/*
+		 * Each position p covers [p, p + 1) and pixel x covers 
+		 * [x * span / width, (x + 1) * span / width) from the first position.
+		 * The last position is drawn in the last pixel. The span is 128 times
+		 * the width, so that the scale has no rounding errors.
+		 */
+		long span = finalPosition - initialPosition;
+		int[] coverage = density.getCoverage();
+		for (int x = 0; x < width; x++) {
+			int expected = 0;
+			for (int i = 0; i < starts.length; i++) {
+				long start = Math.max(starts[i], initialPosition);
+				long stop = Math.min(stops[i], finalPosition);
+				if (start <= stop
+					&& (start - initialPosition) * width < (x + 1) * span
+					&& (stop + 1 - initialPosition) * width > x * span) {
+					expected++;
+				}
+			}
+			assertEquals("pixel " + x, expected, coverage[x]);
+		}
+	}
+
+	@Test
+	public void tooDenseTest() {
+		IntervalsDensity density = new IntervalsDensity(1, 1000, 10);
+		for (int i = 0; i < IntervalsDensity.MAX_RECORDS_PER_PIXEL * 10; i++) {
+			density.add(i, i + 5);
+		}
+		assertFalse(density.isTooDense());
+
+		density.add(500, 600);
+		assertTrue(density.isTooDense());
+	}
+
+	@Test
+	public void layoutSwitchesToDensityTest() {
+		IntervalsLayout.Packer packer = 
+			new IntervalsLayout.Packer("chr1", 1, 1000, 10, null);
+		int records = IntervalsDensity.MAX_RECORDS_PER_PIXEL * 10;
+		for (int i = 0; i < records; i++) {
+			packer.add(1 + i * 20, 10 + i * 20, "interval " + i);
+		}
+		IntervalsLayout layout = packer.getLayout();
+		assertFalse(layout.isDensity());
+		assertEquals(records, layout.size());
+
+		packer.add(900, 950, "last");
+		packer.add(910, 950, "ignored");
+		assertTrue(layout.isDensity());
+		assertEquals(0, layout.size());
+		assertEquals(1, layout.getRowCount());
+		assertEquals(records + 2, layout.getDensity().getRecords());
+	}
+
+	private static int sum(int[] values) {
+		int sum = 0;
+		for (int value : values) {
+			sum += value;
+		}
+
+		return sum;
+	}
+}
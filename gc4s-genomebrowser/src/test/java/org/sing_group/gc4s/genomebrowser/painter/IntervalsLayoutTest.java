@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IntervalsLayoutTest {
+
+	@Test
+	public void overlappingIntervalsAreStackedTest() {
+		IntervalsLayout layout = layout(null, 
+			100, 150, 
+			120, 200, 
+			130, 140);
+
+		assertEquals(3, layout.size());
+		assertEquals(3, layout.getRowCount());
+		assertEquals(0, layout.getRow(0));
+		assertEquals(1, layout.getRow(1));
+		assertEquals(2, layout.getRow(2));
+	}
+
+	@Test
+	public void freeRowsAreReusedTest() {
+		IntervalsLayout layout = layout(null, 
+			100, 150, 
+			120, 200, 
+			130, 140, 
+			300, 400, 
+			402, 450);
+
+		assertEquals(3, layout.getRowCount());
+		assertEquals(0, layout.getRow(3));
+		assertEquals(0, layout.getRow(4));
+	}
+
+	@Test
+	public void intervalsKeepTheirDataTest() {
+		IntervalsLayout.Packer packer = 
+			new IntervalsLayout.Packer("chr1", 100, 1000, 900, null);
+		packer.add(50, 120, "first");
+		packer.add(990, 2000, "last");
+		IntervalsLayout layout = packer.getLayout();
+
+		assertEquals(2, layout.size());
+		assertEquals(50, layout.getStart(0));
+		assertEquals(120, layout.getStop(0));
+		assertEquals("first", layout.getData(0));
+		assertEquals(990, layout.getStart(1));
+		assertEquals(2000, layout.getStop(1));
+		assertEquals("last", layout.getData(1));
+	}
+
+	@Test
+	public void pileupLayoutDiscardsReadsTest() {
+		IntervalsLayout layout = layout(new ReadPileupLayout(2), 
+			100, 150, 
+			120, 200, 
+			130, 140, 
+			160, 170);
+
+		assertEquals(3, layout.size());
+		assertEquals(2, layout.getRowCount());
+		assertEquals(0, layout.getRow(0));
+		assertEquals(1, layout.getRow(1));
+		assertEquals(160, layout.getStart(2));
+		assertEquals(0, layout.getRow(2));
+	}
+
+	@Test
+	public void manyIntervalsTest() {
+		IntervalsLayout.Packer packer = 
+			new IntervalsLayout.Packer("chr1", 100, 20_000, 20_000, null);
+		for (int i = 0; i < 1000; i++) {
+			packer.add(100 + i * 10, 104 + i * 10, "interval " + i);
+		}
+		IntervalsLayout layout = packer.getLayout();
+
+		assertEquals(1000, layout.size());
+		assertEquals(1, layout.getRowCount());
+		assertEquals("interval 999", layout.getData(999));
+	}
+
+	@Test
+	public void emptyTest() {
+		IntervalsLayout layout = IntervalsLayout.empty("chr1", 100, 1000, 900);
+
+		assertEquals(0, layout.size());
+		assertEquals(1, layout.getRowCount());
+		assertFalse(layout.isDensity());
+	}
+
+	@Test
+	public void isLayoutOfTest() {
+		IntervalsLayout layout = IntervalsLayout.empty("chr1", 100, 1000, 900);
+
+		assertTrue(layout.isLayoutOf("chr1", 100, 1000, 900));
+		assertFalse(layout.isLayoutOf("chr2", 100, 1000, 900));
+		assertFalse(layout.isLayoutOf("chr1", 101, 1000, 900));
+		assertFalse(layout.isLayoutOf("chr1", 100, 999, 900));
+		assertFalse(layout.isLayoutOf("chr1", 100, 1000, 800));
+	}
+
+	private static IntervalsLayout layout(ReadPileupLayout pileup,
+		long... intervals) {
+		IntervalsLayout.Packer packer = 
+			new IntervalsLayout.Packer("chr1", 100, 1000, 900, pileup);
+		for (int i = 0; i < intervals.length; i += 2) {
+			packer.add(intervals[i], intervals[i + 1], "interval " + i / 2);
+		}
+
+		return packer.getLayout();
+	}
+}
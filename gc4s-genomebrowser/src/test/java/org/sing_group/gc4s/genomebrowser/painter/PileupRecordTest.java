@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class PileupRecordTest {
+	private static final String LINE = 
+		"chr1\t1000\tA\tG\t35\t60\t42\t12\t..,,G.g\tIIIIII<";
+
+	@Test
+	public void columnsTest() {
+		PileupRecord record = new PileupRecord().parse(LINE);
+
+		assertSame(LINE, record.getLine());
+		assertEquals(10, record.getColumnCount());
+		assertEquals("chr1", record.getString(0));
+		assertEquals(1000, record.getInt(1));
+		assertEquals('A', record.getChar(2));
+		assertEquals('G', record.getChar(3));
+		assertEquals(12, record.getInt(7));
+		assertEquals("..,,G.g", record.getString(8));
+		assertEquals(LINE.indexOf("..,,"), record.getColumnStart(8));
+		assertEquals(LINE.indexOf("..,,") + 7, record.getColumnEnd(8));
+	}
+
+	@Test
+	public void whitespaceTest() {
+		PileupRecord record = new PileupRecord().parse("  chr2 \t 15\t\tT  ");
+
+		assertEquals(3, record.getColumnCount());
+		assertEquals("chr2", record.getString(0));
+		assertEquals(15, record.getLong(1));
+		assertEquals('T', record.getChar(2));
+	}
+
+	@Test
+	public void emptyLineTest() {
+		assertEquals(0, new PileupRecord().parse("").getColumnCount());
+		assertEquals(0, new PileupRecord().parse(" \t ").getColumnCount());
+	}
+
+	@Test
+	public void manyColumnsTest() {
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < 25; i++) {
+			line.append(i).append('\t');
+		}
+		PileupRecord record = new PileupRecord().parse(line);
+
+		assertEquals(25, record.getColumnCount());
+		for (int i = 0; i < 25; i++) {
+			assertEquals(i, record.getInt(i));
+		}
+	}
+
+	@Test
+	public void recordIsReusedTest() {
+		PileupRecord record = new PileupRecord();
+		record.parse(LINE);
+		record.parse("chr3\t7");
+
+		assertEquals(2, record.getColumnCount());
+		assertEquals("chr3", record.getString(0));
+		assertEquals(7, record.getInt(1));
+	}
+
+	@Test
+	public void numbersTest() {
+		PileupRecord record = new PileupRecord()
+			.parse("-12\t+34\t0\t9000000000\t999999999999999999");
+
+		assertEquals(-12, record.getInt(0));
+		assertEquals(34, record.getInt(1));
+		assertEquals(0, record.getInt(2));
+		assertEquals(9_000_000_000L, record.getLong(3));
+		assertEquals(999_999_999_999_999_999L, record.getLong(4));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void intOutOfRangeTest() {
+		new PileupRecord().parse("9000000000").getInt(0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void tooManyDigitsTest() {
+		new PileupRecord().parse("1000000000000000000").getLong(0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void invalidNumberTest() {
+		new PileupRecord().parse("chr1\t10a").getInt(1);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void signOnlyTest() {
+		new PileupRecord().parse("-").getInt(0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void missingNumericColumnTest() {
+		new PileupRecord().parse("chr1").getInt(1);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void missingColumnTest() {
+		new PileupRecord().parse("chr1").getString(1);
+	}
+}
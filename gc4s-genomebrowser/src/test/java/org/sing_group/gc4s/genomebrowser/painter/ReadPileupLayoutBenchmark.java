@@ -0,0 +1,170 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sing_group.gc4s.genomebrowser.BenchmarkTimer;
+
+/**
+ * Compares the ways of packing the reads of a BAM track into rows:
+ * <ul>
+ * <li>floor map: the {@code HashMap<Integer, Long>} from floor to last end
+ * that {@code BamIntervalsPainter} used before {@code ReadPileupLayout}. It
+ * never moves a read back below the floor it came from, so it does not
+ * produce the same rows as the other two.</li>
+ * <li>boxed first-fit: the same {@code HashMap<Integer, Long>}, walking down
+ * the floors to place each read in the lowest free row. It produces the same
+ * rows as {@code ReadPileupLayout}, so it isolates the cost of boxing and of
+ * the linear walk.</li>
+ * <li>{@link ReadPileupLayout}, as {@code BamIntervalsPainter} does now.</li>
+ * </ul>
+ * 
+ * All of them place the same sorted reads with the same maximum depth and
+ * return the row of each read, which is checked to be the same for the
+ * boxed first-fit and the {@code ReadPileupLayout}.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public class ReadPileupLayoutBenchmark {
+	private static final int MAX_DEPTH = 5000;
+
+	@Test
+	public void packReads() throws Exception {
+		for (int count : new int[] { 1_000_000, 4_000_000 }) {
+			long[] reads = reads(count);
+			int[] rows = new int[count];
+			assertArrayEquals(boxedFirstFit(reads, rows.clone()), 
+				pileupLayout(reads, rows.clone()));
+
+			String name = count + " reads: ";
+			System.out.println(name + "floor map " 
+				+ summary(floorMap(reads, rows.clone())) + ", first-fit "
+				+ summary(pileupLayout(reads, rows.clone())));
+			BenchmarkTimer.measure(name + "floor map", 2, 7, 
+				() -> floorMap(reads, rows));
+			BenchmarkTimer.measure(name + "boxed first-fit", 2, 7, 
+				() -> boxedFirstFit(reads, rows));
+			BenchmarkTimer.measure(name + "ReadPileupLayout", 2, 7, 
+				() -> pileupLayout(reads, rows));
+		}
+	}
+
+	/*
+	 * Returns the starts and stops of reads of 100-150 bp placed 0-2 bp apart,
+	 * about 170 reads deep.
+	 */
+	private static long[] reads(int count) {
+		Random random = new Random(count);
+		long[] reads = new long[count * 2];
+		long start = 1;
+		for (int i = 0; i < count; i++) {
+			start += random.nextInt(3);
+			reads[2 * i] = start;
+			reads[2 * i + 1] = start + 100 + random.nextInt(51);
+		}
+
+		return reads;
+	}
+
+	private static String summary(int[] rows) {
+		int depth = 0;
+		int dropped = 0;
+		for (int row : rows) {
+			depth = Math.max(depth, row + 1);
+			if (row < 0) {
+				dropped++;
+			}
+		}
+
+		return depth + " rows and " + dropped + " reads dropped";
+	}
+
+	private static int[] floorMap(long[] reads, int[] rows) {
+		HashMap<Integer, Long> floorToPosition = new HashMap<Integer, Long>();
+		floorToPosition.put(0, new Long(0));
+		int currentFloor = 0;
+		for (int i = 0; i < rows.length; i++) {
+			long start = reads[2 * i];
+			long stop = reads[2 * i + 1];
+			Long lastRight = floorToPosition.get(currentFloor);
+			if (lastRight != null) {
+				if (lastRight >= start - 1) {
+					if (currentFloor < MAX_DEPTH - 1) {
+						currentFloor++;
+					} else {
+						rows[i] = -1;
+						continue;
+					}
+				}
+				if (lastRight < start) {
+					while (currentFloor > 0
+						&& floorToPosition.get(currentFloor) != null
+						&& floorToPosition.get(currentFloor) < start) {
+						currentFloor--;
+					}
+				}
+			}
+			floorToPosition.remove(currentFloor);
+			floorToPosition.put(new Integer(currentFloor), stop);
+			rows[i] = currentFloor;
+		}
+
+		return rows;
+	}
+
+	private static int[] boxedFirstFit(long[] reads, int[] rows) {
+		HashMap<Integer, Long> floorToPosition = new HashMap<Integer, Long>();
+		for (int i = 0; i < rows.length; i++) {
+			long start = reads[2 * i];
+			long stop = reads[2 * i + 1];
+			int floor = 0;
+			while (floor < floorToPosition.size()
+				&& floorToPosition.get(floor) >= start - 1) {
+				floor++;
+			}
+			if (floor < MAX_DEPTH) {
+				floorToPosition.put(new Integer(floor), stop);
+				rows[i] = floor;
+			} else {
+				rows[i] = -1;
+			}
+		}
+
+		return rows;
+	}
+
+	private static int[] pileupLayout(long[] reads, int[] rows) {
+		ReadPileupLayout layout = new ReadPileupLayout(MAX_DEPTH);
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = layout.place(reads[2 * i], reads[2 * i + 1]);
+		}
+
+		return rows;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ReadPileupLayoutTest {
+
+	@Test
+	public void overlappingReadsAreStackedTest() {
+		ReadPileupLayout layout = new ReadPileupLayout(10);
+
+		assertEquals(0, layout.place(100, 150));
+		assertEquals(1, layout.place(120, 200));
+		assertEquals(2, layout.place(130, 140));
+		assertEquals(3, layout.getRowCount());
+	}
+
+	@Test
+	public void lowestFreeRowIsReusedTest() {
+		ReadPileupLayout layout = new ReadPileupLayout(10);
+		layout.place(100, 150);
+		layout.place(120, 200);
+		layout.place(130, 140);
+
+		assertEquals(2, layout.place(142, 300));
+		assertEquals(0, layout.place(152, 300));
+		assertEquals(1, layout.place(202, 300));
+		assertEquals(3, layout.getRowCount());
+	}
+
+	@Test
+	public void touchingReadsOverlapTest() {
+		ReadPileupLayout layout = new ReadPileupLayout(10);
+
+		assertEquals(0, layout.place(100, 150));
+		assertEquals(1, layout.place(151, 200));
+		assertEquals(0, layout.place(202, 250));
+	}
+
+	@Test
+	public void readsAreDiscardedWhenRowsAreBusyTest() {
+		ReadPileupLayout layout = new ReadPileupLayout(2);
+
+		assertEquals(0, layout.place(100, 150));
+		assertEquals(1, layout.place(110, 150));
+		assertEquals(-1, layout.place(120, 150));
+		assertEquals(0, layout.place(152, 200));
+		assertEquals(2, layout.getRowCount());
+	}
+
+	@Test
+	public void clearTest() {
+		ReadPileupLayout layout = new ReadPileupLayout(10);
+		layout.place(100, 150);
+		layout.place(120, 200);
+		layout.clear();
+
+		assertEquals(0, layout.getRowCount());
+		assertEquals(0, layout.place(100, 150));
+		assertEquals(1, layout.place(120, 200));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidMaxRowsTest() {
+		new ReadPileupLayout(0);
+	}
+
+	@Test
+	public void matchesFirstFitTest() {
+		Random random = new Random(0);
+		ReadPileupLayout layout = new ReadPileupLayout(50);
+		long[] rowEnds = new long[50];
+		int rows = 0;
+		long start = 1;
+		for (int i = 0; i < 20_000; i++) {
+			start += random.nextInt(5);
+			long stop = start + 50 + random.nextInt(100);
+
+			int expected = -1;
+			for (int row = 0; row < rows && expected < 0; row++) {
+				if (rowEnds[row] < start - 1) {
+					expected = row;
+				}
+			}
+			if (expected < 0 && rows < rowEnds.length) {
+				expected = rows++;
+			}
+			if (expected >= 0) {
+				rowEnds[expected] = stop;
+			}
+
+			assertEquals(expected, layout.place(start, stop));
+		}
+		assertEquals(rows, layout.getRowCount());
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * GC4S genome browser
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.genomebrowser.painter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SummaryIndexTest {
+	private static final int STEP = 13;
+	/*
+	 * The last position of the records, at the end of a summary bin, so that
+	 * the records of regions that end there are not split.
+	 */
+	private static final int LAST_POSITION = 489 * 4096 - 1;
+
+	private File cacheDirectory;
+	private File previousCacheDirectory;
+	private List<SummaryIndex> summaries = new ArrayList<SummaryIndex>();
+
+	@Before
+	public void createCacheDirectory() throws IOException {
+		this.previousCacheDirectory = SummaryIndex.getCacheDirectory();
+		this.cacheDirectory = 
+			Files.createTempDirectory("gc4s-summaries").toFile();
+		SummaryIndex.setCacheDirectory(this.cacheDirectory);
+	}
+
+	@After
+	public void deleteCacheDirectory() {
+		for (SummaryIndex summary : this.summaries) {
+			summary.close();
+		}
+		SummaryIndex.setCacheDirectory(this.previousCacheDirectory);
+		for (File file : this.cacheDirectory.listFiles()) {
+			file.delete();
+		}
+		this.cacheDirectory.delete();
+	}
+
+	@Test
+	public void summaryFileTest() throws IOException {
+		File file = write(Arrays.asList("chr1\t100\tA\t5\t10"));
+
+		assertNull(SummaryIndex.open(file, 3, 4));
+		assertEquals(this.cacheDirectory, 
+			SummaryIndex.getSummaryFile(file).getParentFile());
+
+		SummaryIndex.setCacheDirectory(null);
+		assertNull(SummaryIndex.getSummaryFile(file));
+		assertNull(SummaryIndex.open(file, 3, 4));
+	}
+
+	@Test
+	public void outOfDateSummaryTest() throws IOException {
+		File file = write(Arrays.asList("chr1\t100\tA\t5\t10"));
+		SummaryIndex.build(file, 3, 4);
+
+		assertNull(SummaryIndex.open(file, 3, -1));
+		SummaryIndex summary = open(file, 3, 4);
+		assertNotNull(summary);
+		assertFalse(summary.hasBlockPointers());
+
+		summary.close();
+		assertTrue(file.setLastModified(file.lastModified() - 10_000));
+		assertNull(SummaryIndex.open(file, 3, 4));
+	}
+
+	@Test
+	public void fillMatchesRecordsTest() throws IOException {
+		List<String> lines = new ArrayList<String>();
+		lines.add("#sequence\tposition\tbase\tdepth\tsnp");
+		for (int position = 1; position <= LAST_POSITION; position += STEP) {
+			lines.add("chr1\t" + position + "\tA\t" + depth(position) + "\t0");
+		}
+		SummaryIndex summary = build(write(lines), 3, 4);
+
+		long[][] regions = { 
+			{ 1, LAST_POSITION, 20 }, 
+			{ 500_000, 1_700_003, 30 },
+			{ 100_000, 4_000_000, 10 } 
+		};
+		for (long[] region : regions) {
+			HistogramBins bins = new HistogramBins(region[0], region[1],
+				(int) region[2]);
+			HistogramBins expected = new HistogramBins(region[0], region[1],
+				(int) region[2]);
+			for (int position = 1; position <= LAST_POSITION; 
+				position += STEP) {
+				expected.add(position, depth(position));
+			}
+
+			assertTrue(summary.fill("chr1", region[0], region[1], bins, 0, -1));
+			for (int bin = 0; bin < bins.getBinCount(); bin++) {
+				int count = expected.getCounts()[bin];
+				assertEquals(Arrays.toString(region) + " bin " + bin, count,
+					bins.getCounts()[bin], 2);
+				assertEquals(Arrays.toString(region) + " bin " + bin,
+					expected.getSums()[bin], bins.getSums()[bin],
+					expected.getSums()[bin] / 100);
+			}
+		}
+
+		HistogramBins whole = new HistogramBins(1, LAST_POSITION, 20);
+		assertTrue(summary.fill("chr1", 1, LAST_POSITION, whole, 0, -1));
+		assertEquals(lines.size() - 1, Arrays.stream(whole.getCounts()).sum());
+	}
+
+	@Test
+	public void summaryBinsAreSplitProportionallyTest() throws IOException {
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < 10; i++) {
+			lines.add("chr1\t100\tA\t2\t0");
+		}
+		for (int i = 0; i < 40; i++) {
+			lines.add("chr1\t33000\tA\t3\t0");
+		}
+		SummaryIndex summary = build(write(lines), 3, 4);
+
+		/*
+		 * The histogram bins are [2048, 34816) and [34816, 67584]. The summary
+		 * bin [0, 4096) is half before the region, so half of its records are
+		 * discarded, and the summary bin [32768, 36864) is split in halves
+		 * between both histogram bins, even if all its records are in the
+		 * first one.
+		 */
+		HistogramBins bins = new HistogramBins(2048, 2048 + 65536, 2);
+		assertTrue(summary.fill("chr1", 2048, 2048 + 65536, bins, 0, -1));
+
+		assertArrayEquals(new int[] { 25, 20 }, bins.getCounts());
+		assertArrayEquals(new double[] { 70, 60 }, bins.getSums(), 1e-9);
+	}
+
+	@Test
+	public void snpQualityTest() throws IOException {
+		List<String> lines = new ArrayList<String>();
+		lines.add("chr1\t100\tA\t2\t10");
+		lines.add("chr1\t33000\tA\t3\t30");
+		lines.add("chr1\t50000\tA\t3\t10");
+		lines.add("chr1\t50001\tA\t3\t40");
+		SummaryIndex summary = build(write(lines), 3, 4);
+
+		HistogramBins bins = new HistogramBins(0, 32768, 1);
+		assertTrue(summary.fill("chr1", 0, 32768, bins, 20, -1));
+		assertEquals(0, bins.getCounts()[0]);
+
+		bins = new HistogramBins(32768, 65536, 1);
+		assertFalse(summary.fill("chr1", 32768, 65536, bins, 20, -1));
+		bins = new HistogramBins(32768, 65536, 1);
+		assertTrue(summary.fill("chr1", 32768, 65536, bins, 0, -1));
+		assertEquals(3, bins.getCounts()[0]);
+		bins = new HistogramBins(32768, 65536, 1);
+		assertFalse(summary.fill("chr1", 32768, 65536, bins, 0, 35));
+		bins = new HistogramBins(32768, 65536, 1);
+		assertTrue(summary.fill("chr1", 32768, 65536, bins, 0, 50));
+		assertEquals(3, bins.getCounts()[0]);
+	}
+
+	@Test
+	public void queriesThatCanNotBeAnsweredTest() throws IOException {
+		SummaryIndex summary = 
+			build(write(Arrays.asList("chr1\t100\tA\t5\t10")), 3, 4);
+
+		assertFalse(summary.fill("chr1", 1, 10_000, 
+			new HistogramBins(1, 10_000, 20), 0, -1));
+
+		HistogramBins bins = new HistogramBins(0, 1_000_000, 10);
+		assertTrue(summary.fill("chr2", 0, 1_000_000, bins, 0, -1));
+		assertEquals(0, Arrays.stream(bins.getCounts()).sum());
+
+		summary.close();
+		assertFalse(summary.fill("chr1", 0, 1_000_000, 
+			new HistogramBins(0, 1_000_000, 10), 0, -1));
+	}
+
+	private static int depth(int position) {
+		return position % 61;
+	}
+
+	private File write(List<String> lines) throws IOException {
+		File file = new File(this.cacheDirectory, "track.pileup");
+		Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+
+		return file;
+	}
+
+	private SummaryIndex build(File file, int depthColumn, int snpColumn)
+		throws IOException {
+		SummaryIndex.build(file, depthColumn, snpColumn);
+
+		return open(file, depthColumn, snpColumn);
+	}
+
+	private SummaryIndex open(File file, int depthColumn, int snpColumn)
+		throws IOException {
+		SummaryIndex summary = 
+			SummaryIndex.open(file, depthColumn, snpColumn);
+		if (summary != null) {
+			this.summaries.add(summary);
+		}
+
+		return summary;
+	}
+}
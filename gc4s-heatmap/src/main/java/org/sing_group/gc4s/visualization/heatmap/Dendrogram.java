@@ -0,0 +1,258 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato,
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.visualization.heatmap;
+
+import static java.util.Arrays.asList;
+
+import java.util.List;
+
+/**
+ * <p>
+ * The binary tree produced by a hierarchical clustering. Leaves are the
+ * clustered rows, identified by their index {@code 0 <= i < n}, and merges
+ * are identified by {@code n + k}, where {@code k} is the order in which
+ * they were done. The children of a merge are always done before it, so the
+ * last merge is the root of the tree.
+ * </p>
+ *
+ * <p>
+ * Leaves are ordered by traversing the tree from the root, so that the
+ * leaves of each merge are contiguous. The position of a merge is the mean
+ * of the positions of its children, which is where it is drawn.
+ * </p>
+ *
+ * @author hlfernandez
+ * @see HierarchicalClustering
+ *
+ */
+public class Dendrogram {
+	private final String[] names;
+	private final int[] left;
+	private final int[] right;
+	private final double[] heights;
+
+	private final int[] order;
+	private final int[] leafPositions;
+	private final double[] positions;
+	private final int[] firstPositions;
+	private final int[] lastPositions;
+	private final double maxHeight;
+
+	/**
+	 * Constructs a new {@code Dendrogram}.
+	 *
+	 * @param names the names of the leaves
+	 * @param left the left child of each merge
+	 * @param right the right child of each merge
+	 * @param heights the height of each merge
+	 */
+	public Dendrogram(String[] names, int[] left, int[] right,
+		double[] heights
+	) {
+		if (left.length != Math.max(0, names.length - 1)
+			|| right.length != left.length || heights.length != left.length
+		) {
+			throw new IllegalArgumentException(
+				"A dendrogram of n leaves must have n - 1 merges");
+		}
+		this.names = names;
+		this.left = left;
+		this.right = right;
+		this.heights = heights;
+
+		int n = names.length;
+		int merges = left.length;
+		this.order = new int[n];
+		this.leafPositions = new int[n];
+		this.positions = new double[merges];
+		this.firstPositions = new int[merges];
+		this.lastPositions = new int[merges];
+
+		this.computeOrder();
+
+		double max = 0d;
+		for (int merge = 0; merge < merges; merge++) {
+			this.positions[merge] =
+				(getPosition(left[merge]) + getPosition(right[merge])) / 2;
+			this.firstPositions[merge] = Math.min(
+				getFirstPosition(left[merge]), getFirstPosition(right[merge]));
+			this.lastPositions[merge] = Math.max(
+				getLastPosition(left[merge]), getLastPosition(right[merge]));
+			if (!Double.isInfinite(heights[merge])) {
+				max = Math.max(max, heights[merge]);
+			}
+		}
+		this.maxHeight = max;
+	}
+
+	private void computeOrder() {
+		int n = this.names.length;
+		if (n == 1) {
+			this.order[0] = 0;
+		} else if (n > 1) {
+			int[] stack = new int[n];
+			int stackSize = 0;
+			int count = 0;
+			stack[stackSize++] = 2 * n - 2;
+			while (stackSize > 0) {
+				int node = stack[--stackSize];
+				if (node < n) {
+					this.order[count++] = node;
+				} else {
+					stack[stackSize++] = this.right[node - n];
+					stack[stackSize++] = this.left[node - n];
+				}
+			}
+		}
+
+		for (int position = 0; position < n; position++) {
+			this.leafPositions[this.order[position]] = position;
+		}
+	}
+
+	/**
+	 * Returns the number of leaves.
+	 *
+	 * @return the number of leaves
+	 */
+	public int getLeafCount() {
+		return names.length;
+	}
+
+	/**
+	 * Returns the names of the leaves, in the order of the dendrogram.
+	 *
+	 * @return the names of the leaves, in the order of the dendrogram
+	 */
+	public List<String> getLeafNames() {
+		String[] orderedNames = new String[this.order.length];
+		for (int position = 0; position < this.order.length; position++) {
+			orderedNames[position] = this.names[this.order[position]];
+		}
+
+		return asList(orderedNames);
+	}
+
+	/**
+	 * Returns the leaves, in the order of the dendrogram.
+	 *
+	 * @return the leaves, in the order of the dendrogram
+	 */
+	public int[] getLeafOrder() {
+		return order.clone();
+	}
+
+	/**
+	 * Returns the number of merges.
+	 *
+	 * @return the number of merges
+	 */
+	public int getMergeCount() {
+		return left.length;
+	}
+
+	/**
+	 * Returns the left child of the specified merge.
+	 *
+	 * @param merge the order of the merge
+	 * @return the left child of the merge
+	 */
+	public int getLeft(int merge) {
+		return left[merge];
+	}
+
+	/**
+	 * Returns the right child of the specified merge.
+	 *
+	 * @param merge the order of the merge
+	 * @return the right child of the merge
+	 */
+	public int getRight(int merge) {
+		return right[merge];
+	}
+
+	/**
+	 * Returns the height of the specified merge, that is, the distance
+	 * between its children.
+	 *
+	 * @param merge the order of the merge
+	 * @return the height of the merge
+	 */
+	public double getHeight(int merge) {
+		return heights[merge];
+	}
+
+	/**
+	 * Returns the maximum finite height of the merges.
+	 *
+	 * @return the maximum finite height of the merges
+	 */
+	public double getMaxHeight() {
+		return maxHeight;
+	}
+
+	/**
+	 * Returns the height of the specified node: zero for leaves and the
+	 * height of the merge otherwise.
+	 *
+	 * @param node a leaf or merge
+	 * @return the height of the node
+	 */
+	double getNodeHeight(int node) {
+		return node < this.names.length ? 0d :
+			this.heights[node - this.names.length];
+	}
+
+	/**
+	 * Returns the position of the specified node in the order of the leaves.
+	 *
+	 * @param node a leaf or merge
+	 * @return the position of the node
+	 */
+	double getPosition(int node) {
+		return node < this.names.length ? this.leafPositions[node] :
+			this.positions[node - this.names.length];
+	}
+
+	/**
+	 * Returns the position of the first leaf under the specified node.
+	 *
+	 * @param node a leaf or merge
+	 * @return the position of the first leaf under the node
+	 */
+	int getFirstPosition(int node) {
+		return node < this.names.length ? this.leafPositions[node] :
+			this.firstPositions[node - this.names.length];
+	}
+
+	/**
+	 * Returns the position of the last leaf under the specified node.
+	 *
+	 * @param node a leaf or merge
+	 * @return the position of the last leaf under the node
+	 */
+	int getLastPosition(int node) {
+		return node < this.names.length ? this.leafPositions[node] :
+			this.lastPositions[node - this.names.length];
+	}
+}
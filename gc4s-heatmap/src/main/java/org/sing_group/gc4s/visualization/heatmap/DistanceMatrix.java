@@ -0,0 +1,368 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato,
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.visualization.heatmap;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.stream.IntStream;
+
+import org.sing_group.gc4s.utilities.MatrixUtils.RowsMonitor;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Distance;
+
+/**
+ * <p>
+ * The pairwise distances between the rows of a data matrix, stored in a
+ * condensed array that only contains the upper triangle of the distance
+ * matrix: the distance between rows {@code i < j} is stored at position
+ * {@code n * i - i * (i + 1) / 2 + j - i - 1}, where {@code n} is the
+ * number of rows.
+ * </p>
+ *
+ * <p>
+ * Distances are computed in parallel by blocks of rows, so that the rows of
+ * each pair of blocks are reused from the processor caches. Missing values
+ * ({@code Double.NaN}) are excluded pairwise: Euclidean distances are scaled
+ * to the number of columns and Pearson correlations are computed with the
+ * values present in both rows. Rows without values in common are at an
+ * infinite distance.
+ * </p>
+ *
+ * @author hlfernandez
+ *
+ */
+public class DistanceMatrix {
+	private static final int BLOCK_ROWS = 64;
+
+	private final int size;
+	private final double[] distances;
+
+	private DistanceMatrix(int size, double[] distances) {
+		this.size = size;
+		this.distances = distances;
+	}
+
+	/**
+	 * Computes the distances between the rows of {@code data}.
+	 *
+	 * @param data the data matrix
+	 * @param distance the distance to compute
+	 * @return the distances between the rows of {@code data}
+	 */
+	public static DistanceMatrix compute(double[][] data, Distance distance) {
+		return compute(data, distance, RowsMonitor.NONE);
+	}
+
+	/**
+	 * Computes the distances between the rows of {@code data}, reporting the
+	 * rows processed to {@code monitor}.
+	 *
+	 * @param data the data matrix
+	 * @param distance the distance to compute
+	 * @param monitor the monitor of the computation
+	 * @return the distances between the rows of {@code data}
+	 * @throws IllegalArgumentException if {@code data} has more rows than a
+	 * 			condensed array can index
+	 * @throws CancellationException if {@code monitor} cancels the computation
+	 */
+	public static DistanceMatrix compute(double[][] data, Distance distance,
+		RowsMonitor monitor
+	) {
+		int n = data.length;
+		long length = (long) n * (n - 1) / 2;
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+				"Too many rows to compute their distances: " + n);
+		}
+
+		double[] distances = new double[(int) length];
+		boolean pearson = distance.equals(Distance.PEARSON);
+		double[][] rows = new double[n][];
+		double[][] masks = new double[n][];
+		IntStream.range(0, n).parallel().forEach(i -> {
+			masks[i] = getMask(data[i]);
+			rows[i] = prepare(data[i], masks[i], pearson);
+		});
+
+		double[] fullMask = new double[n == 0 ? 0 : data[0].length];
+		Arrays.fill(fullMask, 1d);
+
+		int blocks = (n + BLOCK_ROWS - 1) / BLOCK_ROWS;
+		IntStream.range(0, (blocks + 1) / 2).parallel().forEach(task -> {
+			computeBlock(task, rows, masks, fullMask, pearson, distances,
+				monitor);
+			if (task != blocks - 1 - task) {
+				computeBlock(blocks - 1 - task, rows, masks, fullMask, pearson,
+					distances, monitor);
+			}
+		});
+		if (monitor.isCancelled()) {
+			throw new CancellationException();
+		}
+
+		return new DistanceMatrix(n, distances);
+	}
+
+	/**
+	 * Computes the distances between the rows of a block and the following
+	 * rows. Tasks pair the first blocks, which have more rows after them, with
+	 * the last ones, so that all of them do the same work.
+	 */
+	private static void computeBlock(int block, double[][] rows,
+		double[][] masks, double[] fullMask, boolean pearson,
+		double[] distances, RowsMonitor monitor
+	) {
+		if (monitor.isCancelled()) {
+			return;
+		}
+
+		int n = rows.length;
+		int from = block * BLOCK_ROWS;
+		int to = Math.min(n, from + BLOCK_ROWS);
+		for (int jFrom = from; jFrom < n; jFrom += BLOCK_ROWS) {
+			int jTo = Math.min(n, jFrom + BLOCK_ROWS);
+			for (int i = from; i < to; i++) {
+				int rowStart = getRowStart(n, i);
+				for (int j = Math.max(i + 1, jFrom); j < jTo; j++) {
+					double value;
+					if (masks[i] != null || masks[j] != null) {
+						double[] maskI = masks[i] == null ? fullMask : masks[i];
+						double[] maskJ = masks[j] == null ? fullMask : masks[j];
+						value = pearson ?
+							pearson(rows[i], maskI, rows[j], maskJ) :
+							euclidean(rows[i], maskI, rows[j], maskJ);
+					} else {
+						value = pearson ?
+							1d - dotProduct(rows[i], rows[j]) :
+							euclidean(rows[i], rows[j]);
+					}
+					distances[rowStart + j] = value;
+				}
+			}
+		}
+		monitor.rowsProcessed(to - from);
+	}
+
+	/**
+	 * Returns the position of the distances of row {@code i} in the
+	 * condensed array, minus {@code i + 1}, so that the distance to row
+	 * {@code j > i} is at position {@code getRowStart(n, i) + j}.
+	 */
+	static int getRowStart(int n, int i) {
+		return (int) ((long) n * i - (long) i * (i + 1) / 2 - i - 1);
+	}
+
+	/**
+	 * Returns an array with {@code 1} for the values present and {@code 0}
+	 * for the missing ones, or {@code null} if there are no missing values.
+	 */
+	private static double[] getMask(double[] values) {
+		double[] mask = null;
+		for (int i = 0; i < values.length; i++) {
+			if (Double.isNaN(values[i])) {
+				if (mask == null) {
+					mask = new double[values.length];
+					Arrays.fill(mask, 1d);
+				}
+				mask[i] = 0d;
+			}
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Prepares a row to compute its distances: missing values are replaced
+	 * by zero, so that they are cancelled by the masks, and, for Pearson
+	 * correlations, values are centered to zero mean. Rows without missing
+	 * values are also scaled to unit norm, so that their correlation is their
+	 * dot product.
+	 */
+	private static double[] prepare(double[] values, double[] mask,
+		boolean pearson
+	) {
+		double mean = 0d;
+		if (pearson) {
+			int count = 0;
+			for (double value : values) {
+				if (!Double.isNaN(value)) {
+					mean += value;
+					count++;
+				}
+			}
+			mean = count == 0 ? 0d : mean / count;
+		}
+
+		double[] row = new double[values.length];
+		double norm = 0d;
+		for (int i = 0; i < values.length; i++) {
+			row[i] = Double.isNaN(values[i]) ? 0d : values[i] - mean;
+			norm += row[i] * row[i];
+		}
+
+		if (pearson && mask == null && norm > 0) {
+			norm = Math.sqrt(norm);
+			for (int i = 0; i < row.length; i++) {
+				row[i] /= norm;
+			}
+		}
+
+		return row;
+	}
+
+	/*
+	 * The loops below use several accumulators so that the additions do not
+	 * wait for each other.
+	 */
+
+	private static double dotProduct(double[] a, double[] b) {
+		double sum0 = 0d;
+		double sum1 = 0d;
+		double sum2 = 0d;
+		double sum3 = 0d;
+		int i = 0;
+		for (; i + 3 < a.length; i += 4) {
+			sum0 += a[i] * b[i];
+			sum1 += a[i + 1] * b[i + 1];
+			sum2 += a[i + 2] * b[i + 2];
+			sum3 += a[i + 3] * b[i + 3];
+		}
+		for (; i < a.length; i++) {
+			sum0 += a[i] * b[i];
+		}
+
+		return (sum0 + sum1) + (sum2 + sum3);
+	}
+
+	private static double euclidean(double[] a, double[] b) {
+		double sum0 = 0d;
+		double sum1 = 0d;
+		double sum2 = 0d;
+		double sum3 = 0d;
+		int i = 0;
+		for (; i + 3 < a.length; i += 4) {
+			double difference0 = a[i] - b[i];
+			double difference1 = a[i + 1] - b[i + 1];
+			double difference2 = a[i + 2] - b[i + 2];
+			double difference3 = a[i + 3] - b[i + 3];
+			sum0 += difference0 * difference0;
+			sum1 += difference1 * difference1;
+			sum2 += difference2 * difference2;
+			sum3 += difference3 * difference3;
+		}
+		for (; i < a.length; i++) {
+			double difference = a[i] - b[i];
+			sum0 += difference * difference;
+		}
+
+		return Math.sqrt((sum0 + sum1) + (sum2 + sum3));
+	}
+
+	private static double euclidean(double[] a, double[] maskA, double[] b,
+		double[] maskB
+	) {
+		double sum = 0d;
+		double count = 0d;
+		for (int i = 0; i < a.length; i++) {
+			double present = maskA[i] * maskB[i];
+			double difference = a[i] - b[i];
+			sum += present * difference * difference;
+			count += present;
+		}
+
+		return count == 0 ?
+			Double.POSITIVE_INFINITY : Math.sqrt(sum * a.length / count);
+	}
+
+	/**
+	 * Computes the Pearson distance between two centered rows with missing
+	 * values, using the values present in both of them in a single pass.
+	 */
+	private static double pearson(double[] a, double[] maskA, double[] b,
+		double[] maskB
+	) {
+		double count = 0d;
+		double sumA = 0d;
+		double sumB = 0d;
+		double sumAA = 0d;
+		double sumBB = 0d;
+		double sumAB = 0d;
+		for (int i = 0; i < a.length; i++) {
+			double valueA = a[i] * maskB[i];
+			double valueB = b[i] * maskA[i];
+			count += maskA[i] * maskB[i];
+			sumA += valueA;
+			sumB += valueB;
+			sumAA += valueA * valueA;
+			sumBB += valueB * valueB;
+			sumAB += valueA * valueB;
+		}
+		if (count == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double covariance = sumAB - sumA * sumB / count;
+		double varianceA = sumAA - sumA * sumA / count;
+		double varianceB = sumBB - sumB * sumB / count;
+		if (varianceA <= 0 || varianceB <= 0) {
+			return 1d;
+		}
+
+		return 1d - covariance / Math.sqrt(varianceA * varianceB);
+	}
+
+	/**
+	 * Returns the number of rows.
+	 *
+	 * @return the number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the distance between rows {@code i} and {@code j}.
+	 *
+	 * @param i the index of a row
+	 * @param j the index of another row
+	 * @return the distance between rows {@code i} and {@code j}
+	 */
+	public double get(int i, int j) {
+		if (i == j) {
+			return 0d;
+		} else if (i < j) {
+			return this.distances[getRowStart(this.size, i) + j];
+		} else {
+			return this.distances[getRowStart(this.size, j) + i];
+		}
+	}
+
+	/**
+	 * Returns the condensed array with the distances. It is not copied, so
+	 * changes on it are reflected in this matrix.
+	 *
+	 * @return the condensed array with the distances
+	 */
+	public double[] getValues() {
+		return distances;
+	}
+}
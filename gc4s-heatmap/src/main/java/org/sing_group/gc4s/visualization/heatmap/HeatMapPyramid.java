@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato,
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.visualization.heatmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Aggregation;
+
+/**
+ * A pyramid of downsampled versions of the visible cells of a heatmap data
+ * matrix. Each value of level {@code n} aggregates a block of
+ * {@code 2^n x 2^n} cells, ignoring missing values ({@code Double.NaN}), so
+ * that a block is missing only when all its cells are missing. Level
+ * {@code 0} is the data matrix itself.
+ *
+ * Levels are created the first time they are requested, each one from the
+ * previous level, so that the data matrix is scanned only once.
+ *
+ * @author hlfernandez
+ * @see JHeatMap
+ *
+ */
+class HeatMapPyramid {
+	private final double[][] data;
+	private final int[] rowIndexes;
+	private final int[] columnIndexes;
+	private final Aggregation aggregation;
+	private final List<Level> levels = new ArrayList<>();
+
+	/**
+	 * Constructs a new {@code HeatMapPyramid}.
+	 *
+	 * @param data the data matrix
+	 * @param rowIndexes the indexes of the visible rows
+	 * @param columnIndexes the indexes of the visible columns
+	 * @param aggregation the function used to aggregate the blocks of cells
+	 */
+	HeatMapPyramid(double[][] data, int[] rowIndexes, int[] columnIndexes,
+		Aggregation aggregation
+	) {
+		this.data = data;
+		this.rowIndexes = rowIndexes;
+		this.columnIndexes = columnIndexes;
+		this.aggregation = aggregation;
+		this.levels.add(null);
+	}
+
+	/**
+	 * Returns the first level in which the visible cells are aggregated into
+	 * a single value.
+	 *
+	 * @return the first level in which the visible cells are aggregated into
+	 * 	a single value
+	 */
+	int getMaxLevel() {
+		int cells = Math.max(rowIndexes.length, columnIndexes.length);
+		int level = 0;
+		while ((1L << level) < cells) {
+			level++;
+		}
+
+		return level;
+	}
+
+	/**
+	 * Returns the number of rows of the specified level.
+	 *
+	 * @param level a level of the pyramid
+	 * @return the number of rows of the level
+	 */
+	int getRows(int level) {
+		return getSize(rowIndexes.length, level);
+	}
+
+	/**
+	 * Returns the number of columns of the specified level.
+	 *
+	 * @param level a level of the pyramid
+	 * @return the number of columns of the level
+	 */
+	int getColumns(int level) {
+		return getSize(columnIndexes.length, level);
+	}
+
+	private static int getSize(int cells, int level) {
+		return (int) ((cells + (1L << level) - 1) >> level);
+	}
+
+	/**
+	 * Returns the value of a block of the specified level.
+	 *
+	 * @param level a level of the pyramid
+	 * @param row the row of the block in the level
+	 * @param column the column of the block in the level
+	 * @return the value of the block
+	 */
+	double getValue(int level, int row, int column) {
+		if (level == 0) {
+			return data[rowIndexes[row]][columnIndexes[column]];
+		} else {
+			return getValues(level)[row * getColumns(level) + column];
+		}
+	}
+
+	/**
+	 * Returns the values of the specified level, in row-major order. Level
+	 * {@code 0} is not stored in the pyramid, so it must be greater than 0.
+	 *
+	 * @param level a level of the pyramid, greater than 0
+	 * @return the values of the level, in row-major order
+	 */
+	double[] getValues(int level) {
+		return getLevel(level).values;
+	}
+
+	private Level getLevel(int level) {
+		while (this.levels.size() <= level) {
+			this.levels.add(createLevel(this.levels.size()));
+		}
+
+		return this.levels.get(level);
+	}
+
+	private Level createLevel(int level) {
+		Level toret = new Level(getRows(level), getColumns(level));
+		if (level == 1) {
+			for (int row = 0; row < rowIndexes.length; row++) {
+				double[] values = data[rowIndexes[row]];
+				int offset = (row >> 1) * toret.columns;
+				for (int column = 0; column < columnIndexes.length; column++) {
+					toret.add(offset + (column >> 1),
+						values[columnIndexes[column]], 1);
+				}
+			}
+		} else {
+			Level previous = getLevel(level - 1);
+			for (int row = 0; row < previous.rows; row++) {
+				int previousOffset = row * previous.columns;
+				int offset = (row >> 1) * toret.columns;
+				for (int column = 0; column < previous.columns; column++) {
+					int i = previousOffset + column;
+					toret.add(offset + (column >> 1), previous.values[i],
+						previous.counts == null ? 1 : previous.counts[i]);
+				}
+			}
+		}
+		toret.finish();
+
+		return toret;
+	}
+
+	private final class Level {
+		private final int rows;
+		private final int columns;
+		private final double[] values;
+		private final int[] counts;
+
+		public Level(int rows, int columns) {
+			this.rows = rows;
+			this.columns = columns;
+			this.values = new double[rows * columns];
+			if (aggregation == Aggregation.MEAN) {
+				this.counts = new int[values.length];
+			} else {
+				this.counts = null;
+				Arrays.fill(this.values, Double.NaN);
+			}
+		}
+
+		private void add(int i, double value, int count) {
+			if (Double.isNaN(value)) {
+				return;
+			}
+			if (counts != null) {
+				values[i] += value * count;
+				counts[i] += count;
+			} else if (Double.isNaN(values[i]) || value > values[i]) {
+				values[i] = value;
+			}
+		}
+
+		private void finish() {
+			if (counts != null) {
+				for (int i = 0; i < values.length; i++) {
+					values[i] = counts[i] == 0 ?
+						Double.NaN : values[i] / counts[i];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato,
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.visualization.heatmap;
+
+import java.util.concurrent.CancellationException;
+
+import org.sing_group.gc4s.utilities.MatrixUtils.RowsMonitor;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Distance;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Linkage;
+
+/**
+ * <p>
+ * Agglomerative hierarchical clustering of the rows or columns of a
+ * {@code JHeatMapModel}.
+ * </p>
+ *
+ * <p>
+ * The pairwise distances are computed by {@link DistanceMatrix} and the
+ * clusters are merged with the nearest-neighbour chain algorithm, which
+ * follows a chain of nearest neighbours until it finds two clusters that
+ * are nearest neighbours of each other and merges them. Since single,
+ * complete and average linkages are reducible, the rest of the chain
+ * remains valid after each merge, so the clustering takes {@code O(n²)}
+ * time instead of the {@code O(n³)} of searching the closest pair of
+ * clusters after each merge. The distances between clusters are updated in
+ * place in the condensed distance array with the Lance-Williams formulas.
+ * </p>
+ *
+ * @author hlfernandez
+ * @see Dendrogram
+ *
+ */
+public class HierarchicalClustering {
+	private final Distance distance;
+	private final Linkage linkage;
+
+	/**
+	 * Constructs a new {@code HierarchicalClustering}.
+	 *
+	 * @param distance the distance between rows or columns
+	 * @param linkage the linkage used to compute the distance between clusters
+	 */
+	public HierarchicalClustering(Distance distance, Linkage linkage) {
+		this.distance = distance;
+		this.linkage = linkage;
+	}
+
+	/**
+	 * Clusters the rows of {@code model}.
+	 *
+	 * @param model the model whose rows are clustered
+	 * @return the dendrogram of the rows
+	 */
+	public Dendrogram clusterRows(JHeatMapModel model) {
+		return clusterRows(model, RowsMonitor.NONE);
+	}
+
+	/**
+	 * Clusters the rows of {@code model}, reporting the rows whose distances
+	 * have been computed to {@code monitor}.
+	 *
+	 * @param model the model whose rows are clustered
+	 * @param monitor the monitor of the clustering
+	 * @return the dendrogram of the rows
+	 * @throws CancellationException if {@code monitor} cancels the clustering
+	 */
+	public Dendrogram clusterRows(JHeatMapModel model, RowsMonitor monitor) {
+		DistanceMatrix distances =
+			DistanceMatrix.compute(model.getData(), this.distance, monitor);
+
+		return cluster(model.getRowNames(), distances, monitor);
+	}
+
+	/**
+	 * Clusters the columns of {@code model}.
+	 *
+	 * @param model the model whose columns are clustered
+	 * @return the dendrogram of the columns
+	 */
+	public Dendrogram clusterColumns(JHeatMapModel model) {
+		return clusterColumns(model, RowsMonitor.NONE);
+	}
+
+	/**
+	 * Clusters the columns of {@code model}, reporting the columns whose
+	 * distances have been computed to {@code monitor}.
+	 *
+	 * @param model the model whose columns are clustered
+	 * @param monitor the monitor of the clustering
+	 * @return the dendrogram of the columns
+	 * @throws CancellationException if {@code monitor} cancels the clustering
+	 */
+	public Dendrogram clusterColumns(JHeatMapModel model,
+		RowsMonitor monitor
+	) {
+		return clusterRows(model.transpose(), monitor);
+	}
+
+	/**
+	 * Merges the clusters following nearest-neighbour chains. The distances
+	 * of each merged cluster are stored in the slot of one of its two
+	 * clusters, and the other slot is deactivated. The {@code distances} are
+	 * overwritten.
+	 */
+	private Dendrogram cluster(String[] names, DistanceMatrix distances,
+		RowsMonitor monitor
+	) {
+		int n = distances.size();
+		double[] d = distances.getValues();
+		int[] rowStarts = new int[n];
+		for (int i = 0; i < n; i++) {
+			rowStarts[i] = DistanceMatrix.getRowStart(n, i);
+		}
+
+		boolean[] active = new boolean[n];
+		int[] sizes = new int[n];
+		int[] nodes = new int[n];
+		for (int i = 0; i < n; i++) {
+			active[i] = true;
+			sizes[i] = 1;
+			nodes[i] = i;
+		}
+
+		int merges = Math.max(0, n - 1);
+		int[] left = new int[merges];
+		int[] right = new int[merges];
+		double[] heights = new double[merges];
+
+		int[] chain = new int[n];
+		int chainLength = 0;
+		int firstActive = 0;
+		for (int merge = 0; merge < merges; merge++) {
+			if (monitor.isCancelled()) {
+				throw new CancellationException();
+			}
+			if (chainLength == 0) {
+				while (!active[firstActive]) {
+					firstActive++;
+				}
+				chain[chainLength++] = firstActive;
+			}
+
+			int a;
+			int b;
+			double minimum;
+			while (true) {
+				a = chain[chainLength - 1];
+				b = chainLength > 1 ? chain[chainLength - 2] : -1;
+				minimum = b < 0 ?
+					Double.POSITIVE_INFINITY : get(d, rowStarts, a, b);
+
+				int nearest = b;
+				for (int x = 0; x < n; x++) {
+					if (active[x] && x != a) {
+						double distance = get(d, rowStarts, a, x);
+						if (nearest < 0 || distance < minimum) {
+							nearest = x;
+							minimum = distance;
+						}
+					}
+				}
+
+				if (nearest == b) {
+					break;
+				}
+				chain[chainLength++] = nearest;
+			}
+			chainLength -= 2;
+
+			int merged = Math.min(a, b);
+			int removed = Math.max(a, b);
+			left[merge] = nodes[a];
+			right[merge] = nodes[b];
+			heights[merge] = minimum;
+
+			for (int x = 0; x < n; x++) {
+				if (active[x] && x != a && x != b) {
+					set(d, rowStarts, merged, x, getLinkageDistance(
+						get(d, rowStarts, a, x), sizes[a],
+						get(d, rowStarts, b, x), sizes[b]));
+				}
+			}
+			active[removed] = false;
+			sizes[merged] = sizes[a] + sizes[b];
+			nodes[merged] = n + merge;
+		}
+
+		return new Dendrogram(names, left, right, heights);
+	}
+
+	private double getLinkageDistance(double distanceA, int sizeA,
+		double distanceB, int sizeB
+	) {
+		switch (this.linkage) {
+		case SINGLE:
+			return Math.min(distanceA, distanceB);
+		case COMPLETE:
+			return Math.max(distanceA, distanceB);
+		default:
+			double size = sizeA + sizeB;
+			return distanceA * (sizeA / size) + distanceB * (sizeB / size);
+		}
+	}
+
+	private static double get(double[] distances, int[] rowStarts, int i,
+		int j
+	) {
+		return i < j ?
+			distances[rowStarts[i] + j] : distances[rowStarts[j] + i];
+	}
+
+	private static void set(double[] distances, int[] rowStarts, int i, int j,
+		double value
+	) {
+		if (i < j) {
+			distances[rowStarts[i] + j] = value;
+		} else {
+			distances[rowStarts[j] + i] = value;
+		}
+	}
+}
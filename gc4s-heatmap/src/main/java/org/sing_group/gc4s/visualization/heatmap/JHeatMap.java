@@ -24,14 +24,14 @@ package org.sing_group.gc4s.visualization.heatmap;
 
 import static java.awt.BorderLayout.CENTER;
 import static java.awt.BorderLayout.NORTH;
+import static java.awt.BorderLayout.WEST;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
 import static java.lang.Double.isNaN;
 import static java.util.Arrays.asList;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
-import static java.util.stream.IntStream.range;
-import static javax.swing.SwingUtilities.invokeLater;
-import static org.sing_group.gc4s.utilities.Gradient.createGradient;
+import static javax.swing.ScrollPaneConstants.UPPER_LEFT_CORNER;
 import static org.sing_group.gc4s.utilities.ImageIOUtils.toImage;
 import static org.sing_group.gc4s.utilities.MatrixUtils.max;
 import static org.sing_group.gc4s.utilities.MatrixUtils.min;
@@ -41,33 +41,36 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Function;
-import java.util.stream.Stream;
 
-import javax.swing.BorderFactory;
+import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
-import javax.swing.JTable;
-import javax.swing.RowFilter;
-import javax.swing.plaf.basic.BasicLabelUI;
-import javax.swing.table.AbstractTableModel;
-import javax.swing.table.TableCellRenderer;
-import javax.swing.table.TableColumn;
-
-import org.jdesktop.swingx.JXTable;
-import org.jdesktop.swingx.table.TableColumnExt;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.ToolTipManager;
+
 import org.sing_group.gc4s.input.DoubleRange;
 import org.sing_group.gc4s.ui.CenteredJPanel;
-import org.sing_group.gc4s.ui.text.VerticalLabelUI;
+import org.sing_group.gc4s.utilities.ColorLookupTable;
 import org.sing_group.gc4s.utilities.Gradient;
 import org.sing_group.gc4s.visualization.ColorKeyLegend;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Aggregation;
 
 /**
  * <p>
@@ -83,6 +86,18 @@ import org.sing_group.gc4s.visualization.ColorKeyLegend;
  * </p>
  *
  * <p>
+ * The cells are painted from an image with one pixel per visible cell, which
+ * is scaled to the cell size when painting, so that only the visible part of
+ * the matrix is drawn. Row and column names are painted by separate header
+ * components and the value of a cell is shown as a tooltip on hover.
+ * </p>
+ *
+ * <p>
+ * Rows and columns can be ordered by the {@link Dendrogram} of a
+ * {@link HierarchicalClustering}, which is then drawn next to their names.
+ * </p>
+ *
+ * <p>
  * The heatmap can be exported by invoking {@link #toPngImage(File)} method.
  * </p>
  *
@@ -101,6 +116,10 @@ public class JHeatMap extends JPanel {
 	private static final Color 	DEFAULT_HIGH_COLOR 	= Color.RED;
 	private static final int 	DEFAULT_STEPS 		= 100;
 	private static final boolean DEFAULT_MOUSE_ZOOM_ENABLED = true;
+	private static final int 	VIEWPORT_CELLS 		= 20;
+	private static final int 	NAME_MARGIN 		= 5;
+	private static final int 	DENDROGRAM_SIZE 	= 100;
+	private static final int 	DENDROGRAM_MARGIN 	= 5;
 
  	private int 	cellSize 	= DEFAULT_SIZE;
 	private Color 	lowColor 	= DEFAULT_LOW_COLOR;
@@ -116,11 +135,29 @@ public class JHeatMap extends JPanel {
 	private Optional<List<String>> visibleRows = Optional.empty();;
 	private Optional<List<String>> visibleColumns = Optional.empty();;
 
+	private int[] visibleRowIndexes;
+	private int[] visibleColumnIndexes;
+	private int rowNamesWidth;
+	private int columnNamesHeight;
+
+	private int level = 0;
+	private Aggregation aggregation = Aggregation.MEAN;
+	private HeatMapPyramid pyramid;
+	private BufferedImage[] cells;
+
 	private ColorKeyLegend colorKey;
-	private JXTable heatmap;
-	private HeatMapTableModel heatmapTM;
+	private HeatMapCanvas heatmap;
+	private RowHeader rowHeader;
+	private ColumnHeader columnHeader;
+	private DendrogramView rowDendrogramView;
+	private DendrogramView columnDendrogramView;
 
-	private Function<Double, Color> doubleToColor;
+	private Optional<Dendrogram> rowDendrogram = Optional.empty();
+	private Optional<Dendrogram> columnDendrogram = Optional.empty();
+
+	private ColorLookupTable colors;
+	private double dataMinimum = Double.NaN;
+	private double dataMaximum = Double.NaN;
 
 	private double lowValue = Double.NaN;
 	private double highValue = Double.NaN;
@@ -153,6 +190,10 @@ public class JHeatMap extends JPanel {
 	}
 
 	private void initComponent() {
+		this.visibleRowIndexes = getVisibleIndexes(rowNames, visibleRows);
+		this.visibleColumnIndexes =
+			getVisibleIndexes(columnNames, visibleColumns);
+		this.updateNamesSize();
 		this.initializeColors();
 
 		this.setLayout(new BorderLayout());
@@ -161,61 +202,44 @@ public class JHeatMap extends JPanel {
 	}
 
 	private void initializeColors() {
-		double min = getLowValue();
-		double max = getHighValue();
-		Color[] colorGradient = getColorGradient();
-
-		doubleToColor = new Function<Double, Color>() {
-
-			@Override
-			public Color apply(Double t) {
-				if (isNaN(t)) {
-					return nanColor;
-				} else {
-					double normalized = normalize(checkRange(t), max, min);
-					int colorIndex = (int) ((normalized * (DEFAULT_STEPS - 1)));
-					return colorGradient[colorIndex];
-				}
-			}
+		this.colors = new ColorLookupTable(lowColor, highColor, DEFAULT_STEPS,
+			nanColor, getLowValue(), getHighValue());
 
-			private double checkRange(Double t) {
-				if (t > max) {
-					return max;
-				} else if (t < min) {
-					return min;
-				} else {
-					return t;
-				}
-			}
+		this.updateCells();
+	}
 
-			private double normalize(double d, double max, double min) {
-				return (d - min) / (max - min);
-			}
-		};
+	private double getDataMinimum() {
+		if (isNaN(this.dataMinimum)) {
+			this.dataMinimum = min(this.data);
+		}
 
-		this.updateUI();
+		return this.dataMinimum;
 	}
 
-	private Color[] getColorGradient() {
-		return createGradient(lowColor, highColor, DEFAULT_STEPS);
+	private double getDataMaximum() {
+		if (isNaN(this.dataMaximum)) {
+			this.dataMaximum = max(this.data);
+		}
+
+		return this.dataMaximum;
 	}
 
 	private Component getColorKey() {
 		colorKey = new ColorKeyLegend(
 			this.lowColor, this.highColor,
-			min(this.data), max(this.data)
+			getDataMinimum(), getDataMaximum()
 		);
 		return new CenteredJPanel(colorKey);
 	}
 
 	private Component getHeatMap() {
-		this.heatmapTM = new HeatMapTableModel();
-		this.heatmap = new JXTable(this.heatmapTM);
-		this.heatmap.setDefaultRenderer(
-			Object.class, new CustomTableCellRenderer());
-		this.heatmap.setTableHeader(null);
+		this.heatmap = new HeatMapCanvas();
+		this.rowHeader = new RowHeader();
+		this.columnHeader = new ColumnHeader();
+		this.rowDendrogramView = new DendrogramView(true);
+		this.columnDendrogramView = new DendrogramView(false);
 
-		this.heatmap.addMouseWheelListener(e -> {
+		MouseWheelListener zoomListener = e -> {
 			if(!mouseZoomEnabled) {
 				return;
 			}
@@ -225,58 +249,330 @@ public class JHeatMap extends JPanel {
 			} else {
 				zoomOut();
 			}
-		});
+		};
+		this.heatmap.addMouseWheelListener(zoomListener);
+		this.rowHeader.addMouseWheelListener(zoomListener);
+		this.columnHeader.addMouseWheelListener(zoomListener);
+
+		JScrollPane scrollPane = new JScrollPane(this.heatmap);
+		JPanel rowHeaderPanel = new JPanel(new BorderLayout());
+		rowHeaderPanel.add(this.rowDendrogramView, WEST);
+		rowHeaderPanel.add(this.rowHeader, CENTER);
+		scrollPane.setRowHeaderView(rowHeaderPanel);
+
+		JPanel columnHeaderPanel = new JPanel(new BorderLayout());
+		columnHeaderPanel.add(this.columnDendrogramView, NORTH);
+		columnHeaderPanel.add(this.columnHeader, CENTER);
+		scrollPane.setColumnHeaderView(columnHeaderPanel);
+		JPanel corner = new JPanel();
+		corner.setBackground(Color.WHITE);
+		scrollPane.setCorner(UPPER_LEFT_CORNER, corner);
+
+		return scrollPane;
+	}
 
-		this.heatmap.setFont(this.heatmap.getFont().deriveFont(
-			(float) this.cellSize));
-		this.heatmap.setColumnControlVisible(false);
-		this.heatmap.setShowHorizontalLines(false);
-		this.heatmap.setShowVerticalLines(false);
-		this.heatmap.setFillsViewportHeight(false);
-		this.heatmap.setRowMargin(0);
-		this.heatmap.setIntercellSpacing(new Dimension(0, 0));
-		this.heatmap.setCellSelectionEnabled(false);
-		this.heatmap.setAutoCreateRowSorter(false);
-		this.heatmap.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+	private void updateNamesSize() {
+		this.rowNamesWidth = getMaxRowNameLength();
+		this.columnNamesHeight = getMaxColumnNameLength();
+	}
 
-		this.fixCellSize();
+	private int getMaxRowNameLength() {
+		return getMaxNameLength(this.rowNames);
+	}
 
-		return new JScrollPane(this.heatmap);
+	private int getMaxColumnNameLength() {
+		return getMaxNameLength(this.columnNames);
 	}
 
-	private void fixCellSize() {
-		this.heatmap.setRowHeight(0, getMaxColumnNameLength());
-		range(1, getVisibleRowNames().size() + 1).forEach(row -> {
-			this.heatmap.setRowHeight(row, this.cellSize);
-		});
+	private int getMaxNameLength(String[] names) {
+		Font heatmapFont = this.font.orElse(new JLabel().getFont());
+		FontMetrics fontMetrics = new JLabel().getFontMetrics(heatmapFont);
 
-		for (int i = 0; i < this.heatmap.getColumnModel().getColumnCount(); i++) {
-			TableColumn c = this.heatmap.getColumnModel().getColumn(i);
-			c.setMinWidth(this.cellSize);
-			c.setMaxWidth(this.cellSize);
-			c.setPreferredWidth(this.cellSize);
+		int maxLength = 0;
+		for (String name : names) {
+			maxLength = Math.max(maxLength,
+				fontMetrics.stringWidth(name) + 2 * NAME_MARGIN);
 		}
 
-		int maxRowWidth = getMaxRowNameLength();
-		TableColumn rowNamesColumn = this.heatmap.getColumnModel().getColumn(0);
-		rowNamesColumn.setMinWidth(maxRowWidth);
-		rowNamesColumn.setMaxWidth(maxRowWidth);
-		rowNamesColumn.setPreferredWidth(maxRowWidth);
+		return maxLength;
 	}
 
-	private int getMaxRowNameLength() {
-		return 	Stream.of(this.rowNames)
-				.mapToInt(this::requiredLength).max().getAsInt();
+	private static int[] getVisibleIndexes(String[] names,
+		Optional<List<String>> visibleNames
+	) {
+		if (!visibleNames.isPresent()) {
+			int[] indexes = new int[names.length];
+			for (int i = 0; i < indexes.length; i++) {
+				indexes[i] = i;
+			}
+
+			return indexes;
+		}
+
+		return JHeatMapModel.getIndexes(names, visibleNames.get());
 	}
 
-	private int getMaxColumnNameLength() {
-		return 	Stream.of(this.columnNames)
-				.mapToInt(this::requiredLength).max().getAsInt();
+	private void updateCells() {
+		this.cells = null;
+		if (this.heatmap != null) {
+			this.heatmap.repaint();
+		}
 	}
 
-	private int requiredLength(String s) {
-		Font heatmapFont = this.font.orElse(new JLabel().getFont());
-		return new JLabel().getFontMetrics(heatmapFont).stringWidth(s) + 10;
+	private void updatePyramid() {
+		this.pyramid = null;
+		this.level = Math.min(this.level, getPyramid().getMaxLevel());
+		this.updateCells();
+	}
+
+	private HeatMapPyramid getPyramid() {
+		if (this.pyramid == null) {
+			this.pyramid = new HeatMapPyramid(this.data,
+				this.visibleRowIndexes, this.visibleColumnIndexes,
+				this.aggregation);
+		}
+
+		return this.pyramid;
+	}
+
+	/**
+	 * Returns the size, in pixels, of the blocks painted in the current
+	 * level: the cell size in level {@code 0} and one pixel in the upper
+	 * levels, where each block aggregates several cells.
+	 *
+	 * @return the size, in pixels, of the blocks painted
+	 */
+	private int getBlockSize() {
+		return this.level == 0 ? this.cellSize : 1;
+	}
+
+	/**
+	 * Returns the size, in pixels, of each cell in the current level, which
+	 * is below one pixel in the upper levels.
+	 *
+	 * @return the size, in pixels, of each cell
+	 */
+	private double getPixelsPerCell() {
+		return this.level == 0 ? this.cellSize : 1d / (1L << this.level);
+	}
+
+	private int getBlockRows() {
+		return getPyramid().getRows(this.level);
+	}
+
+	private int getBlockColumns() {
+		return getPyramid().getColumns(this.level);
+	}
+
+	private void updateHeatMapSize() {
+		if (this.heatmap != null) {
+			this.heatmap.revalidate();
+			this.rowHeader.revalidate();
+			this.columnHeader.revalidate();
+			this.rowDendrogramView.revalidate();
+			this.columnDendrogramView.revalidate();
+			this.heatmap.repaint();
+			this.rowHeader.repaint();
+			this.columnHeader.repaint();
+			this.rowDendrogramView.repaint();
+			this.columnDendrogramView.repaint();
+		}
+	}
+
+	private BufferedImage getCellsImage() {
+		if (this.cells == null) {
+			this.cells = new BufferedImage[getPyramid().getMaxLevel() + 1];
+		}
+		if (this.cells[this.level] == null) {
+			this.cells[this.level] = createCellsImage(this.level);
+		}
+
+		return this.cells[this.level];
+	}
+
+	/**
+	 * Creates an image with one pixel for each block of the specified level,
+	 * whose color represents the value of the block. In level {@code 0}, each
+	 * block is a visible cell.
+	 *
+	 * @param level a level of the heatmap pyramid
+	 * @return an image with one pixel for each block of the level
+	 */
+	private BufferedImage createCellsImage(int level) {
+		HeatMapPyramid pyramid = getPyramid();
+		int rows = pyramid.getRows(level);
+		int columns = pyramid.getColumns(level);
+
+		BufferedImage image = new BufferedImage(columns, rows, TYPE_INT_RGB);
+		int[] pixels =
+			((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+		ColorLookupTable colors = this.colors;
+		if (level > 0) {
+			colors.getRGB(pyramid.getValues(level), pixels, 0);
+		} else {
+			boolean allColumns = columns == this.columnNames.length;
+			for (int row = 0; row < rows; row++) {
+				double[] values = this.data[this.visibleRowIndexes[row]];
+				if (allColumns) {
+					colors.getRGB(values, pixels, row * columns);
+				} else {
+					colors.getRGB(values, this.visibleColumnIndexes, pixels,
+						row * columns);
+				}
+			}
+		}
+
+		return image;
+	}
+
+	private void paintCells(Graphics2D g, Rectangle area) {
+		g.setColor(this.heatmap.getBackground());
+		g.fill(area);
+
+		int blockSize = getBlockSize();
+		int firstRow = Math.max(0, area.y / blockSize);
+		int lastRow = Math.min(getBlockRows(),
+			(area.y + area.height + blockSize - 1) / blockSize);
+		int firstColumn = Math.max(0, area.x / blockSize);
+		int lastColumn = Math.min(getBlockColumns(),
+			(area.x + area.width + blockSize - 1) / blockSize);
+
+		if (firstRow < lastRow && firstColumn < lastColumn) {
+			g.drawImage(getCellsImage(),
+				firstColumn * blockSize, firstRow * blockSize,
+				lastColumn * blockSize, lastRow * blockSize,
+				firstColumn, firstRow, lastColumn, lastRow, null);
+		}
+	}
+
+	private void paintRowNames(Graphics2D g, Rectangle area, int width) {
+		g.setColor(Color.WHITE);
+		g.fill(area);
+		if (this.level > 0) {
+			return;
+		}
+		g.setColor(getForeground());
+		g.setFont(getHeatmapFont());
+
+		FontMetrics fontMetrics = g.getFontMetrics();
+		int baseline = (cellSize - fontMetrics.getHeight()) / 2
+			+ fontMetrics.getAscent();
+		int firstRow = Math.max(0, area.y / cellSize);
+		int lastRow = Math.min(this.visibleRowIndexes.length,
+			(area.y + area.height + cellSize - 1) / cellSize);
+		for (int row = firstRow; row < lastRow; row++) {
+			String name = this.rowNames[this.visibleRowIndexes[row]];
+			Graphics2D cell =
+				(Graphics2D) g.create(0, row * cellSize, width, cellSize);
+			cell.drawString(name,
+				width - NAME_MARGIN - fontMetrics.stringWidth(name), baseline);
+			cell.dispose();
+		}
+	}
+
+	private void paintColumnNames(Graphics2D g, Rectangle area, int height) {
+		g.setColor(Color.WHITE);
+		g.fill(area);
+		if (this.level > 0) {
+			return;
+		}
+		g.setColor(getForeground());
+		g.setFont(getHeatmapFont());
+
+		FontMetrics fontMetrics = g.getFontMetrics();
+		int baseline = (cellSize - fontMetrics.getHeight()) / 2
+			+ fontMetrics.getAscent();
+		int firstColumn = Math.max(0, area.x / cellSize);
+		int lastColumn = Math.min(this.visibleColumnIndexes.length,
+			(area.x + area.width + cellSize - 1) / cellSize);
+		for (int column = firstColumn; column < lastColumn; column++) {
+			String name = this.columnNames[this.visibleColumnIndexes[column]];
+			Graphics2D cell =
+				(Graphics2D) g.create(column * cellSize, 0, cellSize, height);
+			cell.rotate(-Math.PI / 2);
+			cell.translate(-height, 0);
+			cell.drawString(name, NAME_MARGIN, baseline);
+			cell.dispose();
+		}
+	}
+
+	/**
+	 * Draws a dendrogram whose leaves are the visible rows or columns. The
+	 * leaves are at the side of the area next to the names and the root at
+	 * the opposite side. Only the merges whose leaves are in the area are
+	 * drawn.
+	 *
+	 * @param g the graphics where the dendrogram is drawn
+	 * @param area the area to draw, in the coordinates of {@code g}
+	 * @param dendrogram the dendrogram to draw
+	 * @param rows whether the dendrogram is drawn next to the rows or the
+	 * 		columns
+	 * @param depth the size of the dendrogram from the leaves to the root
+	 */
+	private void paintDendrogram(Graphics2D g, Rectangle area,
+		Dendrogram dendrogram, boolean rows, int depth
+	) {
+		g.setColor(Color.WHITE);
+		g.fill(area);
+		g.setColor(getForeground());
+
+		double pixelsPerCell = getPixelsPerCell();
+		int areaStart = rows ? area.y : area.x;
+		int areaEnd = areaStart + (rows ? area.height : area.width);
+		int firstPosition = (int) Math.floor(areaStart / pixelsPerCell);
+		int lastPosition = (int) Math.ceil(areaEnd / pixelsPerCell);
+
+		int leaves = dendrogram.getLeafCount();
+		for (int merge = 0; merge < dendrogram.getMergeCount(); merge++) {
+			int node = leaves + merge;
+			if (dendrogram.getLastPosition(node) < firstPosition
+				|| dendrogram.getFirstPosition(node) > lastPosition
+			) {
+				continue;
+			}
+			int mergeDepth = getDendrogramDepth(dendrogram,
+				dendrogram.getNodeHeight(node), depth);
+
+			int[] children = new int[] {
+				dendrogram.getLeft(merge), dendrogram.getRight(merge)
+			};
+			int[] childPositions = new int[2];
+			for (int i = 0; i < children.length; i++) {
+				childPositions[i] = (int) ((dendrogram.getPosition(children[i])
+					+ 0.5d) * pixelsPerCell);
+				int childDepth = getDendrogramDepth(dendrogram,
+					dendrogram.getNodeHeight(children[i]), depth);
+				drawDendrogramLine(g, rows, childPositions[i], childDepth,
+					childPositions[i], mergeDepth);
+			}
+			drawDendrogramLine(g, rows, childPositions[0], mergeDepth,
+				childPositions[1], mergeDepth);
+		}
+	}
+
+	/**
+	 * Returns the distance, in pixels, from the root side of the dendrogram
+	 * to the specified height.
+	 */
+	private static int getDendrogramDepth(Dendrogram dendrogram,
+		double height, int depth
+	) {
+		double maxHeight = dendrogram.getMaxHeight();
+		double ratio = maxHeight > 0 ? Math.min(1d, height / maxHeight) : 0d;
+
+		return (int) Math.round(DENDROGRAM_MARGIN
+			+ (1d - ratio) * (depth - 2 * DENDROGRAM_MARGIN));
+	}
+
+	private static void drawDendrogramLine(Graphics2D g, boolean rows,
+		int position1, int depth1, int position2, int depth2
+	) {
+		if (rows) {
+			g.drawLine(depth1, position1, depth2, position2);
+		} else {
+			g.drawLine(position1, depth1, position2, depth2);
+		}
 	}
 
 	/**
@@ -305,9 +601,36 @@ public class JHeatMap extends JPanel {
 		zoomOut((double) 1 / DEFAULT_ZOOM_SCALE);
 	}
 
+	/**
+	 * Scales the size of the cells. When cells become smaller than one pixel,
+	 * the heatmap switches to the level of the pyramid whose blocks match the
+	 * new size, so that one pixel is painted for each block of cells.
+	 *
+	 * @param scale the scaling factor
+	 */
 	private void scaleCellSize(double scale) {
-		this.cellSize = (int) (this.cellSize * scale);
-		this.fixCellSize();
+		double pixelsPerCell = getPixelsPerCell() * scale;
+
+		if (pixelsPerCell >= 1) {
+			int newCellSize = (int) pixelsPerCell;
+			if (scale > 1 && newCellSize <= this.cellSize && this.level == 0) {
+				newCellSize = this.cellSize + 1;
+			}
+			this.level = 0;
+			this.cellSize = newCellSize;
+		} else {
+			int newLevel = (int) Math.round(
+				Math.log(1 / pixelsPerCell) / Math.log(2));
+			if (scale < 1) {
+				newLevel = Math.max(newLevel, this.level + 1);
+			} else {
+				newLevel = Math.min(newLevel, this.level - 1);
+			}
+			this.level = Math.max(0,
+				Math.min(newLevel, getPyramid().getMaxLevel()));
+			this.cellSize = 1;
+		}
+		this.updateHeatMapSize();
 	}
 
 	/**
@@ -317,7 +640,7 @@ public class JHeatMap extends JPanel {
 	 * @throws IOException if an error occurs while saving the image
 	 */
 	public void toPngImage(File f) throws IOException {
-		toImage("png", f, this.colorKey, this.heatmap);
+		toImage("png", f, this.colorKey, new HeatMapImage());
 	}
 
 	/**
@@ -379,7 +702,7 @@ public class JHeatMap extends JPanel {
 	 */
 	public void setNanColor(Color color) {
 		this.nanColor = color;
-		this.updateUI();
+		this.initializeColors();
 	}
 
 	/**
@@ -408,109 +731,241 @@ public class JHeatMap extends JPanel {
 	 */
 	public void setData(double[][] data) {
 		this.data = data;
-		this.colorKey.setLowValue(min(data));
-		this.colorKey.setHighValue(max(data));
+		this.dataMinimum = Double.NaN;
+		this.dataMaximum = Double.NaN;
+		this.pyramid = null;
+		this.colorKey.setLowValue(getDataMinimum());
+		this.colorKey.setHighValue(getDataMaximum());
 		this.initializeColors();
-		invokeLater(() -> {
-			this.heatmapTM.fireTableDataChanged();
-			this.fixCellSize();
-		});
 	}
 
-	class HeatMapTableModel extends AbstractTableModel {
+	private String format(double cellValue) {
+		return 	Double.isNaN(cellValue) ?
+				"N/A" : decimalFormat.format(cellValue);
+	}
+
+	private final class HeatMapCanvas extends JComponent implements Scrollable {
 		private static final long serialVersionUID = 1L;
 
+		public HeatMapCanvas() {
+			this.setOpaque(true);
+			this.setBackground(Color.WHITE);
+			ToolTipManager.sharedInstance().registerComponent(this);
+		}
+
 		@Override
-		public int getRowCount() {
-			return rowNames.length + 1;
+		public Dimension getPreferredSize() {
+			return new Dimension(
+				getBlockColumns() * getBlockSize(),
+				getBlockRows() * getBlockSize()
+			);
 		}
 
 		@Override
-		public int getColumnCount() {
-			return columnNames.length + 1;
+		protected void paintComponent(Graphics g) {
+			Rectangle area = g.getClipBounds();
+			if (area == null) {
+				area = new Rectangle(0, 0, getWidth(), getHeight());
+			}
+			paintCells((Graphics2D) g, area);
 		}
 
 		@Override
-		public Object getValueAt(int rowIndex, int columnIndex) {
-			if(rowIndex == 0 && columnIndex == 0) {
-				return "";
-			} else {
-				if (rowIndex == 0) {
-					return columnNames[columnIndex-1];
-				}
-				if (columnIndex == 0) {
-					return rowNames[rowIndex-1];
-				}
-				return new CellValue(data[rowIndex-1][columnIndex-1]);
+		public String getToolTipText(MouseEvent event) {
+			int row = event.getY() / getBlockSize();
+			int column = event.getX() / getBlockSize();
+			if (row < 0 || row >= getBlockRows()
+				|| column < 0 || column >= getBlockColumns()
+			) {
+				return null;
 			}
+
+			return format(getPyramid().getValue(level, row, column));
+		}
+
+		@Override
+		public Dimension getPreferredScrollableViewportSize() {
+			Dimension size = getPreferredSize();
+			int maxSize = VIEWPORT_CELLS * DEFAULT_SIZE;
+
+			return new Dimension(
+				Math.min(size.width, maxSize), Math.min(size.height, maxSize));
+		}
+
+		@Override
+		public int getScrollableUnitIncrement(Rectangle visibleRect,
+			int orientation, int direction
+		) {
+			return getBlockSize();
 		}
-	}
 
-	private final class CellValue {
+		@Override
+		public int getScrollableBlockIncrement(Rectangle visibleRect,
+			int orientation, int direction
+		) {
+			if (orientation == SwingConstants.VERTICAL) {
+				return Math.max(getBlockSize(),
+					visibleRect.height - getBlockSize());
+			} else {
+				return Math.max(getBlockSize(),
+					visibleRect.width - getBlockSize());
+			}
+		}
 
-		private double value;
+		@Override
+		public boolean getScrollableTracksViewportWidth() {
+			return false;
+		}
 
-		public CellValue(double value) {
-			this.value = value;
+		@Override
+		public boolean getScrollableTracksViewportHeight() {
+			return false;
 		}
+	}
+
+	private final class RowHeader extends JComponent {
+		private static final long serialVersionUID = 1L;
 
-		public double getValue() {
-			return value;
+		@Override
+		public Dimension getPreferredSize() {
+			return new Dimension(
+				rowNamesWidth, getBlockRows() * getBlockSize());
 		}
 
 		@Override
-		public String toString() {
-			return Double.toString(value);
+		protected void paintComponent(Graphics g) {
+			Rectangle area = g.getClipBounds();
+			if (area == null) {
+				area = new Rectangle(0, 0, getWidth(), getHeight());
+			}
+			paintRowNames((Graphics2D) g, area, getWidth());
 		}
 	}
 
-	private final class CustomTableCellRenderer extends JLabel implements
-		TableCellRenderer
-	{
+	private final class ColumnHeader extends JComponent {
 		private static final long serialVersionUID = 1L;
 
-		public CustomTableCellRenderer() {
-			super();
-			this.setOpaque(true);
+		@Override
+		public Dimension getPreferredSize() {
+			return new Dimension(
+				getBlockColumns() * getBlockSize(), columnNamesHeight);
 		}
 
 		@Override
-		public Component getTableCellRendererComponent(JTable table,
-			Object value, boolean isSelected, boolean hasFocus, int row,
-			int column
-		) {
+		protected void paintComponent(Graphics g) {
+			Rectangle area = g.getClipBounds();
+			if (area == null) {
+				area = new Rectangle(0, 0, getWidth(), getHeight());
+			}
+			paintColumnNames((Graphics2D) g, area, getHeight());
+		}
+	}
+
+	private final class DendrogramView extends JComponent {
+		private static final long serialVersionUID = 1L;
+
+		private final boolean rows;
+
+		public DendrogramView(boolean rows) {
+			this.rows = rows;
+		}
 
-			if (value instanceof CellValue) {
-				double cellValue = ((CellValue) value).getValue();
+		private Optional<Dendrogram> getDendrogram() {
+			return this.rows ? rowDendrogram : columnDendrogram;
+		}
 
-				this.setBackground(doubleToColor.apply(cellValue));
-				this.setText("");
-				this.setToolTipText(format(cellValue));
+		@Override
+		public Dimension getPreferredSize() {
+			int depth = getDendrogram().isPresent() ? DENDROGRAM_SIZE : 0;
+			if (this.rows) {
+				return new Dimension(depth, getBlockRows() * getBlockSize());
 			} else {
-				this.setText(value.toString());
-				this.setBackground(Color.WHITE);
-				this.setHorizontalAlignment(JLabel.CENTER);
-				this.setToolTipText("");
+				return new Dimension(getBlockColumns() * getBlockSize(), depth);
 			}
+		}
 
-			if (table.convertRowIndexToModel(row) == 0) {
-				this.setUI(new VerticalLabelUI(false));
-				this.setHorizontalAlignment(JLabel.LEFT);
-				this.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 0));
-				this.setFont(getHeatmapFont());
-			} else {
-				this.setUI(new BasicLabelUI());
-				this.setHorizontalAlignment(JLabel.RIGHT);
-				this.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 5));
-				this.setFont(getHeatmapFont());
+		@Override
+		protected void paintComponent(Graphics g) {
+			if (!getDendrogram().isPresent()) {
+				return;
 			}
+			Rectangle area = g.getClipBounds();
+			if (area == null) {
+				area = new Rectangle(0, 0, getWidth(), getHeight());
+			}
+			paintDendrogram((Graphics2D) g, area, getDendrogram().get(),
+				this.rows, this.rows ? getWidth() : getHeight());
+		}
+	}
+
+	/**
+	 * A component that paints the whole heatmap, including the row and column
+	 * names and dendrograms, regardless of the part of it that is visible on
+	 * screen. It is used to export the heatmap as an image.
+	 */
+	private final class HeatMapImage extends JComponent {
+		private static final long serialVersionUID = 1L;
 
-			return this;
+		private final int cellsWidth;
+		private final int cellsHeight;
+		private final int rowDendrogramWidth;
+		private final int columnDendrogramHeight;
+
+		public HeatMapImage() {
+			this.cellsWidth = getBlockColumns() * getBlockSize();
+			this.cellsHeight = getBlockRows() * getBlockSize();
+			this.rowDendrogramWidth =
+				rowDendrogram.isPresent() ? DENDROGRAM_SIZE : 0;
+			this.columnDendrogramHeight =
+				columnDendrogram.isPresent() ? DENDROGRAM_SIZE : 0;
+			this.setSize(
+				rowDendrogramWidth + rowNamesWidth + cellsWidth,
+				columnDendrogramHeight + columnNamesHeight + cellsHeight);
 		}
 
-		private String format(double cellValue) {
-			return 	Double.isNaN(cellValue) ?
-					"N/A" : decimalFormat.format(cellValue);
+		@Override
+		public void paint(Graphics g) {
+			Graphics2D g2 = (Graphics2D) g;
+			int left = rowDendrogramWidth + rowNamesWidth;
+			int top = columnDendrogramHeight + columnNamesHeight;
+			g2.setColor(Color.WHITE);
+			g2.fillRect(0, 0, left, top);
+
+			if (columnDendrogram.isPresent()) {
+				Graphics2D dendrogram = (Graphics2D) g2.create(
+					left, 0, cellsWidth, columnDendrogramHeight);
+				paintDendrogram(dendrogram,
+					new Rectangle(0, 0, cellsWidth, columnDendrogramHeight),
+					columnDendrogram.get(), false, columnDendrogramHeight);
+				dendrogram.dispose();
+			}
+
+			Graphics2D columnNames = (Graphics2D) g2.create(
+				left, columnDendrogramHeight, cellsWidth, columnNamesHeight);
+			paintColumnNames(columnNames,
+				new Rectangle(0, 0, cellsWidth, columnNamesHeight),
+				columnNamesHeight);
+			columnNames.dispose();
+
+			if (rowDendrogram.isPresent()) {
+				Graphics2D dendrogram = (Graphics2D) g2.create(
+					0, top, rowDendrogramWidth, cellsHeight);
+				paintDendrogram(dendrogram,
+					new Rectangle(0, 0, rowDendrogramWidth, cellsHeight),
+					rowDendrogram.get(), true, rowDendrogramWidth);
+				dendrogram.dispose();
+			}
+
+			Graphics2D rowNames = (Graphics2D) g2.create(
+				rowDendrogramWidth, top, rowNamesWidth, cellsHeight);
+			paintRowNames(rowNames,
+				new Rectangle(0, 0, rowNamesWidth, cellsHeight), rowNamesWidth);
+			rowNames.dispose();
+
+			Graphics2D cells = (Graphics2D) g2.create(
+				left, top, cellsWidth, cellsHeight);
+			paintCells(cells, new Rectangle(0, 0, cellsWidth, cellsHeight));
+			cells.dispose();
 		}
 	}
 
@@ -522,8 +977,8 @@ public class JHeatMap extends JPanel {
 	public void setHeatmapFont(Font font) {
 		this.font = ofNullable(font);
 		this.colorKey.setFont(font);
-		this.fixCellSize();
-		this.updateUI();
+		this.updateNamesSize();
+		this.updateHeatMapSize();
 	}
 
 	/**
@@ -542,7 +997,7 @@ public class JHeatMap extends JPanel {
 	 */
 	public double getLowValue() {
 		if (isNaN(lowValue)) {
-			return min(this.data);
+			return getDataMinimum();
 		} else {
 			return lowValue;
 		}
@@ -555,7 +1010,7 @@ public class JHeatMap extends JPanel {
 	 */
 	public double getHighValue() {
 		if (Double.isNaN(highValue)) {
-			return max(this.data);
+			return getDataMaximum();
 		} else {
 			return highValue;
 		}
@@ -621,11 +1076,13 @@ public class JHeatMap extends JPanel {
 	}
 
 	/**
-	 * Sets the visible row names.
+	 * Sets the visible row names. Rows are shown in the order of the list and
+	 * the row dendrogram, if any, is removed.
 	 *
 	 * @param rowNames a {@code List} containing the visible row names
 	 */
 	public void setVisibleRowNames(List<String> rowNames) {
+		this.rowDendrogram = empty();
 		if (rowNames != null && !rowNames.isEmpty()) {
 			this.visibleRows = of(rowNames);
 		} else {
@@ -634,16 +1091,194 @@ public class JHeatMap extends JPanel {
 		updateVisibleRows();
 	}
 
+	/**
+	 * Returns the indexes in the data matrix of the rows that are currently
+	 * visible, in the order they are shown.
+	 *
+	 * @return the indexes of the visible rows
+	 */
+	public int[] getVisibleRowIndexes() {
+		return this.visibleRowIndexes.clone();
+	}
+
+	/**
+	 * Sets the visible rows by their indexes in the data matrix. Rows are
+	 * shown in the order of the array, so rows with the same name can be
+	 * told apart, and the row dendrogram, if any, is removed. A {@code null}
+	 * or empty array makes all the rows visible.
+	 *
+	 * @param rowIndexes the indexes of the visible rows
+	 * @throws IllegalArgumentException if an index is out of the data matrix
+	 */
+	public void setVisibleRowIndexes(int[] rowIndexes) {
+		if (rowIndexes == null || rowIndexes.length == 0) {
+			this.setVisibleRowNames(null);
+			return;
+		}
+		this.rowDendrogram = empty();
+		this.visibleRowIndexes = checkIndexes(rowIndexes, this.rowNames);
+		this.visibleRows = of(getNames(this.rowNames, this.visibleRowIndexes));
+		this.updatePyramid();
+		this.updateHeatMapSize();
+	}
+
+	/**
+	 * Sets the dendrogram of the rows. Its leaves must be the visible rows,
+	 * in the order they are shown, as in the model returned by
+	 * {@link #getVisibleModel()}. Visible rows are then shown in the order
+	 * of the dendrogram. If {@code dendrogram} is {@code null}, the current
+	 * dendrogram is removed and the visible rows keep their order.
+	 *
+	 * @param dendrogram the dendrogram of the rows, or {@code null}
+	 * @throws IllegalArgumentException if the number of leaves of the
+	 *         dendrogram is not the number of visible rows
+	 */
+	public void setRowDendrogram(Dendrogram dendrogram) {
+		if (dendrogram == null) {
+			this.rowDendrogram = empty();
+		} else {
+			this.setVisibleRowIndexes(
+				getLeafIndexes(dendrogram, this.visibleRowIndexes));
+			this.rowDendrogram = of(dendrogram);
+		}
+		this.updateHeatMapSize();
+	}
+
+	private static int[] getLeafIndexes(Dendrogram dendrogram,
+		int[] visibleIndexes
+	) {
+		if (dendrogram.getLeafCount() != visibleIndexes.length) {
+			throw new IllegalArgumentException("The dendrogram has "
+				+ dendrogram.getLeafCount() + " leaves but there are "
+				+ visibleIndexes.length + " visible rows or columns");
+		}
+		int[] order = dendrogram.getLeafOrder();
+		int[] indexes = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			indexes[i] = visibleIndexes[order[i]];
+		}
+
+		return indexes;
+	}
+
+	private static int[] checkIndexes(int[] indexes, String[] names) {
+		for (int index : indexes) {
+			if (index < 0 || index >= names.length) {
+				throw new IllegalArgumentException("Invalid index: " + index);
+			}
+		}
+
+		return indexes.clone();
+	}
+
+	private static List<String> getNames(String[] names, int[] indexes) {
+		List<String> selected = new ArrayList<>(indexes.length);
+		for (int index : indexes) {
+			selected.add(names[index]);
+		}
+
+		return selected;
+	}
+
+	/**
+	 * Returns the dendrogram of the rows, if any.
+	 *
+	 * @return the dendrogram of the rows, if any
+	 */
+	public Optional<Dendrogram> getRowDendrogram() {
+		return rowDendrogram;
+	}
+
+	/**
+	 * Returns the indexes in the data matrix of the columns that are
+	 * currently visible, in the order they are shown.
+	 *
+	 * @return the indexes of the visible columns
+	 */
+	public int[] getVisibleColumnIndexes() {
+		return this.visibleColumnIndexes.clone();
+	}
+
+	/**
+	 * Sets the visible columns by their indexes in the data matrix. Columns
+	 * are shown in the order of the array, so columns with the same name can
+	 * be told apart, and the column dendrogram, if any, is removed. A
+	 * {@code null} or empty array makes all the columns visible.
+	 *
+	 * @param columnIndexes the indexes of the visible columns
+	 * @throws IllegalArgumentException if an index is out of the data matrix
+	 */
+	public void setVisibleColumnIndexes(int[] columnIndexes) {
+		if (columnIndexes == null || columnIndexes.length == 0) {
+			this.setVisibleColumnNames(null);
+			return;
+		}
+		this.columnDendrogram = empty();
+		this.visibleColumnIndexes =
+			checkIndexes(columnIndexes, this.columnNames);
+		this.visibleColumns =
+			of(getNames(this.columnNames, this.visibleColumnIndexes));
+		this.updatePyramid();
+		this.updateHeatMapSize();
+	}
+
+	/**
+	 * Sets the dendrogram of the columns. Its leaves must be the visible
+	 * columns, in the order they are shown, as in the rows of the transposed
+	 * model returned by {@link #getVisibleModel()}. Visible columns are then
+	 * shown in the order of the dendrogram. If {@code dendrogram} is
+	 * {@code null}, the current dendrogram is removed and the visible columns
+	 * keep their order.
+	 *
+	 * @param dendrogram the dendrogram of the columns, or {@code null}
+	 * @throws IllegalArgumentException if the number of leaves of the
+	 *         dendrogram is not the number of visible columns
+	 */
+	public void setColumnDendrogram(Dendrogram dendrogram) {
+		if (dendrogram == null) {
+			this.columnDendrogram = empty();
+		} else {
+			this.setVisibleColumnIndexes(
+				getLeafIndexes(dendrogram, this.visibleColumnIndexes));
+			this.columnDendrogram = of(dendrogram);
+		}
+		this.updateHeatMapSize();
+	}
+
+	/**
+	 * Returns the dendrogram of the columns, if any.
+	 *
+	 * @return the dendrogram of the columns, if any
+	 */
+	public Optional<Dendrogram> getColumnDendrogram() {
+		return columnDendrogram;
+	}
+
+	/**
+	 * Returns a model with the data, row names and column names that are
+	 * currently visible, in the order they are shown.
+	 *
+	 * @return a model with the visible data
+	 */
+	public JHeatMapModel getVisibleModel() {
+		return new JHeatMapModel(this.data, this.rowNames, this.columnNames)
+			.subset(this.visibleRowIndexes, this.visibleColumnIndexes);
+	}
+
 	private void updateVisibleRows() {
-		updateRowFilter();
+		this.visibleRowIndexes = getVisibleIndexes(rowNames, visibleRows);
+		this.updatePyramid();
+		this.updateHeatMapSize();
 	}
 
 	/**
-	 * Sets the visible column names.
+	 * Sets the visible column names. Columns are shown in the order of the
+	 * list and the column dendrogram, if any, is removed.
 	 *
 	 * @param columnNames a {@code List} containing the visible column names
 	 */
 	public void setVisibleColumnNames(List<String> columnNames) {
+		this.columnDendrogram = empty();
 		if (columnNames != null && !columnNames.isEmpty()) {
 			this.visibleColumns = of(columnNames);
 		} else {
@@ -652,6 +1287,29 @@ public class JHeatMap extends JPanel {
 		updateVisibleColumns();
 	}
 
+	/**
+	 * Sets the function used to aggregate the blocks of cells that are
+	 * painted as a single pixel when the heatmap is zoomed out below one
+	 * pixel per cell.
+	 *
+	 * @param aggregation the function used to aggregate the blocks of cells
+	 */
+	public void setAggregation(Aggregation aggregation) {
+		this.aggregation = aggregation;
+		this.updatePyramid();
+	}
+
+	/**
+	 * Returns the function used to aggregate the blocks of cells that are
+	 * painted as a single pixel when the heatmap is zoomed out below one
+	 * pixel per cell.
+	 *
+	 * @return the function used to aggregate the blocks of cells
+	 */
+	public Aggregation getAggregation() {
+		return aggregation;
+	}
+
 	/**
 	 * Sets whether the scroll mouse zoom should be enabled or not.
 	 *
@@ -662,35 +1320,9 @@ public class JHeatMap extends JPanel {
 	}
 
 	private void updateVisibleColumns() {
-		List<String> visibleColumnNames = getVisibleColumnNames();
-		List<String> columnNames = getColumnNames();
-		for (int i = 0; i < columnNames.size(); i++) {
-			String colName = columnNames.get(i);
-			boolean visible = visibleColumnNames.contains(colName);
-			getTableColumnExt(i + 1).setVisible(visible);
-		}
-	}
-
-	private TableColumnExt getTableColumnExt(int modelIndex) {
-		return (TableColumnExt) this.heatmap.getColumns(true).get(modelIndex);
-	}
-
-	private void updateRowFilter() {
-		this.heatmap.setRowFilter(getRowFilter());
-	}
-
-	private TestRowFilter<Object, Object> getRowFilter() {
-		return new TestRowFilter<>();
-	}
-
-	private class TestRowFilter<M, I> extends RowFilter<M, I> {
-		@Override
-		public boolean include(RowFilter.Entry<? extends M, ? extends I> entry) {
-			if (entry.getIdentifier().equals(0)) {
-				return true;
-			} else {
-				return getVisibleRowNames().contains(entry.getStringValue(0));
-			}
-		}
+		this.visibleColumnIndexes =
+			getVisibleIndexes(columnNames, visibleColumns);
+		this.updatePyramid();
+		this.updateHeatMapSize();
 	}
 }
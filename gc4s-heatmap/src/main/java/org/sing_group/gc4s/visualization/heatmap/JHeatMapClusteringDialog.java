@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato,
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.visualization.heatmap;
+
+import java.awt.Window;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+
+import org.sing_group.gc4s.dialog.AbstractInputJDialog;
+import org.sing_group.gc4s.input.InputParameter;
+import org.sing_group.gc4s.input.InputParametersPanel;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Distance;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Linkage;
+
+/**
+ * An input dialog that shows the options of the hierarchical clustering of
+ * the rows and columns of a heat map.
+ *
+ * @author hlfernandez
+ *
+ */
+public class JHeatMapClusteringDialog extends AbstractInputJDialog {
+	private static final long serialVersionUID = 1L;
+
+	private static final String DESCRIPTION =
+		"This dialog allows you to cluster the visible rows and columns of the "
+		+ "heat map. They are ordered as the leaves of the resulting "
+		+ "dendrograms.";
+
+	private JPanel inputComponents;
+	private JComboBox<Distance> distanceMethod;
+	private JComboBox<Linkage> linkageMethod;
+	private JCheckBox clusterRows;
+	private JCheckBox clusterColumns;
+
+	protected JHeatMapClusteringDialog(Window parent) {
+		super(parent);
+	}
+
+	@Override
+	protected String getDialogTitle() {
+		return "Clustering dialog";
+	}
+
+	@Override
+	protected String getDescription() {
+		return DESCRIPTION;
+	}
+
+	@Override
+	protected JPanel getInputComponentsPane() {
+		if (this.inputComponents == null) {
+			this.inputComponents = new InputParametersPanel(getParameters());
+		}
+		return this.inputComponents;
+	}
+
+	private InputParameter[] getParameters() {
+		List<InputParameter> toret = new LinkedList<>();
+		toret.add(getDistanceParameter());
+		toret.add(getLinkageParameter());
+		toret.add(getClusterRowsParameter());
+		toret.add(getClusterColumnsParameter());
+
+		return toret.toArray(new InputParameter[toret.size()]);
+	}
+
+	private InputParameter getDistanceParameter() {
+		return 	new InputParameter(
+				"Distance", getDistanceComponent(),
+				"The distance between rows or columns.");
+	}
+
+	private JComponent getDistanceComponent() {
+		this.distanceMethod = new JComboBox<>(Distance.values());
+
+		return distanceMethod;
+	}
+
+	public Distance getDistance() {
+		return (Distance) this.distanceMethod.getSelectedItem();
+	}
+
+	private InputParameter getLinkageParameter() {
+		return 	new InputParameter(
+				"Linkage", getLinkageComponent(),
+				"The linkage method, which computes the distance between "
+				+ "clusters from the distances between their elements.");
+	}
+
+	private JComponent getLinkageComponent() {
+		this.linkageMethod = new JComboBox<>(Linkage.values());
+		this.linkageMethod.setSelectedItem(Linkage.AVERAGE);
+
+		return linkageMethod;
+	}
+
+	public Linkage getLinkage() {
+		return (Linkage) this.linkageMethod.getSelectedItem();
+	}
+
+	private InputParameter getClusterRowsParameter() {
+		this.clusterRows = new JCheckBox("", true);
+		this.clusterRows.addItemListener(e -> this.checkOkButton());
+
+		return 	new InputParameter(
+				"Cluster rows", this.clusterRows,
+				"Whether the rows are clustered or not.");
+	}
+
+	public boolean isClusterRows() {
+		return this.clusterRows.isSelected();
+	}
+
+	private InputParameter getClusterColumnsParameter() {
+		this.clusterColumns = new JCheckBox("", true);
+		this.clusterColumns.addItemListener(e -> this.checkOkButton());
+
+		return 	new InputParameter(
+				"Cluster columns", this.clusterColumns,
+				"Whether the columns are clustered or not.");
+	}
+
+	public boolean isClusterColumns() {
+		return this.clusterColumns.isSelected();
+	}
+
+	private void checkOkButton() {
+		this.okButton.setEnabled(isClusterRows() || isClusterColumns());
+	}
+
+	@Override
+	public void setVisible(boolean b) {
+		this.checkOkButton();
+		this.pack();
+		super.setVisible(b);
+	}
+}
@@ -22,6 +22,13 @@
  */
 package org.sing_group.gc4s.visualization.heatmap;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * This class encapsulates the data needed by {@code JHeatMap}.
  *
@@ -75,4 +82,100 @@ public class JHeatMapModel {
 	public String[] getColumnNames() {
 		return columnNames;
 	}
+
+	/**
+	 * Returns a new model with the specified rows and columns, in the order
+	 * of the lists. Names that are not in this model are ignored.
+	 *
+	 * @param rowNames the names of the rows of the new model
+	 * @param columnNames the names of the columns of the new model
+	 * @return a new model with the specified rows and columns
+	 */
+	public JHeatMapModel subset(List<String> rowNames,
+		List<String> columnNames
+	) {
+		return subset(getIndexes(this.rowNames, rowNames),
+			getIndexes(this.columnNames, columnNames));
+	}
+
+	/**
+	 * Returns a new model with the rows and columns at the specified
+	 * indexes, in the order of the arrays.
+	 *
+	 * @param rows the indexes of the rows of the new model
+	 * @param columns the indexes of the columns of the new model
+	 * @return a new model with the specified rows and columns
+	 */
+	public JHeatMapModel subset(int[] rows, int[] columns) {
+		double[][] subsetData = new double[rows.length][columns.length];
+		for (int i = 0; i < rows.length; i++) {
+			double[] values = this.data[rows[i]];
+			for (int j = 0; j < columns.length; j++) {
+				subsetData[i][j] = values[columns[j]];
+			}
+		}
+
+		return new JHeatMapModel(subsetData, getNames(this.rowNames, rows),
+			getNames(this.columnNames, columns));
+	}
+
+	/**
+	 * Returns a new model whose rows are the columns of this model.
+	 *
+	 * @return a new model whose rows are the columns of this model
+	 */
+	public JHeatMapModel transpose() {
+		double[][] transposed = new double[this.columnNames.length]
+			[this.rowNames.length];
+		for (int i = 0; i < this.rowNames.length; i++) {
+			for (int j = 0; j < this.columnNames.length; j++) {
+				transposed[j][i] = this.data[i][j];
+			}
+		}
+
+		return new JHeatMapModel(transposed, this.columnNames, this.rowNames);
+	}
+
+	private static String[] getNames(String[] names, int[] indexes) {
+		String[] selected = new String[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			selected[i] = names[indexes[i]];
+		}
+
+		return selected;
+	}
+
+	/**
+	 * Returns the indexes in {@code names} of the {@code selectedNames}, in
+	 * the order of {@code selectedNames}. When a name appears several times
+	 * in {@code names}, all its indexes are returned.
+	 *
+	 * @param names the names of the rows or columns of a model
+	 * @param selectedNames the names whose indexes are returned
+	 * @return the indexes of the {@code selectedNames}
+	 */
+	static int[] getIndexes(String[] names, List<String> selectedNames) {
+		Map<String, List<Integer>> nameIndexes = new HashMap<>();
+		for (int i = 0; i < names.length; i++) {
+			nameIndexes.computeIfAbsent(names[i], n -> new LinkedList<>())
+				.add(i);
+		}
+
+		Set<String> added = new HashSet<>();
+		int count = 0;
+		int[] indexes = new int[names.length];
+		for (String name : selectedNames) {
+			List<Integer> nameIndex = nameIndexes.get(name);
+			if (nameIndex != null && added.add(name)) {
+				for (int index : nameIndex) {
+					indexes[count++] = index;
+				}
+			}
+		}
+
+		int[] selectedIndexes = new int[count];
+		System.arraycopy(indexes, 0, selectedIndexes, 0, count);
+
+		return selectedIndexes;
+	}
 }
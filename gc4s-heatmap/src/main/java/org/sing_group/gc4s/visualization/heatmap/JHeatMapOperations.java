@@ -22,10 +22,13 @@
  */
 package org.sing_group.gc4s.visualization.heatmap;
 
+import java.util.concurrent.CancellationException;
 import java.util.function.BiFunction;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
 import org.sing_group.gc4s.utilities.MatrixUtils;
+import org.sing_group.gc4s.utilities.MatrixUtils.RowsMonitor;
 
 /**
  * This class stores different types operations that can be applied to heatmap
@@ -37,21 +40,27 @@ import org.sing_group.gc4s.utilities.MatrixUtils;
 public class JHeatMapOperations {
 
 	public static enum Transform {
-		LOG2("Log 2", Math::log),
+		LOG2("Log 2", (e) -> Math.log(e) / Math.log(2d)),
 		NONE("None", (e) -> e);
 		
 		private String name;
+		private DoubleUnaryOperator operator;
 		private Function<Double, Double> function;
 
-		Transform(String name, Function<Double, Double> function) {
+		Transform(String name, DoubleUnaryOperator operator) {
 			this.name = name;
-			this.function = function;
+			this.operator = operator;
+			this.function = operator::applyAsDouble;
 		}
 
 		public String getName() {
 			return name;
 		}
 
+		public DoubleUnaryOperator getOperator() {
+			return operator;
+		}
+
 		public Function<Double, Double> getFunction() {
 			return function;
 		}
@@ -78,6 +87,52 @@ public class JHeatMapOperations {
 			return function;
 		}
 	};
+
+	public static enum Aggregation {
+		MEAN("Mean"),
+		MAX("Maximum");
+
+		private String name;
+
+		Aggregation(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	public static enum Distance {
+		EUCLIDEAN("Euclidean"),
+		PEARSON("Pearson correlation");
+
+		private String name;
+
+		Distance(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	public static enum Linkage {
+		SINGLE("Single"),
+		COMPLETE("Complete"),
+		AVERAGE("Average");
+
+		private String name;
+
+		Linkage(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
 	
 	public static double[][] center(double[][] matrix, Centering centering,
 		boolean excludeNan
@@ -86,6 +141,35 @@ public class JHeatMapOperations {
 	}
 
 	public static double[][] transform(double[][] matrix, Transform transform) {
-		return MatrixUtils.transform(matrix, transform.getFunction());
+		return MatrixUtils.transform(matrix, transform.getOperator(), false);
+	}
+
+	/**
+	 * Applies the {@code transform} and then the {@code centering} to a copy of
+	 * {@code matrix}, processing rows in parallel. The transformation creates
+	 * the copy and the centering is done in place on it, unless it is
+	 * {@code Centering.NONE}. Therefore, each row is reported to
+	 * {@code monitor} once, or twice when centering.
+	 * 
+	 * @param matrix the data matrix, which is not modified
+	 * @param transform the transformation to apply
+	 * @param centering the centering to apply
+	 * @param excludeNan if {@code true}, then {@code Double.NaN} values are
+	 * 			excluded when centering
+	 * @param monitor the monitor of the operations
+	 * @return the transformed and centered data matrix
+	 * @throws CancellationException if {@code monitor} cancels the operations
+	 */
+	public static double[][] apply(double[][] matrix, Transform transform,
+		Centering centering, boolean excludeNan, RowsMonitor monitor
+	) {
+		double[][] result = MatrixUtils.transform(
+			matrix, transform.getOperator(), false, monitor);
+		if (!centering.equals(Centering.NONE)) {
+			MatrixUtils.center(
+				result, centering.getFunction(), excludeNan, true, monitor);
+		}
+
+		return result;
 	}
 }
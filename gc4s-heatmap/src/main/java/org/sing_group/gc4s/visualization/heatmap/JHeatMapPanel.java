@@ -36,11 +36,10 @@ import static org.sing_group.gc4s.ui.icons.Icons.ICON_COLUMN_16;
 import static org.sing_group.gc4s.ui.icons.Icons.ICON_EDIT_16;
 import static org.sing_group.gc4s.ui.icons.Icons.ICON_FONT_16;
 import static org.sing_group.gc4s.ui.icons.Icons.ICON_IMAGE_16;
+import static org.sing_group.gc4s.ui.icons.Icons.ICON_MERGE_16;
 import static org.sing_group.gc4s.ui.icons.Icons.ICON_PAINT_16;
 import static org.sing_group.gc4s.ui.icons.Icons.ICON_RANGE_16;
 import static org.sing_group.gc4s.ui.icons.Icons.ICON_ROW_16;
-import static org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.center;
-import static org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.transform;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
@@ -50,9 +49,11 @@ import java.awt.Font;
 import java.awt.Window;
 import java.io.IOException;
 import java.io.InvalidClassException;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.BoxLayout;
 import javax.swing.DefaultComboBoxModel;
@@ -60,7 +61,10 @@ import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
 import javax.swing.ToolTipManager;
 
 import org.sing_group.gc4s.dialog.ColorsSelectionDialog;
@@ -71,6 +75,7 @@ import org.sing_group.gc4s.input.DoubleRangeInputDialog;
 import org.sing_group.gc4s.ui.ColorListCellRenderer;
 import org.sing_group.gc4s.ui.menu.HamburgerMenu;
 import org.sing_group.gc4s.utilities.ExtendedAbstractAction;
+import org.sing_group.gc4s.utilities.MatrixUtils.RowsMonitor;
 import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Centering;
 import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Transform;
 
@@ -182,6 +187,10 @@ public class JHeatMapPanel extends JPanel {
 			"Transform data", ICON_EDIT_16, this::transformDataMatrix
 		));
 
+		menu.add(new ExtendedAbstractAction(
+			"Cluster data", ICON_MERGE_16, this::clusterDataMatrix
+		));
+
 		menu.add(new ExtendedAbstractAction(
 			"Visible rows", ICON_ROW_16, this::editVisibleRows
 		));
@@ -386,9 +395,168 @@ public class JHeatMapPanel extends JPanel {
 	}
 
 	private void applyTransformations(Transform transform, Centering centering) {
-		this.heatmap.setData(
-			center(
-				transform(this.heatmap.getData(), transform), centering, true)
-		);
+		new TransformSwingWorker(transform, centering).execute();
+	}
+
+	private void clusterDataMatrix() {
+		JHeatMapClusteringDialog dialog =
+			new JHeatMapClusteringDialog(getDialogParent());
+		dialog.setVisible(true);
+
+		if(!dialog.isCanceled()) {
+			new ClusteringSwingWorker(
+				new HierarchicalClustering(
+					dialog.getDistance(), dialog.getLinkage()),
+				dialog.isClusterRows(), dialog.isClusterColumns()
+			).execute();
+		}
+	}
+
+	/**
+	 * A {@code SwingWorker} that runs an operation over the rows of the data
+	 * matrix, showing its progress in a {@code ProgressMonitor} that allows
+	 * cancelling it. The operation reports its progress to
+	 * {@code rowsMonitor}, which cancels it as soon as the
+	 * {@code ProgressMonitor} is cancelled, even in phases that do not report
+	 * progress. The result of a cancelled operation is discarded.
+	 */
+	private abstract class MonitoredSwingWorker<T>
+		extends SwingWorker<T, Integer> {
+
+		private final ProgressMonitor progressMonitor;
+		private final AtomicInteger rowsProcessed = new AtomicInteger();
+		private final String operation;
+
+		protected final RowsMonitor rowsMonitor = new RowsMonitor() {
+
+			@Override
+			public void rowsProcessed(int rows) {
+				publish(rowsProcessed.addAndGet(rows));
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return MonitoredSwingWorker.this.isCancelled()
+					|| progressMonitor.isCanceled();
+			}
+		};
+
+		MonitoredSwingWorker(String operation, int rows) {
+			this.operation = operation;
+			this.progressMonitor = new ProgressMonitor(JHeatMapPanel.this,
+				operation, null, 0, rows);
+		}
+
+		@Override
+		protected void process(List<Integer> chunks) {
+			if (this.progressMonitor.isCanceled()) {
+				this.cancel(false);
+			} else {
+				this.progressMonitor.setProgress(
+					chunks.stream().max(Integer::compare).get());
+			}
+		}
+
+		@Override
+		protected void done() {
+			boolean cancelled =
+				this.isCancelled() || this.progressMonitor.isCanceled();
+			this.progressMonitor.close();
+			if (cancelled) {
+				return;
+			}
+			try {
+				this.finished(this.get());
+			} catch (Exception e) {
+				e.printStackTrace();
+				JOptionPane.showMessageDialog(JHeatMapPanel.this,
+					"An error has been produced while "
+					+ this.operation.toLowerCase() + ".",
+					this.operation, JOptionPane.ERROR_MESSAGE);
+			}
+		}
+
+		protected abstract void finished(T result);
+	}
+
+	private final class TransformSwingWorker
+		extends MonitoredSwingWorker<double[][]> {
+
+		private final double[][] data;
+		private final Transform transform;
+		private final Centering centering;
+
+		TransformSwingWorker(Transform transform, Centering centering) {
+			super("Transforming data matrix",
+				(centering.equals(Centering.NONE) ? 1 : 2)
+				* heatmap.getData().length);
+			this.data = heatmap.getData();
+			this.transform = transform;
+			this.centering = centering;
+		}
+
+		@Override
+		protected double[][] doInBackground() throws Exception {
+			return JHeatMapOperations.apply(
+				this.data, this.transform, this.centering, true,
+				this.rowsMonitor);
+		}
+
+		@Override
+		protected void finished(double[][] result) {
+			heatmap.setData(result);
+		}
+	}
+
+	private final class ClusteringSwingWorker
+		extends MonitoredSwingWorker<Dendrogram[]> {
+
+		private final JHeatMapModel model;
+		private final int[] rowIndexes;
+		private final int[] columnIndexes;
+		private final HierarchicalClustering clustering;
+		private final boolean clusterRows;
+		private final boolean clusterColumns;
+
+		ClusteringSwingWorker(HierarchicalClustering clustering,
+			boolean clusterRows, boolean clusterColumns
+		) {
+			super("Clustering data matrix",
+				(clusterRows ? heatmap.getVisibleRowIndexes().length : 0)
+				+ (clusterColumns
+					? heatmap.getVisibleColumnIndexes().length : 0));
+			this.model = heatmap.getVisibleModel();
+			this.rowIndexes = heatmap.getVisibleRowIndexes();
+			this.columnIndexes = heatmap.getVisibleColumnIndexes();
+			this.clustering = clustering;
+			this.clusterRows = clusterRows;
+			this.clusterColumns = clusterColumns;
+		}
+
+		@Override
+		protected Dendrogram[] doInBackground() throws Exception {
+			Dendrogram rows = this.clusterRows ?
+				this.clustering.clusterRows(this.model, this.rowsMonitor)
+				: null;
+			Dendrogram columns = this.clusterColumns ?
+				this.clustering.clusterColumns(this.model, this.rowsMonitor)
+				: null;
+
+			return new Dendrogram[] { rows, columns };
+		}
+
+		@Override
+		protected void finished(Dendrogram[] result) {
+			if (result[0] != null
+				&& Arrays.equals(this.rowIndexes, heatmap.getVisibleRowIndexes())
+			) {
+				heatmap.setRowDendrogram(result[0]);
+			}
+			if (result[1] != null && Arrays.equals(this.columnIndexes,
+				heatmap.getVisibleColumnIndexes())
+			) {
+				heatmap.setColumnDendrogram(result[1]);
+			}
+		}
 	}
 }
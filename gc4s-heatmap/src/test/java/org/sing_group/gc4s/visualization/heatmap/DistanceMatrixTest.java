@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.visualization.heatmap;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import org.junit.Test;
+import org.sing_group.gc4s.utilities.MatrixUtils.RowsMonitor;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Distance;
+
+public class DistanceMatrixTest {
+
+	private static final double[][] MATRIX = new double[][] {
+		{1d, 2d, 3d, 4d},
+		{2d, 4d, 6d, 8d},
+		{4d, 3d, 2d, 1d},
+		{1d, Double.NaN, 3d, 5d},
+		{Double.NaN, 1d, Double.NaN, Double.NaN},
+		{2d, Double.NaN, Double.NaN, Double.NaN}
+	};
+
+	@Test
+	public void euclideanTest() {
+		DistanceMatrix distances =
+			DistanceMatrix.compute(MATRIX, Distance.EUCLIDEAN);
+
+		assertEquals(6, distances.size());
+		assertEquals(Math.sqrt(30d), distances.get(0, 1), 1e-12);
+		assertEquals(Math.sqrt(20d), distances.get(2, 0), 1e-12);
+		assertEquals(Math.sqrt(4d / 3d), distances.get(0, 3), 1e-12);
+		assertEquals(Double.POSITIVE_INFINITY, distances.get(4, 5), 0d);
+		assertEquals(0d, distances.get(3, 3), 0d);
+	}
+
+	@Test
+	public void pearsonTest() {
+		DistanceMatrix distances =
+			DistanceMatrix.compute(MATRIX, Distance.PEARSON);
+
+		assertEquals(0d, distances.get(0, 1), 1e-12);
+		assertEquals(2d, distances.get(0, 2), 1e-12);
+		assertEquals(1d - 6d / Math.sqrt(42d / 9d * 8d), distances.get(0, 3),
+			1e-12);
+		assertEquals(Double.POSITIVE_INFINITY, distances.get(4, 5), 0d);
+	}
+
+	@Test
+	public void blocksMatchNaiveDistancesTest() {
+		double[][] data = randomMatrix(150, 20, new Random(7));
+		data[3][5] = Double.NaN;
+		data[140][0] = Double.NaN;
+		for (Distance distance : Distance.values()) {
+			DistanceMatrix distances = DistanceMatrix.compute(data, distance);
+			for (int i = 0; i < data.length; i++) {
+				for (int j = 0; j < data.length; j++) {
+					assertEquals(naiveDistance(data[i], data[j], distance),
+						distances.get(i, j), 1e-9);
+				}
+			}
+		}
+	}
+
+	@Test(expected = CancellationException.class)
+	public void cancelTest() {
+		DistanceMatrix.compute(randomMatrix(200, 10, new Random(1)),
+			Distance.EUCLIDEAN, new RowsMonitor() {
+
+				@Override
+				public void rowsProcessed(int rows) {}
+
+				@Override
+				public boolean isCancelled() {
+					return true;
+				}
+			});
+	}
+
+	static double[][] randomMatrix(int rows, int columns, Random random) {
+		double[][] data = new double[rows][columns];
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				data[i][j] = random.nextGaussian();
+			}
+		}
+
+		return data;
+	}
+
+	static double naiveDistance(double[] a, double[] b, Distance distance) {
+		if (a == b) {
+			return 0d;
+		}
+		int count = 0;
+		double sumA = 0d;
+		double sumB = 0d;
+		for (int i = 0; i < a.length; i++) {
+			if (!Double.isNaN(a[i]) && !Double.isNaN(b[i])) {
+				count++;
+				sumA += a[i];
+				sumB += b[i];
+			}
+		}
+		if (count == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double sum = 0d;
+		double sumAA = 0d;
+		double sumBB = 0d;
+		for (int i = 0; i < a.length; i++) {
+			if (!Double.isNaN(a[i]) && !Double.isNaN(b[i])) {
+				double centeredA = a[i] - sumA / count;
+				double centeredB = b[i] - sumB / count;
+				if (distance.equals(Distance.EUCLIDEAN)) {
+					sum += (a[i] - b[i]) * (a[i] - b[i]);
+				} else {
+					sum += centeredA * centeredB;
+					sumAA += centeredA * centeredA;
+					sumBB += centeredB * centeredB;
+				}
+			}
+		}
+
+		if (distance.equals(Distance.EUCLIDEAN)) {
+			return Math.sqrt(sum * a.length / count);
+		} else {
+			return 1d - sum / Math.sqrt(sumAA * sumBB);
+		}
+	}
+}
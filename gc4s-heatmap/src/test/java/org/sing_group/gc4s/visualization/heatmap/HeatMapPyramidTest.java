@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.visualization.heatmap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Aggregation;
+
+public class HeatMapPyramidTest {
+
+	@Test
+	public void levelSizesTest() {
+		HeatMapPyramid pyramid = new HeatMapPyramid(new double[37][23],
+			range(37), range(23), Aggregation.MEAN);
+
+		assertEquals(6, pyramid.getMaxLevel());
+		assertEquals(37, pyramid.getRows(0));
+		assertEquals(23, pyramid.getColumns(0));
+		assertEquals(19, pyramid.getRows(1));
+		assertEquals(12, pyramid.getColumns(1));
+		assertEquals(3, pyramid.getRows(4));
+		assertEquals(2, pyramid.getColumns(4));
+		assertEquals(1, pyramid.getRows(6));
+		assertEquals(1, pyramid.getColumns(6));
+		assertEquals(19 * 12, pyramid.getValues(1).length);
+	}
+
+	@Test
+	public void meanMatchesBlocksTest() {
+		assertMatchesBlocks(Aggregation.MEAN);
+	}
+
+	@Test
+	public void maxMatchesBlocksTest() {
+		assertMatchesBlocks(Aggregation.MAX);
+	}
+
+	@Test
+	public void missingBlocksTest() {
+		double nan = Double.NaN;
+		double[][] data = {
+			{ nan, nan, 1d, nan },
+			{ nan, nan, nan, 3d },
+			{ 2d, 4d, nan, nan }
+		};
+		for (Aggregation aggregation : Aggregation.values()) {
+			HeatMapPyramid pyramid =
+				new HeatMapPyramid(data, range(3), range(4), aggregation);
+
+			assertTrue(Double.isNaN(pyramid.getValue(1, 0, 0)));
+			assertEquals(aggregation == Aggregation.MEAN ? 2d : 3d,
+				pyramid.getValue(1, 0, 1), 0d);
+			assertEquals(aggregation == Aggregation.MEAN ? 3d : 4d,
+				pyramid.getValue(1, 1, 0), 0d);
+			assertTrue(Double.isNaN(pyramid.getValue(1, 1, 1)));
+			assertEquals(aggregation == Aggregation.MEAN ? 2.5 : 4d,
+				pyramid.getValue(2, 0, 0), 0d);
+		}
+	}
+
+	private static void assertMatchesBlocks(Aggregation aggregation) {
+		Random random = new Random(0);
+		double[][] data = new double[45][30];
+		for (double[] row : data) {
+			for (int column = 0; column < row.length; column++) {
+				row[column] = random.nextInt(10) == 0 ?
+					Double.NaN : random.nextGaussian();
+			}
+		}
+		int[] rows = IntStream.range(0, 45).filter(i -> i % 4 != 1).toArray();
+		int[] columns = IntStream.range(0, 30).map(i -> 29 - i)
+			.filter(i -> i % 5 != 0).toArray();
+		HeatMapPyramid pyramid =
+			new HeatMapPyramid(data, rows, columns, aggregation);
+
+		for (int level = 0; level <= pyramid.getMaxLevel(); level++) {
+			for (int row = 0; row < pyramid.getRows(level); row++) {
+				for (int column = 0; column < pyramid.getColumns(level);
+					column++) {
+					double expected = block(data, rows, columns, aggregation,
+						level, row, column);
+					String cell = aggregation + " level " + level + " [" + row
+						+ ", " + column + "]";
+					if (Double.isNaN(expected)) {
+						assertTrue(cell,
+							Double.isNaN(pyramid.getValue(level, row, column)));
+					} else {
+						assertEquals(cell, expected,
+							pyramid.getValue(level, row, column), 1e-9);
+					}
+				}
+			}
+		}
+	}
+
+	private static double block(double[][] data, int[] rows, int[] columns,
+		Aggregation aggregation, int level, int row, int column) {
+		int size = 1 << level;
+		double sum = 0d;
+		double max = Double.NaN;
+		int count = 0;
+		for (int r = row * size; r < Math.min(rows.length, (row + 1) * size);
+			r++) {
+			for (int c = column * size;
+				c < Math.min(columns.length, (column + 1) * size); c++) {
+				double value = data[rows[r]][columns[c]];
+				if (!Double.isNaN(value)) {
+					sum += value;
+					count++;
+					if (Double.isNaN(max) || value > max) {
+						max = value;
+					}
+				}
+			}
+		}
+		if (aggregation == Aggregation.MAX) {
+			return max;
+		}
+
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	private static int[] range(int size) {
+		return IntStream.range(0, size).toArray();
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.visualization.heatmap;
+
+import static org.junit.Assert.assertEquals;
+import static org.sing_group.gc4s.visualization.heatmap.DistanceMatrixTest.randomMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import org.junit.Test;
+import org.sing_group.gc4s.utilities.MatrixUtils.RowsMonitor;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Distance;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Linkage;
+
+public class HierarchicalClusteringTest {
+
+	@Test
+	public void singleRowTest() {
+		Dendrogram dendrogram = new HierarchicalClustering(Distance.EUCLIDEAN,
+			Linkage.AVERAGE).clusterRows(model(new double[][] { { 1d } }));
+
+		assertEquals(1, dendrogram.getLeafCount());
+		assertEquals(0, dendrogram.getMergeCount());
+	}
+
+	@Test
+	public void leafOrderTest() {
+		double[][] data = new double[][] {
+			{0d}, {10d}, {1d}, {11d}, {3d}
+		};
+		Dendrogram dendrogram = new HierarchicalClustering(Distance.EUCLIDEAN,
+			Linkage.SINGLE).clusterRows(model(data));
+
+		int[] order = dendrogram.getLeafOrder();
+		int firstGroup = order[0] == 1 || order[0] == 3 ? 2 : 3;
+		BitSet first = new BitSet();
+		for (int i = 0; i < firstGroup; i++) {
+			first.set(order[i]);
+		}
+		BitSet expected = new BitSet();
+		if (firstGroup == 2) {
+			expected.set(1);
+			expected.set(3);
+		} else {
+			expected.set(0);
+			expected.set(2);
+			expected.set(4);
+		}
+		assertEquals(expected, first);
+		assertEquals(7d, dendrogram.getHeight(3), 0d);
+	}
+
+	@Test
+	public void nearestNeighbourChainMatchesNaiveClusteringTest() {
+		Random random = new Random(11);
+		for (Distance distance : Distance.values()) {
+			for (Linkage linkage : Linkage.values()) {
+				double[][] data = randomMatrix(60, 8, random);
+				Dendrogram dendrogram = new HierarchicalClustering(distance,
+					linkage).clusterRows(model(data));
+
+				assertEquals(naiveClusters(data, distance, linkage),
+					getClusters(dendrogram));
+			}
+		}
+	}
+
+	@Test(expected = CancellationException.class)
+	public void cancelTest() {
+		new HierarchicalClustering(Distance.EUCLIDEAN, Linkage.AVERAGE)
+			.clusterRows(model(randomMatrix(50, 4, new Random(3))),
+				new RowsMonitor() {
+
+					private boolean distancesDone;
+
+					@Override
+					public void rowsProcessed(int rows) {
+						this.distancesDone = true;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return this.distancesDone;
+					}
+				});
+	}
+
+	private static JHeatMapModel model(double[][] data) {
+		String[] rowNames = new String[data.length];
+		for (int i = 0; i < rowNames.length; i++) {
+			rowNames[i] = "row" + i;
+		}
+		String[] columnNames = new String[data[0].length];
+		for (int j = 0; j < columnNames.length; j++) {
+			columnNames[j] = "column" + j;
+		}
+
+		return new JHeatMapModel(data, rowNames, columnNames);
+	}
+
+	/**
+	 * Returns the leaves of each merge of the dendrogram and its height.
+	 */
+	private static Map<BitSet, Double> getClusters(Dendrogram dendrogram) {
+		int n = dendrogram.getLeafCount();
+		List<BitSet> nodes = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			BitSet leaf = new BitSet();
+			leaf.set(i);
+			nodes.add(leaf);
+		}
+
+		Map<BitSet, Double> clusters = new HashMap<>();
+		for (int merge = 0; merge < dendrogram.getMergeCount(); merge++) {
+			BitSet cluster = (BitSet) nodes.get(dendrogram.getLeft(merge))
+				.clone();
+			cluster.or(nodes.get(dendrogram.getRight(merge)));
+			nodes.add(cluster);
+			clusters.put(cluster, round(dendrogram.getHeight(merge)));
+		}
+
+		return clusters;
+	}
+
+	/**
+	 * Clusters the rows searching the closest pair of clusters after each
+	 * merge and computing the linkage from the distances between rows, in
+	 * {@code O(n³)} time.
+	 */
+	private static Map<BitSet, Double> naiveClusters(double[][] data,
+		Distance distance, Linkage linkage
+	) {
+		int n = data.length;
+		double[][] distances = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				distances[i][j] = DistanceMatrixTest.naiveDistance(data[i],
+					data[j], distance);
+			}
+		}
+
+		List<int[]> clusters = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			clusters.add(new int[] { i });
+		}
+
+		Map<BitSet, Double> merges = new HashMap<>();
+		while (clusters.size() > 1) {
+			int bestA = -1;
+			int bestB = -1;
+			double best = Double.POSITIVE_INFINITY;
+			for (int a = 0; a < clusters.size(); a++) {
+				for (int b = a + 1; b < clusters.size(); b++) {
+					double value = linkage(distances, clusters.get(a),
+						clusters.get(b), linkage);
+					if (bestA < 0 || value < best) {
+						bestA = a;
+						bestB = b;
+						best = value;
+					}
+				}
+			}
+
+			int[] merged = Arrays.copyOf(clusters.get(bestA),
+				clusters.get(bestA).length + clusters.get(bestB).length);
+			System.arraycopy(clusters.get(bestB), 0, merged,
+				clusters.get(bestA).length, clusters.get(bestB).length);
+			clusters.remove(bestB);
+			clusters.set(bestA, merged);
+
+			BitSet cluster = new BitSet();
+			for (int row : merged) {
+				cluster.set(row);
+			}
+			merges.put(cluster, round(best));
+		}
+
+		return merges;
+	}
+
+	private static double linkage(double[][] distances, int[] a, int[] b,
+		Linkage linkage
+	) {
+		double result = linkage.equals(Linkage.SINGLE) ?
+			Double.POSITIVE_INFINITY : 0d;
+		for (int i : a) {
+			for (int j : b) {
+				switch (linkage) {
+				case SINGLE:
+					result = Math.min(result, distances[i][j]);
+					break;
+				case COMPLETE:
+					result = Math.max(result, distances[i][j]);
+					break;
+				default:
+					result += distances[i][j] / (a.length * b.length);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 1e9) / 1e9;
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.visualization.heatmap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Distance;
+import org.sing_group.gc4s.visualization.heatmap.JHeatMapOperations.Linkage;
+
+public class JHeatMapTest {
+
+	private static final double[][] DATA = new double[][] {
+		{10d, 10d},
+		{0d, 0d},
+		{11d, 11d},
+		{1d, 1d}
+	};
+
+	private static final String[] ROW_NAMES =
+		new String[] { "gene", "gene", "other", "gene" };
+
+	private static final String[] COLUMN_NAMES =
+		new String[] { "sample", "sample" };
+
+	@Test
+	public void rowDendrogramWithDuplicateNamesTest() {
+		JHeatMap heatmap = new JHeatMap(DATA, ROW_NAMES, COLUMN_NAMES);
+		Dendrogram dendrogram = new HierarchicalClustering(Distance.EUCLIDEAN,
+			Linkage.AVERAGE).clusterRows(heatmap.getVisibleModel());
+
+		heatmap.setRowDendrogram(dendrogram);
+
+		assertArrayEquals(dendrogram.getLeafOrder(),
+			heatmap.getVisibleRowIndexes());
+		assertTrue(heatmap.getRowDendrogram().isPresent());
+		assertEquals(dendrogram.getLeafNames(), heatmap.getVisibleRowNames());
+	}
+
+	@Test
+	public void rowDendrogramOfVisibleRowsTest() {
+		JHeatMap heatmap = new JHeatMap(DATA, ROW_NAMES, COLUMN_NAMES);
+		heatmap.setVisibleRowIndexes(new int[] { 3, 2, 0 });
+		Dendrogram dendrogram = new HierarchicalClustering(Distance.EUCLIDEAN,
+			Linkage.SINGLE).clusterRows(heatmap.getVisibleModel());
+
+		heatmap.setRowDendrogram(dendrogram);
+
+		int[] visible = new int[] { 3, 2, 0 };
+		int[] expected = new int[3];
+		int[] order = dendrogram.getLeafOrder();
+		for (int i = 0; i < order.length; i++) {
+			expected[i] = visible[order[i]];
+		}
+		assertArrayEquals(expected, heatmap.getVisibleRowIndexes());
+		double[][] visibleData = heatmap.getVisibleModel().getData();
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals(DATA[expected[i]], visibleData[i], 0d);
+		}
+	}
+
+	@Test
+	public void columnDendrogramWithDuplicateNamesTest() {
+		JHeatMap heatmap = new JHeatMap(DATA, ROW_NAMES, COLUMN_NAMES);
+		Dendrogram dendrogram = new HierarchicalClustering(Distance.EUCLIDEAN,
+			Linkage.AVERAGE).clusterColumns(heatmap.getVisibleModel());
+
+		heatmap.setColumnDendrogram(dendrogram);
+
+		assertArrayEquals(dendrogram.getLeafOrder(),
+			heatmap.getVisibleColumnIndexes());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void dendrogramOfOtherRowsTest() {
+		JHeatMap heatmap = new JHeatMap(DATA, ROW_NAMES, COLUMN_NAMES);
+		Dendrogram dendrogram = new HierarchicalClustering(Distance.EUCLIDEAN,
+			Linkage.AVERAGE).clusterRows(heatmap.getVisibleModel());
+		heatmap.setVisibleRowIndexes(new int[] { 0, 1 });
+
+		heatmap.setRowDendrogram(dendrogram);
+	}
+}
@@ -23,16 +23,13 @@
 package org.sing_group.org.gc4s.statistics.table.ui;
 
 import static org.sing_group.gc4s.utilities.ColorUtils.getComplementaryColor;
-import static org.sing_group.gc4s.utilities.Gradient.createGradient;
 
 import java.awt.Color;
 import java.awt.Component;
-import java.math.BigDecimal;
-import java.math.MathContext;
-import java.util.function.Function;
 
 import org.jdesktop.swingx.decorator.ColorHighlighter;
 import org.jdesktop.swingx.decorator.ComponentAdapter;
+import org.sing_group.gc4s.utilities.ColorLookupTable;
 import org.sing_group.org.gc4s.statistics.data.Dataset;
 import org.sing_group.org.gc4s.statistics.data.FeatureValues;
 import org.sing_group.org.gc4s.statistics.table.StatisticsTestTable;
@@ -51,12 +48,10 @@ public class NumberHighlighter extends ColorHighlighter {
 	public static final Color DEFAULT_NAN_COLOR = Color.LIGHT_GRAY;
 	public static final int DEFAULT_STEPS = 100;
 
-	private Number max;
-	private Number min;
 	private Color lowColor;
 	private Color highColor;
 	private Color nanColor = DEFAULT_NAN_COLOR;
-	private Function<Number, Color> numberToColor;
+	private ColorLookupTable colors;
 	private StatisticsTestTableModel<Number> tableModel;
 
 	/**
@@ -89,74 +84,23 @@ public class NumberHighlighter extends ColorHighlighter {
 
 	private void computeColors() {
 		Dataset<Number> dataset = this.tableModel.getDataset();
-		max = Integer.MIN_VALUE;
-		min = Integer.MAX_VALUE;
+		double max = Double.NEGATIVE_INFINITY;
+		double min = Double.POSITIVE_INFINITY;
 
 		for (String f : dataset.getFeatures()) {
 			for (String className : dataset.getUniqueConditionNames()) {
 				FeatureValues<Number> fV = dataset.getFeatureValues(f);
 				for (Number n : fV.getConditionValues(className)) {
-					int comparison = compare(n, min);
-					if (comparison < 0) {
-						min = n;
-					} else {
-						comparison = compare(n, max);
-						if (comparison > 0) {
-							max = n;
-						}
+					if (n != null && !Double.isNaN(n.doubleValue())) {
+						min = Math.min(min, n.doubleValue());
+						max = Math.max(max, n.doubleValue());
 					}
 				}
 			}
 		}
 
-		Color[] colorGradient = getColorGradient();
-
-		numberToColor = new Function<Number, Color>() {
-
-			@Override
-			public Color apply(Number t) {
-				if (t== null) {
-					return nanColor;
-				} else {
-					Number normalized = normalize(checkRange(t), max, min);
-
-					int colorIndex = (int)
-						((normalized.doubleValue() * (DEFAULT_STEPS - 1)));
-
-					return colorGradient[colorIndex];
-				}
-			}
-
-			private Number checkRange(Number t) {
-				if (compare(t, max) > 0) {
-					return max;
-				} else if (compare(t, min) < 0) {
-					return min;
-				} else {
-					return t;
-				}
-			}
-
-			private Number normalize(Number d, Number max, Number min) {
-				BigDecimal dividend = bigDecimal(d).subtract(bigDecimal(min));
-				BigDecimal divisor = bigDecimal(max).subtract(bigDecimal(min));
-
-				return dividend.divide(divisor, MathContext.DECIMAL128);
-			}
-
-		};
-	}
-
-	private static final BigDecimal bigDecimal(Number n) {
-		return new BigDecimal(n.toString());
-	}
-
-	private static int compare(Number n1, Number n2) {
-		return bigDecimal(n1).compareTo(bigDecimal(n2));
-	}
-
-	private Color[] getColorGradient() {
-		return createGradient(lowColor, highColor, DEFAULT_STEPS);
+		this.colors = new ColorLookupTable(lowColor, highColor, DEFAULT_STEPS,
+			nanColor, min, max);
 	}
 
 	@Override
@@ -173,7 +117,7 @@ public class NumberHighlighter extends ColorHighlighter {
 			} else {
 				if (Number.class.isAssignableFrom(adapter.getColumnClass())) {
 					final Number value = ((Number) adapter.getValue());
-					Color color = numberToColor.apply(value);
+					Color color = colors.getColor(value.doubleValue());
 					if (adapter.isSelected()) {
 						renderer.setBackground(getComplementaryColor(color));
 					} else {
@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.utilities;
+
+import static org.sing_group.gc4s.utilities.Gradient.createGradient;
+
+import java.awt.Color;
+
+/**
+ * A color lookup table that maps {@code double} values into the colors of a
+ * gradient. The gradient colors are precomputed as packed ARGB integers, so
+ * that values can be mapped without creating objects. Values are clamped to
+ * the range of the table and missing values ({@code Double.NaN}) are mapped
+ * into a different color.
+ * 
+ * Tables are immutable: a new table must be created when the colors or the
+ * range change.
+ * 
+ * @author hlfernandez
+ * 
+ * @see Gradient
+ */
+public class ColorLookupTable {
+	public static final int DEFAULT_STEPS = 100;
+
+	private final Color[] colors;
+	private final int[] rgbColors;
+	private final Color nanColor;
+	private final int nanRgb;
+	private final double lowValue;
+	private final double highValue;
+
+	/**
+	 * Creates a new {@code ColorLookupTable} with {@link #DEFAULT_STEPS} colors
+	 * between the low and high colors.
+	 * 
+	 * @param lowColor the color of the low value
+	 * @param highColor the color of the high value
+	 * @param nanColor the color of missing values
+	 * @param lowValue the low value of the range
+	 * @param highValue the high value of the range
+	 */
+	public ColorLookupTable(Color lowColor, Color highColor, Color nanColor,
+		double lowValue, double highValue
+	) {
+		this(lowColor, highColor, DEFAULT_STEPS, nanColor, lowValue, highValue);
+	}
+
+	/**
+	 * Creates a new {@code ColorLookupTable} with the specified number of
+	 * colors between the low and high colors.
+	 * 
+	 * @param lowColor the color of the low value
+	 * @param highColor the color of the high value
+	 * @param steps the number of colors of the gradient
+	 * @param nanColor the color of missing values
+	 * @param lowValue the low value of the range
+	 * @param highValue the high value of the range
+	 * @throws IllegalArgumentException if {@code steps} is lower than 1
+	 */
+	public ColorLookupTable(Color lowColor, Color highColor, int steps,
+		Color nanColor, double lowValue, double highValue
+	) {
+		this.colors = createGradient(lowColor, highColor, steps);
+		this.rgbColors = new int[this.colors.length];
+		for (int i = 0; i < this.colors.length; i++) {
+			this.rgbColors[i] = this.colors[i].getRGB();
+		}
+		this.nanColor = nanColor;
+		this.nanRgb = nanColor.getRGB();
+		this.lowValue = lowValue;
+		this.highValue = highValue;
+	}
+
+	/**
+	 * Returns the low value of the range.
+	 * 
+	 * @return the low value of the range
+	 */
+	public double getLowValue() {
+		return lowValue;
+	}
+
+	/**
+	 * Returns the high value of the range.
+	 * 
+	 * @return the high value of the range
+	 */
+	public double getHighValue() {
+		return highValue;
+	}
+
+	private int getIndex(double value) {
+		if (value > highValue) {
+			value = highValue;
+		} else if (value < lowValue) {
+			value = lowValue;
+		}
+
+		return (int) (((value - lowValue) / (highValue - lowValue))
+			* (rgbColors.length - 1));
+	}
+
+	/**
+	 * Returns the packed ARGB color of the specified value.
+	 * 
+	 * @param value the value to map
+	 * @return the packed ARGB color of {@code value}
+	 */
+	public int getRGB(double value) {
+		return Double.isNaN(value) ? nanRgb : rgbColors[getIndex(value)];
+	}
+
+	/**
+	 * Returns the color of the specified value.
+	 * 
+	 * @param value the value to map
+	 * @return the color of {@code value}
+	 */
+	public Color getColor(double value) {
+		return Double.isNaN(value) ? nanColor : colors[getIndex(value)];
+	}
+
+	/**
+	 * Maps the specified values into packed ARGB colors.
+	 * 
+	 * @param values the values to map
+	 * @param rgb the array where the colors are stored
+	 * @param offset the position of {@code rgb} where the color of the first
+	 * 	value is stored
+	 */
+	public void getRGB(double[] values, int[] rgb, int offset) {
+		for (int i = 0; i < values.length; i++) {
+			rgb[offset + i] = getRGB(values[i]);
+		}
+	}
+
+	/**
+	 * Maps the values at the specified positions into packed ARGB colors.
+	 * 
+	 * @param values the values to map
+	 * @param indexes the positions of {@code values} to map
+	 * @param rgb the array where the colors are stored
+	 * @param offset the position of {@code rgb} where the color of the first
+	 * 	value is stored
+	 */
+	public void getRGB(double[] values, int[] indexes, int[] rgb, int offset) {
+		for (int i = 0; i < indexes.length; i++) {
+			rgb[offset + i] = getRGB(values[indexes[i]]);
+		}
+	}
+}
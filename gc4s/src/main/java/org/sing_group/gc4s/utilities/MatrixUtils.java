@@ -22,13 +22,15 @@
  */
 package org.sing_group.gc4s.utilities;
 
-import static java.util.stream.DoubleStream.of;
-
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.BiFunction;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
-import java.util.stream.DoubleStream;
+import java.util.function.IntConsumer;
 import java.util.stream.Stream;
 
 /**
@@ -38,6 +40,45 @@ import java.util.stream.Stream;
  *
  */
 public class MatrixUtils {
+	private static final int ROWS_PER_TASK = 64;
+
+	/**
+	 * Monitors the progress of the row-parallel matrix operations and allows
+	 * cancelling them. Its methods are called from the threads of the common
+	 * {@code ForkJoinPool}, so implementations must be thread-safe.
+	 * 
+	 * @author hlfernandez
+	 *
+	 */
+	public interface RowsMonitor {
+		/**
+		 * A monitor that ignores the progress and never cancels.
+		 */
+		public static final RowsMonitor NONE = new RowsMonitor() {
+
+			@Override
+			public void rowsProcessed(int rows) {}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+
+		/**
+		 * Notifies that a block of rows has been processed.
+		 * 
+		 * @param rows the number of rows processed
+		 */
+		public void rowsProcessed(int rows);
+
+		/**
+		 * Returns {@code true} if the operation must be cancelled.
+		 * 
+		 * @return {@code true} if the operation must be cancelled
+		 */
+		public boolean isCancelled();
+	}
 
 	/**
 	 * Return the maximum value in {@code data} ignoring missing values 
@@ -106,10 +147,58 @@ public class MatrixUtils {
 	public static double[][] transform(double[][] matrix,
 		Function<Double, Double> transformation
 	) {
-		double[][] transformed = new double[matrix.length][matrix[0].length];
-		for (int i = 0; i < matrix.length; i++) {
-			transformed[i] = of(matrix[i]).map(transformation::apply).toArray();
-		}
+		return transform(matrix, transformation::apply, false);
+	}
+
+	/**
+	 * Transforms the {@code data} matrix by applying the {@code transformation}
+	 * operator to each single value. Rows are processed in parallel. If
+	 * {@code inPlace} is {@code true}, then the values of {@code matrix} are
+	 * replaced and {@code matrix} itself is returned.
+	 * 
+	 * @param matrix the data matrix to be transformed.
+	 * @param transformation the transformation operator.
+	 * @param inPlace if {@code true}, then {@code matrix} is modified instead
+	 * 			of creating a new one.
+	 * @return the transformed data matrix.
+	 */
+	public static double[][] transform(double[][] matrix,
+		DoubleUnaryOperator transformation, boolean inPlace
+	) {
+		return transform(matrix, transformation, inPlace, RowsMonitor.NONE);
+	}
+
+	/**
+	 * Transforms the {@code data} matrix by applying the {@code transformation}
+	 * operator to each single value. Rows are processed in parallel and
+	 * reported to {@code monitor}. If {@code inPlace} is {@code true}, then
+	 * the values of {@code matrix} are replaced and {@code matrix} itself is
+	 * returned.
+	 * 
+	 * @param matrix the data matrix to be transformed.
+	 * @param transformation the transformation operator.
+	 * @param inPlace if {@code true}, then {@code matrix} is modified instead
+	 * 			of creating a new one.
+	 * @param monitor the monitor of the operation.
+	 * @return the transformed data matrix.
+	 * @throws CancellationException if {@code monitor} cancels the operation.
+	 * 			When working in place, {@code matrix} may be partially
+	 * 			transformed.
+	 */
+	public static double[][] transform(double[][] matrix,
+		DoubleUnaryOperator transformation, boolean inPlace,
+		RowsMonitor monitor
+	) {
+		double[][] transformed = inPlace ? matrix : new double[matrix.length][];
+		forEachRow(matrix.length, row -> {
+			double[] values = matrix[row];
+			double[] target = inPlace ? values : new double[values.length];
+			for (int i = 0; i < values.length; i++) {
+				target[i] = transformation.applyAsDouble(values[i]);
+			}
+			transformed[row] = target;
+		}, monitor);
+
 		return transformed;
 	}
 	
@@ -127,34 +216,115 @@ public class MatrixUtils {
 	public static double[][] center(double[][] matrix,
 		BiFunction<double[], Boolean, Double> centering, boolean excludeNan
 	) {
-		double[][] centered = new double[matrix.length][matrix[0].length];
-		for (int i = 0; i < matrix.length; i++) {
-			centered[i] = center(matrix[i], centering, excludeNan);
-		}
-		return centered;
+		return center(matrix, centering, excludeNan, false);
 	}
-	
+
 	/**
-	 * Centers the {@code data} array by applying the {@code computeCenter}
-	 * function. If {@code excludeNan} is {@code true}, then {@code Double.NaN}
-	 * values are excluded.
+	 * Centers the {@code data} matrix by applying the {@code computeCenter}
+	 * function to each row. If {@code excludeNan} is {@code true}, then
+	 * {@code Double.NaN} values are excluded. Rows are processed in parallel.
+	 * If {@code inPlace} is {@code true}, then the values of {@code matrix}
+	 * are replaced and {@code matrix} itself is returned.
 	 * 
-	 * @param data the data array to be centered.
-	 * @param computeCenter the function that calculates the center.
+	 * @param matrix the data matrix to be centered.
+	 * @param centering the function that calculates the center of each row. It
+	 * 			must not modify the row.
 	 * @param excludeNan if {@code true}, then {@code Double.NaN} values are 
 	 * 			excluded.
-	 * @return the centered data array.
+	 * @param inPlace if {@code true}, then {@code matrix} is modified instead
+	 * 			of creating a new one.
+	 * @return the centered data matrix.
 	 */
-	private static double[] center(double[] data,
-		BiFunction<double[], Boolean, Double> computeCenter, boolean excludeNan
+	public static double[][] center(double[][] matrix,
+		BiFunction<double[], Boolean, Double> centering, boolean excludeNan,
+		boolean inPlace
 	) {
-		double center = computeCenter.apply(data, excludeNan);
-		double[] centered = new double[data.length];
-		for(int i = 0; i < data.length; i++) {
-			centered[i] = data[i] - center;
-		}
+		return center(matrix, centering, excludeNan, inPlace, RowsMonitor.NONE);
+	}
+
+	/**
+	 * Centers the {@code data} matrix by applying the {@code computeCenter}
+	 * function to each row. If {@code excludeNan} is {@code true}, then
+	 * {@code Double.NaN} values are excluded. Rows are processed in parallel
+	 * and reported to {@code monitor}. If {@code inPlace} is {@code true},
+	 * then the values of {@code matrix} are replaced and {@code matrix} itself
+	 * is returned.
+	 * 
+	 * @param matrix the data matrix to be centered.
+	 * @param centering the function that calculates the center of each row. It
+	 * 			must not modify the row.
+	 * @param excludeNan if {@code true}, then {@code Double.NaN} values are 
+	 * 			excluded.
+	 * @param inPlace if {@code true}, then {@code matrix} is modified instead
+	 * 			of creating a new one.
+	 * @param monitor the monitor of the operation.
+	 * @return the centered data matrix.
+	 * @throws CancellationException if {@code monitor} cancels the operation.
+	 * 			When working in place, {@code matrix} may be partially
+	 * 			centered.
+	 */
+	public static double[][] center(double[][] matrix,
+		BiFunction<double[], Boolean, Double> centering, boolean excludeNan,
+		boolean inPlace, RowsMonitor monitor
+	) {
+		double[][] centered = inPlace ? matrix : new double[matrix.length][];
+		forEachRow(matrix.length, row -> {
+			double[] values = matrix[row];
+			double center = centering.apply(values, excludeNan);
+			double[] target = inPlace ? values : new double[values.length];
+			for (int i = 0; i < values.length; i++) {
+				target[i] = values[i] - center;
+			}
+			centered[row] = target;
+		}, monitor);
+
 		return centered;
 	}
+
+	private static void forEachRow(int rows, IntConsumer operation,
+		RowsMonitor monitor
+	) {
+		ForkJoinPool.commonPool().invoke(
+			new RowsTask(0, rows, operation, monitor));
+		if (monitor.isCancelled()) {
+			throw new CancellationException();
+		}
+	}
+
+	private static class RowsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final IntConsumer operation;
+		private final RowsMonitor monitor;
+
+		RowsTask(int from, int to, IntConsumer operation, RowsMonitor monitor) {
+			this.from = from;
+			this.to = to;
+			this.operation = operation;
+			this.monitor = monitor;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.monitor.isCancelled()) {
+				return;
+			}
+			if (this.to - this.from <= ROWS_PER_TASK) {
+				for (int row = this.from; row < this.to; row++) {
+					this.operation.accept(row);
+				}
+				this.monitor.rowsProcessed(this.to - this.from);
+			} else {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(
+					new RowsTask(this.from, middle, this.operation, this.monitor),
+					new RowsTask(middle, this.to, this.operation, this.monitor)
+				);
+			}
+		}
+	}
 	
 	/**
 	 * Returns the mean value of {@code data}. If {@code excludeNan} is
@@ -167,18 +337,22 @@ public class MatrixUtils {
 	 */
 	public static double mean(double[] data, boolean excludeNan) {
 		double sum = 0;
-		if(excludeNan) {
-			data = removeNan(data);
-		}
+		int count = 0;
 		for (int i = 0; i < data.length; i++) {
-			sum += data[i];
+			if (!excludeNan || !Double.isNaN(data[i])) {
+				sum += data[i];
+				count++;
+			}
 		}
-		return sum / data.length;
+		return sum / count;
 	}
 	
 	/**
 	 * Returns the median value of {@code data}. If {@code excludeNan} is
-	 * {@code true}, then {@code Double.NaN} values are excluded.
+	 * {@code true}, then {@code Double.NaN} values are excluded. Otherwise,
+	 * {@code Double.NaN} values are considered greater than any other value.
+	 * The median is found by quickselect on a copy of {@code data}, which is
+	 * not modified.
 	 * 
 	 * @param data a data array.
 	 * @param excludeNan if {@code true}, then {@code Double.NaN} values are 
@@ -186,22 +360,67 @@ public class MatrixUtils {
 	 * @return the median value of {@code data}.
 	 */
 	public static double median(double[] data, boolean excludeNan) {
-		if(excludeNan) {
-			data = removeNan(data);
+		double[] values = new double[data.length];
+		int count = 0;
+		for (int i = 0; i < data.length; i++) {
+			if (!Double.isNaN(data[i])) {
+				values[count++] = data[i];
+			}
+		}
+		int length = excludeNan ? count : data.length;
+		if (length == 0) {
+			return Double.NaN;
 		}
-		Arrays.sort(data);
-		double median;
-		if (data.length % 2 == 0) {
-			median = ((double) data[data.length / 2] + (double) data[data.length / 2 - 1]) / 2;
-		} else {
-			median = (double) data[data.length / 2];
+
+		int upper = length / 2;
+		if (upper >= count) {
+			return Double.NaN;
+		}
+		double median = select(values, count, upper);
+		if (length % 2 == 0) {
+			double lower = values[0];
+			for (int i = 1; i < upper; i++) {
+				lower = Math.max(lower, values[i]);
+			}
+			median = (median + lower) / 2;
 		}
 		return median;
 	}
 
-	private static double[] removeNan(double[] data) {
-		return 	DoubleStream.of(data)
-				.filter(d -> !Double.isNaN(d)).toArray();
+	/**
+	 * Moves the {@code k}-th smallest of the first {@code length} values to
+	 * position {@code k}, leaving the smaller values before it and the
+	 * greater values after it.
+	 */
+	private static double select(double[] values, int length, int k) {
+		int left = 0;
+		int right = length - 1;
+		while (left < right) {
+			double pivot = values[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (values[i] < pivot) {
+					i++;
+				}
+				while (values[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					double swap = values[i];
+					values[i++] = values[j];
+					values[j--] = swap;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				break;
+			}
+		}
+		return values[k];
 	}
 
 	/**
@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.utilities;
+
+import java.util.Arrays;
+
+/**
+ * A minimal timer for the {@code *Benchmark} classes, which are run with the
+ * {@code benchmarks} profile ({@code mvn -Pbenchmarks test}). Each task is
+ * run a number of times to warm up the JIT and then measured a number of
+ * times, reporting the median and the minimum time. A garbage collection is
+ * requested before each measured run, so that runs do not pay for the
+ * garbage of the previous ones.
+ * 
+ * @author hlfernandez
+ * 
+ */
+public final class BenchmarkTimer {
+
+	/**
+	 * A benchmarked task.
+	 */
+	public interface Task {
+		/**
+		 * Runs the task once.
+		 * 
+		 * @throws Exception if the task fails
+		 */
+		void run() throws Exception;
+	}
+
+	private BenchmarkTimer() {}
+
+	/**
+	 * Measures the specified task and prints the result.
+	 * 
+	 * @param name the name of the measured task
+	 * @param warmups the number of runs before measuring
+	 * @param runs the number of measured runs
+	 * @param task the task to measure
+	 * @return the median time of the measured runs, in milliseconds
+	 * @throws Exception if the task fails
+	 */
+	public static double measure(String name, int warmups, int runs, Task task)
+		throws Exception {
+		for (int i = 0; i < warmups; i++) {
+			task.run();
+		}
+		double[] times = new double[runs];
+		for (int i = 0; i < runs; i++) {
+			System.gc();
+			long start = System.nanoTime();
+			task.run();
+			times[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(times);
+		double median = times[runs / 2];
+		System.out.printf("%-50s median %10.3f ms   min %10.3f ms   (%d runs)%n",
+			name, median, times[0], runs);
+
+		return median;
+	}
+}
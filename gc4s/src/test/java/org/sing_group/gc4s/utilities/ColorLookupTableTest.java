@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo López-Fernández, Daniel Glez-Peña, Miguel Reboiro-Jato, 
+ * 			Florentino Fdez-Riverola, Rosalía Laza-Fidalgo, Reyes Pavón-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.utilities;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.sing_group.gc4s.utilities.Gradient.createGradient;
+
+import java.awt.Color;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ColorLookupTableTest {
+	private static final Color LOW = new Color(0, 0, 255);
+	private static final Color HIGH = new Color(255, 0, 0);
+	private static final Color NAN = new Color(128, 128, 128, 64);
+
+	@Test
+	public void rangeEndsTest() {
+		ColorLookupTable table = 
+			new ColorLookupTable(LOW, HIGH, NAN, -2d, 6d);
+
+		assertEquals(-2d, table.getLowValue(), 0d);
+		assertEquals(6d, table.getHighValue(), 0d);
+		assertEquals(LOW, table.getColor(-2d));
+		assertEquals(HIGH, table.getColor(6d));
+		assertEquals(LOW.getRGB(), table.getRGB(-2d));
+		assertEquals(HIGH.getRGB(), table.getRGB(6d));
+	}
+
+	@Test
+	public void valuesAreClampedTest() {
+		ColorLookupTable table = 
+			new ColorLookupTable(LOW, HIGH, NAN, -2d, 6d);
+
+		assertEquals(LOW, table.getColor(-100d));
+		assertEquals(LOW, table.getColor(Double.NEGATIVE_INFINITY));
+		assertEquals(HIGH, table.getColor(100d));
+		assertEquals(HIGH, table.getColor(Double.POSITIVE_INFINITY));
+	}
+
+	@Test
+	public void missingValuesTest() {
+		ColorLookupTable table = 
+			new ColorLookupTable(LOW, HIGH, NAN, -2d, 6d);
+
+		assertSame(NAN, table.getColor(Double.NaN));
+		assertEquals(NAN.getRGB(), table.getRGB(Double.NaN));
+	}
+
+	@Test
+	public void matchesGradientTest() {
+		int steps = 37;
+		double low = -3.5;
+		double high = 12.25;
+		ColorLookupTable table = 
+			new ColorLookupTable(LOW, HIGH, steps, NAN, low, high);
+		Color[] gradient = createGradient(LOW, HIGH, steps);
+
+		Random random = new Random(0);
+		for (int i = 0; i < 10_000; i++) {
+			double value = low - 1 + random.nextDouble() * (high - low + 2);
+			double clamped = Math.max(low, Math.min(high, value));
+			int index = (int) (((clamped - low) / (high - low)) * (steps - 1));
+			Color expected = gradient[index];
+
+			assertEquals(expected, table.getColor(value));
+			assertEquals(expected.getRGB(), table.getRGB(value));
+		}
+	}
+
+	@Test
+	public void singleStepTest() {
+		ColorLookupTable table = 
+			new ColorLookupTable(LOW, HIGH, 1, NAN, 0d, 1d);
+
+		assertEquals(LOW, table.getColor(0d));
+		assertEquals(LOW, table.getColor(1d));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidStepsTest() {
+		new ColorLookupTable(LOW, HIGH, 0, NAN, 0d, 1d);
+	}
+
+	@Test
+	public void bulkMappingTest() {
+		ColorLookupTable table = 
+			new ColorLookupTable(LOW, HIGH, NAN, 0d, 1d);
+		double[] values = { 0d, 0.5, Double.NaN, 1d, 2d };
+
+		int[] rgb = new int[7];
+		table.getRGB(values, rgb, 2);
+		assertArrayEquals(new int[] { 0, 0, 
+			table.getRGB(0d), table.getRGB(0.5), NAN.getRGB(),
+			HIGH.getRGB(), HIGH.getRGB() }, rgb);
+
+		rgb = new int[4];
+		table.getRGB(values, new int[] { 3, 2, 0 }, rgb, 1);
+		assertArrayEquals(new int[] { 0, 
+			HIGH.getRGB(), NAN.getRGB(), LOW.getRGB() }, rgb);
+	}
+}
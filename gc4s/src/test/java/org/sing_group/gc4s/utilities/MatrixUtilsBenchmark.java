@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * GC4S components
+ * %%
+ * Copyright (C) 2014 - 2018 Hugo L??pez-Fern??ndez, Daniel Glez-Pe??a, Miguel Reboiro-Jato,
+ * 			Florentino Fdez-Riverola, Rosal??a Laza-Fidalgo, Reyes Pav??n-Rial
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+package org.sing_group.gc4s.utilities;
+
+import static java.util.stream.DoubleStream.of;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.stream.DoubleStream;
+
+import org.junit.Test;
+
+/**
+ * Compares the ways of transforming and centering a 10,000 x 1,000 matrix
+ * with 5% of missing values:
+ * <ul>
+ * <li>boxed: the sequential, boxed streams that {@code MatrixUtils} used
+ * before the row-parallel operations, with the median of each row found by
+ * sorting a copy without missing values.</li>
+ * <li>sequential: the same row loops that {@code MatrixUtils} runs now, on
+ * the calling thread, and with the quickselect median.</li>
+ * <li>{@link MatrixUtils}: the row-parallel operations, creating a new
+ * matrix and in place.</li>
+ * </ul>
+ *
+ * The speed-up of {@code MatrixUtils} over the sequential loops is the gain
+ * of processing the rows in parallel, so it depends on the number of
+ * available processors, which is printed along with it. The results of the
+ * boxed and sequential versions are checked against {@code MatrixUtils}.
+ *
+ * @author hlfernandez
+ *
+ */
+public class MatrixUtilsBenchmark {
+	private static final int ROWS = 10_000;
+	private static final int COLUMNS = 1_000;
+
+	private static final DoubleUnaryOperator LOG = Math::log1p;
+	private static final BiFunction<double[], Boolean, Double> MEDIAN =
+		MatrixUtils::median;
+
+	@Test
+	public void transformMatrix() throws Exception {
+		double[][] matrix = matrix();
+		assertMatrixEquals(boxedTransform(matrix, LOG::applyAsDouble),
+			MatrixUtils.transform(matrix, LOG, false));
+		assertMatrixEquals(sequentialTransform(matrix, LOG),
+			MatrixUtils.transform(matrix, LOG, false));
+
+		System.out.println("Available processors: "
+			+ Runtime.getRuntime().availableProcessors());
+		BenchmarkTimer.measure("transform: boxed", 1, 5,
+			() -> boxedTransform(matrix, LOG::applyAsDouble));
+		double sequential = BenchmarkTimer.measure("transform: sequential",
+			1, 5, () -> sequentialTransform(matrix, LOG));
+		double parallel = BenchmarkTimer.measure("transform: MatrixUtils",
+			1, 5, () -> MatrixUtils.transform(matrix, LOG, false));
+		BenchmarkTimer.measure("transform: MatrixUtils in place", 1, 5,
+			() -> MatrixUtils.transform(matrix, LOG, true));
+		printSpeedUp("transform", sequential, parallel);
+	}
+
+	@Test
+	public void centerMatrix() throws Exception {
+		double[][] matrix = matrix();
+		assertMatrixEquals(boxedCenter(matrix),
+			MatrixUtils.center(matrix, MEDIAN, true, false));
+		assertMatrixEquals(sequentialCenter(matrix),
+			MatrixUtils.center(matrix, MEDIAN, true, false));
+
+		System.out.println("Available processors: "
+			+ Runtime.getRuntime().availableProcessors());
+		BenchmarkTimer.measure("center on median: boxed", 1, 5,
+			() -> boxedCenter(matrix));
+		double sequential = BenchmarkTimer.measure(
+			"center on median: sequential", 1, 5,
+			() -> sequentialCenter(matrix));
+		double parallel = BenchmarkTimer.measure(
+			"center on median: MatrixUtils", 1, 5,
+			() -> MatrixUtils.center(matrix, MEDIAN, true, false));
+		BenchmarkTimer.measure("center on median: MatrixUtils in place", 1, 5,
+			() -> MatrixUtils.center(matrix, MEDIAN, true, true));
+		printSpeedUp("center on median", sequential, parallel);
+	}
+
+	private static double[][] matrix() {
+		Random random = new Random(0);
+		double[][] matrix = new double[ROWS][COLUMNS];
+		for (double[] row : matrix) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] = random.nextInt(20) == 0 ?
+					Double.NaN : random.nextDouble() * 1000d;
+			}
+		}
+		return matrix;
+	}
+
+	private static void printSpeedUp(String name, double sequential,
+		double parallel
+	) {
+		System.out.printf("%s: parallel speed-up %.2fx with %d processors%n",
+			name, sequential / parallel,
+			Runtime.getRuntime().availableProcessors());
+	}
+
+	private static void assertMatrixEquals(double[][] expected,
+		double[][] actual
+	) {
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals(expected[i], actual[i], 0d);
+		}
+	}
+
+	/*
+	 * The transform of MatrixUtils before the row-parallel operations.
+	 */
+	private static double[][] boxedTransform(double[][] matrix,
+		Function<Double, Double> transformation
+	) {
+		double[][] transformed = new double[matrix.length][matrix[0].length];
+		for (int i = 0; i < matrix.length; i++) {
+			transformed[i] = of(matrix[i]).map(transformation::apply).toArray();
+		}
+		return transformed;
+	}
+
+	/*
+	 * The center on the median of MatrixUtils before the row-parallel
+	 * operations.
+	 */
+	private static double[][] boxedCenter(double[][] matrix) {
+		double[][] centered = new double[matrix.length][matrix[0].length];
+		for (int i = 0; i < matrix.length; i++) {
+			double[] data = DoubleStream.of(matrix[i])
+				.filter(d -> !Double.isNaN(d)).toArray();
+			Arrays.sort(data);
+			double median = data.length % 2 == 0 ?
+				(data[data.length / 2] + data[data.length / 2 - 1]) / 2 :
+				data[data.length / 2];
+			centered[i] = new double[matrix[i].length];
+			for (int j = 0; j < matrix[i].length; j++) {
+				centered[i][j] = matrix[i][j] - median;
+			}
+		}
+		return centered;
+	}
+
+	private static double[][] sequentialTransform(double[][] matrix,
+		DoubleUnaryOperator transformation
+	) {
+		double[][] transformed = new double[matrix.length][];
+		for (int row = 0; row < matrix.length; row++) {
+			double[] values = matrix[row];
+			double[] target = new double[values.length];
+			for (int i = 0; i < values.length; i++) {
+				target[i] = transformation.applyAsDouble(values[i]);
+			}
+			transformed[row] = target;
+		}
+		return transformed;
+	}
+
+	private static double[][] sequentialCenter(double[][] matrix) {
+		double[][] centered = new double[matrix.length][];
+		for (int row = 0; row < matrix.length; row++) {
+			double[] values = matrix[row];
+			double center = MEDIAN.apply(values, true);
+			double[] target = new double[values.length];
+			for (int i = 0; i < values.length; i++) {
+				target[i] = values[i] - center;
+			}
+			centered[row] = target;
+		}
+		return centered;
+	}
+}
@@ -25,15 +25,23 @@ package org.sing_group.gc4s.utilities;
 import static org.sing_group.gc4s.utilities.MatrixUtils.center;
 import static org.sing_group.gc4s.utilities.MatrixUtils.max;
 import static org.sing_group.gc4s.utilities.MatrixUtils.mean;
+import static org.sing_group.gc4s.utilities.MatrixUtils.median;
 import static org.sing_group.gc4s.utilities.MatrixUtils.min;
 import static org.sing_group.gc4s.utilities.MatrixUtils.transform;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
 import org.junit.Test;
 import org.sing_group.gc4s.utilities.MatrixUtils;
+import org.sing_group.gc4s.utilities.MatrixUtils.RowsMonitor;
 
 public class MatrixUtilsTest {
 
@@ -78,6 +86,53 @@ public class MatrixUtilsTest {
 		
 		assertMatrixEquals(expected, actual);
 	}
+	
+	@Test
+	public void transformInPlaceTest() {
+		DoubleUnaryOperator square = (d) -> d * d;
+		double[][] matrix = copy(MATRIX);
+		
+		double[][] expected = new double[][] {
+				{1d, 4d},
+				{1d, 9d},
+				{1d, Double.NaN}
+		};
+		
+		double[][] actual = transform(matrix, square, true);
+		
+		assertSame(matrix, actual);
+		assertMatrixEquals(expected, actual);
+	}
+	
+	@Test
+	public void transformLargeMatrixTest() {
+		double[][] matrix = randomMatrix(1000, 50);
+		
+		double[][] actual = transform(matrix, Math::abs, false);
+		
+		assertNotSame(matrix, actual);
+		for (int i = 0; i < matrix.length; i++) {
+			for (int j = 0; j < matrix[i].length; j++) {
+				assertEquals(Math.abs(matrix[i][j]), actual[i][j], 0d);
+			}
+		}
+	}
+	
+	@Test(expected = CancellationException.class)
+	public void transformCancelledTest() {
+		RowsMonitor cancelled = new RowsMonitor() {
+
+			@Override
+			public void rowsProcessed(int rows) {}
+
+			@Override
+			public boolean isCancelled() {
+				return true;
+			}
+		};
+		
+		transform(randomMatrix(1000, 10), Math::abs, false, cancelled);
+	}
 
 	@Test
 	public void meanWithoutNansTest() {
@@ -98,16 +153,33 @@ public class MatrixUtilsTest {
 	@Test
 	public void medianWithoutNansTest() {
 		for (int i = 0; i < MEDIANS_NO_NANS.length; i++) {
-			double mean = mean(MATRIX[i], true);
-			assertEquals(MEDIANS_NO_NANS[i], mean, 0d);
+			double median = median(MATRIX[i], true);
+			assertEquals(MEDIANS_NO_NANS[i], median, 0d);
 		}
 	}
 	
 	@Test
 	public void medianWithNansTest() {
 		for (int i = 0; i < MEDIANS_NANS.length; i++) {
-			double mean = mean(MATRIX[i], false);
-			assertEquals(MEDIANS_NANS[i], mean, 0d);
+			double median = median(MATRIX[i], false);
+			assertEquals(MEDIANS_NANS[i], median, 0d);
+		}
+	}
+	
+	@Test
+	public void medianMatchesSortingTest() {
+		Random random = new Random(1);
+		for (int length = 1; length < 60; length++) {
+			double[] data = new double[length];
+			for (int i = 0; i < length; i++) {
+				data[i] = random.nextInt(3) == 0 ? 
+					Double.NaN : random.nextInt(10);
+			}
+			double[] original = data.clone();
+			
+			assertEquals(sortedMedian(data, true), median(data, true), 0d);
+			assertEquals(sortedMedian(data, false), median(data, false), 0d);
+			assertArrayEquals(original, data, 0d);
 		}
 	}
 	
@@ -124,6 +196,57 @@ public class MatrixUtilsTest {
 		assertMatrixEquals(expected, actual);
 	}
 	
+	@Test
+	public void medianCenteringInPlaceTest() {
+		double[][] matrix = new double[][] {
+				{3d, 1d, 2d},
+				{4d, Double.NaN, 2d}
+		};
+		
+		double[][] actual = center(matrix, MatrixUtils::median, true, true);
+		
+		double[][] expected = new double[][] {
+				{1d	, -1d		, 0d},
+				{1d	, Double.NaN, -1d}
+		};
+		
+		assertSame(matrix, actual);
+		assertMatrixEquals(expected, actual);
+	}
+	
+	private static double sortedMedian(double[] data, boolean excludeNan) {
+		double[] sorted = excludeNan ? 
+			Arrays.stream(data).filter(d -> !Double.isNaN(d)).toArray() :
+			data.clone();
+		if (sorted.length == 0) {
+			return Double.NaN;
+		}
+		Arrays.sort(sorted);
+		int middle = sorted.length / 2;
+		
+		return sorted.length % 2 == 0 ? 
+			(sorted[middle] + sorted[middle - 1]) / 2 : sorted[middle];
+	}
+	
+	private static double[][] randomMatrix(int rows, int columns) {
+		Random random = new Random(rows);
+		double[][] matrix = new double[rows][columns];
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				matrix[i][j] = random.nextGaussian();
+			}
+		}
+		return matrix;
+	}
+	
+	private static double[][] copy(double[][] matrix) {
+		double[][] copy = new double[matrix.length][];
+		for (int i = 0; i < matrix.length; i++) {
+			copy[i] = matrix[i].clone();
+		}
+		return copy;
+	}
+	
 	private static void assertMatrixEquals(double[][] expected,
 		double[][] actual
 	) {